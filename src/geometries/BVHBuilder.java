@@ -0,0 +1,552 @@
+package geometries;
+
+import geometries.Intersectable.Border;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * class BVHBuilder builds a binary bounding volume hierarchy with the binned
+ * surface area heuristic (SAH).<br/>
+ * In every node the centroids of the primitives are sorted into a fixed amount of
+ * bins along each axis, and the node is split between the two bins that give the
+ * lowest expected cost. A node becomes a leaf when it holds few enough primitives
+ * and splitting it is not expected to be cheaper than intersecting all of them.<br/>
+ * The build runs in a fork-join pool: the sub-trees of big nodes are built in
+ * parallel, and the nodes at the top of the tree sort their primitives into the
+ * bins in parallel parts. The bins of the parts are merged by minimum, maximum and
+ * sum only, and every range is partitioned by one thread, so the tree is exactly
+ * the tree of a serial build.<br/>
+ * Centroids that split very unevenly at every level (exponentially spaced ones,
+ * for example) could make the tree as deep as the amount of primitives, so the
+ * nodes below a fixed depth are split at the median of their centroids instead.
+ *
+ * @author hodaya
+ */
+final class BVHBuilder {
+    /**
+     * the cost of visiting an inner node (relative to one primitive intersection)
+     */
+    static final double TRAVERSAL_COST = 1;
+    /**
+     * the cost of intersecting a primitive
+     */
+    static final double INTERSECTION_COST = 1;
+    /**
+     * the default maximum amount of primitives in a leaf
+     */
+    static final int DEFAULT_LEAF_SIZE = 4;
+    /**
+     * the depth below which the nodes are split at the median of their centroids
+     * instead of by the surface area heuristic
+     */
+    static final int MAX_SAH_DEPTH = 64;
+    /**
+     * amount of bins along each axis
+     */
+    private static final int BINS = 16;
+    /**
+     * the smallest node whose sub-trees are built in parallel
+     */
+    private static final int PARALLEL_SUBTREE = 1 << 12;
+    /**
+     * the smallest node whose primitives are binned in parallel parts
+     */
+    private static final int PARALLEL_BINNING = 1 << 16;
+    /**
+     * the amount of primitives in a part of a parallel binning
+     */
+    private static final int BINNING_PART = 1 << 14;
+
+    /**
+     * the boxes of the primitives - 6 values for each primitive
+     */
+    private final double[] primBounds;
+    /**
+     * the centroids of the primitives - 3 values for each primitive
+     */
+    private final double[] centroids;
+    /**
+     * the primitive indices, reordered while building
+     */
+    private final int[] order;
+    /**
+     * the maximum amount of primitives in a leaf
+     */
+    private final int maxLeafSize;
+    /**
+     * the pool of the parallel build, null for a serial build
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * binning buffers, reused for all the nodes that are built by one thread
+     */
+    private static final class Bins {
+        final int[] counts = new int[BINS];
+        final double[] bounds = new double[BINS * 6];
+        final double[] rightAreas = new double[BINS];
+
+        /**
+         * empties all the bins
+         */
+        void clear() {
+            for (int bin = 0; bin < BINS; ++bin) {
+                counts[bin] = 0;
+                for (int i = 0; i < 3; ++i) {
+                    bounds[bin * 6 + i] = Double.POSITIVE_INFINITY;
+                    bounds[bin * 6 + i + 3] = Double.NEGATIVE_INFINITY;
+                }
+            }
+        }
+
+        /**
+         * adds the content of other bins to these bins
+         */
+        void merge(Bins other) {
+            for (int bin = 0; bin < BINS; ++bin)
+                counts[bin] += other.counts[bin];
+            for (int i = 0; i < BINS * 6; i += 6)
+                for (int j = 0; j < 3; ++j) {
+                    if (other.bounds[i + j] < bounds[i + j])
+                        bounds[i + j] = other.bounds[i + j];
+                    if (other.bounds[i + j + 3] > bounds[i + j + 3])
+                        bounds[i + j + 3] = other.bounds[i + j + 3];
+                }
+        }
+    }
+
+    /**
+     * node of the hierarchy while it is being built
+     */
+    private static final class Node {
+        final Border box;
+        final int start;
+        final int count;
+        int axis;
+        /**
+         * amount of nodes in the sub-tree
+         */
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(Border box, int start, int count) {
+            this.box = box;
+            this.start = start;
+            this.count = count;
+        }
+    }
+
+    /**
+     * task that builds the sub-tree of a range of primitives
+     */
+    @SuppressWarnings("serial") // the tasks are never serialized
+    private final class SubTree extends RecursiveTask<Node> {
+        private final int start;
+        private final int end;
+        private final int depth;
+
+        SubTree(int start, int end, int depth) {
+            this.start = start;
+            this.end = end;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Node compute() {
+            return build(start, end, depth, new Bins());
+        }
+    }
+
+    /**
+     * task that sorts a part of a range of primitives into its own bins
+     */
+    @SuppressWarnings("serial") // the tasks are never serialized
+    private final class BinningPart extends RecursiveAction {
+        private final int start;
+        private final int end;
+        private final int axis;
+        private final double min;
+        private final double extent;
+        final Bins bins = new Bins();
+
+        BinningPart(int start, int end, int axis, double min, double extent) {
+            this.start = start;
+            this.end = end;
+            this.axis = axis;
+            this.min = min;
+            this.extent = extent;
+        }
+
+        @Override
+        protected void compute() {
+            bins.clear();
+            fillBins(start, end, axis, min, extent, bins);
+        }
+    }
+
+    /**
+     * task that finds the box of a part of a range of primitives and the box of
+     * their centroids
+     */
+    @SuppressWarnings("serial") // the tasks are never serialized
+    private final class BoundsPart extends RecursiveAction {
+        private final int start;
+        private final int end;
+        final Border box = new Border();
+        final Border centroidBox = new Border();
+
+        BoundsPart(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            bound(start, end, box, centroidBox);
+        }
+    }
+
+    /**
+     * constructor of a builder over the boxes of the primitives, that builds in
+     * the common fork-join pool
+     *
+     * @param primBounds  the boxes of the primitives - 6 values for each primitive
+     *                    (minX, minY, minZ, maxX, maxY, maxZ)
+     * @param maxLeafSize the maximum amount of primitives in a leaf
+     */
+    BVHBuilder(double[] primBounds, int maxLeafSize) {
+        this(primBounds, maxLeafSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * constructor of a builder over the boxes of the primitives
+     *
+     * @param primBounds  the boxes of the primitives - 6 values for each primitive
+     *                    (minX, minY, minZ, maxX, maxY, maxZ)
+     * @param maxLeafSize the maximum amount of primitives in a leaf
+     * @param pool        the pool to build in, null to build in the calling thread
+     */
+    BVHBuilder(double[] primBounds, int maxLeafSize, ForkJoinPool pool) {
+        if (maxLeafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive");
+        this.primBounds = primBounds;
+        this.maxLeafSize = maxLeafSize;
+        this.pool = pool;
+        int size = primBounds.length / 6;
+        order = new int[size];
+        centroids = new double[size * 3];
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+            for (int axis = 0; axis < 3; ++axis)
+                centroids[i * 3 + axis] = (primBounds[i * 6 + axis] + primBounds[i * 6 + axis + 3]) / 2;
+        }
+    }
+
+    /**
+     * builds the hierarchy
+     *
+     * @return the hierarchy in flat arrays
+     */
+    BVHNodes build() {
+        if (order.length == 0)
+            throw new IllegalArgumentException("cannot build a hierarchy without primitives");
+        Node root = pool == null || order.length < PARALLEL_SUBTREE
+                ? build(0, order.length, 0, new Bins())
+                : pool.invoke(new SubTree(0, order.length, 0));
+        int nodeCount = root.size;
+        double[] bounds = new double[nodeCount * 6];
+        int[] offsets = new int[nodeCount];
+        int[] counts = new int[nodeCount];
+        byte[] axes = new byte[nodeCount];
+        flatten(root, 0, bounds, offsets, counts, axes);
+        return new BVHNodes(bounds, offsets, counts, axes, order);
+    }
+
+    /**
+     * builds the sub-tree of a range of primitives
+     *
+     * @param start the first index in the order array
+     * @param end   the index after the last one
+     * @param depth the depth of the root of the sub-tree (0 for the root of the tree)
+     * @param bins  the binning buffers of the thread
+     * @return the root of the sub-tree
+     */
+    private Node build(int start, int end, int depth, Bins bins) {
+        int count = end - start;
+        boolean parallel = pool != null && count >= PARALLEL_BINNING;
+        Border box = new Border();
+        Border centroidBox = new Border();
+        if (parallel) {
+            List<BoundsPart> parts = new ArrayList<>();
+            for (int i = start; i < end; i += BINNING_PART)
+                parts.add(new BoundsPart(i, Math.min(i + BINNING_PART, end)));
+            ForkJoinTask.invokeAll(parts);
+            for (BoundsPart part : parts) {
+                box.extend(part.box);
+                centroidBox.extend(part.centroidBox);
+            }
+        } else
+            bound(start, end, box, centroidBox);
+        Node node = new Node(box, start, count);
+        if (count == 1)
+            return node;
+
+        double area = box.surfaceArea();
+        if (area <= 0)
+            area = 1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestAxis = -1;
+        int bestBin = 0;
+        // no split is evaluated below the depth of the surface area heuristic
+        int sahAxes = depth < MAX_SAH_DEPTH ? 3 : 0;
+        for (int axis = 0; axis < sahAxes; ++axis) {
+            double min = min(centroidBox, axis);
+            double extent = max(centroidBox, axis) - min;
+            if (extent <= 0)
+                continue;
+            bins.clear();
+            if (parallel) {
+                List<BinningPart> parts = new ArrayList<>();
+                for (int i = start; i < end; i += BINNING_PART)
+                    parts.add(new BinningPart(i, Math.min(i + BINNING_PART, end), axis, min, extent));
+                ForkJoinTask.invokeAll(parts);
+                for (BinningPart part : parts)
+                    bins.merge(part.bins);
+            } else
+                fillBins(start, end, axis, min, extent, bins);
+
+            // sweep from the right to get the areas of all the right sides
+            Border side = new Border();
+            for (int bin = BINS - 1; bin > 0; --bin) {
+                extend(side, bins.bounds, bin * 6);
+                bins.rightAreas[bin] = side.surfaceArea();
+            }
+            // sweep from the left and evaluate the split before each bin
+            side = new Border();
+            int leftCount = 0;
+            for (int bin = 1; bin < BINS; ++bin) {
+                extend(side, bins.bounds, (bin - 1) * 6);
+                leftCount += bins.counts[bin - 1];
+                int rightCount = count - leftCount;
+                if (leftCount == 0 || rightCount == 0)
+                    continue;
+                double cost = TRAVERSAL_COST
+                        + (side.surfaceArea() * leftCount + bins.rightAreas[bin] * rightCount) / area * INTERSECTION_COST;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestBin = bin;
+                }
+            }
+        }
+
+        int mid;
+        if (depth >= MAX_SAH_DEPTH) {
+            if (count <= maxLeafSize)
+                return node;
+            // split at the median of the centroids along their longest extent
+            bestAxis = 0;
+            for (int axis = 1; axis < 3; ++axis)
+                if (max(centroidBox, axis) - min(centroidBox, axis)
+                        > max(centroidBox, bestAxis) - min(centroidBox, bestAxis))
+                    bestAxis = axis;
+            mid = start + count / 2;
+            select(start, end, mid, bestAxis);
+        } else if (bestAxis < 0) {
+            // all the centroids are in the same place - only the leaf size forces a split
+            if (count <= maxLeafSize)
+                return node;
+            mid = start + count / 2;
+            bestAxis = 0;
+        } else {
+            if (count <= maxLeafSize && count * INTERSECTION_COST <= bestCost)
+                return node;
+            mid = partition(start, end, bestAxis, bestBin, min(centroidBox, bestAxis),
+                    max(centroidBox, bestAxis) - min(centroidBox, bestAxis));
+        }
+
+        node.axis = bestAxis;
+        if (pool != null && count >= PARALLEL_SUBTREE) {
+            SubTree left = new SubTree(start, mid, depth + 1);
+            SubTree right = new SubTree(mid, end, depth + 1);
+            ForkJoinTask.invokeAll(left, right);
+            node.left = left.join();
+            node.right = right.join();
+        } else {
+            node.left = build(start, mid, depth + 1, bins);
+            node.right = build(mid, end, depth + 1, bins);
+        }
+        node.size += node.left.size + node.right.size;
+        return node;
+    }
+
+    /**
+     * finds the box of a range of primitives and the box of their centroids
+     */
+    private void bound(int start, int end, Border box, Border centroidBox) {
+        for (int i = start; i < end; ++i) {
+            int prim = order[i];
+            extend(box, primBounds, prim * 6);
+            extendByPoint(centroidBox, prim * 3);
+        }
+    }
+
+    /**
+     * sorts the primitives of a range into the bins of an axis
+     */
+    private void fillBins(int start, int end, int axis, double min, double extent, Bins bins) {
+        int[] binCounts = bins.counts;
+        double[] binBounds = bins.bounds;
+        for (int i = start; i < end; ++i) {
+            int prim = order[i];
+            int bin = binOf(centroids[prim * 3 + axis], min, extent);
+            ++binCounts[bin];
+            int b = bin * 6;
+            int p = prim * 6;
+            for (int j = 0; j < 3; ++j) {
+                if (primBounds[p + j] < binBounds[b + j])
+                    binBounds[b + j] = primBounds[p + j];
+                if (primBounds[p + j + 3] > binBounds[b + j + 3])
+                    binBounds[b + j + 3] = primBounds[p + j + 3];
+            }
+        }
+    }
+
+    /**
+     * moves the primitives of the bins before the split bin to the start of the range
+     *
+     * @return the index of the first primitive of the right side
+     */
+    private int partition(int start, int end, int axis, int splitBin, double min, double extent) {
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if (binOf(centroids[order[i] * 3 + axis], min, extent) < splitBin)
+                ++i;
+            else {
+                int temp = order[i];
+                order[i] = order[j];
+                order[j--] = temp;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * reorders the primitives of a range so the one at a given index is where it
+     * would be if the range was sorted by the centroids along an axis, with the
+     * smaller centroids before it and the larger ones after it (quickselect)
+     */
+    private void select(int start, int end, int nth, int axis) {
+        int lo = start;
+        int hi = end - 1;
+        while (lo < hi) {
+            double pivot = centroids[order[(lo + hi) >>> 1] * 3 + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (centroids[order[i] * 3 + axis] < pivot)
+                    ++i;
+                while (centroids[order[j] * 3 + axis] > pivot)
+                    --j;
+                if (i <= j) {
+                    int temp = order[i];
+                    order[i++] = order[j];
+                    order[j--] = temp;
+                }
+            }
+            // the primitives between j and i are equal to the pivot
+            if (nth <= j)
+                hi = j;
+            else if (nth >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    /**
+     * @return the bin of a centroid value
+     */
+    private static int binOf(double value, double min, double extent) {
+        int bin = (int) ((value - min) / extent * BINS);
+        return bin < BINS ? bin : BINS - 1;
+    }
+
+    /**
+     * writes a sub-tree into the flat arrays in depth-first order
+     *
+     * @return the index after the last node of the sub-tree
+     */
+    private static int flatten(Node node, int index, double[] bounds, int[] offsets, int[] counts, byte[] axes) {
+        int b = index * 6;
+        bounds[b] = node.box.minX;
+        bounds[b + 1] = node.box.minY;
+        bounds[b + 2] = node.box.minZ;
+        bounds[b + 3] = node.box.maxX;
+        bounds[b + 4] = node.box.maxY;
+        bounds[b + 5] = node.box.maxZ;
+        if (node.left == null) {
+            offsets[index] = node.start;
+            counts[index] = node.count;
+            return index + 1;
+        }
+        axes[index] = (byte) node.axis;
+        int right = flatten(node.left, index + 1, bounds, offsets, counts, axes);
+        offsets[index] = right;
+        return flatten(node.right, right, bounds, offsets, counts, axes);
+    }
+
+    /**
+     * grows a border by a box that is stored in an array
+     */
+    private static void extend(Border box, double[] values, int i) {
+        if (values[i] < box.minX)
+            box.minX = values[i];
+        if (values[i + 1] < box.minY)
+            box.minY = values[i + 1];
+        if (values[i + 2] < box.minZ)
+            box.minZ = values[i + 2];
+        if (values[i + 3] > box.maxX)
+            box.maxX = values[i + 3];
+        if (values[i + 4] > box.maxY)
+            box.maxY = values[i + 4];
+        if (values[i + 5] > box.maxZ)
+            box.maxZ = values[i + 5];
+    }
+
+    /**
+     * grows a border by a centroid
+     */
+    private void extendByPoint(Border box, int i) {
+        double x = centroids[i];
+        double y = centroids[i + 1];
+        double z = centroids[i + 2];
+        if (x < box.minX)
+            box.minX = x;
+        if (y < box.minY)
+            box.minY = y;
+        if (z < box.minZ)
+            box.minZ = z;
+        if (x > box.maxX)
+            box.maxX = x;
+        if (y > box.maxY)
+            box.maxY = y;
+        if (z > box.maxZ)
+            box.maxZ = z;
+    }
+
+    private static double min(Border box, int axis) {
+        return axis == 0 ? box.minX : axis == 1 ? box.minY : box.minZ;
+    }
+
+    private static double max(Border box, int axis) {
+        return axis == 0 ? box.maxX : axis == 1 ? box.maxY : box.maxZ;
+    }
+}
@@ -0,0 +1,176 @@
+package geometries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Class BVHCache keeps the bounding volume hierarchies that were built in a
+ * directory, so the same primitives do not need a new build on the next run.<br/>
+ * A hierarchy is found by a hash of the boxes of its primitives and of the build
+ * settings (the leaf size and the {@link BVHKind}). A hierarchy that is read
+ * from the cache is checked before it is used - every primitive must be in
+ * exactly one leaf and inside its box, and every box must be inside the box of
+ * its parent - so a damaged or a stale file is never used, it is built again
+ * and replaced.<br/>
+ * The cache never fails a build: if the directory cannot be read or written, the
+ * hierarchy is just built.
+ *
+ * @author hodaya
+ */
+public final class BVHCache {
+    /**
+     * the magic number at the start of a cache file ("BVHC")
+     */
+    private static final int MAGIC = 0x42564843;
+    /**
+     * the version of the cache files and of the builder - a change of either makes
+     * the old files unused
+     */
+    private static final int VERSION = 2;
+    /**
+     * the size of the buffer the boxes are hashed through
+     */
+    private static final int HASH_BUFFER = 1 << 16;
+
+    /**
+     * the default maximum amount of primitives in a leaf
+     */
+    public static final int DEFAULT_LEAF_SIZE = BVHBuilder.DEFAULT_LEAF_SIZE;
+
+    /**
+     * the directory of the cache
+     */
+    private final Path directory;
+
+    /**
+     * constructor of a cache in a directory. The directory is created when the
+     * first hierarchy is stored.
+     *
+     * @param directory the directory of the cache
+     */
+    public BVHCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * getter for the directory of the cache
+     *
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * finds the hierarchy of primitives in the cache, or builds it and stores it
+     * in the cache
+     *
+     * @param primBounds  the boxes of the primitives - 6 values for each primitive
+     * @param maxLeafSize the maximum amount of primitives in a leaf
+     * @param kind        the way the hierarchy is built
+     * @return the hierarchy
+     */
+    BVHNodes build(double[] primBounds, int maxLeafSize, BVHKind kind) {
+        Path file = directory.resolve(key(primBounds, maxLeafSize, kind) + ".bvh");
+        BVHNodes nodes = read(file, primBounds, maxLeafSize, kind);
+        if (nodes != null)
+            return nodes;
+        nodes = kind.build(primBounds, maxLeafSize);
+        write(file, nodes, maxLeafSize, kind);
+        return nodes;
+    }
+
+    /**
+     * calculates the key of a hierarchy - a SHA-256 hash of the build settings and
+     * of the boxes of the primitives
+     *
+     * @return the key in hexadecimal digits
+     */
+    private static String key(double[] primBounds, int maxLeafSize, BVHKind kind) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER);
+        buffer.putInt(VERSION).putInt(maxLeafSize).putInt(kind.ordinal()).putInt(primBounds.length);
+        for (int i = 0; i < primBounds.length; ) {
+            int count = Math.min(primBounds.length - i, buffer.remaining() / Double.BYTES);
+            buffer.asDoubleBuffer().put(primBounds, i, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            i += count;
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        buffer.flip();
+        digest.update(buffer);
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return key.toString();
+    }
+
+    /**
+     * reads a hierarchy from a cache file and checks it
+     *
+     * @return the hierarchy, null if the file is missing or does not fit the primitives
+     */
+    private static BVHNodes read(Path file, double[] primBounds, int maxLeafSize, BVHKind kind) {
+        if (!Files.isRegularFile(file))
+            return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getInt() != maxLeafSize
+                    || in.getInt() != kind.ordinal())
+                return null;
+            BVHNodes nodes = BVHNodes.read(in);
+            return nodes.fits(primBounds) ? nodes : null;
+        } catch (IOException | RuntimeException e) {
+            // a damaged file is replaced by a new build
+            return null;
+        }
+    }
+
+    /**
+     * writes a hierarchy into a cache file. The file is written under a temporary
+     * name and then renamed, so other runs never see a part of it.
+     */
+    private void write(Path file, BVHNodes nodes, int maxLeafSize, BVHKind kind) {
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "bvh", ".tmp");
+            ByteBuffer out = ByteBuffer.allocate(Math.toIntExact(16 + nodes.byteSize()));
+            out.putInt(MAGIC).putInt(VERSION).putInt(maxLeafSize).putInt(kind.ordinal());
+            nodes.write(out);
+            out.flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining())
+                    channel.write(out);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | ArithmeticException e) {
+            // the hierarchy is still used, it is just not kept for the next run
+            try {
+                if (temp != null)
+                    Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // nothing more to do
+            }
+        }
+    }
+}
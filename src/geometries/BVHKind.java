@@ -0,0 +1,31 @@
+package geometries;
+
+/**
+ * enum BVHKind is the way a bounding volume hierarchy is built
+ *
+ * @author hodaya
+ */
+public enum BVHKind {
+    /**
+     * binned surface area heuristic - a slower build of a better tree, for scenes
+     * that are rendered for long
+     */
+    SAH,
+    /**
+     * linear hierarchy over Morton codes - a build in a few milliseconds of a worse
+     * tree, for scenes that are rebuilt often (animations and previews)
+     */
+    LBVH;
+
+    /**
+     * builds a hierarchy of this kind
+     *
+     * @param primBounds  the boxes of the primitives - 6 values for each primitive
+     * @param maxLeafSize the maximum amount of primitives in a leaf
+     * @return the hierarchy
+     */
+    BVHNodes build(double[] primBounds, int maxLeafSize) {
+        return this == SAH ? new BVHBuilder(primBounds, maxLeafSize).build()
+                : new LBVHBuilder(primBounds, maxLeafSize).build();
+    }
+}
@@ -0,0 +1,314 @@
+package geometries;
+
+import java.nio.ByteBuffer;
+
+/**
+ * class BVHNodes is a bounding volume hierarchy stored in flat arrays.<br/>
+ * The nodes are kept in depth-first order, so the left child of an inner node is
+ * always the node right after it, and only the index of the right child is stored.
+ * A leaf holds a range of the {@link #order} array, which contains the indices of
+ * the primitives the hierarchy was built over.<br/>
+ * A hierarchy can be written into a byte buffer and read back, so it does not have
+ * to be built again for the same primitives, and it can be refitted to primitives
+ * that moved, so it does not have to be built again for every frame of an animation.
+ *
+ * @author hodaya
+ */
+public final class BVHNodes {
+    /**
+     * the default growth of the expected cost of a refitted hierarchy, over the cost
+     * of its build, that makes it built again
+     */
+    public static final double DEFAULT_MAX_COST_GROWTH = 1.5;
+
+    /**
+     * the boxes of the nodes - 6 values for each node (minX, minY, minZ, maxX, maxY, maxZ)
+     */
+    final double[] bounds;
+    /**
+     * for an inner node - the index of its right child, for a leaf - the first index in the order array
+     */
+    final int[] offsets;
+    /**
+     * for a leaf - the amount of its primitives, 0 for an inner node
+     */
+    final int[] counts;
+    /**
+     * the split axis of an inner node (0 - x, 1 - y, 2 - z)
+     */
+    final byte[] axes;
+    /**
+     * the indices of the primitives, ordered by the leaves
+     */
+    final int[] order;
+
+    /**
+     * constructor of the hierarchy arrays
+     *
+     * @param bounds  the boxes of the nodes
+     * @param offsets right child indices / first primitive indices
+     * @param counts  primitive amount of the leaves
+     * @param axes    split axes of the inner nodes
+     * @param order   the primitive indices
+     */
+    BVHNodes(double[] bounds, int[] offsets, int[] counts, byte[] axes, int[] order) {
+        this.bounds = bounds;
+        this.offsets = offsets;
+        this.counts = counts;
+        this.axes = axes;
+        this.order = order;
+    }
+
+    /**
+     * @return amount of nodes in the hierarchy
+     */
+    public int size() {
+        return counts.length;
+    }
+
+    /**
+     * @return amount of primitives the hierarchy was built over
+     */
+    public int primitiveCount() {
+        return order.length;
+    }
+
+    /**
+     * @return the amount of bytes that {@link #write(ByteBuffer)} writes
+     */
+    public long byteSize() {
+        return 8 + size() * (6L * Double.BYTES + 2 * Integer.BYTES + 1) + (long) order.length * Integer.BYTES;
+    }
+
+    /**
+     * writes the hierarchy into a buffer, at its position
+     *
+     * @param buffer the buffer, with at least {@link #byteSize()} remaining bytes
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(size()).putInt(order.length);
+        buffer.asDoubleBuffer().put(bounds);
+        buffer.position(buffer.position() + bounds.length * Double.BYTES);
+        buffer.asIntBuffer().put(offsets).put(counts);
+        buffer.position(buffer.position() + (offsets.length + counts.length) * Integer.BYTES);
+        buffer.put(axes);
+        buffer.asIntBuffer().put(order);
+        buffer.position(buffer.position() + order.length * Integer.BYTES);
+    }
+
+    /**
+     * reads a hierarchy that was written by {@link #write(ByteBuffer)} from a
+     * buffer, at its position
+     *
+     * @param buffer the buffer
+     * @return the hierarchy
+     * @throws IllegalArgumentException if the buffer does not hold a valid hierarchy
+     * @throws java.nio.BufferUnderflowException if the buffer ends before the hierarchy
+     */
+    public static BVHNodes read(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        int primitives = buffer.getInt();
+        if (size < 1 || primitives < 1 || size > buffer.remaining() / (6 * Double.BYTES)
+                || primitives > buffer.remaining() / Integer.BYTES)
+            throw new IllegalArgumentException("Invalid hierarchy size");
+        double[] bounds = new double[size * 6];
+        int[] offsets = new int[size];
+        int[] counts = new int[size];
+        byte[] axes = new byte[size];
+        int[] order = new int[primitives];
+        buffer.asDoubleBuffer().get(bounds);
+        buffer.position(buffer.position() + bounds.length * Double.BYTES);
+        buffer.asIntBuffer().get(offsets).get(counts);
+        buffer.position(buffer.position() + 2 * size * Integer.BYTES);
+        buffer.get(axes);
+        buffer.asIntBuffer().get(order);
+        buffer.position(buffer.position() + primitives * Integer.BYTES);
+
+        // every node must refer to nodes after it and to primitives that exist
+        for (int node = 0; node < size; ++node)
+            if (counts[node] > 0 ? offsets[node] < 0 || offsets[node] > primitives - counts[node]
+                    : counts[node] < 0 || offsets[node] <= node + 1 || offsets[node] >= size)
+                throw new IllegalArgumentException("Invalid hierarchy node " + node);
+        for (int primitive : order)
+            if (primitive < 0 || primitive >= primitives)
+                throw new IllegalArgumentException("Invalid hierarchy primitive " + primitive);
+        return new BVHNodes(bounds, offsets, counts, axes, order);
+    }
+
+    /**
+     * @param node index of a node
+     * @return true if the node is a leaf
+     */
+    boolean isLeaf(int node) {
+        return counts[node] > 0;
+    }
+
+    /**
+     * this function calculates where a ray enters the box of a node (slab test).
+     * The ray is given by its head and the inverse of its direction, so a zero
+     * direction component becomes an infinite inverse and needs no special case.
+     *
+     * @param node the index of the node
+     * @param ox   x of the ray head
+     * @param oy   y of the ray head
+     * @param oz   z of the ray head
+     * @param ix   1 / x of the ray direction
+     * @param iy   1 / y of the ray direction
+     * @param iz   1 / z of the ray direction
+     * @param tMax the maximum distance along the ray
+     * @return the entry distance (0 if the head is inside the box), or positive
+     * infinity if the ray misses the box within the maximum distance
+     */
+    double enter(int node, double ox, double oy, double oz, double ix, double iy, double iz, double tMax) {
+        int b = node * 6;
+        int sx = ix < 0 ? 3 : 0;
+        int sy = iy < 0 ? 3 : 0;
+        int sz = iz < 0 ? 3 : 0;
+        double tNear = 0;
+        double tFar = tMax;
+        // NaN (head on the slab border with a parallel ray) fails the comparisons and is ignored
+        double t = (bounds[b + sx] - ox) * ix;
+        if (t > tNear)
+            tNear = t;
+        t = (bounds[b + 3 - sx] - ox) * ix;
+        if (t < tFar)
+            tFar = t;
+        t = (bounds[b + 1 + sy] - oy) * iy;
+        if (t > tNear)
+            tNear = t;
+        t = (bounds[b + 4 - sy] - oy) * iy;
+        if (t < tFar)
+            tFar = t;
+        t = (bounds[b + 2 + sz] - oz) * iz;
+        if (t > tNear)
+            tNear = t;
+        t = (bounds[b + 5 - sz] - oz) * iz;
+        if (t < tFar)
+            tFar = t;
+        return tNear <= tFar ? tNear : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * this function checks that the hierarchy fits a set of primitives - every
+     * primitive is in exactly one leaf and inside its box, and the box of every
+     * child is inside the box of its parent
+     *
+     * @param primBounds the boxes of the primitives - 6 values for each primitive
+     * @return true if the hierarchy can be used for the primitives
+     */
+    boolean fits(double[] primBounds) {
+        if (primBounds.length != order.length * 6)
+            return false;
+        boolean[] found = new boolean[order.length];
+        for (int primitive : order) {
+            if (found[primitive])
+                return false;
+            found[primitive] = true;
+        }
+        for (int node = 0; node < size(); ++node)
+            if (isLeaf(node)) {
+                int end = offsets[node] + counts[node];
+                for (int i = offsets[node]; i < end; ++i)
+                    if (!inside(primBounds, order[i] * 6, node))
+                        return false;
+            } else if (!inside(bounds, (node + 1) * 6, node) || !inside(bounds, offsets[node] * 6, node))
+                return false;
+        return true;
+    }
+
+    /**
+     * @return true if the box at a given index of an array is inside the box of a node
+     */
+    private boolean inside(double[] values, int i, int node) {
+        int b = node * 6;
+        return values[i] >= bounds[b] && values[i + 1] >= bounds[b + 1] && values[i + 2] >= bounds[b + 2]
+                && values[i + 3] <= bounds[b + 3] && values[i + 4] <= bounds[b + 4] && values[i + 5] <= bounds[b + 5];
+    }
+
+    /**
+     * this function creates a hierarchy with the same tree over primitives that
+     * moved - the boxes are calculated again from the leaves up, and the nodes and
+     * the order of the primitives are shared with this hierarchy
+     *
+     * @param primBounds the new boxes of the primitives - 6 values for each primitive
+     * @return the refitted hierarchy
+     * @throws IllegalArgumentException if the boxes are of another amount of primitives
+     */
+    BVHNodes refit(double[] primBounds) {
+        if (primBounds.length != order.length * 6)
+            throw new IllegalArgumentException("The boxes are of another amount of primitives");
+        double[] refitted = new double[bounds.length];
+        // a child is always found after its parent, so the children are refitted first
+        for (int node = size() - 1; node >= 0; --node) {
+            int b = node * 6;
+            if (isLeaf(node)) {
+                for (int i = 0; i < 3; ++i) {
+                    refitted[b + i] = Double.POSITIVE_INFINITY;
+                    refitted[b + i + 3] = Double.NEGATIVE_INFINITY;
+                }
+                int end = offsets[node] + counts[node];
+                for (int i = offsets[node]; i < end; ++i) {
+                    int p = order[i] * 6;
+                    for (int j = 0; j < 3; ++j) {
+                        if (primBounds[p + j] < refitted[b + j])
+                            refitted[b + j] = primBounds[p + j];
+                        if (primBounds[p + j + 3] > refitted[b + j + 3])
+                            refitted[b + j + 3] = primBounds[p + j + 3];
+                    }
+                }
+            } else {
+                int left = (node + 1) * 6;
+                int right = offsets[node] * 6;
+                for (int i = 0; i < 3; ++i) {
+                    refitted[b + i] = Math.min(refitted[left + i], refitted[right + i]);
+                    refitted[b + i + 3] = Math.max(refitted[left + i + 3], refitted[right + i + 3]);
+                }
+            }
+        }
+        return new BVHNodes(refitted, offsets, counts, axes, order);
+    }
+
+    /**
+     * surface area of the box of a node
+     *
+     * @param node index of the node
+     * @return the surface area
+     */
+    double surfaceArea(int node) {
+        int b = node * 6;
+        double x = bounds[b + 3] - bounds[b];
+        double y = bounds[b + 4] - bounds[b + 1];
+        double z = bounds[b + 5] - bounds[b + 2];
+        return 2 * (x * y + y * z + z * x);
+    }
+
+    /**
+     * this function calculates the statistics of the hierarchy
+     *
+     * @return the report of the hierarchy
+     */
+    BVHReport report() {
+        int size = size();
+        double rootArea = surfaceArea(0);
+        int leaves = 0;
+        int maxDepth = 0;
+        double cost = 0;
+        // the depth of each node, a child is always found after its parent
+        int[] depth = new int[size];
+        depth[0] = 1;
+        for (int node = 0; node < size; ++node) {
+            double area = rootArea > 0 ? surfaceArea(node) / rootArea : 1;
+            if (isLeaf(node)) {
+                ++leaves;
+                cost += area * counts[node] * BVHBuilder.INTERSECTION_COST;
+                if (depth[node] > maxDepth)
+                    maxDepth = depth[node];
+            } else {
+                cost += area * BVHBuilder.TRAVERSAL_COST;
+                depth[node + 1] = depth[node] + 1;
+                depth[offsets[node]] = depth[node] + 1;
+            }
+        }
+        return new BVHReport(size, leaves, maxDepth, cost);
+    }
+}
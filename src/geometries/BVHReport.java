@@ -0,0 +1,18 @@
+package geometries;
+
+/**
+ * Summary of a bounding volume hierarchy that was built over the geometries of a scene
+ *
+ * @param nodeCount amount of nodes in the hierarchy (inner nodes and leaves)
+ * @param leafCount amount of leaves in the hierarchy
+ * @param depth     the depth of the deepest leaf (the root is in depth 1)
+ * @param cost      expected traversal cost of a random ray according to the surface
+ *                  area heuristic (in units of a single primitive intersection)
+ * @author hodaya
+ */
+public record BVHReport(int nodeCount, int leafCount, int depth, double cost) {
+    @Override
+    public String toString() {
+        return String.format("BVH: %d nodes, %d leaves, depth %d, expected cost %.2f", nodeCount, leafCount, depth, cost);
+    }
+}
@@ -0,0 +1,465 @@
+package geometries;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayStatistics;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Class CompiledGeometries is a frozen copy of a collection of geometries with a
+ * bounding volume hierarchy in flat arrays.<br/>
+ * All the inner collections are dissolved, the bounded geometries are put in a
+ * hierarchy built with the surface area heuristic, and the hierarchy is walked with
+ * an explicit stack instead of recursive calls through nested {@link Geometries}.
+ * Geometries without a box are intersected separately.
+ *
+ * @author hodaya
+ */
+public class CompiledGeometries extends Intersectable {
+    /**
+     * the bounded geometries, indexed by the hierarchy
+     */
+    private final Intersectable[] primitives;
+    /**
+     * the geometries without a box
+     */
+    private final Intersectable[] infinites;
+    /**
+     * the hierarchy over the bounded geometries, null if there are none
+     */
+    private final BVHNodes nodes;
+    /**
+     * the depth of the hierarchy (the size of the traversal stack)
+     */
+    private final int depth;
+    /**
+     * the report of the hierarchy
+     */
+    private final BVHReport report;
+    /**
+     * the maximum amount of geometries in a leaf of a new hierarchy
+     */
+    private final int maxLeafSize;
+    /**
+     * the way a new hierarchy is built
+     */
+    private final BVHKind kind;
+    /**
+     * the expected cost of the hierarchy when it was built, before any refit
+     */
+    private final double builtCost;
+
+    /**
+     * constructor that compiles a collection of geometries.<br/>
+     * Later changes of the collection do not affect the compiled copy.
+     *
+     * @param geometries  the geometries to compile
+     * @param maxLeafSize the maximum amount of geometries in a leaf of the hierarchy
+     */
+    public CompiledGeometries(Geometries geometries, int maxLeafSize) {
+        this(geometries, maxLeafSize, null, BVHKind.SAH, null);
+    }
+
+    /**
+     * constructor that compiles a collection of geometries, with the hierarchy taken
+     * from a cache if it was built before for the same geometries
+     *
+     * @param geometries  the geometries to compile
+     * @param maxLeafSize the maximum amount of geometries in a leaf of the hierarchy
+     * @param cache       the cache of hierarchies
+     */
+    public CompiledGeometries(Geometries geometries, int maxLeafSize, BVHCache cache) {
+        this(geometries, maxLeafSize, null, BVHKind.SAH, cache);
+    }
+
+    /**
+     * constructor that compiles a collection of geometries with a hierarchy of a
+     * kind, taken from a cache if it was built before for the same geometries
+     *
+     * @param geometries  the geometries to compile
+     * @param maxLeafSize the maximum amount of geometries in a leaf of the hierarchy
+     * @param kind        the way the hierarchy is built
+     * @param cache       the cache of hierarchies, null to always build
+     */
+    public CompiledGeometries(Geometries geometries, int maxLeafSize, BVHKind kind, BVHCache cache) {
+        this(geometries, maxLeafSize, null, kind, cache);
+    }
+
+    /**
+     * constructor that compiles a collection of geometries with a hierarchy that
+     * was built before for the same geometries (see {@link #getHierarchy()})
+     *
+     * @param geometries the geometries to compile
+     * @param hierarchy  the hierarchy over the bounded geometries
+     * @throws IllegalArgumentException if the hierarchy does not fit the geometries - it is of
+     *                                  another amount of geometries, or a geometry is out of the
+     *                                  box of its leaf
+     */
+    public CompiledGeometries(Geometries geometries, BVHNodes hierarchy) {
+        this(geometries, BVHBuilder.DEFAULT_LEAF_SIZE, hierarchy, BVHKind.SAH, null);
+    }
+
+    /**
+     * constructor that compiles a collection of geometries with a given hierarchy,
+     * or builds it
+     *
+     * @param geometries  the geometries to compile
+     * @param maxLeafSize the maximum amount of geometries in a leaf of a new hierarchy
+     * @param hierarchy   the hierarchy over the bounded geometries, null to build it
+     * @param kind        the way a new hierarchy is built
+     * @param cache       the cache of hierarchies to build with, null to always build
+     */
+    private CompiledGeometries(Geometries geometries, int maxLeafSize, BVHNodes hierarchy, BVHKind kind,
+                               BVHCache cache) {
+        List<Intersectable> finites = new ArrayList<>();
+        List<Intersectable> infiniteList = new ArrayList<>();
+        geometries.flatten(finites, infiniteList);
+        primitives = finites.toArray(new Intersectable[0]);
+        infinites = infiniteList.toArray(new Intersectable[0]);
+        this.maxLeafSize = maxLeafSize;
+        this.kind = kind;
+        if (hierarchy != null && hierarchy.primitiveCount() != primitives.length)
+            throw new IllegalArgumentException("The hierarchy is of another amount of geometries");
+        if (hierarchy != null && !hierarchy.fits(Geometries.bounds(finites)))
+            throw new IllegalArgumentException("The hierarchy does not fit the boxes of the geometries");
+        if (primitives.length == 0) {
+            nodes = null;
+            report = null;
+            depth = 0;
+            builtCost = 0;
+        } else {
+            if (hierarchy != null)
+                nodes = hierarchy;
+            else if (cache != null)
+                nodes = cache.build(Geometries.bounds(finites), maxLeafSize, kind);
+            else
+                nodes = kind.build(Geometries.bounds(finites), maxLeafSize);
+            report = nodes.report();
+            depth = report.depth();
+            builtCost = report.cost();
+        }
+    }
+
+    /**
+     * constructor of a refitted copy of compiled geometries
+     *
+     * @param source     the compiled geometries that were refitted
+     * @param primitives the bounded geometries after they moved
+     * @param infinites  the geometries without a box
+     * @param nodes      the refitted hierarchy
+     * @param report     the report of the refitted hierarchy
+     */
+    private CompiledGeometries(CompiledGeometries source, Intersectable[] primitives, Intersectable[] infinites,
+                               BVHNodes nodes, BVHReport report) {
+        this.primitives = primitives;
+        this.infinites = infinites;
+        this.nodes = nodes;
+        this.report = report;
+        depth = report.depth();
+        maxLeafSize = source.maxLeafSize;
+        kind = source.kind;
+        builtCost = source.builtCost;
+    }
+
+    /**
+     * constructor that compiles a collection of geometries with the default leaf size
+     *
+     * @param geometries the geometries to compile
+     */
+    public CompiledGeometries(Geometries geometries) {
+        this(geometries, BVHBuilder.DEFAULT_LEAF_SIZE);
+    }
+
+    /**
+     * compiles the geometries of the next frame of an animation with the tree of
+     * this hierarchy, with a maximum cost growth of {@link BVHNodes#DEFAULT_MAX_COST_GROWTH}
+     * (see {@link #refit(Geometries, double)})
+     *
+     * @param geometries the geometries of the next frame
+     * @return the compiled geometries of the next frame
+     */
+    public CompiledGeometries refit(Geometries geometries) {
+        return refit(geometries, BVHNodes.DEFAULT_MAX_COST_GROWTH);
+    }
+
+    /**
+     * compiles the geometries of the next frame of an animation with the tree of
+     * this hierarchy. The geometries are expected to be the same bodies, in the same
+     * order, after they moved - only the boxes of the tree are calculated again.
+     * The hierarchy is built again if the amount of bounded geometries changed, or
+     * if the expected cost of the refitted tree grew by more than a given factor
+     * over the cost of the last build.
+     *
+     * @param geometries    the geometries of the next frame
+     * @param maxCostGrowth the growth of the cost that makes the hierarchy built again
+     * @return the compiled geometries of the next frame
+     */
+    public CompiledGeometries refit(Geometries geometries, double maxCostGrowth) {
+        List<Intersectable> finites = new ArrayList<>();
+        List<Intersectable> infiniteList = new ArrayList<>();
+        geometries.flatten(finites, infiniteList);
+        if (nodes == null || finites.size() != primitives.length)
+            return new CompiledGeometries(geometries, maxLeafSize, null, kind, null);
+        BVHNodes refitted = nodes.refit(Geometries.bounds(finites));
+        BVHReport refittedReport = refitted.report();
+        if (refittedReport.cost() > builtCost * maxCostGrowth)
+            return new CompiledGeometries(geometries, maxLeafSize, null, kind, null);
+        return new CompiledGeometries(this, finites.toArray(new Intersectable[0]),
+                infiniteList.toArray(new Intersectable[0]), refitted, refittedReport);
+    }
+
+    /**
+     * @return the box of the root of the hierarchy, null if there are geometries
+     * without a box or no geometries at all
+     */
+    @Override
+    protected Border calculateBox() {
+        if (nodes == null || infinites.length > 0)
+            return null;
+        return new Border(nodes.bounds[0], nodes.bounds[1], nodes.bounds[2],
+                nodes.bounds[3], nodes.bounds[4], nodes.bounds[5]);
+    }
+
+    /**
+     * getter for the hierarchy over the bounded geometries
+     *
+     * @return the hierarchy, null if there are no bounded geometries
+     */
+    public BVHNodes getHierarchy() {
+        return nodes;
+    }
+
+    /**
+     * getter for the report of the hierarchy
+     *
+     * @return the report, null if there are no bounded geometries
+     */
+    public BVHReport getReport() {
+        return report;
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDis) {
+        List<GeoPoint> result = null;
+        int boxTests = 0;
+        int primitiveTests = 0;
+        if (nodes != null) {
+            Point p0 = ray.getP0();
+            Vector dir = ray.getDir();
+            double ox = p0.getX();
+            double oy = p0.getY();
+            double oz = p0.getZ();
+            double ix = 1 / dir.getX();
+            double iy = 1 / dir.getY();
+            double iz = 1 / dir.getZ();
+
+            int[] stack = new int[depth];
+            int top = 0;
+            int node = 0;
+            while (true) {
+                ++boxTests;
+                if (nodes.enter(node, ox, oy, oz, ix, iy, iz, maxDis) != Double.POSITIVE_INFINITY) {
+                    if (!nodes.isLeaf(node)) {
+                        stack[top++] = nodes.offsets[node];
+                        ++node;
+                        continue;
+                    }
+                    int end = nodes.offsets[node] + nodes.counts[node];
+                    for (int i = nodes.offsets[node]; i < end; ++i) {
+                        Intersectable g = primitives[nodes.order[i]];
+                        if (g.isPrimitive())
+                            ++primitiveTests;
+                        var points = g.findGeoIntersections(ray, maxDis);
+                        if (points != null) {
+                            if (result == null)
+                                result = new LinkedList<>();
+                            result.addAll(points);
+                        }
+                    }
+                }
+                if (top == 0)
+                    break;
+                node = stack[--top];
+            }
+        }
+        for (Intersectable g : infinites) {
+            if (g.isPrimitive())
+                ++primitiveTests;
+            var points = g.findGeoIntersections(ray, maxDis);
+            if (points != null) {
+                if (result == null)
+                    result = new LinkedList<>();
+                result.addAll(points);
+            }
+        }
+        RayStatistics.countTests(boxTests, primitiveTests);
+        return result;
+    }
+
+    @Override
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        // a body is compared by its distance, and only the closest one builds its intersection
+        GeoPoint closest = null;
+        Intersectable closestBody = null;
+        int primitiveTests = 0;
+        for (Intersectable g : infinites) {
+            if (g.isPrimitive()) {
+                ++primitiveTests;
+                double t = g.findClosestDistance(ray, tMax);
+                if (t != Double.POSITIVE_INFINITY) {
+                    closestBody = g;
+                    tMax = t;
+                }
+            } else {
+                GeoPoint gp = g.findClosestIntersection(ray, tMax);
+                if (gp != null) {
+                    closest = gp;
+                    closestBody = null;
+                    tMax = gp.t;
+                }
+            }
+        }
+        if (nodes == null) {
+            RayStatistics.countTests(0, primitiveTests);
+            return closestBody != null ? closestBody.closestAt(ray, tMax) : closest;
+        }
+
+        Point p0 = ray.getP0();
+        Vector dir = ray.getDir();
+        double ox = p0.getX();
+        double oy = p0.getY();
+        double oz = p0.getZ();
+        double ix = 1 / dir.getX();
+        double iy = 1 / dir.getY();
+        double iz = 1 / dir.getZ();
+        if (nodes.enter(0, ox, oy, oz, ix, iy, iz, tMax) == Double.POSITIVE_INFINITY) {
+            RayStatistics.countTests(1, primitiveTests);
+            return closestBody != null ? closestBody.closestAt(ray, tMax) : closest;
+        }
+
+        int boxTests = 1;
+        // the farther children that are left for later, with the distance where the ray enters them
+        int[] stack = new int[depth];
+        double[] entries = new double[depth];
+        int top = 0;
+        int node = 0;
+        while (true) {
+            if (nodes.isLeaf(node)) {
+                int end = nodes.offsets[node] + nodes.counts[node];
+                for (int i = nodes.offsets[node]; i < end; ++i) {
+                    Intersectable g = primitives[nodes.order[i]];
+                    if (g.isPrimitive()) {
+                        ++primitiveTests;
+                        double t = g.findClosestDistance(ray, tMax);
+                        if (t != Double.POSITIVE_INFINITY) {
+                            closestBody = g;
+                            tMax = t;
+                        }
+                    } else {
+                        GeoPoint gp = g.findClosestIntersection(ray, tMax);
+                        if (gp != null) {
+                            closest = gp;
+                            closestBody = null;
+                            tMax = gp.t;
+                        }
+                    }
+                }
+            } else {
+                int left = node + 1;
+                int right = nodes.offsets[node];
+                boxTests += 2;
+                double tLeft = nodes.enter(left, ox, oy, oz, ix, iy, iz, tMax);
+                double tRight = nodes.enter(right, ox, oy, oz, ix, iy, iz, tMax);
+                if (tLeft != Double.POSITIVE_INFINITY || tRight != Double.POSITIVE_INFINITY) {
+                    // visit the nearer child first and keep the farther one for later
+                    if (tLeft <= tRight) {
+                        node = left;
+                        if (tRight != Double.POSITIVE_INFINITY) {
+                            stack[top] = right;
+                            entries[top++] = tRight;
+                        }
+                    } else {
+                        node = right;
+                        if (tLeft != Double.POSITIVE_INFINITY) {
+                            stack[top] = left;
+                            entries[top++] = tLeft;
+                        }
+                    }
+                    continue;
+                }
+            }
+            // skip the nodes that start beyond the closest intersection found meanwhile
+            while (top > 0 && entries[top - 1] > tMax)
+                --top;
+            if (top == 0) {
+                RayStatistics.countTests(boxTests, primitiveTests);
+                return closestBody != null ? closestBody.closestAt(ray, tMax) : closest;
+            }
+            node = stack[--top];
+        }
+    }
+
+    @Override
+    protected Double3 findTransparencyHelper(Ray ray, double maxDis, Double3 ktr, double minK) {
+        int primitiveTests = 0;
+        for (Intersectable g : infinites) {
+            if (g.isPrimitive())
+                ++primitiveTests;
+            ktr = g.findTransparency(ray, maxDis, ktr, minK);
+            if (ktr == Double3.ZERO) {
+                RayStatistics.countTests(0, primitiveTests);
+                return ktr;
+            }
+        }
+        if (nodes == null) {
+            RayStatistics.countTests(0, primitiveTests);
+            return ktr;
+        }
+
+        Point p0 = ray.getP0();
+        Vector dir = ray.getDir();
+        double ox = p0.getX();
+        double oy = p0.getY();
+        double oz = p0.getZ();
+        double ix = 1 / dir.getX();
+        double iy = 1 / dir.getY();
+        double iz = 1 / dir.getZ();
+
+        // any occluder will do - the nodes are visited in storage order and the walk stops at the first blocking one
+        int[] stack = new int[depth];
+        int top = 0;
+        int node = 0;
+        int boxTests = 0;
+        while (true) {
+            ++boxTests;
+            if (nodes.enter(node, ox, oy, oz, ix, iy, iz, maxDis) != Double.POSITIVE_INFINITY) {
+                if (!nodes.isLeaf(node)) {
+                    stack[top++] = nodes.offsets[node];
+                    ++node;
+                    continue;
+                }
+                int end = nodes.offsets[node] + nodes.counts[node];
+                for (int i = nodes.offsets[node]; i < end; ++i) {
+                    Intersectable g = primitives[nodes.order[i]];
+                    if (g.isPrimitive())
+                        ++primitiveTests;
+                    ktr = g.findTransparency(ray, maxDis, ktr, minK);
+                    if (ktr == Double3.ZERO) {
+                        RayStatistics.countTests(boxTests, primitiveTests);
+                        return ktr;
+                    }
+                }
+            }
+            if (top == 0) {
+                RayStatistics.countTests(boxTests, primitiveTests);
+                return ktr;
+            }
+            node = stack[--top];
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package geometries;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
+import primitives.Double3;
 import primitives.Ray;
+import primitives.RayStatistics;
 
 /**
  * Class Geometries is a class representing a collection of geometries Cartesian
@@ -13,7 +16,11 @@ import primitives.Ray;
  */
 public class Geometries extends Intersectable {
     private final List<Intersectable> geometries = new LinkedList<>();
-    private final List<Intersectable> infinites = new LinkedList<>();
+    /**
+     * whether the boxes of the geometries are checked before the geometries are
+     * intersected (Conservative Bounding Region)
+     */
+    private boolean cbr = false;
 
     /**
      * a default constructor
@@ -42,49 +49,67 @@ public class Geometries extends Intersectable {
     }
 
     /**
-     * adds geometries to the list
+     * adds geometries to the list. Inner collections take the Conservative
+     * Bounding Region setting of this collection.
      *
      * @param geometries the geomtries to add
      */
     public void add(List<Intersectable> geometries) {
-        if (!cbr) {
-            this.geometries.addAll(geometries);
-            return;
-        }
-        // edge of box
+        for (var g : geometries)
+            if (cbr && g instanceof Geometries geos)
+                geos.setCBR(true);
+        this.geometries.addAll(geometries);
+        resetBox();
+    }
+
+    /**
+     * sets whether the boxes of the geometries are checked before the geometries
+     * are intersected (Conservative Bounding Region), in this collection and in its
+     * inner collections
+     *
+     * @param cbr true to check the boxes
+     * @return the collection itself
+     */
+    public Geometries setCBR(boolean cbr) {
+        this.cbr = cbr;
+        for (var g : geometries)
+            if (g instanceof Geometries geos)
+                geos.setCBR(cbr);
+        return this;
+    }
+
+    /**
+     * @return the box of all the geometries, null if one of them has no box or if
+     * there are no geometries
+     */
+    @Override
+    protected Border calculateBox() {
+        if (geometries.isEmpty())
+            return null;
+        Border box = new Border();
         for (var g : geometries) {
-            if (g.box == null)
-                infinites.add(g);
-            else {
-                this.geometries.add(g);
-                if (infinites.isEmpty()) {
-                    if (box == null)
-                        box = new Border();
-                    if (g.box.minX < box.minX)
-                        box.minX = g.box.minX;
-                    if (g.box.minY < box.minY)
-                        box.minY = g.box.minY;
-                    if (g.box.minZ < box.minZ)
-                        box.minZ = g.box.minZ;
-                    if (g.box.maxX > box.maxX)
-                        box.maxX = g.box.maxX;
-                    if (g.box.maxY > box.maxY)
-                        box.maxY = g.box.maxY;
-                    if (g.box.maxZ > box.maxZ)
-                        box.maxZ = g.box.maxZ;
-                }
-            }
+            Border b = g.getBox();
+            if (b == null)
+                return null;
+            box.extend(b);
         }
-        // if there are inifinite objects
-        if (!infinites.isEmpty())
-            box = null;
+        return box;
     }
 
-
     @Override
     public List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double dis) {
         LinkedList<GeoPoint> toReturn = null;
+        int boxTests = 0;
+        int primitiveTests = 0;
         for (Intersectable g : this.geometries) {
+            Border box = cbr ? g.getBox() : null;
+            if (box != null) {
+                ++boxTests;
+                if (!box.intersect(ray, dis))
+                    continue;
+            }
+            if (g.isPrimitive())
+                ++primitiveTests;
             var lPoints = g.findGeoIntersections(ray, dis);
             if (lPoints != null)
                 if (toReturn == null)
@@ -92,118 +117,191 @@ public class Geometries extends Intersectable {
                 else
                     toReturn.addAll(lPoints);
         }
-        for (Intersectable g : this.infinites) {
-            var lPoints = g.findGeoIntersections(ray, dis);
-            if (lPoints != null)
-                if (toReturn == null)
-                    toReturn = new LinkedList<>(lPoints);
-                else
-                    toReturn.addAll(lPoints);
-        }
+        RayStatistics.countTests(boxTests, primitiveTests);
         return toReturn;
     }
 
+    @Override
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        // a body is compared by its distance, and only the closest one builds its intersection
+        GeoPoint closest = null;
+        Intersectable closestBody = null;
+        int boxTests = 0;
+        int primitiveTests = 0;
+        for (Intersectable g : geometries) {
+            // boxes beyond the closest intersection so far are skipped by their border check
+            Border box = cbr ? g.getBox() : null;
+            if (box != null) {
+                ++boxTests;
+                if (!box.intersect(ray, tMax))
+                    continue;
+            }
+            if (g.isPrimitive()) {
+                ++primitiveTests;
+                double t = g.findClosestDistance(ray, tMax);
+                if (t != Double.POSITIVE_INFINITY) {
+                    closestBody = g;
+                    tMax = t;
+                }
+            } else {
+                GeoPoint gp = g.findClosestIntersection(ray, tMax);
+                if (gp != null) {
+                    closest = gp;
+                    closestBody = null;
+                    tMax = gp.t;
+                }
+            }
+        }
+        RayStatistics.countTests(boxTests, primitiveTests);
+        return closestBody != null ? closestBody.closestAt(ray, tMax) : closest;
+    }
+
+    @Override
+    protected Double3 findTransparencyHelper(Ray ray, double maxDis, Double3 ktr, double minK) {
+        int boxTests = 0;
+        int primitiveTests = 0;
+        for (Intersectable g : geometries) {
+            Border box = cbr ? g.getBox() : null;
+            if (box != null) {
+                ++boxTests;
+                if (!box.intersect(ray, maxDis))
+                    continue;
+            }
+            if (g.isPrimitive())
+                ++primitiveTests;
+            ktr = g.findTransparency(ray, maxDis, ktr, minK);
+            if (ktr == Double3.ZERO)
+                break;
+        }
+        RayStatistics.countTests(boxTests, primitiveTests);
+        return ktr;
+    }
+
     /**
      * create the hierarchy and put into the right boxes
+     *
+     * @return the report of the hierarchy, null if there is nothing to build
      */
-    public void setBVH() {
-        // len of zir
-        double x = box.maxX - box.minX;
-        double y = box.maxY - box.minY;
-        double z = box.maxZ - box.minZ;
-        // which axis we are reffering to
-        setBVH(y > x && y > z ? 1 : z > x && z > y ? 2 : 0, 3);
+    public BVHReport setBVH() {
+        return setBVH(BVHBuilder.DEFAULT_LEAF_SIZE);
     }
 
     /**
-     * create the hierarchy and put into the right boxes
+     * create the hierarchy with the surface area heuristic and put the geometries
+     * into the right boxes. Hierarchies that were built before are dissolved
+     * and rebuilt.
+     *
+     * @param maxLeafSize the maximum amount of geometries in a box
+     * @return the report of the hierarchy, null if there is nothing to build
      */
-    private void setBVH(int axis, int count) {
-        if (!cbr || count == 0)
-            return;
-        // min amount of geometries in a box
-        if (geometries.size() > 4) {
-            if (box == null) {
-                var finites = new Geometries((Intersectable)geometries);
-                geometries.clear();
-                this.add(finites.geometries);
-                return;
-            }
-
-            var l = new Geometries();
-            var m = new Geometries();
-            var r = new Geometries();
-            double midX = (box.maxX + box.minX) / 2;
-            double midY = (box.maxY + box.minY) / 2;
-            double midZ = (box.maxZ + box.minZ) / 2;
-            switch (axis) {
-                case 0:
-                    for (var g : geometries) {
-                        if (g.box.minX > midX)
-                            r.add(g);
-                        else if (g.box.maxX < midX)
-                            l.add(g);
-                        else
-                            m.add(g);
-                    }
-                    break;
-                case 1:
-                    for (var g : geometries) {
-                        if (g.box.minY > midY)
-                            r.add(g);
-                        else if (g.box.maxY < midY)
-                            l.add(g);
-                        else
-                            m.add(g);
-                    }
-                    break;
-                case 2:
-                    for (var g : geometries) {
-                        if (g.box.minZ > midZ)
-                            r.add(g);
-                        else if (g.box.maxZ < midZ)
-                            l.add(g);
-                        else
-                            m.add(g);
-                    }
-                    break;
-            }
+    public BVHReport setBVH(int maxLeafSize) {
+        return setBVH(maxLeafSize, null);
+    }
 
-            int nextAxis = (axis + 1) % 3;
-            int lsize = l.geometries.size();
-            int msize = m.geometries.size();
-            int rsize = r.geometries.size();
-            geometries.clear();
-            if (lsize <= 2 || msize + rsize == 0) {
-                this.add(l.geometries);
-                if (msize + rsize == 0)
-                    this.setBVH(nextAxis, count - 1);
-            } else {
-                geometries.add(l);
-            }
+    /**
+     * create the hierarchy with the surface area heuristic and put the geometries
+     * into the right boxes, or take the hierarchy from a cache if it was built
+     * before for the same geometries
+     *
+     * @param maxLeafSize the maximum amount of geometries in a box
+     * @param cache       the cache of hierarchies, null to always build
+     * @return the report of the hierarchy, null if there is nothing to build
+     */
+    public BVHReport setBVH(int maxLeafSize, BVHCache cache) {
+        return setBVH(maxLeafSize, BVHKind.SAH, cache);
+    }
 
-            if (msize <= 2 || lsize + rsize == 0) {
-                this.add(m.geometries);
-                if (lsize + rsize == 0)
-                    this.setBVH(nextAxis, count - 1);
-            } else {
-                geometries.add(m);
-            }
+    /**
+     * create the hierarchy of a kind and put the geometries into the right boxes,
+     * or take the hierarchy from a cache if it was built before for the same
+     * geometries
+     *
+     * @param maxLeafSize the maximum amount of geometries in a box
+     * @param kind        the way the hierarchy is built
+     * @param cache       the cache of hierarchies, null to always build
+     * @return the report of the hierarchy, null if there is nothing to build
+     */
+    public BVHReport setBVH(int maxLeafSize, BVHKind kind, BVHCache cache) {
+        List<Intersectable> finites = new ArrayList<>();
+        List<Intersectable> infinites = new ArrayList<>();
+        flatten(finites, infinites);
+        if (finites.isEmpty())
+            return null;
 
-            if (rsize <= 2 || lsize + msize == 0) {
-                this.add(r.geometries);
-                if (lsize + msize == 0)
-                    this.setBVH(nextAxis, count - 1);
-            } else {
-                geometries.add(r);
-            }
-        }
+        double[] bounds = bounds(finites);
+        BVHNodes nodes = cache == null ? kind.build(bounds, maxLeafSize) : cache.build(bounds, maxLeafSize, kind);
+        geometries.clear();
+        cbr = true;
+        addNode(nodes, 0, finites);
+        geometries.addAll(infinites);
+        resetBox();
+        return nodes.report();
+    }
 
-        for (var geo : this.geometries)
-            if (geo instanceof Geometries geos)
-                geos.setBVH();
-        return;
+    /**
+     * collects all the geometries of the collection and of its inner collections
+     *
+     * @param finites   the list to fill with the bounded geometries
+     * @param infinites the list to fill with the geometries without a box
+     */
+    public void flatten(List<Intersectable> finites, List<Intersectable> infinites) {
+        for (var g : geometries)
+            if (g instanceof Geometries geos)
+                geos.flatten(finites, infinites);
+            else if (g.getBox() == null)
+                infinites.add(g);
+            else
+                finites.add(g);
     }
 
+    /**
+     * puts the boxes of geometries into an array
+     *
+     * @param finites bounded geometries
+     * @return 6 values for each geometry (minX, minY, minZ, maxX, maxY, maxZ)
+     */
+    static double[] bounds(List<Intersectable> finites) {
+        double[] bounds = new double[finites.size() * 6];
+        int i = 0;
+        for (var g : finites) {
+            Border box = g.getBox();
+            bounds[i++] = box.minX;
+            bounds[i++] = box.minY;
+            bounds[i++] = box.minZ;
+            bounds[i++] = box.maxX;
+            bounds[i++] = box.maxY;
+            bounds[i++] = box.maxZ;
+        }
+        return bounds;
+    }
 
-}
\ No newline at end of file
+    /**
+     * adds the content of a hierarchy node to this collection - the geometries of
+     * a leaf, or a box for each child of an inner node
+     *
+     * @param nodes   the hierarchy
+     * @param node    the index of the node
+     * @param finites the geometries the hierarchy was built over
+     */
+    private void addNode(BVHNodes nodes, int node, List<Intersectable> finites) {
+        if (nodes.isLeaf(node)) {
+            int end = nodes.offsets[node] + nodes.counts[node];
+            for (int i = nodes.offsets[node]; i < end; ++i)
+                geometries.add(finites.get(nodes.order[i]));
+            return;
+        }
+        for (int child : new int[]{node + 1, nodes.offsets[node]}) {
+            if (nodes.isLeaf(child) && nodes.counts[child] == 1) {
+                geometries.add(finites.get(nodes.order[nodes.offsets[child]]));
+                continue;
+            }
+            var geos = new Geometries();
+            geos.cbr = true;
+            int b = child * 6;
+            geos.box = new Border(nodes.bounds[b], nodes.bounds[b + 1], nodes.bounds[b + 2],
+                    nodes.bounds[b + 3], nodes.bounds[b + 4], nodes.bounds[b + 5]);
+            geos.addNode(nodes, child, finites);
+            geometries.add(geos);
+        }
+    }
+}
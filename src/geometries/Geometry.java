@@ -1,9 +1,6 @@
 package geometries;
 
-import primitives.Color;
-import primitives.Material;
-import primitives.Point;
-import primitives.Vector;
+import primitives.*;
 
 /**
  * The Geometry interface represents a geometric shape or object
@@ -68,4 +65,17 @@ public abstract class Geometry extends Intersectable {
     }
 
 
-}
\ No newline at end of file
+
+    @Override
+    boolean isPrimitive() {
+        return true;
+    }
+
+    @Override
+    protected Double3 findTransparencyHelper(Ray ray, double maxDis, Double3 ktr, double minK) {
+        // an opaque body blocks the light at its first intersection - no need to find all of them
+        if (ktr.product(getMaterial().kT).lowerThan(minK))
+            return findClosestDistance(ray, maxDis) == Double.POSITIVE_INFINITY ? ktr : Double3.ZERO;
+        return super.findTransparencyHelper(ray, maxDis, ktr, minK);
+    }
+}
@@ -0,0 +1,243 @@
+package geometries;
+
+import primitives.Color;
+import primitives.Double3;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayStatistics;
+import primitives.Transform;
+import primitives.Vector;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Class Instance places a shared model in the scene with an affine transformation.
+ * <br/>
+ * The model - a mesh, a compiled collection or any other intersectable with its own
+ * hierarchy - is kept once, and every instance holds only a reference to it, its
+ * transformation and its box in the scene. A ray is moved into the space of the
+ * model when it reaches the box of the instance, and the intersections are moved
+ * back. So the hierarchy of the scene is built over the instances, and the memory
+ * grows with the different models and not with the amount of copies.<br/>
+ * An intersection is reported with a light {@link Surface} object that turns the
+ * normals of the model geometry by the transformation.
+ *
+ * @author hodaya
+ */
+public class Instance extends Intersectable {
+    /**
+     * the shared model
+     */
+    private final Intersectable model;
+    /**
+     * the transformation from the space of the model into the scene
+     */
+    private final Transform transform;
+    /**
+     * the box of the model that the box of the instance was calculated from
+     */
+    private volatile Border modelBox;
+
+    /**
+     * constructor of an instance of a model
+     *
+     * @param model     the shared model
+     * @param transform the transformation from the space of the model into the scene
+     */
+    public Instance(Intersectable model, Transform transform) {
+        this.model = model;
+        this.transform = transform;
+    }
+
+    /**
+     * The box is calculated again when the box of the model changed since it was
+     * calculated - a shared mesh that was refitted ({@link TriangleMesh#refit()})
+     * moves every instance of it.
+     */
+    @Override
+    public Border getBox() {
+        Border b = model.getBox();
+        if (b != modelBox) {
+            modelBox = b;
+            resetBox();
+        }
+        return super.getBox();
+    }
+
+    /**
+     * @return the box of the transformed corners of the model box, null if the
+     * model is not bounded
+     */
+    @Override
+    protected Border calculateBox() {
+        Border b = model.getBox();
+        if (b == null)
+            return null;
+        Border box = new Border();
+        for (double x : new double[]{b.minX, b.maxX})
+            for (double y : new double[]{b.minY, b.maxY})
+                for (double z : new double[]{b.minZ, b.maxZ}) {
+                    Point p = transform.transformPoint(new Point(x, y, z));
+                    box.extend(new Border(p.getX(), p.getY(), p.getZ(), p.getX(), p.getY(), p.getZ()));
+                }
+        return box;
+    }
+
+    /**
+     * getter for the model
+     *
+     * @return the shared model
+     */
+    public Intersectable getModel() {
+        return model;
+    }
+
+    /**
+     * getter for the transformation
+     *
+     * @return the transformation from the space of the model into the scene
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDis) {
+        return intersectModel(model, ray, maxDis);
+    }
+
+    /**
+     * finds the intersections of a ray in the scene with a part of the model
+     *
+     * @param target the model or a geometry of it
+     * @param ray    the ray in the scene
+     * @param maxDis the maximum distance in the scene
+     * @return the intersections in the scene, null if there are none
+     */
+    private List<GeoPoint> intersectModel(Intersectable target, Ray ray, double maxDis) {
+        if (target.isPrimitive())
+            RayStatistics.count(RayStatistics.Counter.PRIMITIVE_TESTS);
+        Vector dir = transform.inverseVector(ray.getDir());
+        double scale = dir.length();
+        var intersections = target.findGeoIntersections(new Ray(transform.inversePoint(ray.getP0()), dir),
+                maxDis * scale);
+        if (intersections == null)
+            return null;
+        List<GeoPoint> result = new LinkedList<>();
+        for (GeoPoint gp : intersections)
+            result.add(toScene(gp, ray, scale));
+        return result;
+    }
+
+    @Override
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        if (model.isPrimitive())
+            RayStatistics.count(RayStatistics.Counter.PRIMITIVE_TESTS);
+        Vector dir = transform.inverseVector(ray.getDir());
+        double scale = dir.length();
+        GeoPoint gp = model.findClosestIntersection(new Ray(transform.inversePoint(ray.getP0()), dir), tMax * scale);
+        return gp == null ? null : toScene(gp, ray, scale);
+    }
+
+    @Override
+    protected Double3 findTransparencyHelper(Ray ray, double maxDis, Double3 ktr, double minK) {
+        if (model.isPrimitive())
+            RayStatistics.count(RayStatistics.Counter.PRIMITIVE_TESTS);
+        Vector dir = transform.inverseVector(ray.getDir());
+        double scale = dir.length();
+        return model.findTransparency(new Ray(transform.inversePoint(ray.getP0()), dir), maxDis * scale, ktr, minK);
+    }
+
+    /**
+     * moves an intersection with the model into the scene
+     *
+     * @param gp    the intersection in the space of the model
+     * @param ray   the ray in the scene
+     * @param scale the length of the model space direction of the ray, that turns
+     *              distances in the scene into distances in the model
+     * @return the intersection in the scene
+     */
+    private GeoPoint toScene(GeoPoint gp, Ray ray, double scale) {
+        Point point = transform.transformPoint(gp.point);
+        double t = Double.isNaN(gp.t) ? point.distance(ray.getP0()) : gp.t / scale;
+        // the barycentric coordinates do not change in an affine transformation
+        return new GeoPoint(new Surface(gp.geometry), point, t, gp.u, gp.v);
+    }
+
+    @Override
+    public String toString() {
+        return "Instance{model=" + model + ", transform=" + transform + "}";
+    }
+
+    /**
+     * class Surface is a geometry of the model as it is placed by the instance, as
+     * it is reported in an intersection. It takes the material and the emission
+     * from the geometry of the model, and turns its normals into the scene.
+     *
+     * @author hodaya
+     */
+    public final class Surface extends Geometry {
+        /**
+         * the geometry of the model
+         */
+        private final Geometry geometry;
+
+        /**
+         * constructor of a surface by the geometry of the model
+         *
+         * @param geometry the geometry of the model
+         */
+        private Surface(Geometry geometry) {
+            this.geometry = geometry;
+        }
+
+        /**
+         * @return the geometry of the model
+         */
+        public Geometry getGeometry() {
+            return geometry;
+        }
+
+        /**
+         * @return the instance of the surface
+         */
+        public Instance getInstance() {
+            return Instance.this;
+        }
+
+        @Override
+        public Vector getNormal(Point p) {
+            return transform.transformNormal(geometry.getNormal(transform.inversePoint(p)));
+        }
+
+        @Override
+        public Material getMaterial() {
+            return geometry.getMaterial();
+        }
+
+        @Override
+        public Color getEmission() {
+            return geometry.getEmission();
+        }
+
+        @Override
+        protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDis) {
+            return intersectModel(geometry, ray, maxDis);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            return obj instanceof Surface other && getInstance() == other.getInstance()
+                    && geometry.equals(other.geometry);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(Instance.this) * 31 + geometry.hashCode();
+        }
+    }
+}
@@ -12,15 +12,16 @@ import java.util.List;
  */
 
 public abstract class Intersectable {
-    protected static boolean cbr = false;
-
-    public static long boxCheckCounter = 0;
-    public static long intersectionCounter = 0;
+    /**
+     * the box of the geometry, calculated on the first request - null until then,
+     * {@link #UNBOUNDED} if the geometry has no box
+     */
+    protected volatile Border box = null;
 
     /**
-     * the box for the bvh
+     * the box of the geometries that have no box
      */
-    protected Border box = null;
+    private static final Border UNBOUNDED = new Border();
 
     /**
      * class Border is a class that represents the box of the bvh
@@ -75,11 +76,10 @@ public abstract class Intersectable {
          * this function calculate if the ray trace the border of the geometry
          *
          * @param ray the crosses ray
+         * @param dis the maximum distance
          * @return true for intersection, false for not intersection
          */
         protected boolean intersect(Ray ray, double dis) {
-            //++boxCheckCounter;
-
             Point origin = ray.getP0();
             double originX = origin.getX();
             double originY = origin.getY();
@@ -138,15 +138,99 @@ public abstract class Intersectable {
 
             // If either the max value of Z is smaller than overall min value, or min value
             // of Z is bigger than the overall
-            // max, we can already return false. Otherwise we can return true since no other
-            // coordinate checks are needed.
-            return tMin <= tMaxZ && tMinZ <= tMax;
+            // max, we can already return false.
+            if ((tMin > tMaxZ) || (tMinZ > tMax))
+                return false;
+
+            if (tMinZ > tMin)
+                tMin = tMinZ;
+            if (tMaxZ < tMax)
+                tMax = tMaxZ;
+
+            // the box must not be behind the ray head or beyond the maximum distance
+            return tMax >= 0 && tMin <= dis;
+        }
+
+        /**
+         * this function grows the border so it also contains another border
+         *
+         * @param other the border to contain
+         */
+        void extend(Border other) {
+            if (other.minX < minX)
+                minX = other.minX;
+            if (other.minY < minY)
+                minY = other.minY;
+            if (other.minZ < minZ)
+                minZ = other.minZ;
+            if (other.maxX > maxX)
+                maxX = other.maxX;
+            if (other.maxY > maxY)
+                maxY = other.maxY;
+            if (other.maxZ > maxZ)
+                maxZ = other.maxZ;
+        }
+
+        /**
+         * this function calculate the surface area of the box (0 for an empty box)
+         *
+         * @return the surface area
+         */
+        double surfaceArea() {
+            double x = maxX - minX;
+            double y = maxY - minY;
+            double z = maxZ - minZ;
+            if (x < 0 || y < 0 || z < 0)
+                return 0;
+            return 2 * (x * y + y * z + z * x);
+        }
+
+    }
+
+    /**
+     * getter for the box of the geometry (the Conservative Bounding Region). The
+     * box is calculated on the first request and kept, so it does not depend on
+     * any setting at the time the geometry was created.
+     *
+     * @return the box, null if the geometry is not bounded
+     */
+    public Border getBox() {
+        Border b = box;
+        if (b == null) {
+            b = calculateBox();
+            box = b = b == null ? UNBOUNDED : b;
         }
+        return b == UNBOUNDED ? null : b;
+    }
 
+    /**
+     * calculates the box of the geometry. Bounded geometries override it, the
+     * default is a geometry without a box.<br/>
+     * The returned box must not be changed later - a geometry that changes its
+     * box calls {@link #resetBox()} instead.
+     *
+     * @return the box, null if the geometry is not bounded
+     */
+    protected Border calculateBox() {
+        return null;
     }
 
-    public static void setCbr() {
-        Intersectable.cbr = true;
+    /**
+     * drops the box of the geometry, so it is calculated again on the next request
+     */
+    protected void resetBox() {
+        box = null;
+    }
+
+    /**
+     * whether a test of a ray against the intersectable is a single primitive test
+     * for the {@link RayStatistics} - collections count the tests of their content
+     * instead
+     *
+     * @return true for a single surface, false for a collection
+     */
+    boolean isPrimitive() {
+        return false;
     }
 
 
@@ -177,6 +261,17 @@ public abstract class Intersectable {
          * intersection point
          */
         public Point point;
+        /**
+         * the distance of the intersection point from the ray head (the ray parameter t),
+         * NaN if it is unknown
+         */
+        public double t = Double.NaN;
+        /**
+         * the barycentric coordinates of the intersection point on a triangle - the
+         * weights of its second and third vertices (the first one weighs 1 - u - v),
+         * NaN if they are unknown
+         */
+        public double u = Double.NaN, v = Double.NaN;
 
         /**
          * constructor of a geoPoint by given geometry and a point
@@ -189,12 +284,41 @@ public abstract class Intersectable {
             this.point = point;
         }
 
+        /**
+         * constructor of a geoPoint by given geometry, a point and its distance from the ray head
+         *
+         * @param geometry geometry
+         * @param point    point
+         * @param t        the distance of the point from the ray head
+         */
+        public GeoPoint(Geometry geometry, Point point, double t) {
+            this.geometry = geometry;
+            this.point = point;
+            this.t = t;
+        }
+
+        /**
+         * constructor of a geoPoint on a triangle by given geometry, a point, its
+         * distance from the ray head and its barycentric coordinates
+         *
+         * @param geometry geometry
+         * @param point    point
+         * @param t        the distance of the point from the ray head
+         * @param u        the weight of the second vertex of the triangle
+         * @param v        the weight of the third vertex of the triangle
+         */
+        public GeoPoint(Geometry geometry, Point point, double t, double u, double v) {
+            this(geometry, point, t);
+            this.u = u;
+            this.v = v;
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj)
                 return true;
             return obj instanceof GeoPoint other && //
-                    this.geometry == other.geometry && this.point.equals(other.point);
+                    this.geometry.equals(other.geometry) && this.point.equals(other.point);
         }
 
         @Override
@@ -225,7 +349,7 @@ public abstract class Intersectable {
      * @return list of geopoints
      */
     public List<GeoPoint> findGeoIntersections(Ray ray, double maxDis) {
-        return box != null && !box.intersect(ray, maxDis) ? null : findGeoIntersectionsHelper(ray, maxDis);
+        return findGeoIntersectionsHelper(ray, maxDis);
     }
 
     /**
@@ -237,4 +361,123 @@ public abstract class Intersectable {
      * @return list of geopoints
      */
     protected abstract List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDis);
+
+    /**
+     * find the closest intersection with the ray (point and geometry)
+     *
+     * @param ray ray that intersect
+     * @return the closest geopoint, null if there is no intersection
+     */
+    public GeoPoint findClosestIntersection(Ray ray) {
+        return findClosestIntersection(ray, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * find the closest intersection with the ray (point and geometry) with limited
+     * distance
+     *
+     * @param ray  ray that intersect
+     * @param tMax the maximum distance
+     * @return the closest geopoint with its distance, null if there is no
+     * intersection
+     */
+    public GeoPoint findClosestIntersection(Ray ray, double tMax) {
+        return findClosestIntersectionHelper(ray, tMax);
+    }
+
+    /**
+     * auxiliary function find the closest intersection with the ray.<br/>
+     * The default implementation picks the closest of all the intersections,
+     * geometries override it to avoid building the list.
+     *
+     * @param ray  ray that intersect
+     * @param tMax the maximum distance
+     * @return the closest geopoint with its distance, null if there is no
+     * intersection
+     */
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        GeoPoint closest = ray.findClosestGeoPoint(findGeoIntersectionsHelper(ray, tMax));
+        return closest == null ? null : new GeoPoint(closest.geometry, closest.point, closest.point.distance(ray.getP0()));
+    }
+
+    /**
+     * find the distance to the closest intersection with the ray, without
+     * building the intersection. A search through many intersectables compares
+     * the distances and builds the intersection only for the closest one
+     * ({@link #closestAt(Ray, double)}). Bodies override it to compute the
+     * distance in doubles only; the default finds the intersection.
+     *
+     * @param ray  ray that intersect
+     * @param tMax the maximum distance
+     * @return the distance, {@link Double#POSITIVE_INFINITY} if there is no
+     * intersection
+     */
+    protected double findClosestDistance(Ray ray, double tMax) {
+        GeoPoint closest = findClosestIntersectionHelper(ray, tMax);
+        return closest == null ? Double.POSITIVE_INFINITY : closest.t;
+    }
+
+    /**
+     * build the intersection with the ray at the distance that
+     * {@link #findClosestDistance(Ray, double)} found
+     *
+     * @param ray ray that intersect
+     * @param t   the distance of the intersection
+     * @return the intersection
+     */
+    protected GeoPoint closestAt(Ray ray, double t) {
+        return findClosestIntersectionHelper(ray, t);
+    }
+
+    /**
+     * find how much light passes along the ray through the intersectable with
+     * limited distance - the transparency factors of all the intersections are
+     * multiplied, and the search stops as soon as the light is blocked
+     *
+     * @param ray    ray from a point towards a light source
+     * @param maxDis the distance to the light source
+     * @param minK   the smallest factor that still counts as passing light
+     * @return the transparency factor, {@link Double3#ZERO} if the light is blocked
+     */
+    public Double3 findTransparency(Ray ray, double maxDis, double minK) {
+        return findTransparency(ray, maxDis, Double3.ONE, minK);
+    }
+
+    /**
+     * find how much light passes along the ray through the intersectable, given
+     * the light that passed the previous intersectables
+     *
+     * @param ray    ray from a point towards a light source
+     * @param maxDis the distance to the light source
+     * @param ktr    the transparency factor accumulated so far
+     * @param minK   the smallest factor that still counts as passing light
+     * @return the accumulated transparency factor, {@link Double3#ZERO} if the
+     * light is blocked
+     */
+    protected Double3 findTransparency(Ray ray, double maxDis, Double3 ktr, double minK) {
+        return findTransparencyHelper(ray, maxDis, ktr, minK);
+    }
+
+    /**
+     * auxiliary function find how much light passes along the ray through the
+     * intersectable
+     *
+     * @param ray    ray from a point towards a light source
+     * @param maxDis the distance to the light source
+     * @param ktr    the transparency factor accumulated so far
+     * @param minK   the smallest factor that still counts as passing light
+     * @return the accumulated transparency factor, {@link Double3#ZERO} if the
+     * light is blocked
+     */
+    protected Double3 findTransparencyHelper(Ray ray, double maxDis, Double3 ktr, double minK) {
+        var intersections = findGeoIntersectionsHelper(ray, maxDis);
+        if (intersections == null)
+            return ktr;
+        for (GeoPoint gp : intersections) {
+            ktr = ktr.product(gp.geometry.getMaterial().kT);
+            if (ktr.lowerThan(minK))
+                return Double3.ZERO;
+        }
+        return ktr;
+    }
 }
@@ -0,0 +1,442 @@
+package geometries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/**
+ * class LBVHBuilder builds a linear bounding volume hierarchy (LBVH).<br/>
+ * The centroids of the primitives are put on a grid of 2<sup>21</sup> cells along
+ * each axis, and the primitives are sorted by the 63 bit Morton code of their cell
+ * with a parallel radix sort. Then the radix tree over the sorted codes is found
+ * as Karras does it - every inner node finds its own range of codes and its split
+ * from the codes around it alone, so all the nodes are found in parallel. The tree
+ * is written in depth-first order in one pass over its nodes, with the ranges that
+ * fit in a leaf cut off, and the boxes are collected in one pass from the last
+ * node back.<br/>
+ * The build is much faster than {@link BVHBuilder}, and the tree is worse, so it
+ * fits scenes that are rebuilt often more than scenes that are rendered for long.
+ *
+ * @author hodaya
+ */
+final class LBVHBuilder {
+    /**
+     * the amount of bits of the grid along each axis
+     */
+    private static final int AXIS_BITS = 21;
+    /**
+     * the amount of bits sorted in each radix sort pass
+     */
+    private static final int RADIX_BITS = 8;
+    /**
+     * the amount of buckets of each radix sort pass
+     */
+    private static final int RADIX = 1 << RADIX_BITS;
+    /**
+     * the amount of radix sort passes over the 63 bit codes
+     */
+    private static final int PASSES = (3 * AXIS_BITS + RADIX_BITS - 1) / RADIX_BITS;
+    /**
+     * the smallest amount of primitives in a part of the parallel work
+     */
+    private static final int PARALLEL_PART = 1 << 14;
+
+    /**
+     * the boxes of the primitives - 6 values for each primitive
+     */
+    private final double[] primBounds;
+    /**
+     * the maximum amount of primitives in a leaf
+     */
+    private final int maxLeafSize;
+    /**
+     * the pool of the parallel work, null to work in the calling thread
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * the Morton codes of the primitives, sorted while building
+     */
+    private long[] codes;
+    /**
+     * the primitive indices, sorted by their codes
+     */
+    private int[] order;
+
+    // the radix tree - the children of inner node i (a primitive leaf k is ~k) and the
+    // other end of its range of sorted primitives (i is one end)
+    private int[] leftChildren;
+    private int[] rightChildren;
+    private int[] rangeEnds;
+
+    // the nodes of the hierarchy, grown while building
+    private double[] bounds;
+    private int[] offsets;
+    private int[] counts;
+    private byte[] axes;
+    private int nodeCount = 0;
+
+    /**
+     * constructor of a builder over the boxes of the primitives, that works in the
+     * common fork-join pool
+     *
+     * @param primBounds  the boxes of the primitives - 6 values for each primitive
+     *                    (minX, minY, minZ, maxX, maxY, maxZ)
+     * @param maxLeafSize the maximum amount of primitives in a leaf
+     */
+    LBVHBuilder(double[] primBounds, int maxLeafSize) {
+        this(primBounds, maxLeafSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * constructor of a builder over the boxes of the primitives
+     *
+     * @param primBounds  the boxes of the primitives - 6 values for each primitive
+     *                    (minX, minY, minZ, maxX, maxY, maxZ)
+     * @param maxLeafSize the maximum amount of primitives in a leaf
+     * @param pool        the pool to work in, null to work in the calling thread
+     */
+    LBVHBuilder(double[] primBounds, int maxLeafSize, ForkJoinPool pool) {
+        if (maxLeafSize < 1)
+            throw new IllegalArgumentException("leaf size must be positive");
+        this.primBounds = primBounds;
+        this.maxLeafSize = maxLeafSize;
+        this.pool = pool;
+    }
+
+    /**
+     * builds the hierarchy
+     *
+     * @return the hierarchy in flat arrays
+     */
+    BVHNodes build() {
+        int size = primBounds.length / 6;
+        if (size == 0)
+            throw new IllegalArgumentException("cannot build a hierarchy without primitives");
+        computeCodes(size);
+        sort(size);
+
+        int capacity = Math.max(16, 2 * size / maxLeafSize);
+        bounds = new double[capacity * 6];
+        offsets = new int[capacity];
+        counts = new int[capacity];
+        axes = new byte[capacity];
+        if (size > maxLeafSize)
+            buildRadixTree(size);
+        emit(size);
+        collectBounds();
+        return new BVHNodes(Arrays.copyOf(bounds, nodeCount * 6), Arrays.copyOf(offsets, nodeCount),
+                Arrays.copyOf(counts, nodeCount), Arrays.copyOf(axes, nodeCount), order);
+    }
+
+    /**
+     * calculates the Morton codes of the centroids of the primitives on the grid
+     * over the box of all the centroids
+     */
+    private void computeCodes(int size) {
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = 0; i < size * 6; i += 6)
+            for (int axis = 0; axis < 3; ++axis) {
+                double c = (primBounds[i + axis] + primBounds[i + axis + 3]) / 2;
+                if (c < min[axis])
+                    min[axis] = c;
+                if (c > max[axis])
+                    max[axis] = c;
+            }
+        double[] scale = new double[3];
+        for (int axis = 0; axis < 3; ++axis)
+            scale[axis] = max[axis] > min[axis] ? (1 << AXIS_BITS) / (max[axis] - min[axis]) : 0;
+
+        codes = new long[size];
+        order = new int[size];
+        int parts = parts(size);
+        forEachPart(parts, part -> {
+            int end = partEnd(part, parts, size);
+            for (int i = partEnd(part - 1, parts, size); i < end; ++i) {
+                long code = 0;
+                for (int axis = 0; axis < 3; ++axis) {
+                    double c = (primBounds[i * 6 + axis] + primBounds[i * 6 + axis + 3]) / 2;
+                    long cell = (long) ((c - min[axis]) * scale[axis]);
+                    if (cell >= 1 << AXIS_BITS)
+                        cell = (1 << AXIS_BITS) - 1;
+                    else if (cell < 0)
+                        cell = 0;
+                    code |= spread(cell) << (2 - axis);
+                }
+                codes[i] = code;
+                order[i] = i;
+            }
+        });
+    }
+
+    /**
+     * spreads the 21 low bits of a value so there are 2 zero bits between every 2
+     * bits of it
+     *
+     * @param value the value
+     * @return the spread value
+     */
+    static long spread(long value) {
+        value &= 0x1fffffL;
+        value = (value | value << 32) & 0x1f00000000ffffL;
+        value = (value | value << 16) & 0x1f0000ff0000ffL;
+        value = (value | value << 8) & 0x100f00f00f00f00fL;
+        value = (value | value << 4) & 0x10c30c30c30c30c3L;
+        value = (value | value << 2) & 0x1249249249249249L;
+        return value;
+    }
+
+    /**
+     * sorts the codes and the primitive indices by the codes, with a stable least
+     * significant digit radix sort. In every pass each part of the codes counts its
+     * digits and then moves its codes to their places, in parallel.
+     */
+    private void sort(int size) {
+        int parts = parts(size);
+        long[] codesTo = new long[size];
+        int[] orderTo = new int[size];
+        int[][] histograms = new int[parts][RADIX];
+        for (int pass = 0; pass < PASSES; ++pass) {
+            int shift = pass * RADIX_BITS;
+            long[] codesFrom = codes;
+            forEachPart(parts, part -> {
+                int[] histogram = histograms[part];
+                Arrays.fill(histogram, 0);
+                int end = partEnd(part, parts, size);
+                for (int i = partEnd(part - 1, parts, size); i < end; ++i)
+                    ++histogram[(int) (codesFrom[i] >>> shift) & (RADIX - 1)];
+            });
+
+            // turn the counts into the first place of each digit of each part
+            int place = 0;
+            boolean sorted = false;
+            for (int digit = 0; digit < RADIX; ++digit) {
+                int first = place;
+                for (int part = 0; part < parts; ++part) {
+                    int count = histograms[part][digit];
+                    histograms[part][digit] = place;
+                    place += count;
+                }
+                if (place - first == size)
+                    sorted = true; // all the codes have the same digit
+            }
+            if (sorted)
+                continue;
+
+            int[] orderFrom = order;
+            long[] codesInto = codesTo;
+            int[] orderInto = orderTo;
+            forEachPart(parts, part -> {
+                int[] places = histograms[part];
+                int end = partEnd(part, parts, size);
+                for (int i = partEnd(part - 1, parts, size); i < end; ++i) {
+                    int to = places[(int) (codesFrom[i] >>> shift) & (RADIX - 1)]++;
+                    codesInto[to] = codesFrom[i];
+                    orderInto[to] = orderFrom[i];
+                }
+            });
+            codesTo = codes;
+            orderTo = order;
+            codes = codesInto;
+            order = orderInto;
+        }
+    }
+
+    /**
+     * the length of the common prefix of the codes of two sorted primitives, with
+     * the indices of the primitives appended to equal codes so every code differs
+     *
+     * @param i    the index of the first primitive
+     * @param j    the index of the second primitive
+     * @param size the amount of primitives
+     * @return the length of the prefix in bits, -1 if j is out of the primitives
+     */
+    private int prefix(int i, int j, int size) {
+        if (j < 0 || j >= size)
+            return -1;
+        long differ = codes[i] ^ codes[j];
+        return differ != 0 ? Long.numberOfLeadingZeros(differ) : 64 + Integer.numberOfLeadingZeros(i ^ j);
+    }
+
+    /**
+     * finds the binary radix tree over the sorted codes. Inner node i is one end
+     * of its range, and the range grows from it towards the neighbor that shares a
+     * longer prefix with it - its other end and its split are found by searches
+     * over the prefixes, so every node is found by itself, in parallel.
+     */
+    private void buildRadixTree(int size) {
+        int inner = size - 1;
+        leftChildren = new int[inner];
+        rightChildren = new int[inner];
+        rangeEnds = new int[inner];
+        int parts = parts(inner);
+        forEachPart(parts, part -> {
+            int end = partEnd(part, parts, inner);
+            for (int i = partEnd(part - 1, parts, inner); i < end; ++i) {
+                // the direction of the range, and the prefix the range must beat
+                int d = prefix(i, i + 1, size) > prefix(i, i - 1, size) ? 1 : -1;
+                int minPrefix = prefix(i, i - d, size);
+
+                // the other end of the range - an upper bound and then a binary search
+                int maxLength = 2;
+                while (prefix(i, i + maxLength * d, size) > minPrefix)
+                    maxLength <<= 1;
+                int length = 0;
+                for (int step = maxLength >> 1; step > 0; step >>= 1)
+                    if (prefix(i, i + (length + step) * d, size) > minPrefix)
+                        length += step;
+                int j = i + length * d;
+
+                // the split - the last primitive that shares more than the prefix of the range with i
+                int nodePrefix = prefix(i, j, size);
+                int split = 0;
+                int step = length;
+                do {
+                    step = (step + 1) >> 1;
+                    if (prefix(i, i + (split + step) * d, size) > nodePrefix)
+                        split += step;
+                } while (step > 1);
+                int gamma = i + split * d + Math.min(d, 0);
+
+                leftChildren[i] = Math.min(i, j) == gamma ? ~gamma : gamma;
+                rightChildren[i] = Math.max(i, j) == gamma + 1 ? ~(gamma + 1) : gamma + 1;
+                rangeEnds[i] = j;
+            }
+        });
+    }
+
+    /**
+     * writes the nodes of the radix tree in depth-first order, each one once. A
+     * node whose range fits in a leaf is written as a leaf without its sub-tree.
+     *
+     * @param size the amount of primitives
+     */
+    private void emit(int size) {
+        if (size <= maxLeafSize) {
+            nodeCount = 1;
+            counts[0] = size;
+            return;
+        }
+        // the tree nodes left for later, and the written node whose right child each one is
+        int[] stack = new int[64];
+        int[] parents = new int[64];
+        int top = 0;
+        // the root is inner node 0
+        stack[top] = 0;
+        parents[top++] = -1;
+        while (top > 0) {
+            int tree = stack[--top];
+            int parent = parents[top];
+            int node = nodeCount++;
+            if (node == counts.length)
+                grow();
+            if (parent >= 0)
+                offsets[parent] = node;
+
+            int first = tree < 0 ? ~tree : Math.min(tree, rangeEnds[tree]);
+            int last = tree < 0 ? ~tree : Math.max(tree, rangeEnds[tree]);
+            if (tree < 0 || last - first < maxLeafSize) {
+                offsets[node] = first;
+                counts[node] = last - first + 1;
+                continue;
+            }
+
+            // the axis of the highest bit that differs in the range
+            long differ = codes[first] ^ codes[last];
+            axes[node] = differ == 0 ? 0 : (byte) (2 - (63 - Long.numberOfLeadingZeros(differ)) % 3);
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                parents = Arrays.copyOf(parents, parents.length * 2);
+            }
+            stack[top] = rightChildren[tree];
+            parents[top++] = node;
+            stack[top] = leftChildren[tree];
+            parents[top++] = -1;
+        }
+    }
+
+    /**
+     * calculates the boxes of the nodes - the children of a node come after it,
+     * so going from the last node back every node finds the boxes of its children
+     * ready
+     */
+    private void collectBounds() {
+        for (int node = nodeCount - 1; node >= 0; --node) {
+            int b = node * 6;
+            if (counts[node] > 0) {
+                for (int i = 0; i < 3; ++i) {
+                    bounds[b + i] = Double.POSITIVE_INFINITY;
+                    bounds[b + i + 3] = Double.NEGATIVE_INFINITY;
+                }
+                int end = offsets[node] + counts[node];
+                for (int i = offsets[node]; i < end; ++i) {
+                    int p = order[i] * 6;
+                    for (int j = 0; j < 3; ++j) {
+                        if (primBounds[p + j] < bounds[b + j])
+                            bounds[b + j] = primBounds[p + j];
+                        if (primBounds[p + j + 3] > bounds[b + j + 3])
+                            bounds[b + j + 3] = primBounds[p + j + 3];
+                    }
+                }
+                continue;
+            }
+            int left = (node + 1) * 6;
+            int right = offsets[node] * 6;
+            for (int i = 0; i < 3; ++i) {
+                bounds[b + i] = Math.min(bounds[left + i], bounds[right + i]);
+                bounds[b + i + 3] = Math.max(bounds[left + i + 3], bounds[right + i + 3]);
+            }
+        }
+    }
+
+    /**
+     * doubles the capacity of the node arrays
+     */
+    private void grow() {
+        int capacity = counts.length * 2;
+        bounds = Arrays.copyOf(bounds, capacity * 6);
+        offsets = Arrays.copyOf(offsets, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        axes = Arrays.copyOf(axes, capacity);
+    }
+
+    /**
+     * @return the amount of parts the work over the primitives is split into
+     */
+    private int parts(int size) {
+        if (pool == null)
+            return 1;
+        return Math.max(1, Math.min(pool.getParallelism() * 4, size / PARALLEL_PART));
+    }
+
+    /**
+     * @return the index after the last primitive of a part (0 for part -1)
+     */
+    private static int partEnd(int part, int parts, int size) {
+        return (int) ((long) (part + 1) * size / parts);
+    }
+
+    /**
+     * runs a work on all the parts, in parallel if there is more than one
+     *
+     * @param parts the amount of parts
+     * @param work  the work on a part by its index
+     */
+    private void forEachPart(int parts, IntConsumer work) {
+        if (parts == 1) {
+            work.accept(0);
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(parts);
+        for (int part = 0; part < parts; ++part) {
+            int p = part;
+            tasks.add(pool.submit(() -> work.accept(p)));
+        }
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+    }
+}
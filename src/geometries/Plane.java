@@ -81,18 +81,40 @@ public class Plane extends Geometry {
         Point p0 = ray.getP0();
         Vector v = ray.getDir();
 
-        Vector u;
-        try {
-            u = q0.subtract(p0);
-        } catch (IllegalArgumentException ignore) {
-            return null;
-        }
+        // the ray starts at the plane's reference point
+        if (q0.equals(p0)) return null;
 
         double nv = normal.dotProduct(v);
         //ray parallel to plane or ray begins in the same point which appears as the plane's reference point
         if (isZero(nv)) return null;
 
-        double t = alignZero(normal.dotProduct(u) / nv);
-        return t > 0 && alignZero(t - maxDistance) <= 0 ? List.of(new GeoPoint(this, ray.getPoint(t))) : null;
+        double t = alignZero(q0.subtractDotProduct(p0, normal) / nv);
+        return t > 0 && alignZero(t - maxDistance) <= 0 ? List.of(new GeoPoint(this, ray.getPoint(t), t)) : null;
     }
-}
\ No newline at end of file
+
+    @Override
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        double t = findClosestDistance(ray, tMax);
+        return t == Double.POSITIVE_INFINITY ? null : closestAt(ray, t);
+    }
+
+    @Override
+    protected double findClosestDistance(Ray ray, double tMax) {
+        Point p0 = ray.getP0();
+        Vector v = ray.getDir();
+
+        // the ray starts at the plane's reference point
+        if (q0.equals(p0)) return Double.POSITIVE_INFINITY;
+
+        double nv = normal.dotProduct(v);
+        if (isZero(nv)) return Double.POSITIVE_INFINITY;
+
+        double t = alignZero(q0.subtractDotProduct(p0, normal) / nv);
+        return t > 0 && alignZero(t - tMax) <= 0 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    protected GeoPoint closestAt(Ray ray, double t) {
+        return new GeoPoint(this, ray.getPoint(t), t);
+    }
+}
@@ -6,6 +6,7 @@ import primitives.Vector;
 
 import java.util.List;
 
+import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
 
 /**
@@ -56,23 +57,6 @@ public class Polygon extends Geometry {
         // polygon with this plane.
         // The plane holds the invariant normal (orthogonal unit) vector to the polygon
         plane = new Plane(vertices[0], vertices[1], vertices[2]);
-        if (cbr) {
-            box = new Border();
-            for (var v : this.vertices) {
-                if (v.getX() < box.minX)
-                    box.minX = v.getX();
-                if (v.getY() < box.minY)
-                    box.minY = v.getY();
-                if (v.getZ() < box.minZ)
-                    box.minZ = v.getZ();
-                if (v.getX() > box.maxX)
-                    box.maxX = v.getX();
-                if (v.getY() > box.maxY)
-                    box.maxY = v.getY();
-                if (v.getZ() > box.maxZ)
-                    box.maxZ = v.getZ();
-            }
-        }
         if (size == 3)
             return; // no need for more tests for a Triangle
 
@@ -106,13 +90,82 @@ public class Polygon extends Geometry {
         size = vertices.length;
     }
 
+    /**
+     * getter for the vertices of the polygon
+     *
+     * @return the vertices by their edge path order
+     */
+    public List<Point> getVertices() {
+        return vertices;
+    }
+
     @Override
     public Vector getNormal(Point point) {
         return plane.getNormal();
     }
 
+    @Override
+    protected Border calculateBox() {
+        Border box = new Border();
+        for (var v : vertices) {
+            if (v.getX() < box.minX)
+                box.minX = v.getX();
+            if (v.getY() < box.minY)
+                box.minY = v.getY();
+            if (v.getZ() < box.minZ)
+                box.minZ = v.getZ();
+            if (v.getX() > box.maxX)
+                box.maxX = v.getX();
+            if (v.getY() > box.maxY)
+                box.maxY = v.getY();
+            if (v.getZ() > box.maxZ)
+                box.maxZ = v.getZ();
+        }
+        return box;
+    }
+
     @Override
     protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
-        return null;
+        GeoPoint gp = findClosestIntersectionHelper(ray, maxDistance);
+        return gp == null ? null : List.of(gp);
+    }
+
+    /**
+     * The ray is intersected with the plane of the polygon, and the point is inside
+     * if it is on the same side of all the edges - the polygon is convex. Like a
+     * {@link Triangle}, the edges and the vertices do not count.
+     */
+    @Override
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        GeoPoint planePoint = plane.findClosestIntersectionHelper(ray, tMax);
+        if (planePoint == null) return null;
+
+        Vector n = plane.getNormal();
+        double nx = n.getX();
+        double ny = n.getY();
+        double nz = n.getZ();
+        Point p = planePoint.point;
+        boolean positive = false;
+        Point previous = vertices.get(vertices.size() - 1);
+        for (int i = 0; i < vertices.size(); ++i) {
+            Point current = vertices.get(i);
+            double ex = current.getX() - previous.getX();
+            double ey = current.getY() - previous.getY();
+            double ez = current.getZ() - previous.getZ();
+            double wx = p.getX() - previous.getX();
+            double wy = p.getY() - previous.getY();
+            double wz = p.getZ() - previous.getZ();
+            // n . (e x w) divided by the length of the edge is the distance of the point
+            // from the line of the edge, with the sign of its side
+            double side = alignZero((nx * (ey * wz - ez * wy) + ny * (ez * wx - ex * wz) + nz * (ex * wy - ey * wx))
+                    / Math.sqrt(ex * ex + ey * ey + ez * ez));
+            if (side == 0) return null;
+            if (i == 0)
+                positive = side > 0;
+            else if (positive != side > 0)
+                return null;
+            previous = current;
+        }
+        return new GeoPoint(this, p, planePoint.t);
     }
 }
\ No newline at end of file
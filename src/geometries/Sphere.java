@@ -29,15 +29,17 @@ public class Sphere extends Geometry {
         this.center = center;
         this.radius = radius;
         this.radiusSqr = radius * radius;
-        if (cbr) {
-            double minX = center.getX() - radius;
-            double maxX = center.getX() + radius;
-            double minY = center.getY() - radius;
-            double maxY = center.getY() + radius;
-            double minZ = center.getZ() - radius;
-            double maxZ = center.getZ() + radius;
-            this.box= new Border(minX, minY, minZ, maxX, maxY, maxZ);
-        }
+    }
+
+    @Override
+    protected Border calculateBox() {
+        double minX = center.getX() - radius;
+        double maxX = center.getX() + radius;
+        double minY = center.getY() - radius;
+        double maxY = center.getY() + radius;
+        double minZ = center.getZ() - radius;
+        double maxZ = center.getZ() + radius;
+        return new Border(minX, minY, minZ, maxX, maxY, maxZ);
     }
 
     /**
@@ -76,15 +78,13 @@ public class Sphere extends Geometry {
         Point p0 = ray.getP0();
         Vector v = ray.getDir();
 
-        Vector u;
-        try {
-            u = center.subtract(p0);
-        } catch (IllegalArgumentException ignore) {
-            return alignZero(radius - maxDistance) > 0 ? null : List.of(new GeoPoint(this, ray.getPoint(radius)));
-        }
+        // the ray starts at the center (u = center - p0 would be a zero vector)
+        if (center.equals(p0))
+            return alignZero(radius - maxDistance) > 0 ? null : List.of(new GeoPoint(this, ray.getPoint(radius), radius));
 
-        double tm = alignZero(v.dotProduct(u));
-        double dSqr = alignZero(u.lengthSquared() - tm * tm);
+        // computed without creating u = center - p0
+        double tm = alignZero(center.subtractDotProduct(p0, v));
+        double dSqr = alignZero(center.distanceSquared(p0) - tm * tm);
         double thSqr = radius * radius - dSqr;
         // no intersections : the ray direction is above the sphere
         if (alignZero(thSqr) <= 0) return null;
@@ -97,15 +97,48 @@ public class Sphere extends Geometry {
         double t1 = alignZero(tm - th);
         if (t1 <= 0) {
             if (alignZero(t2 - maxDistance) <= 0)
-                return List.of(new GeoPoint(this, ray.getPoint(t2)));
+                return List.of(new GeoPoint(this, ray.getPoint(t2), t2));
             return null;
         } else {
             List<GeoPoint> result = new LinkedList<>();
             if (alignZero(t1 - maxDistance) <= 0)
-                result.add(new GeoPoint(this, ray.getPoint(t1)));
+                result.add(new GeoPoint(this, ray.getPoint(t1), t1));
             if (alignZero(t2 - maxDistance) <= 0)
-                result.add(new GeoPoint(this, ray.getPoint(t2)));
+                result.add(new GeoPoint(this, ray.getPoint(t2), t2));
             return result.isEmpty() ? null : result;
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        double t = findClosestDistance(ray, tMax);
+        return t == Double.POSITIVE_INFINITY ? null : closestAt(ray, t);
+    }
+
+    @Override
+    protected double findClosestDistance(Ray ray, double tMax) {
+        Point p0 = ray.getP0();
+        Vector v = ray.getDir();
+
+        // the ray starts at the center (u = center - p0 would be a zero vector)
+        if (center.equals(p0))
+            return alignZero(radius - tMax) > 0 ? Double.POSITIVE_INFINITY : radius;
+
+        double tm = alignZero(center.subtractDotProduct(p0, v));
+        double dSqr = alignZero(center.distanceSquared(p0) - tm * tm);
+        double thSqr = radiusSqr - dSqr;
+        // no intersections : the ray direction is above the sphere
+        if (alignZero(thSqr) <= 0) return Double.POSITIVE_INFINITY;
+
+        double th = alignZero(Math.sqrt(thSqr));
+        // the first intersection in front of the ray head
+        double t = alignZero(tm - th);
+        if (t <= 0) t = alignZero(tm + th);
+        return t <= 0 || alignZero(t - tMax) > 0 ? Double.POSITIVE_INFINITY : t;
+    }
+
+    @Override
+    protected GeoPoint closestAt(Ray ray, double t) {
+        return new GeoPoint(this, ray.getPoint(t), t);
+    }
+}
@@ -7,13 +7,34 @@ import primitives.Vector;
 import java.util.List;
 
 import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
- * The Triangle class is a subclass of the Polygon class and represents a 3D triangle in space.
+ * The Triangle class is a subclass of the Polygon class and represents a 3D triangle in space.<br/>
+ * The ray intersection uses the M&ouml;ller&ndash;Trumbore algorithm with the edges
+ * calculated once, at construction, and reports the barycentric coordinates of the
+ * point that the algorithm finds on the way (see {@link GeoPoint#u}).
  *
  * @author hodaya zohar && shoham shervi
  */
 public class Triangle extends Polygon {
+    /**
+     * the first vertex
+     */
+    private final double ax, ay, az;
+    /**
+     * the edge from the first vertex to the second one
+     */
+    private final double e1x, e1y, e1z;
+    /**
+     * the edge from the first vertex to the third one
+     */
+    private final double e2x, e2y, e2z;
+    /**
+     * the product of the lengths of the edges - the determinant is divided by it,
+     * so the test of a ray parallel to the triangle does not depend on its size
+     */
+    private final double edgesScale;
 
     /**
      * constructor for triangle by 3 points
@@ -24,35 +45,84 @@ public class Triangle extends Polygon {
      */
     public Triangle(Point p1, Point p2, Point p3) {
         super(p1, p2, p3);
+        ax = p1.getX();
+        ay = p1.getY();
+        az = p1.getZ();
+        e1x = p2.getX() - ax;
+        e1y = p2.getY() - ay;
+        e1z = p2.getZ() - az;
+        e2x = p3.getX() - ax;
+        e2y = p3.getY() - ay;
+        e2z = p3.getZ() - az;
+        edgesScale = Math.sqrt((e1x * e1x + e1y * e1y + e1z * e1z) * (e2x * e2x + e2y * e2y + e2z * e2z));
     }
 
     @Override
     public List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
-        List<GeoPoint> result = plane.findGeoIntersectionsHelper(ray, maxDistance);
+        GeoPoint gp = findClosestIntersectionHelper(ray, maxDistance);
+        return gp == null ? null : List.of(gp);
+    }
+
+    @Override
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        double t = findClosestDistance(ray, tMax);
+        return t == Double.POSITIVE_INFINITY ? null : closestAt(ray, t);
+    }
 
-        //Check if the ray intersect the plane.
-        if (result == null) return null;
+    @Override
+    protected double findClosestDistance(Ray ray, double tMax) {
+        Vector v = ray.getDir();
+        double dx = v.getX();
+        double dy = v.getY();
+        double dz = v.getZ();
 
-        for (GeoPoint g : result)
-            g.geometry = this;
+        // p = dir x e2, det = e1 . p
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        // the ray is parallel to the triangle (the direction of the ray is normalized)
+        if (isZero(det / edgesScale)) return Double.POSITIVE_INFINITY;
+        double invDet = 1 / det;
 
+        // the barycentric coordinates of the plane intersection - the point is on an edge
+        // or a vertex if one of them is zero, and it does not count
         Point p0 = ray.getP0();
+        double sx = p0.getX() - ax;
+        double sy = p0.getY() - ay;
+        double sz = p0.getZ() - az;
+        double u = alignZero((sx * px + sy * py + sz * pz) * invDet);
+        if (u <= 0 || u >= 1) return Double.POSITIVE_INFINITY;
+
+        // q = s x e1
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double w = alignZero((dx * qx + dy * qy + dz * qz) * invDet);
+        if (w <= 0 || alignZero(u + w - 1) >= 0) return Double.POSITIVE_INFINITY;
+
+        double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * invDet);
+        return t > 0 && alignZero(t - tMax) <= 0 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    protected GeoPoint closestAt(Ray ray, double t) {
+        // the barycentric coordinates are calculated again, only for the intersection that is reported
         Vector v = ray.getDir();
-        Vector v1 = vertices.get(0).subtract(p0);
-        Vector v2 = vertices.get(1).subtract(p0);
-        Vector n1 = v1.crossProduct(v2).normalize();
-        double vn1 = alignZero(v.dotProduct(n1));
-        if (vn1 == 0) return null;
-
-        Vector v3 = vertices.get(2).subtract(p0);
-        Vector n2 = v2.crossProduct(v3).normalize();
-        double vn2 = alignZero(v.dotProduct(n2));
-        if (vn1 * vn2 <= 0) return null;
-
-        Vector n3 = v3.crossProduct(v1).normalize();
-        double vn3 = alignZero(v.dotProduct(n3));
-        if (vn1 * vn3 <= 0) return null;
-
-        return result;
+        double dx = v.getX();
+        double dy = v.getY();
+        double dz = v.getZ();
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+        double invDet = 1 / (e1x * px + e1y * py + e1z * pz);
+        Point p0 = ray.getP0();
+        double sx = p0.getX() - ax;
+        double sy = p0.getY() - ay;
+        double sz = p0.getZ() - az;
+        double u = alignZero((sx * px + sy * py + sz * pz) * invDet);
+        double w = alignZero((dx * (sy * e1z - sz * e1y) + dy * (sz * e1x - sx * e1z) + dz * (sx * e1y - sy * e1x))
+                * invDet);
+        return new GeoPoint(this, ray.getPoint(t), t, u, w);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,633 @@
+package geometries;
+
+import primitives.Color;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayStatistics;
+import primitives.Vector;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static primitives.Util.alignZero;
+
+/**
+ * Class TriangleMesh represents a model made of many triangles that share their
+ * vertices.<br/>
+ * The vertex positions are kept in one flat array and the faces in an index buffer
+ * (three vertex indices for each face), so a face costs a few array entries
+ * instead of a {@link Triangle} object with its points and plane. The faces are
+ * found through a bounding volume hierarchy of the mesh itself, and all of them
+ * share the material and the emission of the mesh.<br/>
+ * An intersection is reported with a light {@link Face} object that only knows
+ * the mesh and the face number.
+ *
+ * @author hodaya
+ */
+public class TriangleMesh extends Geometry {
+    /**
+     * the distance from a face (relative to the coordinates of the point) that
+     * still counts as on the face
+     */
+    private static final double ON_MESH = 1e-9;
+    /**
+     * the squared sine of the angle between a ray and a face below which they are
+     * parallel
+     */
+    private static final double PARALLEL = 1e-24;
+    /**
+     * the vertex positions - 3 values for each vertex (x, y, z)
+     */
+    private final double[] positions;
+    /**
+     * the faces - 3 vertex indices for each face
+     */
+    private final int[] indices;
+    /**
+     * the hierarchy over the faces
+     */
+    private BVHNodes nodes;
+    /**
+     * the depth of the hierarchy (the size of the traversal stack)
+     */
+    private int depth;
+    /**
+     * the expected cost of the hierarchy when it was built, before any refit
+     */
+    private double builtCost;
+
+    /**
+     * constructor of a mesh by its buffers. The buffers are used as they are, not
+     * copied. The faces are expected to be ordered counterclockwise when looking
+     * at their front.
+     *
+     * @param positions the vertex positions - 3 values for each vertex (x, y, z)
+     * @param indices   the faces - 3 vertex indices for each face
+     * @throws IllegalArgumentException if the buffers are not made of whole
+     *                                  vertices and faces, if there are no faces,
+     *                                  or if a face refers to a missing vertex
+     */
+    public TriangleMesh(double[] positions, int[] indices) {
+        this(positions, indices, null, null);
+    }
+
+    /**
+     * constructor of a mesh by its buffers, with the hierarchy of its faces taken
+     * from a cache if it was built before for the same faces. The buffers are used
+     * as they are, not copied.
+     *
+     * @param positions the vertex positions - 3 values for each vertex (x, y, z)
+     * @param indices   the faces - 3 vertex indices for each face
+     * @param cache     the cache of hierarchies
+     * @throws IllegalArgumentException if the buffers are not made of whole
+     *                                  vertices and faces, if there are no faces,
+     *                                  or if a face refers to a missing vertex
+     */
+    public TriangleMesh(double[] positions, int[] indices, BVHCache cache) {
+        this(positions, indices, null, cache);
+    }
+
+    /**
+     * constructor of a mesh by its buffers and the hierarchy of its faces that was
+     * built before (see {@link #getHierarchy()}). The buffers are used as they are,
+     * not copied.
+     *
+     * @param positions the vertex positions - 3 values for each vertex (x, y, z)
+     * @param indices   the faces - 3 vertex indices for each face
+     * @param hierarchy the hierarchy of the faces
+     * @throws IllegalArgumentException if the buffers are not made of whole
+     *                                  vertices and faces, if there are no faces,
+     *                                  if a face refers to a missing vertex, or if
+     *                                  the hierarchy does not fit the faces - it is
+     *                                  of another amount of faces, or a face is out
+     *                                  of the box of its leaf
+     */
+    public TriangleMesh(double[] positions, int[] indices, BVHNodes hierarchy) {
+        this(positions, indices, hierarchy, null);
+    }
+
+    /**
+     * constructor of a mesh by its buffers and the hierarchy of its faces, or a
+     * cache to find it in, or neither to build it
+     */
+    private TriangleMesh(double[] positions, int[] indices, BVHNodes hierarchy, BVHCache cache) {
+        if (positions.length % 3 != 0)
+            throw new IllegalArgumentException("The positions must have 3 values for each vertex");
+        if (indices.length % 3 != 0 || indices.length == 0)
+            throw new IllegalArgumentException("The indices must have 3 values for each face");
+        int vertexCount = positions.length / 3;
+        for (int index : indices)
+            if (index < 0 || index >= vertexCount)
+                throw new IllegalArgumentException("A face refers to a missing vertex");
+        this.positions = positions;
+        this.indices = indices;
+
+        int faceCount = indices.length / 3;
+        if (hierarchy != null) {
+            if (hierarchy.primitiveCount() != faceCount)
+                throw new IllegalArgumentException("The hierarchy is of another amount of faces");
+            if (!hierarchy.fits(faceBounds(positions, indices)))
+                throw new IllegalArgumentException("The hierarchy does not fit the boxes of the faces");
+            nodes = hierarchy;
+        } else if (cache != null)
+            nodes = cache.build(faceBounds(positions, indices), BVHBuilder.DEFAULT_LEAF_SIZE, BVHKind.SAH);
+        else
+            nodes = new BVHBuilder(faceBounds(positions, indices), BVHBuilder.DEFAULT_LEAF_SIZE).build();
+        BVHReport report = nodes.report();
+        depth = report.depth();
+        builtCost = report.cost();
+    }
+
+    /**
+     * @return the box of the root of the hierarchy
+     */
+    @Override
+    protected Border calculateBox() {
+        return new Border(nodes.bounds[0], nodes.bounds[1], nodes.bounds[2],
+                nodes.bounds[3], nodes.bounds[4], nodes.bounds[5]);
+    }
+
+    /**
+     * updates the mesh after its vertices moved in the positions buffer (see
+     * {@link #getPositions()}) - the boxes of the hierarchy are calculated again
+     * and its tree is kept, unless the expected cost of the refitted tree grew by
+     * more than {@link BVHNodes#DEFAULT_MAX_COST_GROWTH} times the cost of its build.
+     * It must not be called while rays are traced against the mesh.
+     *
+     * @return true if the tree was kept, false if it was built again
+     */
+    public boolean refit() {
+        return refit(BVHNodes.DEFAULT_MAX_COST_GROWTH);
+    }
+
+    /**
+     * updates the mesh after its vertices moved in the positions buffer (see
+     * {@link #getPositions()}) - the boxes of the hierarchy are calculated again
+     * and its tree is kept, unless the expected cost of the refitted tree grew by
+     * more than a given factor over the cost of its build.
+     * It must not be called while rays are traced against the mesh.
+     *
+     * @param maxCostGrowth the growth of the cost that makes the tree built again
+     * @return true if the tree was kept, false if it was built again
+     */
+    public boolean refit(double maxCostGrowth) {
+        double[] faceBounds = faceBounds(positions, indices);
+        BVHNodes refitted = nodes.refit(faceBounds);
+        boolean kept = refitted.report().cost() <= builtCost * maxCostGrowth;
+        if (kept)
+            nodes = refitted;
+        else {
+            nodes = new BVHBuilder(faceBounds, BVHBuilder.DEFAULT_LEAF_SIZE).build();
+            BVHReport report = nodes.report();
+            depth = report.depth();
+            builtCost = report.cost();
+        }
+        resetBox();
+        return kept;
+    }
+
+    /**
+     * calculates the boxes of the faces
+     *
+     * @param positions the vertex positions
+     * @param indices   the faces
+     * @return 6 values for each face (minX, minY, minZ, maxX, maxY, maxZ)
+     */
+    private static double[] faceBounds(double[] positions, int[] indices) {
+        int faceCount = indices.length / 3;
+        double[] faceBounds = new double[faceCount * 6];
+        for (int face = 0; face < faceCount; ++face) {
+            int b = face * 6;
+            for (int axis = 0; axis < 3; ++axis) {
+                faceBounds[b + axis] = Double.POSITIVE_INFINITY;
+                faceBounds[b + axis + 3] = Double.NEGATIVE_INFINITY;
+            }
+            for (int corner = 0; corner < 3; ++corner) {
+                int v = indices[face * 3 + corner] * 3;
+                for (int axis = 0; axis < 3; ++axis) {
+                    double value = positions[v + axis];
+                    if (value < faceBounds[b + axis])
+                        faceBounds[b + axis] = value;
+                    if (value > faceBounds[b + axis + 3])
+                        faceBounds[b + axis + 3] = value;
+                }
+            }
+        }
+        return faceBounds;
+    }
+
+    /**
+     * getter for the vertex positions
+     *
+     * @return 3 values for each vertex (x, y, z)
+     */
+    public double[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * getter for the faces
+     *
+     * @return 3 vertex indices for each face
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * getter for the hierarchy of the faces
+     *
+     * @return the hierarchy
+     */
+    public BVHNodes getHierarchy() {
+        return nodes;
+    }
+
+    /**
+     * @return the amount of faces in the mesh
+     */
+    public int getFaceCount() {
+        return indices.length / 3;
+    }
+
+    /**
+     * the function calculates the normal of a face of the mesh
+     *
+     * @param face the number of the face
+     * @return the normal of the face
+     */
+    public Vector getNormal(int face) {
+        int a = indices[face * 3] * 3;
+        int b = indices[face * 3 + 1] * 3;
+        int c = indices[face * 3 + 2] * 3;
+        double e1x = positions[b] - positions[a];
+        double e1y = positions[b + 1] - positions[a + 1];
+        double e1z = positions[b + 2] - positions[a + 2];
+        double e2x = positions[c] - positions[a];
+        double e2y = positions[c + 1] - positions[a + 1];
+        double e2z = positions[c + 2] - positions[a + 2];
+        return new Vector(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x).normalize();
+    }
+
+    /**
+     * The normal of a point on the mesh is the normal of its face. The face is
+     * found through the hierarchy - only the faces in the leaves whose boxes hold
+     * the point are checked, and among the faces that hold the point the one whose
+     * plane is the closest to it is taken (a point on a shared edge belongs to
+     * either face).<br/>
+     * The intersections of the mesh are reported with their {@link Face}, which
+     * finds the normal without a search.
+     *
+     * @throws IllegalArgumentException if the point is not on the mesh
+     */
+    @Override
+    public Vector getNormal(Point p) {
+        int face = findFace(p.getX(), p.getY(), p.getZ());
+        if (face < 0)
+            throw new IllegalArgumentException("The point is not on the mesh");
+        return getNormal(face);
+    }
+
+    /**
+     * finds the face of a point on the mesh
+     *
+     * @param x x of the point
+     * @param y y of the point
+     * @param z z of the point
+     * @return the number of the face, -1 if the point is not on the mesh
+     */
+    private int findFace(double x, double y, double z) {
+        // the rounding of a calculated point grows with its coordinates
+        double tolerance = ON_MESH * (1 + Math.max(Math.abs(x), Math.max(Math.abs(y), Math.abs(z))));
+        int closest = -1;
+        double closestDistance = tolerance;
+        int[] stack = new int[depth];
+        int top = 0;
+        int node = 0;
+        while (true) {
+            int b = node * 6;
+            double[] bounds = nodes.bounds;
+            if (x >= bounds[b] - tolerance && y >= bounds[b + 1] - tolerance && z >= bounds[b + 2] - tolerance
+                    && x <= bounds[b + 3] + tolerance && y <= bounds[b + 4] + tolerance && z <= bounds[b + 5] + tolerance) {
+                if (!nodes.isLeaf(node)) {
+                    stack[top++] = nodes.offsets[node];
+                    ++node;
+                    continue;
+                }
+                int end = nodes.offsets[node] + nodes.counts[node];
+                for (int i = nodes.offsets[node]; i < end; ++i) {
+                    int face = nodes.order[i];
+                    double distance = distance(face, x, y, z, tolerance);
+                    if (distance <= closestDistance) {
+                        closest = face;
+                        closestDistance = distance;
+                    }
+                }
+            }
+            if (top == 0)
+                return closest;
+            node = stack[--top];
+        }
+    }
+
+    /**
+     * calculates the distance of a point from the plane of a face, if the point
+     * is within the face (or its edges)
+     *
+     * @param face      the number of the face
+     * @param x         x of the point
+     * @param y         y of the point
+     * @param z         z of the point
+     * @param tolerance the distance from the edges that still counts as within
+     *                  the face
+     * @return the distance, infinity if the point is out of the face or the face
+     * is degenerate
+     */
+    private double distance(int face, double x, double y, double z, double tolerance) {
+        int a = indices[face * 3] * 3;
+        int b = indices[face * 3 + 1] * 3;
+        int c = indices[face * 3 + 2] * 3;
+        double e1x = positions[b] - positions[a];
+        double e1y = positions[b + 1] - positions[a + 1];
+        double e1z = positions[b + 2] - positions[a + 2];
+        double e2x = positions[c] - positions[a];
+        double e2y = positions[c + 1] - positions[a + 1];
+        double e2z = positions[c + 2] - positions[a + 2];
+        double sx = x - positions[a];
+        double sy = y - positions[a + 1];
+        double sz = z - positions[a + 2];
+
+        double nx = e1y * e2z - e1z * e2y;
+        double ny = e1z * e2x - e1x * e2z;
+        double nz = e1x * e2y - e1y * e2x;
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0) return Double.POSITIVE_INFINITY;
+
+        // the barycentric coordinates of the projection of the point on the plane
+        double d11 = e1x * e1x + e1y * e1y + e1z * e1z;
+        double d12 = e1x * e2x + e1y * e2y + e1z * e2z;
+        double d22 = e2x * e2x + e2y * e2y + e2z * e2z;
+        double s1 = sx * e1x + sy * e1y + sz * e1z;
+        double s2 = sx * e2x + sy * e2y + sz * e2z;
+        // d11 * d22 - d12 * d12 is the squared length of the normal
+        double u = (d22 * s1 - d12 * s2) / (length * length);
+        double v = (d11 * s2 - d12 * s1) / (length * length);
+        // the coordinates are measured in the heights of the face (the normal length
+        // divided by the opposite edge), so the tolerance is too
+        double margin = 2 * tolerance * Math.sqrt(Math.max(d11, d22)) / length;
+        if (u < -margin || v < -margin || u + v > 1 + margin)
+            return Double.POSITIVE_INFINITY;
+        return Math.abs(sx * nx + sy * ny + sz * nz) / length;
+    }
+
+    @Override
+    boolean isPrimitive() {
+        return false;
+    }
+
+    /**
+     * this function intersects a ray with a face of the mesh (M&ouml;ller&ndash;Trumbore).
+     * Like a {@link Triangle}, the edges and the vertices of the face do not count.
+     *
+     * @param face the number of the face
+     * @param ox   x of the ray head
+     * @param oy   y of the ray head
+     * @param oz   z of the ray head
+     * @param dx   x of the ray direction
+     * @param dy   y of the ray direction
+     * @param dz   z of the ray direction
+     * @param tMax the maximum distance
+     * @return the distance of the intersection, NaN if there is none
+     */
+    private double intersect(int face, double ox, double oy, double oz, double dx, double dy, double dz, double tMax) {
+        int a = indices[face * 3] * 3;
+        int b = indices[face * 3 + 1] * 3;
+        int c = indices[face * 3 + 2] * 3;
+        double ax = positions[a];
+        double ay = positions[a + 1];
+        double az = positions[a + 2];
+        double e1x = positions[b] - ax;
+        double e1y = positions[b + 1] - ay;
+        double e1z = positions[b + 2] - az;
+        double e2x = positions[c] - ax;
+        double e2y = positions[c + 1] - ay;
+        double e2z = positions[c + 2] - az;
+
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        // relative to the edges, so small faces are not taken as parallel to every ray
+        if (det * det <= PARALLEL * (e1x * e1x + e1y * e1y + e1z * e1z) * (e2x * e2x + e2y * e2y + e2z * e2z))
+            return Double.NaN;
+        double invDet = 1 / det;
+
+        double sx = ox - ax;
+        double sy = oy - ay;
+        double sz = oz - az;
+        double u = alignZero((sx * px + sy * py + sz * pz) * invDet);
+        if (u <= 0 || u >= 1) return Double.NaN;
+
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double w = alignZero((dx * qx + dy * qy + dz * qz) * invDet);
+        if (w <= 0 || alignZero(u + w - 1) >= 0) return Double.NaN;
+
+        double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * invDet);
+        return t > 0 && alignZero(t - tMax) <= 0 ? t : Double.NaN;
+    }
+
+    @Override
+    protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDis) {
+        Point p0 = ray.getP0();
+        Vector dir = ray.getDir();
+        double ox = p0.getX();
+        double oy = p0.getY();
+        double oz = p0.getZ();
+        double dx = dir.getX();
+        double dy = dir.getY();
+        double dz = dir.getZ();
+        double ix = 1 / dx;
+        double iy = 1 / dy;
+        double iz = 1 / dz;
+
+        List<GeoPoint> result = null;
+        int[] stack = new int[depth];
+        int top = 0;
+        int node = 0;
+        int boxTests = 0;
+        int faceTests = 0;
+        while (true) {
+            ++boxTests;
+            if (nodes.enter(node, ox, oy, oz, ix, iy, iz, maxDis) != Double.POSITIVE_INFINITY) {
+                if (!nodes.isLeaf(node)) {
+                    stack[top++] = nodes.offsets[node];
+                    ++node;
+                    continue;
+                }
+                faceTests += nodes.counts[node];
+                int end = nodes.offsets[node] + nodes.counts[node];
+                for (int i = nodes.offsets[node]; i < end; ++i) {
+                    int face = nodes.order[i];
+                    double t = intersect(face, ox, oy, oz, dx, dy, dz, maxDis);
+                    if (!Double.isNaN(t)) {
+                        if (result == null)
+                            result = new LinkedList<>();
+                        result.add(new GeoPoint(new Face(face), ray.getPoint(t), t));
+                    }
+                }
+            }
+            if (top == 0) {
+                RayStatistics.countTests(boxTests, faceTests);
+                return result;
+            }
+            node = stack[--top];
+        }
+    }
+
+    @Override
+    protected GeoPoint findClosestIntersectionHelper(Ray ray, double tMax) {
+        Point p0 = ray.getP0();
+        Vector dir = ray.getDir();
+        double ox = p0.getX();
+        double oy = p0.getY();
+        double oz = p0.getZ();
+        double dx = dir.getX();
+        double dy = dir.getY();
+        double dz = dir.getZ();
+        double ix = 1 / dx;
+        double iy = 1 / dy;
+        double iz = 1 / dz;
+        if (nodes.enter(0, ox, oy, oz, ix, iy, iz, tMax) == Double.POSITIVE_INFINITY) {
+            RayStatistics.count(RayStatistics.Counter.BOX_TESTS);
+            return null;
+        }
+
+        int closest = -1;
+        int boxTests = 1;
+        int faceTests = 0;
+        // the farther children that are left for later, with the distance where the ray enters them
+        int[] stack = new int[depth];
+        double[] entries = new double[depth];
+        int top = 0;
+        int node = 0;
+        while (true) {
+            if (nodes.isLeaf(node)) {
+                faceTests += nodes.counts[node];
+                int end = nodes.offsets[node] + nodes.counts[node];
+                for (int i = nodes.offsets[node]; i < end; ++i) {
+                    int face = nodes.order[i];
+                    double t = intersect(face, ox, oy, oz, dx, dy, dz, tMax);
+                    if (!Double.isNaN(t)) {
+                        closest = face;
+                        tMax = t;
+                    }
+                }
+            } else {
+                int left = node + 1;
+                int right = nodes.offsets[node];
+                boxTests += 2;
+                double tLeft = nodes.enter(left, ox, oy, oz, ix, iy, iz, tMax);
+                double tRight = nodes.enter(right, ox, oy, oz, ix, iy, iz, tMax);
+                if (tLeft != Double.POSITIVE_INFINITY || tRight != Double.POSITIVE_INFINITY) {
+                    // visit the nearer child first and keep the farther one for later
+                    if (tLeft <= tRight) {
+                        node = left;
+                        if (tRight != Double.POSITIVE_INFINITY) {
+                            stack[top] = right;
+                            entries[top++] = tRight;
+                        }
+                    } else {
+                        node = right;
+                        if (tLeft != Double.POSITIVE_INFINITY) {
+                            stack[top] = left;
+                            entries[top++] = tLeft;
+                        }
+                    }
+                    continue;
+                }
+            }
+            // skip the nodes that start beyond the closest intersection found meanwhile
+            while (top > 0 && entries[top - 1] > tMax)
+                --top;
+            if (top == 0) {
+                RayStatistics.countTests(boxTests, faceTests);
+                return closest < 0 ? null : new GeoPoint(new Face(closest), ray.getPoint(tMax), tMax);
+            }
+            node = stack[--top];
+        }
+    }
+
+    /**
+     * class Face is a face of the mesh as it is reported in an intersection. It
+     * holds only the face number and takes everything else from the mesh.
+     *
+     * @author hodaya
+     */
+    public final class Face extends Geometry {
+        /**
+         * the number of the face in the mesh
+         */
+        private final int index;
+
+        /**
+         * constructor of a face by its number
+         *
+         * @param index the number of the face
+         */
+        private Face(int index) {
+            this.index = index;
+        }
+
+        /**
+         * @return the number of the face in the mesh
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the mesh of the face
+         */
+        public TriangleMesh getMesh() {
+            return TriangleMesh.this;
+        }
+
+        @Override
+        public Vector getNormal(Point p) {
+            return TriangleMesh.this.getNormal(index);
+        }
+
+        @Override
+        public Material getMaterial() {
+            return TriangleMesh.this.getMaterial();
+        }
+
+        @Override
+        public Color getEmission() {
+            return TriangleMesh.this.getEmission();
+        }
+
+        @Override
+        protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDis) {
+            Point p0 = ray.getP0();
+            Vector dir = ray.getDir();
+            double t = intersect(index, p0.getX(), p0.getY(), p0.getZ(), dir.getX(), dir.getY(), dir.getZ(), maxDis);
+            return Double.isNaN(t) ? null : List.of(new GeoPoint(this, ray.getPoint(t), t));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            return obj instanceof Face other && other.getMesh() == getMesh() && other.index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(getMesh()) * 31 + index;
+        }
+    }
+}
@@ -86,6 +86,51 @@ public class PointLight extends Light implements LightSource {
         return this;
     }
 
+    /**
+     * getter for the position of the light
+     *
+     * @return the position
+     */
+    public Point getPosition() {
+        return position;
+    }
+
+    /**
+     * getter for the radius of the light
+     *
+     * @return the radius
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * getter for the constant attenuation factor
+     *
+     * @return the constant attenuation
+     */
+    public double getKc() {
+        return kC;
+    }
+
+    /**
+     * getter for the linear attenuation factor
+     *
+     * @return the linear attenuation
+     */
+    public double getKl() {
+        return kL;
+    }
+
+    /**
+     * getter for the quadratic attenuation factor
+     *
+     * @return the quadratic attenuation
+     */
+    public double getKq() {
+        return kQ;
+    }
+
     @Override
     public Color getIntensity(Point p) {
         // IL / (kc + kl *distance + kq * distanceSquared)
@@ -27,6 +27,15 @@ public class SpotLight extends PointLight {
         this.direction = direction.normalize();
     }
 
+    /**
+     * getter for the direction of the light
+     *
+     * @return the direction
+     */
+    public Vector getDirection() {
+        return direction;
+    }
+
     @Override
     public Color getIntensity(Point p) {
         double attenuation = getL(p).dotProduct(direction);
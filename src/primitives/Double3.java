@@ -37,6 +37,24 @@ public class Double3 {
         this.d3 = value;
     }
 
+    /** Getter for the first number value
+     * @return the first number value */
+    public double getD1() {
+        return d1;
+    }
+
+    /** Getter for the second number value
+     * @return the second number value */
+    public double getD2() {
+        return d2;
+    }
+
+    /** Getter for the third number value
+     * @return the third number value */
+    public double getD3() {
+        return d3;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -76,6 +76,30 @@ public class Point {
         return new Point(xyz.add(v.xyz));
     }
 
+    /**
+     * Returns a new point that is the result of adding the specified vector scaled by a number
+     * to this point, without creating the scaled vector.
+     *
+     * @param v the vector to add to this point
+     * @param t the scale factor of the vector
+     * @return a new point that is the result of adding v * t to this point
+     */
+    public Point add(Vector v, double t) {
+        return new Point(xyz.d1 + v.xyz.d1 * t, xyz.d2 + v.xyz.d2 * t, xyz.d3 + v.xyz.d3 * t);
+    }
+
+    /**
+     * Returns the dot product of the difference between this point and the specified point with a vector,
+     * without creating the difference vector (it is allowed to be a zero vector).
+     *
+     * @param p the point to subtract from this point
+     * @param v the vector to multiply the difference by
+     * @return (this - p) * v
+     */
+    public double subtractDotProduct(Point p, Vector v) {
+        return (xyz.d1 - p.xyz.d1) * v.xyz.d1 + (xyz.d2 - p.xyz.d2) * v.xyz.d2 + (xyz.d3 - p.xyz.d3) * v.xyz.d3;
+    }
+
     /**
      * Returns the vector that represents the difference between this point and the specified point.
      *
@@ -41,8 +41,7 @@ public class Ray {
     public Ray(Point p, Vector v, Vector n) {
         //point + normal.scale(±DELTA)
         double nv = n.dotProduct(v);
-        Vector normalEpsilon = n.scale((nv > 0 ? DELTA : -DELTA));
-        p0 = p.add(normalEpsilon);
+        p0 = p.add(n, nv > 0 ? DELTA : -DELTA);
         dir = v;
     }
 
@@ -71,7 +70,7 @@ public class Ray {
      * @return the point
      */
     public Point getPoint(double t) {
-        return isZero(t) ? p0 : p0.add(dir.scale(t));
+        return isZero(t) ? p0 : p0.add(dir, t);
     }
 
     /**
@@ -95,7 +94,7 @@ public class Ray {
         GeoPoint result = null;
         double closest = Double.POSITIVE_INFINITY;
         for (GeoPoint p : geoPoints) {
-            double temp = p.point.distance(p0);
+            double temp = p.point.distanceSquared(p0);
             if (temp < closest) {
                 closest = temp;
                 result = p;
@@ -0,0 +1,172 @@
+package primitives;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class RayStatistics counts the work of the ray tracing - the rays by their kind,
+ * the box tests, the primitive tests and the hits.<br/>
+ * An object of the class is the accumulator of one rendering. The rendering
+ * binds it to each of its threads ({@link #bind(RayStatistics)}), and the tracer
+ * and the traversals count into the accumulator of the current thread, so
+ * renderings that run at the same time in the same process are counted apart.
+ * Work of a thread that has no accumulator is not counted.<br/>
+ * The counters are striped ({@link LongAdder}), so the rendering threads do not
+ * race or wait for each other, and the traversals count their tests in local
+ * variables and add them once for every search, so the counting is cheap enough
+ * to stay on all the time.
+ *
+ * @author hodaya
+ */
+public final class RayStatistics {
+    /**
+     * the things that are counted
+     */
+    public enum Counter {
+        /**
+         * rays from the camera
+         */
+        PRIMARY_RAYS("primary rays"),
+        /**
+         * rays from a point towards a light source
+         */
+        SHADOW_RAYS("shadow rays"),
+        /**
+         * reflected rays that were traced
+         */
+        REFLECTED_RAYS("reflected rays"),
+        /**
+         * refracted rays that were traced
+         */
+        REFRACTED_RAYS("refracted rays"),
+        /**
+         * tests of a ray against a box of a hierarchy or of a body
+         */
+        BOX_TESTS("box tests"),
+        /**
+         * tests of a ray against a single surface (a body or a face of a mesh)
+         */
+        PRIMITIVE_TESTS("primitive tests"),
+        /**
+         * traced rays (primary, reflected and refracted) that hit a surface
+         */
+        HITS("hits");
+
+        private final String title;
+
+        Counter(String title) {
+            this.title = title;
+        }
+    }
+
+    /**
+     * the accumulator that the current thread counts into, null for none
+     */
+    private static final ThreadLocal<RayStatistics> CURRENT = new ThreadLocal<>();
+
+    /**
+     * the counters, by the ordinal of their kind
+     */
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+
+    /**
+     * constructor of an accumulator with all the counters at zero
+     */
+    public RayStatistics() {
+        for (int i = 0; i < counters.length; ++i)
+            counters[i] = new LongAdder();
+    }
+
+    /**
+     * binds an accumulator to the current thread - the counting of the thread
+     * goes to it until another one is bound
+     *
+     * @param statistics the accumulator, null to stop counting
+     * @return the accumulator that was bound before, null if there was none
+     */
+    public static RayStatistics bind(RayStatistics statistics) {
+        RayStatistics previous = CURRENT.get();
+        if (statistics == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(statistics);
+        return previous;
+    }
+
+    /**
+     * counts one more in the accumulator of the current thread
+     *
+     * @param counter the counter
+     */
+    public static void count(Counter counter) {
+        RayStatistics statistics = CURRENT.get();
+        if (statistics != null)
+            statistics.add(counter, 1);
+    }
+
+    /**
+     * counts several more in the accumulator of the current thread
+     *
+     * @param counter the counter
+     * @param amount  the amount to add
+     */
+    public static void count(Counter counter, long amount) {
+        RayStatistics statistics = CURRENT.get();
+        if (statistics != null)
+            statistics.add(counter, amount);
+    }
+
+    /**
+     * counts the tests of a search through the geometries in the accumulator of
+     * the current thread
+     *
+     * @param boxTests       the amount of box tests
+     * @param primitiveTests the amount of primitive tests
+     */
+    public static void countTests(long boxTests, long primitiveTests) {
+        RayStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.add(Counter.BOX_TESTS, boxTests);
+            statistics.add(Counter.PRIMITIVE_TESTS, primitiveTests);
+        }
+    }
+
+    /**
+     * adds to a counter of this accumulator
+     *
+     * @param counter the counter
+     * @param amount  the amount to add
+     */
+    public void add(Counter counter, long amount) {
+        if (amount != 0)
+            counters[counter.ordinal()].add(amount);
+    }
+
+    /**
+     * getter for the value of a counter
+     *
+     * @param counter the counter
+     * @return the value of the counter
+     */
+    public long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * @return the amount of rays of all the kinds
+     */
+    public long rays() {
+        return get(Counter.PRIMARY_RAYS) + get(Counter.SHADOW_RAYS) + get(Counter.REFLECTED_RAYS)
+                + get(Counter.REFRACTED_RAYS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Rays: ");
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0)
+                sb.append(", ");
+            sb.append(get(counter)).append(' ').append(counter.title);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,225 @@
+package primitives;
+
+import static primitives.Util.isZero;
+
+/**
+ * An affine transformation of 3D space - a linear part (rotation, scaling,
+ * shearing) followed by a translation - together with its inverse.<br/>
+ * Transformations are built from the basic ones and chained with
+ * {@link #then(Transform)}. Points are moved by the whole transformation, vectors
+ * by its linear part only, and normals by the inverse transpose of the linear part
+ * so they stay perpendicular to the transformed surfaces.
+ *
+ * @author hodaya
+ */
+public final class Transform {
+    /**
+     * the transformation that leaves everything in place
+     */
+    public static final Transform IDENTITY = new Transform(new double[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0});
+
+    /**
+     * the matrix - 3 rows of 4 values, the last column is the translation
+     */
+    private final double[] m;
+    /**
+     * the matrix of the inverse transformation
+     */
+    private final double[] inv;
+
+    /**
+     * constructor of a transformation by its matrix
+     *
+     * @param m 3 rows of 4 values, the last column is the translation
+     * @throws IllegalArgumentException if the transformation cannot be inverted
+     */
+    private Transform(double[] m) {
+        this.m = m;
+        // the inverse of the linear part by the adjugate, and the inverse translation
+        double c00 = m[5] * m[10] - m[6] * m[9];
+        double c01 = m[6] * m[8] - m[4] * m[10];
+        double c02 = m[4] * m[9] - m[5] * m[8];
+        double det = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (isZero(det))
+            throw new IllegalArgumentException("The transformation cannot be inverted");
+        double[] inv = new double[12];
+        inv[0] = c00 / det;
+        inv[1] = (m[2] * m[9] - m[1] * m[10]) / det;
+        inv[2] = (m[1] * m[6] - m[2] * m[5]) / det;
+        inv[4] = c01 / det;
+        inv[5] = (m[0] * m[10] - m[2] * m[8]) / det;
+        inv[6] = (m[2] * m[4] - m[0] * m[6]) / det;
+        inv[8] = c02 / det;
+        inv[9] = (m[1] * m[8] - m[0] * m[9]) / det;
+        inv[10] = (m[0] * m[5] - m[1] * m[4]) / det;
+        for (int row = 0; row < 3; ++row)
+            inv[row * 4 + 3] = -(inv[row * 4] * m[3] + inv[row * 4 + 1] * m[7] + inv[row * 4 + 2] * m[11]);
+        this.inv = inv;
+    }
+
+    /**
+     * creates a translation
+     *
+     * @param v the vector that everything moves by
+     * @return the translation
+     */
+    public static Transform translation(Vector v) {
+        return new Transform(new double[]{1, 0, 0, v.getX(), 0, 1, 0, v.getY(), 0, 0, 1, v.getZ()});
+    }
+
+    /**
+     * creates a uniform scaling around the origin
+     *
+     * @param factor the scale factor
+     * @return the scaling
+     * @throws IllegalArgumentException if the factor is zero
+     */
+    public static Transform scaling(double factor) {
+        return scaling(factor, factor, factor);
+    }
+
+    /**
+     * creates a scaling around the origin along the axes
+     *
+     * @param x the scale factor along the x axis
+     * @param y the scale factor along the y axis
+     * @param z the scale factor along the z axis
+     * @return the scaling
+     * @throws IllegalArgumentException if a factor is zero
+     */
+    public static Transform scaling(double x, double y, double z) {
+        return new Transform(new double[]{x, 0, 0, 0, 0, y, 0, 0, 0, 0, z, 0});
+    }
+
+    /**
+     * creates a rotation around an axis through the origin (counterclockwise when
+     * looking against the axis, as {@link Vector#vectorRotate(Vector, double)})
+     *
+     * @param axis     the axis of the rotation
+     * @param thetaRad the angle of the rotation in radians
+     * @return the rotation
+     */
+    public static Transform rotation(Vector axis, double thetaRad) {
+        Vector n = axis.normalize();
+        double u = n.getX();
+        double v = n.getY();
+        double w = n.getZ();
+        double cos = Math.cos(thetaRad);
+        double sin = Math.sin(thetaRad);
+        double k = 1 - cos;
+        return new Transform(new double[]{
+                u * u * k + cos, u * v * k - w * sin, u * w * k + v * sin, 0,
+                v * u * k + w * sin, v * v * k + cos, v * w * k - u * sin, 0,
+                w * u * k - v * sin, w * v * k + u * sin, w * w * k + cos, 0});
+    }
+
+    /**
+     * chains another transformation after this one
+     *
+     * @param next the transformation that is applied after this one
+     * @return the transformation that applies this one and then the next one
+     */
+    public Transform then(Transform next) {
+        double[] a = next.m;
+        double[] r = new double[12];
+        for (int row = 0; row < 3; ++row) {
+            for (int col = 0; col < 4; ++col)
+                r[row * 4 + col] = a[row * 4] * m[col] + a[row * 4 + 1] * m[4 + col] + a[row * 4 + 2] * m[8 + col];
+            r[row * 4 + 3] += a[row * 4 + 3];
+        }
+        return new Transform(r);
+    }
+
+    /**
+     * creates the inverse transformation
+     *
+     * @return the transformation that undoes this one
+     */
+    public Transform inverse() {
+        return new Transform(inv.clone());
+    }
+
+    /**
+     * moves a point by the transformation
+     *
+     * @param p the point
+     * @return the transformed point
+     */
+    public Point transformPoint(Point p) {
+        return point(m, p);
+    }
+
+    /**
+     * moves a point by the inverse transformation
+     *
+     * @param p the point
+     * @return the point that the transformation moves to the given one
+     */
+    public Point inversePoint(Point p) {
+        return point(inv, p);
+    }
+
+    /**
+     * turns a vector by the linear part of the transformation. The length of the
+     * vector changes by the scaling of the transformation.
+     *
+     * @param v the vector
+     * @return the transformed vector
+     */
+    public Vector transformVector(Vector v) {
+        return vector(m, v);
+    }
+
+    /**
+     * turns a vector by the linear part of the inverse transformation
+     *
+     * @param v the vector
+     * @return the vector that the transformation turns to the given one
+     */
+    public Vector inverseVector(Vector v) {
+        return vector(inv, v);
+    }
+
+    /**
+     * turns a normal of a surface into the normal of the transformed surface (by
+     * the inverse transpose of the linear part)
+     *
+     * @param n the normal of the surface
+     * @return the normalized normal of the transformed surface
+     */
+    public Vector transformNormal(Vector n) {
+        double x = n.getX();
+        double y = n.getY();
+        double z = n.getZ();
+        return new Vector(inv[0] * x + inv[4] * y + inv[8] * z,
+                inv[1] * x + inv[5] * y + inv[9] * z,
+                inv[2] * x + inv[6] * y + inv[10] * z).normalize();
+    }
+
+    private static Point point(double[] m, Point p) {
+        double x = p.getX();
+        double y = p.getY();
+        double z = p.getZ();
+        return new Point(m[0] * x + m[1] * y + m[2] * z + m[3],
+                m[4] * x + m[5] * y + m[6] * z + m[7],
+                m[8] * x + m[9] * y + m[10] * z + m[11]);
+    }
+
+    private static Vector vector(double[] m, Vector v) {
+        double x = v.getX();
+        double y = v.getY();
+        double z = v.getZ();
+        return new Vector(m[0] * x + m[1] * y + m[2] * z,
+                m[4] * x + m[5] * y + m[6] * z,
+                m[8] * x + m[9] * y + m[10] * z);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Transform[%s %s %s]", row(0), row(1), row(2));
+    }
+
+    private String row(int row) {
+        return String.format("(%g, %g, %g, %g)", m[row * 4], m[row * 4 + 1], m[row * 4 + 2], m[row * 4 + 3]);
+    }
+}
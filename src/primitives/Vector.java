@@ -1,5 +1,7 @@
 package primitives;
 
+import static primitives.Util.isZero;
+
 /**
  * A class representing a mathematical vector in 3D space.
  */
@@ -39,7 +41,7 @@ public class Vector extends Point {
      */
     Vector(Double3 d) {
         super(d);
-        if (d.equals(d.ZERO) == true)//zero vector
+        if (isZero(d.d1) && isZero(d.d2) && isZero(d.d3))//zero vector
         {
             throw new IllegalArgumentException("ERROR:Vector cannot be zero");
         }
@@ -56,6 +58,19 @@ public class Vector extends Point {
         return new Vector(newXyz);
     }
 
+    /**
+     * Subtracts another vector scaled by a number from this vector, without
+     * creating the scaled vector.
+     *
+     * @param v The vector to subtract.
+     * @param t The scale factor of the subtracted vector.
+     * @return this - v * t as a new vector.
+     * @throws IllegalArgumentException if the resulting vector has zero length.
+     */
+    public Vector subtract(Vector v, double t) {
+        return new Vector(xyz.d1 - v.xyz.d1 * t, xyz.d2 - v.xyz.d2 * t, xyz.d3 - v.xyz.d3 * t);
+    }
+
     /**
      * Checks if this vector is equal to another object.
      *
@@ -0,0 +1,70 @@
+package renderer;
+
+import primitives.Color;
+
+import java.util.stream.IntStream;
+
+/**
+ * Class ArrayFrameBuffer keeps the colors of the pixels in the heap, in one array
+ * of doubles - red, green and blue of each pixel, row by row.
+ *
+ * @author hodaya
+ */
+final class ArrayFrameBuffer implements FrameBuffer {
+    /**
+     * the largest amount of values in an array
+     */
+    private static final long MAX_VALUES = Integer.MAX_VALUE - 8;
+
+    private final int nX;
+    private final int nY;
+    /**
+     * the colors of the pixels - red, green and blue of each pixel, row by row
+     */
+    private final double[] pixels;
+
+    /**
+     * constructor of a frame buffer of black pixels
+     *
+     * @param nX amount of pixels by width
+     * @param nY amount of pixels by height
+     * @throws IllegalArgumentException if the pixels do not fit in an array
+     */
+    ArrayFrameBuffer(int nX, int nY) {
+        if ((long) nX * nY * 3 > MAX_VALUES)
+            throw new IllegalArgumentException("The image is too large to keep in the memory - keep it in a file");
+        this.nX = nX;
+        this.nY = nY;
+        pixels = new double[nX * nY * 3];
+    }
+
+    @Override
+    public void write(int x, int y, Color color) {
+        int i = (y * nX + x) * 3;
+        pixels[i] = color.getR();
+        pixels[i + 1] = color.getG();
+        pixels[i + 2] = color.getB();
+    }
+
+    @Override
+    public Color read(int x, int y) {
+        int i = (y * nX + x) * 3;
+        return new Color(pixels[i], pixels[i + 1], pixels[i + 2]);
+    }
+
+    @Override
+    public void readRow(int y, ToneMapping toneMapping, int[] rgb, int offset) {
+        for (int x = 0, i = y * nX * 3; x < nX; ++x, i += 3)
+            rgb[offset + x] = toneMapping.toRGB(pixels[i], pixels[i + 1], pixels[i + 2]);
+    }
+
+    /**
+     * maps all the pixels into a copy, a row in each parallel task
+     */
+    @Override
+    public PngEncoder.RowReader rows(ToneMapping toneMapping) {
+        int[] rgb = new int[nX * nY];
+        IntStream.range(0, nY).parallel().forEach(y -> readRow(y, toneMapping, rgb, y * nX));
+        return (y, row) -> System.arraycopy(rgb, y * nX, row, 0, nX);
+    }
+}
@@ -3,10 +3,18 @@ package renderer;
 import primitives.*;
 import static primitives.Util.*;
 
-import renderer.PixelManager.Pixel;
+import renderer.PixelManager.Tile;
 
-import java.util.MissingResourceException;
+import java.nio.file.Path;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
 
 import geometries.Plane;
 
@@ -35,10 +43,38 @@ public class Camera {
     private double apertureSize;
 
     private int numOfPoints;
+    private int pointsInRow;
+    /**
+     * the largest difference in a color component between the center of a part of
+     * the aperture and the interpolation of its corners that still counts as a smooth change
+     */
+    private double dofTolerance = 1;
+
+    /* Adaptive anti-aliasing, declarations */
+    private int antiAliasingDepth = 0;
+    private double antiAliasingThreshold = 4;
+
+    /**
+     * the longest time in milliseconds to wait for the threads of a rendering
+     * that stopped to finish their current rows
+     */
+    private static final long STOP_TIMEOUT = 10_000;
 
     private int threadsCount = 0;
     private double printInterval = 0;
-    private PixelManager pixelManager;
+    private int tileSize = PixelManager.TILE_SIZE;
+    private RenderBackend backend = RenderBackend.THREADS;
+    /**
+     * set when the rendering in progress (or the next one) should stop - it is
+     * replaced by a new flag when a rendering ends
+     */
+    private volatile AtomicBoolean cancelled = new AtomicBoolean();
+    private RayStatistics statistics = null;
+
+    /* Checkpoints, declarations */
+    private Path checkpointFile = null;
+    private double checkpointInterval = 60;
+    private boolean resume = false;
 
     /**
      * return the camera point (position)
@@ -157,6 +193,15 @@ public class Camera {
         return this;
     }
 
+    /**
+     * get the image writer of the camera
+     *
+     * @return the image writer, null if it was not set
+     */
+    public ImageWriter getImageWriter() {
+        return imgWriter;
+    }
+
     /**
      * set the ray tracer base from the camera
      *
@@ -175,6 +220,89 @@ public class Camera {
         return this;
     }
 
+    /**
+     * set the way the tiles of the image are spread between threads
+     *
+     * @param backend the rendering backend
+     * @return the camera
+     */
+    public Camera setRenderBackend(RenderBackend backend) {
+        if (backend == null)
+            throw new IllegalArgumentException("rendering backend must not be null");
+        this.backend = backend;
+        return this;
+    }
+
+    /**
+     * set the size of the square tiles of pixels that the threads take - small
+     * tiles balance the work better, large tiles share more work within a tile
+     * (the corners of the anti-aliasing)
+     *
+     * @param tileSize the size of a tile side in pixels
+     * @return the camera
+     */
+    public Camera setTileSize(int tileSize) {
+        if (tileSize <= 0)
+            throw new IllegalArgumentException("tile size must be positive");
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    /**
+     * get the statistics of the last rendering - the rays by their kind, the box
+     * and primitive tests and the hits. Each rendering counts its own work, apart
+     * from other renderings that run at the same time in the process.
+     *
+     * @return the statistics, null before the first rendering
+     */
+    public RayStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * stop the rendering in progress - the threads finish their current tiles
+     * and {@link #renderImage()} throws a {@link CancellationException}. A cancel
+     * that comes before a rendering starts stops that rendering.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * keep the finished tiles in a checkpoint file while rendering, so a rendering
+     * that stops can be resumed ({@link #setResume(boolean)}). The tiles that
+     * finished are written and synced once in an interval, and when the rendering
+     * ends. The file may be deleted after the image is written.
+     *
+     * @param file     the checkpoint file, null for no checkpoints
+     * @param interval the time in seconds between writes of the file
+     * @return the camera
+     */
+    public Camera setCheckpoint(Path file, double interval) {
+        if (interval < 0)
+            throw new IllegalArgumentException("checkpoint interval must not be negative");
+        checkpointFile = file;
+        checkpointInterval = interval;
+        return this;
+    }
+
+    /**
+     * set whether a rendering resumes from its checkpoint file - the tiles in
+     * the file are read into the image and are not rendered again. The file must
+     * be of the same scene and camera - a file of another image size, camera
+     * position or direction, view plane, sampling settings, ray tracer or scene
+     * name is rejected. Changes to the bodies and lights of a scene of the same
+     * name are not detected. A rendering without a file starts from the
+     * beginning, so the same rendering can be run again until it finishes.
+     *
+     * @param resume true to resume, false to replace the checkpoint file
+     * @return the camera
+     */
+    public Camera setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
     public Camera setDebugPrint(double interval) {
         if (interval < 0)
             throw new IllegalArgumentException("print interval must not be negative");
@@ -192,18 +320,32 @@ public class Camera {
      * @return the ray we created
      */
     public Ray constructRay(int nX, int nY, int j, int i) {
+        return constructRayThrough(nX, nY, j, i);
+    }
+
+    /**
+     * create a ray through a point of the view plane, given in pixels - the
+     * center of pixel [i,j] is (j, i) and its corners are half a pixel away
+     *
+     * @param nX number of columns
+     * @param nY number of rows
+     * @param j  the column coordinate of the point
+     * @param i  the row coordinate of the point
+     * @return the ray we created
+     */
+    private Ray constructRayThrough(int nX, int nY, double j, double i) {
         // image center
-        Point pc = cameraPoint.add(vTo.scale(dis));
+        Point pc = cameraPoint.add(vTo, dis);
         // ratio (pixel&height)
         double rY = height / nY, rX = width / nX;
-        // pixel[i,j] center
+        // point [i,j] on the view plane
         double yI = -rY * (i - (nY - 1.0) / 2.0);
         double xJ = rX * (j - (nX - 1.0) / 2.0);
         Point pIJ = pc;
         if (!isZero(xJ))
-            pIJ = pIJ.add(vRight.scale(xJ));
+            pIJ = pIJ.add(vRight, xJ);
         if (!isZero(yI))
-            pIJ = pIJ.add(vUp.scale(yI));
+            pIJ = pIJ.add(vUp, yI);
 
         Vector vIJ = pIJ.subtract(cameraPoint);
         return new Ray(cameraPoint, vIJ);
@@ -217,49 +359,529 @@ public class Camera {
      * @param row row number in View Plane
      */
     private void castRay(int col, int row, int nx, int ny) {
-        Ray ray = constructRay(nx, ny, col, row);
-        imgWriter.writePixel(col, row, dofFlag ? averagedBeamColor(ray) : rayTracerBase.traceRay(ray));
-        pixelManager.pixelDone();
+        imgWriter.writePixel(col, row, sample(nx, ny, col, row));
+    }
+
+    /**
+     * Calculate the color of a point of the view plane, through the aperture if
+     * there is depth of field
+     *
+     * @param nx number of columns
+     * @param ny number of rows
+     * @param x  the column coordinate of the point (in pixels)
+     * @param y  the row coordinate of the point (in pixels)
+     * @return the color
+     */
+    private Color sample(int nx, int ny, double x, double y) {
+        Ray ray = constructRayThrough(nx, ny, x, y);
+        return dofFlag ? averagedBeamColor(ray) : rayTracerBase.traceRay(ray);
+    }
+
+    /**
+     * Calculate the colors of all the pixels in a tile (a cancelled rendering
+     * stops after the current row). A tile that was read from the checkpoint file
+     * is skipped, and a tile that was finished is added to it.
+     *
+     * @param tile      the tile of pixels
+     * @param rendering the rendering
+     */
+    private void renderTile(Tile tile, Rendering rendering) {
+        Checkpoint checkpoint = rendering.checkpoint();
+        if (checkpoint == null || !checkpoint.isRestored(tile)) {
+            // the work of the tile is counted in the statistics of its own rendering
+            RayStatistics previous = RayStatistics.bind(rendering.statistics());
+            try {
+                if (antiAliasingDepth == 0)
+                    for (int row = tile.row(); row < tile.row() + tile.height() && !rendering.isCancelled(); ++row)
+                        for (int col = tile.col(); col < tile.col() + tile.width(); ++col)
+                            castRay(col, row, rendering.nx(), rendering.ny());
+                else
+                    renderTileAntiAliased(tile, rendering);
+            } finally {
+                RayStatistics.bind(previous);
+            }
+            // the rows of a tile are all rendered unless the rendering was cancelled
+            if (checkpoint != null && !rendering.isCancelled())
+                checkpoint.tileDone(tile);
+        }
+        rendering.pixelManager().tileDone(tile);
+    }
+
+    /**
+     * Calculate the colors of the pixels of a tile with adaptive anti-aliasing.
+     * The corners of the pixels are traced once, so neighboring pixels share
+     * them, and each pixel is divided further only where its corners differ (a
+     * cancelled rendering stops after the current row).<br/>
+     * The corners on the sides of the tile are shared with the neighboring tiles
+     * too - a finished tile leaves its sides in the rendering, and a tile that
+     * starts after its neighbor takes the side instead of tracing it. Tiles that
+     * are rendered at the same time trace their common side both.
+     *
+     * @param tile      the tile of pixels
+     * @param rendering the rendering
+     */
+    private void renderTileAntiAliased(Tile tile, Rendering rendering) {
+        int nx = rendering.nx();
+        int ny = rendering.ny();
+        int col0 = tile.col();
+        int row0 = tile.row();
+        int width = tile.width();
+        int height = tile.height();
+        // the sides that the neighboring tiles left, null where they were not rendered yet
+        Color[] topSide = rendering.edges().remove(new Edge(false, row0, col0));
+        Color[] bottomSide = rendering.edges().remove(new Edge(false, row0 + height, col0));
+        Color[] leftSide = rendering.edges().remove(new Edge(true, col0, row0));
+        Color[] rightSide = rendering.edges().remove(new Edge(true, col0 + width, row0));
+        Color[] left = leftSide != null ? leftSide : new Color[height + 1];
+        Color[] right = rightSide != null ? rightSide : new Color[height + 1];
+
+        Color[] first = topSide != null ? topSide : cornerRow(nx, ny, tile, 0, leftSide, rightSide);
+        left[0] = first[0];
+        right[0] = first[width];
+        Color[] top = first;
+        int row = row0;
+        for (; row < row0 + height && !rendering.isCancelled(); ++row) {
+            Color[] bottom = row + 1 == row0 + height && bottomSide != null ? bottomSide
+                    : cornerRow(nx, ny, tile, row + 1 - row0, leftSide, rightSide);
+            left[row + 1 - row0] = bottom[0];
+            right[row + 1 - row0] = bottom[width];
+            for (int k = 0; k < width; ++k)
+                imgWriter.writePixel(col0 + k, row, areaColor(nx, ny, col0 + k - 0.5, row - 0.5, 1,
+                        top[k], top[k + 1], bottom[k], bottom[k + 1], antiAliasingDepth));
+            top = bottom;
+        }
+        if (row < row0 + height)
+            return;
+
+        // leave the traced sides for the neighbors that were not rendered yet
+        if (topSide == null && row0 > 0)
+            rendering.edges().put(new Edge(false, row0, col0), first);
+        if (bottomSide == null && row0 + height < ny)
+            rendering.edges().put(new Edge(false, row0 + height, col0), top);
+        if (leftSide == null && col0 > 0)
+            rendering.edges().put(new Edge(true, col0, row0), left);
+        if (rightSide == null && col0 + width < nx)
+            rendering.edges().put(new Edge(true, col0 + width, row0), right);
+    }
+
+    /**
+     * Calculate the colors of a row of pixel corners of a tile, with the corners
+     * on its left and right sides taken from the sides of the neighbors if they
+     * are known
+     *
+     * @param nx        number of columns
+     * @param ny        number of rows
+     * @param tile      the tile of pixels
+     * @param r         the row of corners from the top of the tile
+     * @param leftSide  the corners of the left side, null if they are not known
+     * @param rightSide the corners of the right side, null if they are not known
+     * @return the colors of the corners, from left to right
+     */
+    private Color[] cornerRow(int nx, int ny, Tile tile, int r, Color[] leftSide, Color[] rightSide) {
+        int width = tile.width();
+        Color[] corners = new Color[width + 1];
+        for (int k = 0; k <= width; ++k)
+            corners[k] = k == 0 && leftSide != null ? leftSide[r]
+                    : k == width && rightSide != null ? rightSide[r]
+                    : sample(nx, ny, tile.col() + k - 0.5, tile.row() + r - 0.5);
+        return corners;
+    }
+
+    /**
+     * a side of a tile, where the pixel corners are shared with the neighboring
+     * tile
+     *
+     * @param vertical whether the side is vertical (left or right)
+     * @param line     the column of a vertical side, the row of a horizontal one
+     *                 (the first pixel after it)
+     * @param start    the first row of a vertical side, the first column of a
+     *                 horizontal one
+     */
+    private record Edge(boolean vertical, int line, int start) {
     }
 
     /**
-     * build for each pixel a ray and get it's color
+     * Calculate the color of a square of the view plane by its corners - if the
+     * colors of the corners agree within the threshold their average is the
+     * color, otherwise the square is divided into quarters. The middles of the
+     * sides and the center are traced once and shared by the quarters.
+     *
+     * @param nx     number of columns
+     * @param ny     number of rows
+     * @param x      the column coordinate of the top left corner (in pixels)
+     * @param y      the row coordinate of the top left corner (in pixels)
+     * @param size   the side of the square (in pixels)
+     * @param c00    the color of the top left corner
+     * @param c01    the color of the top right corner
+     * @param c10    the color of the bottom left corner
+     * @param c11    the color of the bottom right corner
+     * @param levels the amount of levels of squares left, including this one
+     * @return the color of the square
+     */
+    private Color areaColor(int nx, int ny, double x, double y, double size,
+                            Color c00, Color c01, Color c10, Color c11, int levels) {
+        if (levels == 1 || agree(antiAliasingThreshold, c00, c01, c10, c11))
+            return c00.add(c01, c10, c11).reduce(4);
+        double half = size / 2;
+        Color top = sample(nx, ny, x + half, y);
+        Color left = sample(nx, ny, x, y + half);
+        Color center = sample(nx, ny, x + half, y + half);
+        Color right = sample(nx, ny, x + size, y + half);
+        Color bottom = sample(nx, ny, x + half, y + size);
+        return areaColor(nx, ny, x, y, half, c00, top, left, center, levels - 1)
+                .add(areaColor(nx, ny, x + half, y, half, top, c01, center, right, levels - 1),
+                        areaColor(nx, ny, x, y + half, half, left, center, c10, bottom, levels - 1),
+                        areaColor(nx, ny, x + half, y + half, half, center, right, bottom, c11, levels - 1))
+                .reduce(4);
+    }
+
+    /**
+     * checks whether colors agree within a threshold
+     *
+     * @param threshold the largest difference in a color component that still
+     *                  counts as the same color
+     * @param colors    the colors
+     * @return true if no color component differs by more than the threshold
+     */
+    private static boolean agree(double threshold, Color... colors) {
+        double minR = Double.POSITIVE_INFINITY, minG = Double.POSITIVE_INFINITY, minB = Double.POSITIVE_INFINITY;
+        double maxR = Double.NEGATIVE_INFINITY, maxG = Double.NEGATIVE_INFINITY, maxB = Double.NEGATIVE_INFINITY;
+        for (Color color : colors) {
+            minR = Math.min(minR, color.getR());
+            maxR = Math.max(maxR, color.getR());
+            minG = Math.min(minG, color.getG());
+            maxG = Math.max(maxG, color.getG());
+            minB = Math.min(minB, color.getB());
+            maxB = Math.max(maxB, color.getB());
+        }
+        return maxR - minR <= threshold && maxG - minG <= threshold && maxB - minB <= threshold;
+    }
+
+    /**
+     * Calculate the colors of the tiles in a loop until there are no more tiles
+     * or the rendering stops
+     *
+     * @param rendering the rendering
+     */
+    private void renderTiles(Rendering rendering) {
+        Tile tile;
+        while (!rendering.isCancelled() && !Thread.currentThread().isInterrupted()
+                && (tile = rendering.pixelManager().nextTile()) != null)
+            renderTile(tile, rendering);
+    }
+
+    /**
+     * build for each pixel a ray and get it's color.<br/>
+     * The camera can render many images one after another. The work of each
+     * rendering is counted in {@link #getStatistics()} (and printed with the
+     * debug print). The rendering stops
+     * with a {@link CancellationException} if it is cancelled or if the calling
+     * thread is interrupted (the interrupt status is kept). The tiles that were
+     * finished are kept in the checkpoint file, if there is one.
      *
      * @return this camera
      */
     public Camera renderImage() {
-        if (cameraPoint == null || vRight == null || vUp == null || vTo == null || imgWriter == null
-                || rayTracerBase == null)
-            throw new MissingResourceException("missing filed in camera", "", "");
-        int nx = imgWriter.getNx();
-        int ny = imgWriter.getNy();
-        pixelManager = new PixelManager(ny, nx, printInterval);
-        if (threadsCount == 0)
-            for (int x = 0; x < nx; x++)
-                for (int y = 0; y < ny; y++)
-                    castRay(x, y, nx, ny);
-        else {
-            var threads = new LinkedList<Thread>(); // list of threads
-            while (threadsCount-- > 0) // add appropriate number of threads
-                threads.add(new Thread(() -> { // add a thread with its code
-                    Pixel pixel; // current pixel(row,col)
-                    // allocate pixel(row,col) in loop until there are no more pixels
-                    while ((pixel = pixelManager.nextPixel()) != null)
-                        // cast ray through pixel (and color it – inside castRay)
-                        castRay(pixel.col(), pixel.row(), nx, ny);
-                }));
-            // start all the threads
-            for (var thread : threads)
-                thread.start();
-            // wait until all the threads have finished
+        // the flag of this rendering - a cancel from now on stops it
+        AtomicBoolean stop = cancelled;
+        try {
+            if (cameraPoint == null || vRight == null || vUp == null || vTo == null || imgWriter == null
+                    || rayTracerBase == null)
+                throw new MissingResourceException("missing filed in camera", "", "");
+            int nx = imgWriter.getNx();
+            int ny = imgWriter.getNy();
+            PixelManager pixelManager = new PixelManager(ny, nx, printInterval, tileSize);
+            Checkpoint checkpoint = checkpointFile == null ? null
+                    : new Checkpoint(checkpointFile, checkpointInterval, resume, imgWriter, pixelManager,
+                    fingerprint());
+            Rendering rendering = new Rendering(nx, ny, pixelManager, checkpoint, stop,
+                    new ConcurrentHashMap<>(), new RayStatistics());
             try {
-                for (var thread : threads)
-                    thread.join();
-            } catch (InterruptedException ignore) {
+                switch (backend) {
+                    case THREADS -> renderWithThreads(rendering);
+                    case FORK_JOIN -> renderWithForkJoin(rendering);
+                    case VIRTUAL_THREADS -> renderWithVirtualThreads(rendering);
+                }
+            } catch (InterruptedException e) {
+                rendering.cancel();
+                Thread.currentThread().interrupt();
+            } finally {
+                if (checkpoint != null)
+                    checkpoint.close();
+                statistics = rendering.statistics();
+                if (printInterval != 0)
+                    System.out.println(statistics);
             }
+        } finally {
+            // the threads that are left keep the flag of this rendering, the next one gets a new flag
+            cancelled = new AtomicBoolean();
         }
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("rendering was interrupted");
+        if (stop.get())
+            throw new CancellationException("rendering was cancelled");
         return this;
     }
+
+    /**
+     * calculate a fingerprint of the settings that the colors of the pixels
+     * depend on, so a checkpoint of other settings is not resumed - the camera
+     * position and directions, the view plane, the depth of field and
+     * anti-aliasing settings, the class of the ray tracer and the name of the scene
+     *
+     * @return the fingerprint
+     */
+    private long fingerprint() {
+        long hash = 17;
+        for (double value : new double[]{cameraPoint.getX(), cameraPoint.getY(), cameraPoint.getZ(),
+                vTo.getX(), vTo.getY(), vTo.getZ(), vUp.getX(), vUp.getY(), vUp.getZ(), width, height, dis,
+                dofFlag ? 1 : 0, focalPlaneDis, apertureSize, numOfPoints, dofTolerance,
+                antiAliasingDepth, antiAliasingThreshold})
+            hash = 31 * hash + Double.doubleToLongBits(value);
+        hash = 31 * hash + rayTracerBase.getClass().getName().hashCode();
+        return 31 * hash + Objects.hashCode(rayTracerBase.scene.name);
+    }
+
+    /**
+     * the state of a rendering that its threads share. A thread that is left
+     * from a rendering that stopped keeps the state of its own rendering, so it
+     * never takes the tiles or misses the cancel of the next one.
+     *
+     * @param nx           number of columns
+     * @param ny           number of rows
+     * @param pixelManager the tiles of the rendering
+     * @param checkpoint   the checkpoint file, null if there is none
+     * @param cancelled    set when the rendering should stop
+     * @param edges        the corner colors of the sides of the finished tiles,
+     *                     until their neighbors take them (anti-aliasing only)
+     * @param statistics   the counters of the work of the rendering
+     */
+    private record Rendering(int nx, int ny, PixelManager pixelManager, Checkpoint checkpoint,
+                             AtomicBoolean cancelled, Map<Edge, Color[]> edges, RayStatistics statistics) {
+        /**
+         * @return true if the rendering should stop
+         */
+        boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        /**
+         * stop the rendering
+         */
+        void cancel() {
+            cancelled.set(true);
+        }
+    }
+
+    /**
+     * render the image with platform threads that take tiles one after another
+     *
+     * @param rendering the rendering
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    private void renderWithThreads(Rendering rendering) throws InterruptedException {
+        if (threadsCount == 0) {
+            renderTiles(rendering);
+            return;
+        }
+        var failure = new AtomicReference<Throwable>();
+        var threads = new LinkedList<Thread>(); // list of threads
+        for (int i = 0; i < threadsCount; ++i) // add appropriate number of threads
+            threads.add(new Thread(() -> { // add a thread with its code
+                try {
+                    renderTiles(rendering);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    rendering.cancel();
+                }
+            }));
+        // start all the threads
+        for (var thread : threads)
+            thread.start();
+        // wait until all the threads have finished
+        try {
+            for (var thread : threads)
+                thread.join();
+        } catch (InterruptedException e) {
+            rendering.cancel();
+            for (var thread : threads)
+                thread.interrupt();
+            awaitStop(threads);
+            throw e;
+        }
+        rethrow(failure.get());
+    }
+
+    /**
+     * wait (a bounded time) for the threads of a rendering that stopped, so they
+     * do not write pixels or finished tiles after the rendering returns. An
+     * interrupt while waiting is kept for the caller.
+     *
+     * @param threads the threads of the rendering
+     */
+    private static void awaitStop(List<Thread> threads) {
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+        boolean interrupted = false;
+        for (var thread : threads)
+            for (long left; thread.isAlive() && (left = deadline - System.currentTimeMillis()) > 0; )
+                try {
+                    thread.join(left);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * stop the threads of an executor and wait (a bounded time) until they end,
+     * so they do not write pixels or finished tiles after the rendering returns.
+     * An interrupt while waiting is kept for the caller.
+     *
+     * @param executor the executor of the rendering
+     */
+    private static void awaitStop(ExecutorService executor) {
+        executor.shutdownNow();
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+        boolean interrupted = false;
+        for (long left; !executor.isTerminated() && (left = deadline - System.currentTimeMillis()) > 0; )
+            try {
+                executor.awaitTermination(left, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * render the image in a fork-join pool that splits the tiles recursively
+     *
+     * @param rendering the rendering
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    private void renderWithForkJoin(Rendering rendering) throws InterruptedException {
+        var pool = new ForkJoinPool(threadsCount == 0 ? Runtime.getRuntime().availableProcessors() : threadsCount);
+        try {
+            await(pool.submit(new TilesTask(0, rendering.pixelManager().getTotalTiles(), rendering)), rendering);
+        } finally {
+            awaitStop(pool);
+        }
+    }
+
+    /**
+     * render the image with a virtual thread for each tile
+     *
+     * @param rendering the rendering
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    private void renderWithVirtualThreads(Rendering rendering) throws InterruptedException {
+        ExecutorService executor = newVirtualThreadExecutor();
+        try {
+            List<Future<?>> futures = new LinkedList<>();
+            Tile tile;
+            while ((tile = rendering.pixelManager().nextTile()) != null) {
+                Tile current = tile;
+                futures.add(executor.submit(() -> {
+                    if (!rendering.isCancelled())
+                        renderTile(current, rendering);
+                }));
+            }
+            for (var future : futures)
+                await(future, rendering);
+        } finally {
+            awaitStop(executor);
+        }
+    }
+
+    /**
+     * create an executor that starts a virtual thread for each task. Virtual
+     * threads exist since Java 21, so the factory is looked up at runtime, and
+     * older runtimes get a pool of platform threads - as many as were set in
+     * {@link #setMultithreading(int)}, or one for each processor.
+     *
+     * @return the executor
+     */
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(
+                    threadsCount == 0 ? Runtime.getRuntime().availableProcessors() : threadsCount);
+        }
+    }
+
+    /**
+     * wait for a rendering task, stop the rendering if the waiting thread is
+     * interrupted, and pass on failures of the task
+     *
+     * @param future    the task
+     * @param rendering the rendering of the task
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    private static void await(Future<?> future, Rendering rendering) throws InterruptedException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            rendering.cancel();
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            rendering.cancel();
+            rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * pass on the failure of a rendering thread to the thread that waits for it
+     *
+     * @param failure the failure, null if the thread did not fail
+     */
+    private static void rethrow(Throwable failure) {
+        if (failure == null)
+            return;
+        if (failure instanceof RuntimeException cause)
+            throw cause;
+        if (failure instanceof Error cause)
+            throw cause;
+        throw new IllegalStateException("rendering failed", failure);
+    }
+
+    /**
+     * fork-join task that renders a range of tiles by splitting it in halves
+     * until a single tile is left
+     */
+    @SuppressWarnings("serial") // the tasks are never serialized
+    private class TilesTask extends RecursiveAction {
+        private final int from, to;
+        private final Rendering rendering;
+
+        /**
+         * constructor of a task for the tiles from one number up to another
+         *
+         * @param from      the number of the first tile
+         * @param to        the number after the last tile
+         * @param rendering the rendering
+         */
+        TilesTask(int from, int to, Rendering rendering) {
+            this.from = from;
+            this.to = to;
+            this.rendering = rendering;
+        }
+
+        @Override
+        protected void compute() {
+            if (rendering.isCancelled() || from >= to)
+                return;
+            if (to - from == 1) {
+                renderTile(rendering.pixelManager().tile(from), rendering);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TilesTask(from, mid, rendering), new TilesTask(mid, to, rendering));
+        }
+    }
+
     /**
      * creating the picture
      */
@@ -342,6 +964,58 @@ public class Camera {
         return this;
     }
 
+    /**
+     * setter for the adaptive anti-aliasing. The corners of the pixels are traced
+     * (and shared between neighboring pixels), and a pixel whose corners differ by
+     * more than the threshold is divided into quarters, again and again up to the
+     * given depth, so the cost follows the edges of the image and not its size.
+     *
+     * @param depth the amount of levels of a pixel - 0 for a single ray through
+     *              the center of each pixel (no anti-aliasing), 1 for the average
+     *              of the corners, and each level more divides the pixel into up
+     *              to 4 times more squares
+     * @return The camera itself.
+     */
+    public Camera setAntiAliasing(int depth) {
+        if (depth < 0)
+            throw new IllegalArgumentException("anti-aliasing depth must not be negative");
+        antiAliasingDepth = depth;
+        return this;
+    }
+
+    /**
+     * setter for the threshold of the adaptive anti-aliasing
+     *
+     * @param threshold the largest difference in a color component (0-255) between
+     *                  the corners of a square that still counts as the same color
+     * @return The camera itself.
+     */
+    public Camera setAntiAliasingThreshold(double threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("anti-aliasing threshold must not be negative");
+        antiAliasingThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * setter for the tolerance of the adaptive depth of field sampling. A part of
+     * the aperture is sampled by its corners and its center, and it is divided into
+     * quarters only if the center differs from the interpolation of the corners by
+     * more than the tolerance, so pixels in focus, over a plain background or over
+     * smooth shading need a few rays instead of the whole grid.
+     *
+     * @param tolerance the largest difference in a color component (0-255) that
+     *                  still counts as a smooth change, 0 to divide wherever the
+     *                  colors are not exactly linear
+     * @return The camera itself.
+     */
+    public Camera setDofTolerance(double tolerance) {
+        if (tolerance < 0)
+            throw new IllegalArgumentException("depth of field tolerance must not be negative");
+        dofTolerance = tolerance;
+        return this;
+    }
+
     /**
      * initializing the aperture points array by calculating the distance between
      * the points and the initial point, and then initializing the array with the
@@ -349,7 +1023,7 @@ public class Camera {
      */
     private void initializeAperturePoint() {
 
-        int pointsInRow = (int) Math.sqrt(numOfPoints);
+        pointsInRow = (int) Math.sqrt(numOfPoints);
 
         aperturePoints = new Point[pointsInRow * pointsInRow];
 // dis betwwen points in aputre
@@ -370,26 +1044,113 @@ public class Camera {
     }
 
     /**
-     * averaging the colors of all the rays that were shoot from the aperture points
-     * to the point where the ray intersects the focal plane.
+     * averaging the colors of the rays that are shot from the aperture points to
+     * the point where the ray intersects the focal plane. The aperture grid is
+     * sampled adaptively - see {@link #apertureColor(Point, Color[], int, int, int, int)}.
+     * The sum is divided by the requested amount of points, as it always was, even
+     * when the grid has fewer points (the amount is not a square).
      *
      * @param ray The ray that is being traced.
      * @return The average color of the image.
      */
     private Color averagedBeamColor(Ray ray) {
-        Color averageColor = Color.BLACK;
-        Ray apertureRay;
-        Color apertureColor;
         Point focalPoint = focalPlane.findGeoIntersections(ray).get(0).point;
-        for (Point aperturePoint : aperturePoints) {
-            // creatr ray from aputre to focal plane vector
-            apertureRay = new Ray(aperturePoint, focalPoint.subtract(aperturePoint));
-            // find the color of the ray
-            apertureColor = rayTracerBase.traceRay(apertureRay);
-            // add coordinate of aptutecolor
-            averageColor = averageColor.add(apertureColor.reduce(numOfPoints));
+        Color[] colors = new Color[aperturePoints.length];
+        return apertureColor(focalPoint, colors, 0, pointsInRow - 1, 0, pointsInRow - 1)
+                .reduce(numOfPoints);
+    }
+
+    /**
+     * sums the colors of the aperture rays of a part of the aperture grid. The
+     * corners and the center of the part are traced first - if the colors change
+     * smoothly between them, they stand for the whole part, otherwise the part is
+     * divided into quarters. Parts of up to 2x2 points are traced completely, so
+     * where the colors never agree the result is the average of the whole grid.
+     *
+     * @param focalPoint the point on the focal plane all the rays go through
+     * @param colors     the colors of the points that were traced, by their index
+     * @param i0         the first row of the part (along vUp)
+     * @param i1         the last row of the part
+     * @param j0         the first column of the part (along vRight)
+     * @param j1         the last column of the part
+     * @return the sum of the colors of all the points of the part
+     */
+    private Color apertureColor(Point focalPoint, Color[] colors, int i0, int i1, int j0, int j1) {
+        if (i0 > i1 || j0 > j1)
+            return Color.BLACK;
+        if (i1 - i0 < 2 && j1 - j0 < 2) {
+            Color sum = Color.BLACK;
+            for (int i = i0; i <= i1; ++i)
+                for (int j = j0; j <= j1; ++j)
+                    sum = sum.add(apertureSample(focalPoint, colors, i, j));
+            return sum;
         }
-        return averageColor;
+
+        int iMid = (i0 + i1) / 2;
+        int jMid = (j0 + j1) / 2;
+        Color[] samples = {apertureSample(focalPoint, colors, i0, j0), apertureSample(focalPoint, colors, i0, j1),
+                apertureSample(focalPoint, colors, i1, j0), apertureSample(focalPoint, colors, i1, j1),
+                apertureSample(focalPoint, colors, iMid, jMid)};
+        double u = i1 == i0 ? 0 : (iMid - i0) / (double) (i1 - i0);
+        double v = j1 == j0 ? 0 : (jMid - j0) / (double) (j1 - j0);
+        if (smooth(samples, u, v))
+            return samples[0].add(samples[1], samples[2], samples[3], samples[4])
+                    .scale((i1 - i0 + 1) * (j1 - j0 + 1) / 5d);
+        return apertureColor(focalPoint, colors, i0, iMid, j0, jMid)
+                .add(apertureColor(focalPoint, colors, iMid + 1, i1, j0, jMid),
+                        apertureColor(focalPoint, colors, i0, iMid, jMid + 1, j1),
+                        apertureColor(focalPoint, colors, iMid + 1, i1, jMid + 1, j1));
+    }
+
+    /**
+     * traces the ray from an aperture point to the focal point, once for each point
+     *
+     * @param focalPoint the point on the focal plane
+     * @param colors     the colors of the points that were traced, by their index
+     * @param i          the row of the aperture point
+     * @param j          the column of the aperture point
+     * @return the color of the ray
+     */
+    private Color apertureSample(Point focalPoint, Color[] colors, int i, int j) {
+        int index = i + j * pointsInRow;
+        if (colors[index] == null) {
+            Point aperturePoint = aperturePoints[index];
+            colors[index] = rayTracerBase.traceRay(new Ray(aperturePoint, focalPoint.subtract(aperturePoint)));
+        }
+        return colors[index];
+    }
+
+    /**
+     * checks whether the colors of a part of the aperture change smoothly - the
+     * color of the center is the interpolation of the colors of the corners within
+     * the depth of field tolerance. Plain colors and even gradients pass, edges of
+     * bodies and of shadows do not.
+     *
+     * @param samples the colors of the corners (i0j0, i0j1, i1j0, i1j1) and of the center
+     * @param u       the place of the center between the first and the last row (0-1)
+     * @param v       the place of the center between the first and the last column (0-1)
+     * @return true if the samples may stand for the whole part
+     */
+    private boolean smooth(Color[] samples, double u, double v) {
+        return smooth(samples, u, v, Color::getR) && smooth(samples, u, v, Color::getG)
+                && smooth(samples, u, v, Color::getB);
+    }
+
+    /**
+     * checks whether a component of the colors of a part of the aperture changes
+     * smoothly
+     *
+     * @param samples   the colors of the corners and of the center
+     * @param u         the place of the center between the first and the last row
+     * @param v         the place of the center between the first and the last column
+     * @param component the component of a color
+     * @return true if the center differs from the interpolation of the corners by no more than the tolerance
+     */
+    private boolean smooth(Color[] samples, double u, double v, ToDoubleFunction<Color> component) {
+        double interpolated = (1 - u) * ((1 - v) * component.applyAsDouble(samples[0])
+                + v * component.applyAsDouble(samples[1]))
+                + u * ((1 - v) * component.applyAsDouble(samples[2]) + v * component.applyAsDouble(samples[3]));
+        return Math.abs(component.applyAsDouble(samples[4]) - interpolated) <= dofTolerance;
     }
 
 }
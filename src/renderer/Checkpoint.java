@@ -0,0 +1,280 @@
+package renderer;
+
+import primitives.Color;
+import renderer.PixelManager.Tile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Class Checkpoint keeps the finished tiles of a rendering in a file, so a
+ * rendering that stops (a crash, a killed process) can be resumed without the
+ * tiles that were finished.<br/>
+ * The file is a header (a magic number, the version, the size of the image and
+ * of the tiles, and a fingerprint of the settings of the rendering) and then a
+ * record for every finished tile - its number, the colors of its pixels and a
+ * CRC of the record. The records are only appended, and a rendering thread
+ * that finishes a tile after the interval has passed writes all the tiles that
+ * finished since the last write and syncs the file, so the threads never wait
+ * for the disk in between. When a rendering is resumed,
+ * the records are read into the image until the first incomplete or damaged
+ * one - the end of a file that was written when the process stopped - and the
+ * file is cut there. A file of another image size or another fingerprint is
+ * not resumed.<br/>
+ * The file is written as a stream and not through a channel, because a channel
+ * is closed when a rendering thread is interrupted in the middle of a write.
+ *
+ * @author hodaya
+ */
+final class Checkpoint {
+    /**
+     * the magic number at the start of a checkpoint file ("CKPT")
+     */
+    private static final int MAGIC = 0x434B5054;
+    /**
+     * the version of the checkpoint files
+     */
+    private static final int VERSION = 2;
+    private static final int HEADER = 5 * Integer.BYTES + Long.BYTES;
+
+    private final Path path;
+    private final RandomAccessFile file;
+    private final ImageWriter imageWriter;
+    private final PixelManager pixelManager;
+    /**
+     * the fingerprint of the settings of the rendering
+     */
+    private final long fingerprint;
+    /**
+     * the tiles that were read from the file
+     */
+    private final BitSet restored = new BitSet();
+    /**
+     * the time between writes of the file in nanoseconds
+     */
+    private final long interval;
+    /**
+     * the tiles that were finished and were not written yet
+     */
+    private final Queue<Tile> finished = new ConcurrentLinkedQueue<>();
+    /**
+     * held by the thread that writes the file
+     */
+    private final ReentrantLock writing = new ReentrantLock();
+    /**
+     * the time of the next write of the file
+     */
+    private volatile long nextWrite;
+
+    /**
+     * constructor of a checkpoint of a rendering
+     *
+     * @param path         the checkpoint file
+     * @param interval     the time between writes of the file in seconds
+     * @param resume       whether the tiles in an existing file are read into the
+     *                     image, or the file is replaced
+     * @param imageWriter  the image of the rendering
+     * @param pixelManager the tiles of the rendering
+     * @param fingerprint  a fingerprint of everything else that the colors of
+     *                     the rendering depend on (the scene, the camera, the
+     *                     sampling) - a file of another fingerprint is not resumed
+     * @throws IllegalStateException if the file cannot be used, or if it is a
+     *                               checkpoint of an image of another size or of
+     *                               another fingerprint
+     */
+    Checkpoint(Path path, double interval, boolean resume, ImageWriter imageWriter, PixelManager pixelManager,
+               long fingerprint) {
+        this.path = path;
+        this.interval = (long) (interval * 1e9);
+        this.imageWriter = imageWriter;
+        this.pixelManager = pixelManager;
+        this.fingerprint = fingerprint;
+        try {
+            file = new RandomAccessFile(path.toFile(), "rw");
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+        try {
+            if (resume && file.length() > 0)
+                file.setLength(restore());
+            else {
+                file.setLength(0);
+                file.write(header().array());
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+                // the failure is already reported
+            }
+            throw e instanceof IOException io ? ioError(io) : (RuntimeException) e;
+        }
+        nextWrite = System.nanoTime() + this.interval;
+    }
+
+    /**
+     * @return the header of the file
+     */
+    private ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION)
+                .putInt(imageWriter.getNx()).putInt(imageWriter.getNy()).putInt(pixelManager.getTileSize())
+                .putLong(fingerprint);
+    }
+
+    /**
+     * reads the finished tiles into the image
+     *
+     * @return the length of the complete records of the file
+     * @throws IOException if the file cannot be read
+     */
+    private long restore() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (!readFully(header.array(), 0, HEADER) || header.getInt() != MAGIC || header.getInt() != VERSION)
+            throw new IllegalStateException(path + " is not a checkpoint file");
+        if (header.getInt() != imageWriter.getNx() || header.getInt() != imageWriter.getNy()
+                || header.getInt() != pixelManager.getTileSize())
+            throw new IllegalStateException("The checkpoint file " + path + " belongs to an image of another size");
+        if (header.getLong() != fingerprint)
+            throw new IllegalStateException("The checkpoint file " + path
+                    + " belongs to another scene, camera or sampling settings");
+
+        long length = HEADER;
+        byte[] index = new byte[Integer.BYTES];
+        while (readFully(index, 0, index.length)) {
+            int number = ByteBuffer.wrap(index).getInt();
+            if (number < 0 || number >= pixelManager.getTotalTiles())
+                break;
+            Tile tile = pixelManager.tile(number);
+            byte[] record = new byte[recordSize(tile)];
+            System.arraycopy(index, 0, record, 0, index.length);
+            if (!readFully(record, index.length, record.length - index.length))
+                break;
+            ByteBuffer in = ByteBuffer.wrap(record);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length - Integer.BYTES);
+            if (in.getInt(record.length - Integer.BYTES) != (int) crc.getValue())
+                break;
+            in.position(index.length);
+            for (int row = tile.row(); row < tile.row() + tile.height(); ++row)
+                for (int col = tile.col(); col < tile.col() + tile.width(); ++col)
+                    imageWriter.writePixel(col, row, new Color(in.getDouble(), in.getDouble(), in.getDouble()));
+            restored.set(number);
+            length += record.length;
+        }
+        file.seek(length);
+        return length;
+    }
+
+    /**
+     * reads bytes from the file
+     *
+     * @return false if the file ended before all the bytes were read
+     */
+    private boolean readFully(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            file.readFully(bytes, offset, length);
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the size of the record of a tile in the file
+     */
+    private static int recordSize(Tile tile) {
+        return 2 * Integer.BYTES + tile.width() * tile.height() * 3 * Double.BYTES;
+    }
+
+    /**
+     * checks whether a tile was read from the file, so it is not rendered again
+     *
+     * @param tile the tile
+     * @return true if the tile is finished
+     */
+    boolean isRestored(Tile tile) {
+        return restored.get(tile.index());
+    }
+
+    /**
+     * adds a finished tile, and writes the finished tiles if the interval has
+     * passed and no other thread writes them
+     *
+     * @param tile the tile - all its pixels are in the image
+     * @throws IllegalStateException if the file cannot be written
+     */
+    void tileDone(Tile tile) {
+        finished.add(tile);
+        if (System.nanoTime() - nextWrite >= 0 && writing.tryLock())
+            try {
+                write();
+            } finally {
+                writing.unlock();
+            }
+    }
+
+    /**
+     * writes the finished tiles and syncs the file
+     */
+    private void write() {
+        nextWrite = System.nanoTime() + interval;
+        if (finished.isEmpty())
+            return;
+        try {
+            for (Tile tile; (tile = finished.poll()) != null; )
+                file.write(record(tile));
+            file.getFD().sync();
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    /**
+     * @return the record of a finished tile
+     */
+    private byte[] record(Tile tile) {
+        ByteBuffer out = ByteBuffer.allocate(recordSize(tile)).putInt(tile.index());
+        for (int row = tile.row(); row < tile.row() + tile.height(); ++row)
+            for (int col = tile.col(); col < tile.col() + tile.width(); ++col) {
+                Color color = imageWriter.getPixel(col, row);
+                out.putDouble(color.getR()).putDouble(color.getG()).putDouble(color.getB());
+            }
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        return out.putInt((int) crc.getValue()).array();
+    }
+
+    /**
+     * writes the tiles that are left and closes the file
+     *
+     * @throws IllegalStateException if the file cannot be written
+     */
+    void close() {
+        writing.lock();
+        try {
+            write();
+        } finally {
+            writing.unlock();
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw ioError(e);
+            }
+        }
+    }
+
+    /**
+     * @return the exception of a failure to use the file
+     */
+    private IllegalStateException ioError(IOException e) {
+        return new IllegalStateException("I/O error - cannot use the checkpoint file " + path, e);
+    }
+}
@@ -0,0 +1,50 @@
+package renderer;
+
+import primitives.Color;
+
+/**
+ * Interface FrameBuffer is the storage of the colors of the pixels of an
+ * {@link ImageWriter}, as they are written (brighter than white too).<br/>
+ * The rendering threads write different pixels at the same time, so a frame
+ * buffer writes without locks.
+ *
+ * @author hodaya
+ */
+interface FrameBuffer {
+    /**
+     * writes the color of a pixel
+     *
+     * @param x     X axis index of the pixel
+     * @param y     Y axis index of the pixel
+     * @param color the color of the pixel
+     */
+    void write(int x, int y, Color color);
+
+    /**
+     * reads the color of a pixel
+     *
+     * @param x X axis index of the pixel
+     * @param y Y axis index of the pixel
+     * @return the color of the pixel as it was written
+     */
+    Color read(int x, int y);
+
+    /**
+     * maps and quantizes the colors of a row of pixels
+     *
+     * @param y           Y axis index of the row
+     * @param toneMapping the tone mapping of the colors
+     * @param rgb         the array of the RGB values (8 bits of each component)
+     * @param offset      the index in the array of the first pixel of the row
+     */
+    void readRow(int y, ToneMapping toneMapping, int[] rgb, int offset);
+
+    /**
+     * gives the mapped rows of the image to the PNG encoder
+     *
+     * @param toneMapping the tone mapping of the colors
+     * @return the reader of the rows - it reads a copy of the pixels if the buffer
+     * can hold one, so the pixels may be written again while the rows are read
+     */
+    PngEncoder.RowReader rows(ToneMapping toneMapping);
+}
@@ -2,18 +2,35 @@ package renderer;
 
 import primitives.Color;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
 
 /**
  * Image writer class combines accumulation of pixel color matrix and finally
  * producing a non-optimized jpeg image from this matrix. The class although is
  * responsible of holding image related parameters of View Plane - pixel matrix
- * size and resolution
+ * size and resolution<br/>
+ * The colors are kept as they are (brighter than white too) in a
+ * {@link FrameBuffer} - in one array of doubles in the heap, or in a tiled
+ * memory-mapped file for images larger than the memory. The rendering threads
+ * write different pixels, so they write without locks or allocations, and the
+ * colors are mapped and quantized into the image when the image is written.<br/>
+ * The PNG file is compressed by {@link PngEncoder} in parallel strips, and it can
+ * be written in the background ({@link #writeToImageAsync()}) while the next
+ * image is rendered.
  *
  * @author Dan
  */
@@ -21,7 +38,15 @@ public class ImageWriter {
     private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
     private int nX;
     private int nY;
-    private BufferedImage image;
+    /**
+     * the colors of the pixels
+     */
+    private final FrameBuffer frameBuffer;
+    private ToneMapping toneMapping = ToneMapping.CLAMP;
+    /**
+     * the level of deflate of the PNG file - 4 by default, as the PNG writer of ImageIO
+     */
+    private int compressionLevel = 4;
     private String imageName;
 
     private Logger logger = Logger.getLogger("ImageWriter");
@@ -40,7 +65,33 @@ public class ImageWriter {
         this.nX = nX;
         this.nY = nY;
 
-        image = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+        frameBuffer = new ArrayFrameBuffer(nX, nY);
+    }
+
+    /**
+     * Image Writer constructor that keeps the pixels in a memory-mapped file
+     * instead of the heap, so the size of the image is limited by the disk. The
+     * colors are kept in single precision, in tiles of
+     * {@value MappedFrameBuffer#TILE} pixels, and the image is written from the
+     * file a few rows at a time.
+     *
+     * @param imageName the name of jpeg file
+     * @param nX        amount of pixels by Width
+     * @param nY        amount of pixels by height
+     * @param frameFile the file of the pixels - an existing file is replaced
+     * @throws IllegalStateException if the file cannot be created
+     */
+    public ImageWriter(String imageName, int nX, int nY, Path frameFile) {
+        this.imageName = imageName;
+        this.nX = nX;
+        this.nY = nY;
+
+        try {
+            frameBuffer = new MappedFrameBuffer(frameFile, nX, nY);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "I/O error", e);
+            throw new IllegalStateException("I/O error - cannot create the frame file " + frameFile, e);
+        }
     }
 
     // ***************** Getters/Setters ********************** //
@@ -63,22 +114,102 @@ public class ImageWriter {
         return nX;
     }
 
+    /**
+     * Set the way the colors are mapped into the image when it is written
+     *
+     * @param toneMapping the tone mapping
+     * @return the image writer itself
+     */
+    public ImageWriter setToneMapping(ToneMapping toneMapping) {
+        if (toneMapping == null)
+            throw new IllegalArgumentException("tone mapping must not be null");
+        this.toneMapping = toneMapping;
+        return this;
+    }
+
+    /**
+     * Set the compression level of the PNG file - lower levels write faster and
+     * higher levels write smaller files
+     *
+     * @param level the level of deflate, 0 (no compression) to 9 (best
+     *              compression), or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return the image writer itself
+     */
+    public ImageWriter setCompressionLevel(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("compression level must be between 0 and 9");
+        compressionLevel = level;
+        return this;
+    }
+
+    /**
+     * The color of a pixel as it was written, before the tone mapping
+     *
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @return the color of the pixel
+     */
+    public Color getPixel(int xIndex, int yIndex) {
+        return frameBuffer.read(xIndex, yIndex);
+    }
+
     // ***************** Operations ******************** //
 
     /**
-     * Function writeToImage produces unoptimized png file of the image according to
-     * pixel color matrix in the directory of the project
+     * Maps and quantizes the colors of all the pixels into an image, a row in
+     * each parallel task
+     *
+     * @return the image
+     * @throws IllegalStateException if the image is too large for a {@link BufferedImage}
+     */
+    public BufferedImage toImage() {
+        if ((long) nX * nY > Integer.MAX_VALUE)
+            throw new IllegalStateException("The image is too large for a BufferedImage - write it to a file");
+        BufferedImage image = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+        int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        IntStream.range(0, nY).parallel().forEach(y -> frameBuffer.readRow(y, toneMapping, rgb, y * nX));
+        return image;
+    }
+
+    /**
+     * Function writeToImage produces png file of the image according to pixel
+     * color matrix in the directory of the project
      */
     public void writeToImage() {
         try {
-            File file = new File(FOLDER_PATH + '/' + imageName + ".png");
-            ImageIO.write(image, "png", file);
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "I/O error", e);
-            throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
+            writeToImageAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
         }
     }
 
+    /**
+     * Produces png file of the image in the background. The colors in the heap
+     * are mapped into the image before the method returns, so the pixels may be
+     * written again (for the next frame) while the file is compressed and written.
+     * The colors in a frame file are read while the file is compressed, so they
+     * may be written again only after the future is complete.
+     *
+     * @return a future of the file, that fails with an {@link IllegalStateException}
+     * if the file cannot be written
+     */
+    public CompletableFuture<File> writeToImageAsync() {
+        PngEncoder.RowReader rows = frameBuffer.rows(toneMapping);
+        PngEncoder encoder = new PngEncoder(compressionLevel);
+        File file = new File(FOLDER_PATH + '/' + imageName + ".png");
+        return CompletableFuture.supplyAsync(() -> {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+                encoder.write(rows, nX, nY, out);
+                return file;
+            } catch (IOException | UncheckedIOException e) {
+                logger.log(Level.SEVERE, "I/O error", e);
+                throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
+            }
+        });
+    }
+
     /**
      * The function writePixel writes a color of a specific pixel into pixel color
      * matrix
@@ -88,7 +219,7 @@ public class ImageWriter {
      * @param color  final color of the pixel
      */
     public void writePixel(int xIndex, int yIndex, Color color) {
-        image.setRGB(xIndex, yIndex, color.getColor().getRGB());
+        frameBuffer.write(xIndex, yIndex, color);
     }
 
 }
@@ -0,0 +1,154 @@
+package renderer;
+
+import primitives.Color;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class MappedFrameBuffer keeps the colors of the pixels in a memory-mapped
+ * file, so the size of the image is limited by the disk and not by the heap.<br/>
+ * The pixels are kept in square tiles of {@value #TILE} pixels, every tile in one
+ * block of the file (3 floats for each pixel, row by row in the tile), so the
+ * pixels that a rendering thread writes for its tile are in a few pages of the
+ * file. The file is mapped in segments of whole tiles of up to 1GB, and the
+ * operating system writes the pages back and drops them from the memory as it
+ * needs.<br/>
+ * The file starts with a header of a page - a magic number, the version, the
+ * size of the image and the size of the tiles. The tiles are created as a sparse
+ * file of black pixels.
+ *
+ * @author hodaya
+ */
+final class MappedFrameBuffer implements FrameBuffer {
+    /**
+     * the magic number at the start of a frame file ("FBUF")
+     */
+    private static final int MAGIC = 0x46425546;
+    /**
+     * the version of the frame files
+     */
+    private static final int VERSION = 1;
+    /**
+     * the size of the header - a whole page, so the tiles are on whole pages
+     */
+    private static final int HEADER = 4096;
+    /**
+     * the size (in pixels) of a tile side - a power of 2
+     */
+    static final int TILE = 64;
+    private static final int TILE_SHIFT = Integer.numberOfTrailingZeros(TILE);
+    private static final int PIXEL_BYTES = 3 * Float.BYTES;
+    private static final int TILE_BYTES = TILE * TILE * PIXEL_BYTES;
+    /**
+     * the amount of tiles in a mapped segment of the file
+     */
+    private static final int SEGMENT_TILES = (1 << 30) / TILE_BYTES;
+
+    private final int nX;
+    /**
+     * the amount of tiles in a row of tiles
+     */
+    private final int tilesInRow;
+    /**
+     * the mapped segments of the file
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * constructor of a frame buffer of black pixels in a file. An existing file
+     * is replaced.
+     *
+     * @param file the file of the pixels
+     * @param nX   amount of pixels by width
+     * @param nY   amount of pixels by height
+     * @throws IOException if the file cannot be created or mapped
+     */
+    MappedFrameBuffer(Path file, int nX, int nY) throws IOException {
+        this.nX = nX;
+        tilesInRow = (nX + TILE - 1) >> TILE_SHIFT;
+        long tiles = (long) tilesInRow * ((nY + TILE - 1) >> TILE_SHIFT);
+        segments = new MappedByteBuffer[(int) ((tiles + SEGMENT_TILES - 1) / SEGMENT_TILES)];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(5 * Integer.BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(nX).putInt(nY).putInt(TILE).flip();
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+            // the mappings stay valid after the channel is closed
+            for (int s = 0; s < segments.length; ++s) {
+                long first = (long) s * SEGMENT_TILES;
+                long size = Math.min(SEGMENT_TILES, tiles - first) * TILE_BYTES;
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER + first * TILE_BYTES, size);
+            }
+        }
+    }
+
+    /**
+     * @return the number of the tile of a pixel in the file
+     */
+    private long tile(int x, int y) {
+        return (long) (y >> TILE_SHIFT) * tilesInRow + (x >> TILE_SHIFT);
+    }
+
+    /**
+     * @return the segment of a tile
+     */
+    private MappedByteBuffer segment(long tile) {
+        return segments[(int) (tile / SEGMENT_TILES)];
+    }
+
+    /**
+     * @return the position of a pixel in the segment of its tile
+     */
+    private static int position(long tile, int x, int y) {
+        return (int) (tile % SEGMENT_TILES) * TILE_BYTES
+                + (((y & (TILE - 1)) << TILE_SHIFT) + (x & (TILE - 1))) * PIXEL_BYTES;
+    }
+
+    @Override
+    public void write(int x, int y, Color color) {
+        long tile = tile(x, y);
+        int i = position(tile, x, y);
+        segment(tile).putFloat(i, (float) color.getR())
+                .putFloat(i + Float.BYTES, (float) color.getG())
+                .putFloat(i + 2 * Float.BYTES, (float) color.getB());
+    }
+
+    @Override
+    public Color read(int x, int y) {
+        long tile = tile(x, y);
+        int i = position(tile, x, y);
+        MappedByteBuffer segment = segment(tile);
+        return new Color(segment.getFloat(i), segment.getFloat(i + Float.BYTES), segment.getFloat(i + 2 * Float.BYTES));
+    }
+
+    /**
+     * reads the row tile after tile - the pixels of a row in a tile are one after
+     * another in the file
+     */
+    @Override
+    public void readRow(int y, ToneMapping toneMapping, int[] rgb, int offset) {
+        for (int first = 0; first < nX; first += TILE) {
+            long tile = tile(first, y);
+            MappedByteBuffer segment = segment(tile);
+            int end = Math.min(nX, first + TILE);
+            for (int x = first, i = position(tile, first, y); x < end; ++x, i += PIXEL_BYTES)
+                rgb[offset + x] = toneMapping.toRGB(segment.getFloat(i), segment.getFloat(i + Float.BYTES),
+                        segment.getFloat(i + 2 * Float.BYTES));
+        }
+    }
+
+    /**
+     * the rows are read from the file while they are encoded - there is no copy
+     * of the image in the memory
+     */
+    @Override
+    public PngEncoder.RowReader rows(ToneMapping toneMapping) {
+        return (y, row) -> readRow(y, toneMapping, row, 0);
+    }
+}
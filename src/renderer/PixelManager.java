@@ -1,11 +1,17 @@
 package renderer;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * PixelManager is a helper class. It is used for multi-threading in the
  * renderer and
  * for follow up its progress.<br/>
- * A Camera uses one pixel manager object and several Pixel objects - one in
- * each thread.
+ * A Camera uses one pixel manager object that hands out square tiles of pixels
+ * to the threads. The tiles are allocated by an atomic counter, so the threads
+ * never wait for each other, and the progress is updated once per tile in a
+ * striped counter ({@link LongAdder}), so the threads do not contend on it
+ * either - it is summed only when the progress is printed.
  *
  * @author Dan Zilberstein
  */
@@ -14,54 +20,57 @@ class PixelManager {
      * Printing format
      */
     private static final String PRINT_FORMAT = "%5.1f%%\r";
+    /**
+     * Default size (in pixels) of a tile side
+     */
+    static final int TILE_SIZE = 16;
     /**
      * Maximum rows of pixels
      */
-    private int maxRows = 0;
+    private final int maxRows;
     /**
      * Maximum columns of pixels
      */
-    private int maxCols = 0;
+    private final int maxCols;
     /**
-     * Total amount of pixels in the generated image
+     * Size (in pixels) of a tile side
      */
-    private long totalPixels = 0l;
-
+    private final int tileSize;
     /**
-     * Currently processed row of pixels
+     * Amount of tiles in a row of tiles
      */
-    private volatile int cRow = 0;
+    private final int tilesInRow;
     /**
-     * Currently processed column of pixels
+     * Total amount of tiles in the generated image
      */
-    private volatile int cCol = -1;
+    private final int totalTiles;
+    /**
+     * Total amount of pixels in the generated image
+     */
+    private final long totalPixels;
+
+    /**
+     * Index of the next tile to allocate
+     */
+    private final AtomicInteger nextTile = new AtomicInteger(0);
     /**
      * Amount of pixels that have been processed
      */
-    private volatile long pixels = 0l;
+    private final LongAdder pixels = new LongAdder();
     /**
      * Last printed progress update percentage
      */
-    private volatile int lastPrinted = 0;
+    private final AtomicInteger lastPrinted = new AtomicInteger(0);
 
     /**
      * Flag of debug printing of progress percentage
      */
-    private boolean print = false;
+    private final boolean print;
     /**
      * Progress percentage printing interval
      */
-    private long printInterval = 100l;
-    /**
-     * Mutual exclusion object for synchronizing next pixel allocation between
-     * threads
-     */
-    private Object mutexNext = new Object();
-    /**
-     * Mutual exclusion object for printing progress percentage in console window
-     * by different threads
-     */
-    private Object mutexPixels = new Object();
+    private final long printInterval;
+
     /**
      * Initialize pixel manager data for multi-threading
      *
@@ -71,60 +80,90 @@ class PixelManager {
      *                 required
      */
     PixelManager(int maxRows, int maxCols, double interval) {
+        this(maxRows, maxCols, interval, TILE_SIZE);
+    }
+
+    /**
+     * Initialize pixel manager data for multi-threading with a given tile size
+     *
+     * @param maxRows  the amount of pixel rows
+     * @param maxCols  the amount of pixel columns
+     * @param interval print time interval in seconds, 0 if printing is not
+     *                 required
+     * @param tileSize the size of a tile side in pixels
+     * @throws IllegalArgumentException if the tile size is not positive
+     */
+    PixelManager(int maxRows, int maxCols, double interval, int tileSize) {
+        if (tileSize <= 0)
+            throw new IllegalArgumentException("tile size must be positive");
         this.maxRows = maxRows;
         this.maxCols = maxCols;
+        this.tileSize = tileSize;
+        tilesInRow = (maxCols + tileSize - 1) / tileSize;
+        totalTiles = tilesInRow * ((maxRows + tileSize - 1) / tileSize);
         totalPixels = (long) maxRows * maxCols;
         printInterval = (int) (interval * 10);
         if (print = printInterval != 0) System.out.printf(PRINT_FORMAT, 0d);
     }
 
     /**
-     * Function for thread-safe manipulating of main follow up Pixel object - this
-     * function is critical section for all the threads, and the pixel manager data
-     * is the shared data of this critical section.<br/>
-     * The function provides next available pixel number each call.
+     * Function for thread-safe allocation of the next tile. The tiles are
+     * numbered row by row, and an atomic counter hands each number to exactly one
+     * thread.
+     *
+     * @return the next tile, null if there are no more tiles
+     */
+    Tile nextTile() {
+        int index = nextTile.getAndIncrement();
+        return index < totalTiles ? tile(index) : null;
+    }
+
+    /**
+     * Calculates the pixels of a tile by its number
      *
-     * @return true if next pixel is allocated, false if there are no more pixels
+     * @param index the number of the tile
+     * @return the tile
      */
-    Pixel nextPixel() {
-        synchronized (mutexNext) {
-            if (cRow == maxRows) return null;
+    Tile tile(int index) {
+        int col = (index % tilesInRow) * tileSize;
+        int row = (index / tilesInRow) * tileSize;
+        return new Tile(index, col, row, Math.min(tileSize, maxCols - col), Math.min(tileSize, maxRows - row));
+    }
 
-            ++cCol;
-            if (cCol < maxCols)
-                return new Pixel(cRow, cCol);
+    /**
+     * @return the size of a tile side in pixels
+     */
+    int getTileSize() {
+        return tileSize;
+    }
 
-            cCol = 0;
-            ++cRow;
-            if (cRow < maxRows)
-                return new Pixel(cRow, cCol);
-        }
-        return null;
+    /**
+     * @return the total amount of tiles
+     */
+    int getTotalTiles() {
+        return totalTiles;
     }
 
     /**
-     * Finish pixel processing by updating and printing of progress percentage
-     */
-    void pixelDone() {
-        boolean flag = false;
-        int percentage = 0;
-        synchronized (mutexPixels) {
-            ++pixels;
-            if (print) {
-                percentage = (int) (1000l * pixels / totalPixels);
-                if (percentage - lastPrinted >= printInterval) {
-                    lastPrinted = percentage;
-                    flag = true;
-                }
-            }
-            if (flag) System.out.printf(PRINT_FORMAT, percentage / 10d);
-        }
+     * Finish tile processing by updating and printing of progress percentage
+     *
+     * @param tile the tile that was processed
+     */
+    void tileDone(Tile tile) {
+        pixels.add((long) tile.width() * tile.height());
+        if (!print) return;
+        long done = pixels.sum();
+        int percentage = (int) (1000l * done / totalPixels);
+        int last = lastPrinted.get();
+        // only the thread that advances the printed percentage prints it
+        if (percentage - last >= printInterval && lastPrinted.compareAndSet(last, percentage))
+            System.out.printf(PRINT_FORMAT, percentage / 10d);
     }
 
     /**
-     * Immutable class for object containing allocated pixel (with its row and
-     * column numbers)
+     * Immutable class for object containing allocated tile - its number, its
+     * upper left pixel and its size
      */
-    record Pixel(int col, int row) {
+    record Tile(int index, int col, int row, int width, int height) {
     }
 }
@@ -0,0 +1,357 @@
+package renderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Class PngEncoder writes 24 bit RGB images as PNG files, with the compression
+ * spread between threads.<br/>
+ * The rows are split into strips, and every strip is filtered and deflated in a
+ * parallel task into its own raw deflate stream, which ends with a sync flush (the
+ * last one ends the stream). The last 32KB of the rows before a strip are its
+ * preset dictionary, so the strips compress almost as well as a single stream.
+ * The streams are written one after another in the same zlib stream, and its
+ * checksum is combined from the checksums of the strips, so the file is a plain
+ * valid PNG.<br/>
+ * The rows are read when their strip is compressed, and the strips are
+ * compressed in batches of a few strips for each thread and written in their
+ * order, so an image is streamed into the file without a copy of it in the
+ * memory.
+ *
+ * @author hodaya
+ */
+final class PngEncoder {
+    /**
+     * the signature at the start of every PNG file
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    /**
+     * the size of the window of deflate, the most a strip can refer back into the
+     * previous rows
+     */
+    private static final int WINDOW = 32 * 1024;
+    /**
+     * the amount of bytes of filtered rows in a strip by default
+     */
+    private static final int STRIP_BYTES = 256 * 1024;
+    /**
+     * the modulus of the Adler-32 checksum
+     */
+    private static final int ADLER_BASE = 65521;
+    /**
+     * the amount of strips for each thread that are compressed together
+     */
+    private static final int BATCH_STRIPS = 4;
+
+    /**
+     * the compression level of deflate (0-9, or {@link Deflater#DEFAULT_COMPRESSION})
+     */
+    private final int level;
+    /**
+     * the amount of rows in a strip, 0 to choose by the width of the image
+     */
+    private final int stripRows;
+
+    /**
+     * constructor of an encoder with a compression level
+     *
+     * @param level the compression level of deflate (0-9, or
+     *              {@link Deflater#DEFAULT_COMPRESSION})
+     */
+    PngEncoder(int level) {
+        this(level, 0);
+    }
+
+    /**
+     * constructor of an encoder with a compression level and a size of the strips
+     *
+     * @param level     the compression level of deflate (0-9, or
+     *                  {@link Deflater#DEFAULT_COMPRESSION})
+     * @param stripRows the amount of rows in a strip, 0 to choose by the width of
+     *                  the image
+     */
+    PngEncoder(int level, int stripRows) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("compression level must be between 0 and 9");
+        this.level = level;
+        this.stripRows = stripRows;
+    }
+
+    /**
+     * a source of the rows of an image. The rows are read by several threads at
+     * the same time, and the same row may be read more than once.
+     */
+    @FunctionalInterface
+    interface RowReader {
+        /**
+         * reads the pixels of a row
+         *
+         * @param y   the number of the row
+         * @param row the array of the pixels of the row - 8 bits of each component
+         *            (red, green, blue from the high bits to the low ones)
+         */
+        void readRow(int y, int[] row);
+    }
+
+    /**
+     * writes an image as a PNG file
+     *
+     * @param rgb    the pixels, row by row - 8 bits of each component (red, green,
+     *               blue from the high bits to the low ones)
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @param out    the stream to write to (it is not closed)
+     * @throws IOException if the stream fails
+     */
+    void write(int[] rgb, int width, int height, OutputStream out) throws IOException {
+        write((y, row) -> System.arraycopy(rgb, y * width, row, 0, width), width, height, out);
+    }
+
+    /**
+     * writes an image as a PNG file, reading its rows while they are compressed
+     *
+     * @param rows   the source of the rows
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @param out    the stream to write to (it is not closed)
+     * @throws IOException if the stream fails
+     */
+    void write(RowReader rows, int width, int height, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream fields = new DataOutputStream(header);
+        fields.writeInt(width);
+        fields.writeInt(height);
+        fields.write(new byte[]{8, 2, 0, 0, 0}); // 8 bits, RGB, deflate, adaptive filters, no interlace
+        writeChunk(data, "IHDR", header.toByteArray(), header.size());
+
+        // the zlib header - deflate with a 32KB window, no preset dictionary for the whole stream
+        writeChunk(data, "IDAT", new byte[]{0x78, zlibLevelFlags()}, 2);
+        int rowBytes = 1 + width * 3;
+        int stripHeight = stripRows > 0 ? stripRows : Math.max(1, STRIP_BYTES / rowBytes);
+        int strips = (height + stripHeight - 1) / stripHeight;
+        int batch = BATCH_STRIPS * ForkJoinPool.getCommonPoolParallelism();
+        long adler = 1;
+        for (int first = 0; first < strips; first += batch) {
+            Strip[] compressed = IntStream.range(first, Math.min(strips, first + batch)).parallel()
+                    .mapToObj(s -> compress(rows, width, s * stripHeight, Math.min(height, (s + 1) * stripHeight),
+                            s == strips - 1))
+                    .toArray(Strip[]::new);
+            for (Strip strip : compressed) {
+                writeChunk(data, "IDAT", strip.data, strip.size);
+                adler = combineAdler(adler, strip.adler, strip.length);
+            }
+        }
+        writeChunk(data, "IDAT", new byte[]{(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8),
+                (byte) adler}, 4);
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    /**
+     * @return the second byte of the zlib header, which tells the compression level
+     */
+    private byte zlibLevelFlags() {
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6)
+            return (byte) 0x9C;
+        return (byte) (level < 2 ? 0x01 : level < 6 ? 0x5E : 0xDA);
+    }
+
+    /**
+     * a strip of rows after the compression
+     *
+     * @param data   the raw deflate stream
+     * @param size   the amount of bytes of the stream in the array
+     * @param adler  the Adler-32 checksum of the filtered rows
+     * @param length the amount of bytes of the filtered rows
+     */
+    private record Strip(byte[] data, int size, long adler, long length) {
+    }
+
+    /**
+     * filters and deflates a strip of rows
+     *
+     * @param rows  the source of the rows
+     * @param width the width of the image
+     * @param from  the first row of the strip
+     * @param to    the row after the last one
+     * @param last  whether the strip ends the deflate stream
+     * @return the compressed strip
+     */
+    private Strip compress(RowReader rows, int width, int from, int to, boolean last) {
+        int rowBytes = 1 + width * 3;
+        byte[] filtered = new byte[(to - from) * rowBytes];
+        filterRows(rows, width, from, to, filtered);
+        Adler32 adler = new Adler32();
+        adler.update(filtered);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (from > 0) {
+                // the rows before the strip are in the window of the decoder - use them as the dictionary
+                int dictionaryRows = Math.min(from, (WINDOW + rowBytes - 1) / rowBytes);
+                byte[] previous = new byte[dictionaryRows * rowBytes];
+                filterRows(rows, width, from - dictionaryRows, from, previous);
+                int size = Math.min(WINDOW, previous.length);
+                deflater.setDictionary(previous, previous.length - size, size);
+            }
+            deflater.setInput(filtered);
+            if (last)
+                deflater.finish();
+            byte[] out = new byte[Math.max(64, filtered.length / 2)];
+            int size = 0;
+            while (true) {
+                if (size == out.length)
+                    out = Arrays.copyOf(out, out.length * 2);
+                int space = out.length - size;
+                int n = deflater.deflate(out, size, space, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                size += n;
+                // the output is complete when the stream is finished, or when a flush did not fill the space
+                if (last ? deflater.finished() : n < space)
+                    break;
+            }
+            return new Strip(out, size, adler.getValue(), filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * filters rows of pixels - each row is filtered by the filter of PNG that
+     * gives the smallest sum of absolute differences, and starts with the type of
+     * the filter
+     *
+     * @param rows  the source of the rows
+     * @param width the width of the image
+     * @param from  the first row
+     * @param to    the row after the last one
+     * @param out   the array of the filtered rows
+     */
+    private static void filterRows(RowReader rows, int width, int from, int to, byte[] out) {
+        int rowBytes = width * 3;
+        int[] pixels = new int[width];
+        // 3 zero bytes before each row stand for the pixel left of the first one
+        byte[] previous = new byte[rowBytes + 3];
+        byte[] current = new byte[rowBytes + 3];
+        if (from > 0)
+            unpack(rows, from - 1, pixels, previous);
+        for (int row = from, offset = 0; row < to; ++row, offset += rowBytes + 1) {
+            unpack(rows, row, pixels, current);
+            // the sums of all the filters in one pass over the row
+            long none = 0, sub = 0, up = 0, average = 0, paeth = 0;
+            for (int i = 3; i < rowBytes + 3; ++i) {
+                int a = current[i - 3] & 0xFF;
+                int b = previous[i] & 0xFF;
+                int c = previous[i - 3] & 0xFF;
+                int x = current[i] & 0xFF;
+                none += Math.abs((byte) x);
+                sub += Math.abs((byte) (x - a));
+                up += Math.abs((byte) (x - b));
+                average += Math.abs((byte) (x - ((a + b) >> 1)));
+                paeth += Math.abs((byte) (x - paeth(a, b, c)));
+            }
+            int type = 0;
+            long best = none;
+            long[] sums = {sub, up, average, paeth};
+            for (int t = 0; t < 4; ++t)
+                if (sums[t] < best) {
+                    best = sums[t];
+                    type = t + 1;
+                }
+
+            out[offset] = (byte) type;
+            int o = offset + 1 - 3;
+            switch (type) {
+                case 0 -> System.arraycopy(current, 3, out, offset + 1, rowBytes);
+                case 1 -> {
+                    for (int i = 3; i < rowBytes + 3; ++i)
+                        out[o + i] = (byte) (current[i] - current[i - 3]);
+                }
+                case 2 -> {
+                    for (int i = 3; i < rowBytes + 3; ++i)
+                        out[o + i] = (byte) (current[i] - previous[i]);
+                }
+                case 3 -> {
+                    for (int i = 3; i < rowBytes + 3; ++i)
+                        out[o + i] = (byte) (current[i] - (((current[i - 3] & 0xFF) + (previous[i] & 0xFF)) >> 1));
+                }
+                default -> {
+                    for (int i = 3; i < rowBytes + 3; ++i)
+                        out[o + i] = (byte) (current[i]
+                                - paeth(current[i - 3] & 0xFF, previous[i] & 0xFF, previous[i - 3] & 0xFF));
+                }
+            }
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+    }
+
+    /**
+     * the Paeth predictor of PNG - the neighbor closest to a + b - c
+     */
+    private static int paeth(int a, int b, int c) {
+        int pa = Math.abs(b - c);
+        int pb = Math.abs(a - c);
+        int pc = Math.abs(a + b - c - c);
+        return pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+    }
+
+    /**
+     * reads a row of pixels and copies it into bytes (red, green, blue) after 3
+     * zero bytes
+     */
+    private static void unpack(RowReader rows, int row, int[] pixels, byte[] out) {
+        rows.readRow(row, pixels);
+        for (int x = 0, o = 3; x < pixels.length; ++x) {
+            int pixel = pixels[x];
+            out[o++] = (byte) (pixel >> 16);
+            out[o++] = (byte) (pixel >> 8);
+            out[o++] = (byte) pixel;
+        }
+    }
+
+    /**
+     * calculates the Adler-32 checksum of two blocks of bytes one after another
+     * from the checksums of the blocks
+     *
+     * @param adler1  the checksum of the first block
+     * @param adler2  the checksum of the second block
+     * @param length2 the length of the second block
+     * @return the checksum of both blocks
+     */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = rem * sum1 % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - rem;
+        sum1 %= ADLER_BASE;
+        sum2 %= ADLER_BASE;
+        return sum2 << 16 | sum1;
+    }
+
+    /**
+     * writes a chunk of PNG - its length, type, data and CRC
+     */
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int size) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, size);
+        out.writeInt(size);
+        out.write(typeBytes);
+        out.write(data, 0, size);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -3,6 +3,7 @@ package renderer;
 import geometries.Intersectable.GeoPoint;
 import lighting.LightSource;
 import primitives.*;
+import primitives.RayStatistics.Counter;
 import scene.Scene;
 
 import java.util.List;
@@ -57,6 +58,7 @@ public class RayTracerBasic extends RayTracerBase {
      */
     @Override
     public Color traceRay(Ray ray) {
+        RayStatistics.count(Counter.PRIMARY_RAYS);
         GeoPoint closestPoint = findClosestIntersection(ray);
         return closestPoint == null ? scene.background : calcColor(closestPoint, ray);
     }
@@ -102,22 +104,25 @@ public class RayTracerBasic extends RayTracerBase {
         Vector v = ray.getDir();
         Vector n = gp.geometry.getNormal(gp.point);
         Material material = gp.geometry.getMaterial();
-        return calcGlobalEffect(constructReflectedRay(gp.point, v, n), level, k, material.kR)
-                .add(calcGlobalEffect(constructRefractedRay(gp.point, v, n), level, k, material.kT));
+        return calcGlobalEffect(constructReflectedRay(gp.point, v, n), Counter.REFLECTED_RAYS, level, k, material.kR)
+                .add(calcGlobalEffect(constructRefractedRay(gp.point, v, n), Counter.REFRACTED_RAYS, level, k,
+                        material.kT));
     }
 
     /**
      * Calculates the color contribution from a reflected ray at the given intersection point.
      *
      * @param ray   The reflected ray
+     * @param kind  The counter of the kind of the ray
      * @param level The recursion level
      * @param k     The attenuation factor
      * @param kx    The reflection factor of the material
      * @return The color contribution from the reflected ray
      */
-    private Color calcGlobalEffect(Ray ray, int level, Double3 k, Double3 kx) {
+    private Color calcGlobalEffect(Ray ray, Counter kind, int level, Double3 k, Double3 kx) {
         Double3 kkx = k.product(kx);
         if (kkx.lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK;
+        RayStatistics.count(kind);
         GeoPoint gp = findClosestIntersection(ray);
         if (gp == null) return scene.background.scale(kx);
         return isZero(gp.geometry.getNormal(gp.point).dotProduct(ray.getDir())) ? Color.BLACK :
@@ -137,8 +142,7 @@ public class RayTracerBasic extends RayTracerBase {
         double vn = v.dotProduct(n);
         if (isZero(vn)) return null;
 
-        Vector r = v.subtract(n.scale(2 * vn));
-        return new Ray(p, r, n);
+        return new Ray(p, v.subtract(n, 2 * vn), n);
     }
 
     /**
@@ -167,17 +171,8 @@ public class RayTracerBasic extends RayTracerBase {
     private Double3 transparency(GeoPoint gp, LightSource light, Vector l, Vector n, double nv) {
         Vector lightDirection = l.scale(-1); // from point to light source
         Ray lightRay = new Ray(gp.point, lightDirection, n);
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(lightRay, light.getDistance(gp.point));
-        Double3 ktr = Double3.ONE;
-        if (intersections == null)
-            return ktr;
-
-        for (GeoPoint geoP : intersections) {
-            ktr = ktr.product(geoP.geometry.getMaterial().kT);
-            if (ktr.lowerThan(MIN_CALC_COLOR_K))
-                return Double3.ZERO;
-        }
-        return ktr;
+        RayStatistics.count(Counter.SHADOW_RAYS);
+        return scene.getIntersectable().findTransparency(lightRay, light.getDistance(gp.point), MIN_CALC_COLOR_K);
     }
 
     /**
@@ -195,53 +190,57 @@ public class RayTracerBasic extends RayTracerBase {
         if (nv == 0) return Color.BLACK;
         int nShininess = geoPoint.geometry.getMaterial().nShininess;
         Material material = geoPoint.geometry.getMaterial();
+        Double3 kd = material.kD;
+        Double3 ks = material.kS;
 
-        Color color = geoPoint.geometry.getEmission();
+        // the light of the sources is summed by its components, without a color for each term
+        Color emission = geoPoint.geometry.getEmission();
+        double r = emission.getR();
+        double g = emission.getG();
+        double b = emission.getB();
         for (LightSource lightSource : scene.lights) {
             Vector l = lightSource.getL(geoPoint.point);
             double nl = alignZero(n.dotProduct(l));
             if (nl * nv > 0) {
                 Double3 ktr = transparency(geoPoint, lightSource, l, n, nv);
-                if (!ktr.product(k).lowerThan(MIN_CALC_COLOR_K)) {
-                    Color iL = lightSource.getIntensity(geoPoint.point).scale(ktr);
-                    color = color.add(
-                            calcDiffuse(material.kD, nl, iL),
-                            calcSpecular(material.kS, l, n, nl, v, nShininess, iL)
-                    );
+                if (ktr.getD1() * k.getD1() >= MIN_CALC_COLOR_K || ktr.getD2() * k.getD2() >= MIN_CALC_COLOR_K
+                        || ktr.getD3() * k.getD3() >= MIN_CALC_COLOR_K) {
+                    Color iL = lightSource.getIntensity(geoPoint.point);
+                    double diffuse = calcDiffuse(nl);
+                    double specular = calcSpecular(l, nl, v, nv, nShininess);
+                    r += iL.getR() * ktr.getD1() * (kd.getD1() * diffuse + ks.getD1() * specular);
+                    g += iL.getG() * ktr.getD2() * (kd.getD2() * diffuse + ks.getD2() * specular);
+                    b += iL.getB() * ktr.getD3() * (kd.getD3() * diffuse + ks.getD3() * specular);
                 }
             }
         }
-        return color;
+        return new Color(r, g, b);
     }
+
     /**
-     * Calculates the specular component of the light at the given point.
+     * Calculates the factor of the specular component of the light at the given point.
      *
-     * @param ks             The specular component
-     * @param l              The direction from the light to the point
-     * @param n              The normal from the object at the point
-     * @param nl             The dot product of n and l
-     * @param v              The direction from the camera to the point
-     * @param nShininess     The shininess level
-     * @param lightIntensity The light intensity
-     * @return The specular component at the point
+     * @param l          The direction from the light to the point
+     * @param nl         The dot product of n and l
+     * @param v          The direction from the camera to the point
+     * @param nv         The dot product of n and v
+     * @param nShininess The shininess level
+     * @return The factor of the light intensity and the specular component at the point
      */
-    private Color calcSpecular(Double3 ks, Vector l, Vector n, double nl, Vector v, int nShininess, Color lightIntensity) {
-        Vector r = l.add(n.scale(-2 * nl));
-        double vr = alignZero(v.dotProduct(r));
-        if (vr >= 0) return Color.BLACK;
-        return lightIntensity.scale(ks.scale(Math.pow(-vr, nShininess)));
+    private double calcSpecular(Vector l, double nl, Vector v, double nv, int nShininess) {
+        // v * r where r = l - 2 * nl * n, without creating r
+        double vr = alignZero(v.dotProduct(l) - 2 * nl * nv);
+        return vr >= 0 ? 0 : Math.pow(-vr, nShininess);
     }
 
     /**
-     * Calculates the diffuse component of the light at the given point.
+     * Calculates the factor of the diffuse component of the light at the given point.
      *
-     * @param kd             The diffuse component
-     * @param nl             The dot product of n and l
-     * @param lightIntensity The light intensity
-     * @return The diffuse component at the point
+     * @param nl The dot product of n and l
+     * @return The factor of the light intensity and the diffuse component at the point
      */
-    private Color calcDiffuse(Double3 kd, double nl, Color lightIntensity) {
-        return lightIntensity.scale(kd.scale(Math.abs(nl)));
+    private double calcDiffuse(double nl) {
+        return Math.abs(nl);
     }
 
     /**
@@ -260,7 +259,7 @@ public class RayTracerBasic extends RayTracerBase {
     private boolean unshaded(LightSource light, GeoPoint gp, Vector l, Vector n, double nl) {
         Vector lightDirection = l.scale(-1); // from point to light source
         Ray lightRay = new Ray(gp.point, lightDirection, n);
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(lightRay, light.getDistance(gp.point));
+        List<GeoPoint> intersections = scene.getIntersectable().findGeoIntersections(lightRay, light.getDistance(gp.point));
         if (intersections == null)
             return true;
         double lightDistance = light.getDistance(gp.point);
@@ -272,13 +271,15 @@ public class RayTracerBasic extends RayTracerBase {
     }
 
     /**
-     * Scans the ray and looks for the first point that cuts the ray
+     * Scans the ray and looks for the first point that cuts the ray, and counts the hit
      *
      * @param ray the ray
      * @return the closest point that cuts the ray and null if there is no points
      */
     private GeoPoint findClosestIntersection(Ray ray) {
-        List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
-        return intersections == null ? null : ray.findClosestGeoPoint(intersections);
+        GeoPoint gp = scene.getIntersectable().findClosestIntersection(ray);
+        if (gp != null)
+            RayStatistics.count(Counter.HITS);
+        return gp;
     }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package renderer;
+
+/**
+ * The ways a {@link Camera} can spread the tiles of an image between threads
+ *
+ * @author hodaya
+ */
+public enum RenderBackend {
+    /**
+     * platform threads that take tiles one after another (the amount is set by
+     * {@link Camera#setMultithreading(int)}, 0 renders in the calling thread)
+     */
+    THREADS,
+    /**
+     * a fork-join pool that splits the tiles recursively between its workers
+     * (the parallelism is set by {@link Camera#setMultithreading(int)}, 0 uses
+     * all the processors)
+     */
+    FORK_JOIN,
+    /**
+     * a virtual thread for each tile (Java 21 and up - older runtimes use a pool
+     * of platform threads, one for each processor)
+     */
+    VIRTUAL_THREADS
+}
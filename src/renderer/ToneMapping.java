@@ -0,0 +1,61 @@
+package renderer;
+
+/**
+ * The ways an {@link ImageWriter} turns the colors of the pixels, which may be
+ * brighter than white, into the 0-255 components of the image
+ *
+ * @author hodaya
+ */
+public enum ToneMapping {
+    /**
+     * components brighter than white are cut to white (255)
+     */
+    CLAMP {
+        @Override
+        double map(double value) {
+            return value;
+        }
+    },
+    /**
+     * the Reinhard operator - every component c (on a scale where white is 1) is
+     * mapped to c / (1 + c), so bright areas keep their details instead of
+     * burning out
+     */
+    REINHARD {
+        @Override
+        double map(double value) {
+            return 255 * value / (255 + value);
+        }
+    };
+
+    /**
+     * maps a component of a color
+     *
+     * @param value the component (white is 255)
+     * @return the mapped component, 255 or more is white
+     */
+    abstract double map(double value);
+
+    /**
+     * maps a color and quantizes it into a packed RGB value of the image
+     *
+     * @param r the red component
+     * @param g the green component
+     * @param b the blue component
+     * @return the RGB value (8 bits of each component)
+     */
+    int toRGB(double r, double g, double b) {
+        return quantize(map(r)) << 16 | quantize(map(g)) << 8 | quantize(map(b));
+    }
+
+    /**
+     * quantizes a mapped component into 8 bits
+     *
+     * @param value the mapped component
+     * @return the component in 0-255
+     */
+    private static int quantize(double value) {
+        int i = (int) value;
+        return i > 255 ? 255 : Math.max(i, 0);
+    }
+}
@@ -0,0 +1,492 @@
+package scene;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import renderer.Camera;
+import renderer.ImageWriter;
+import renderer.RayTracerBasic;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class responsible for saving a scene into a compact binary file and for
+ * constructing the scene back from it, much faster than from xml.<br/>
+ * The file holds the background, the ambient light, the camera, the materials,
+ * the lights and the bodies, and the hierarchies that were built for them - the
+ * hierarchy of the frozen scene and the hierarchies of the meshes - so they are
+ * not built again. The file is read through a memory mapped buffer, and the
+ * buffers of the meshes are copied from it in bulk.<br/>
+ * The file starts with a magic number and a version. All the values are big
+ * endian.
+ *
+ * @author hodaya
+ */
+public class BinaryScene {
+    /**
+     * the magic number at the start of the file ("3DSC")
+     */
+    private static final int MAGIC = 0x33445343;
+    /**
+     * the version of the file format
+     */
+    private static final int VERSION = 1;
+
+    // the kinds of lights
+    private static final byte DIRECTIONAL_LIGHT = 1;
+    private static final byte POINT_LIGHT = 2;
+    private static final byte SPOT_LIGHT = 3;
+
+    // the kinds of bodies
+    private static final byte SPHERE = 1;
+    private static final byte PLANE = 2;
+    private static final byte TRIANGLE = 3;
+    private static final byte POLYGON = 4;
+    private static final byte MESH = 5;
+
+    /**
+     * the size of the buffer the file is written through
+     */
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private final Scene scene;
+
+    /**
+     * the camera of the file, null if there is none
+     */
+    private Camera camera = null;
+
+    /**
+     * Ctor responsible for initializing the scene
+     *
+     * @param scene - scene to load into
+     */
+    public BinaryScene(Scene scene) {
+        this.scene = scene;
+    }
+
+    /**
+     * getter for the camera of the loaded file. The camera traces the rays of the
+     * scene, and has an image writer if it had one when it was saved.
+     *
+     * @return the camera, null if the file has no camera
+     */
+    public Camera getCamera() {
+        return camera;
+    }
+
+    // ***************** Save ********************** //
+
+    /**
+     * saves a scene into a binary file. The bodies are taken out of their inner
+     * collections. If the scene is frozen, its hierarchy is saved too, and it must
+     * not have been changed since it was frozen. Depth of field settings of the
+     * camera are not saved.
+     *
+     * @param scene  the scene
+     * @param camera the camera of the scene, null for none
+     * @param path   the file
+     * @throws IOException              if the file cannot be written
+     * @throws IllegalArgumentException if the scene has a body or a light that
+     *                                  cannot be saved
+     */
+    public static void save(Scene scene, Camera camera, Path path) throws IOException {
+        List<Intersectable> finites = new ArrayList<>();
+        List<Intersectable> infinites = new ArrayList<>();
+        scene.geometries.flatten(finites, infinites);
+        // the hierarchy of the frozen scene refers to the bounded bodies by their order
+        List<Intersectable> bodies = new ArrayList<>(finites);
+        bodies.addAll(infinites);
+        Map<Material, Integer> materials = new IdentityHashMap<>();
+        List<Material> materialList = new ArrayList<>();
+        for (Intersectable body : bodies) {
+            if (!(body instanceof Geometry geometry))
+                throw new IllegalArgumentException("Cannot save " + body.getClass().getSimpleName());
+            if (materials.putIfAbsent(geometry.getMaterial(), materialList.size()) == null)
+                materialList.add(geometry.getMaterial());
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.buffer(8).putInt(MAGIC).putInt(VERSION);
+            out.string(scene.name == null ? "" : scene.name);
+            out.color(scene.background);
+            out.color(scene.ambientLight.getIntensity());
+            writeCamera(out, camera);
+
+            out.buffer(4).putInt(materialList.size());
+            for (Material material : materialList) {
+                out.double3(material.kD);
+                out.double3(material.kS);
+                out.buffer(4).putInt(material.nShininess);
+                out.double3(material.kT);
+                out.double3(material.kR);
+            }
+
+            out.buffer(4).putInt(scene.lights.size());
+            for (LightSource light : scene.lights)
+                writeLight(out, light);
+
+            out.buffer(4).putInt(bodies.size());
+            for (Intersectable body : bodies)
+                writeBody(out, (Geometry) body, materials);
+
+            writeHierarchy(out, scene.getHierarchy());
+            out.flush();
+        }
+    }
+
+    /**
+     * writes the camera
+     */
+    private static void writeCamera(Writer out, Camera camera) throws IOException {
+        out.buffer(1).put((byte) (camera == null ? 0 : 1));
+        if (camera == null)
+            return;
+        out.point(camera.getPoint());
+        out.vector(camera.getVTo());
+        out.vector(camera.getVUp());
+        ImageWriter imageWriter = camera.getImageWriter();
+        out.buffer(32).putDouble(camera.getDis()).putDouble(camera.getWidth()).putDouble(camera.getHeight())
+                .putInt(imageWriter == null ? 0 : imageWriter.getNx()).putInt(imageWriter == null ? 0 : imageWriter.getNy());
+    }
+
+    /**
+     * writes a light
+     */
+    private static void writeLight(Writer out, LightSource light) throws IOException {
+        if (light instanceof DirectionalLight directional) {
+            out.buffer(1).put(DIRECTIONAL_LIGHT);
+            out.color(directional.getIntensity());
+            out.vector(directional.getDirection());
+        } else if (light instanceof PointLight point) {
+            boolean spot = point instanceof SpotLight;
+            out.buffer(1).put(spot ? SPOT_LIGHT : POINT_LIGHT);
+            out.color(point.getIntensity());
+            out.point(point.getPosition());
+            if (spot)
+                out.vector(((SpotLight) point).getDirection());
+            out.buffer(32).putDouble(point.getKc()).putDouble(point.getKl()).putDouble(point.getKq())
+                    .putDouble(point.getRadius());
+        } else
+            throw new IllegalArgumentException("Cannot save " + light.getClass().getSimpleName());
+    }
+
+    /**
+     * writes a body with its material number and emission
+     */
+    private static void writeBody(Writer out, Geometry body, Map<Material, Integer> materials) throws IOException {
+        byte kind = body instanceof Sphere ? SPHERE
+                : body instanceof Plane ? PLANE
+                : body instanceof Triangle ? TRIANGLE
+                : body instanceof Polygon ? POLYGON
+                : body instanceof TriangleMesh ? MESH : 0;
+        if (kind == 0)
+            throw new IllegalArgumentException("Cannot save " + body.getClass().getSimpleName());
+        out.buffer(5).put(kind).putInt(materials.get(body.getMaterial()));
+        out.color(body.getEmission());
+        switch (kind) {
+            case SPHERE -> {
+                Sphere sphere = (Sphere) body;
+                out.point(sphere.getCenter());
+                out.buffer(8).putDouble(sphere.getRadius());
+            }
+            case PLANE -> {
+                Plane plane = (Plane) body;
+                out.point(plane.getQ0());
+                out.vector(plane.getNormal());
+            }
+            case TRIANGLE, POLYGON -> {
+                List<Point> vertices = ((Polygon) body).getVertices();
+                if (kind == POLYGON)
+                    out.buffer(4).putInt(vertices.size());
+                for (Point vertex : vertices)
+                    out.point(vertex);
+            }
+            default -> {
+                TriangleMesh mesh = (TriangleMesh) body;
+                out.doubles(mesh.getPositions());
+                out.ints(mesh.getIndices());
+                writeHierarchy(out, mesh.getHierarchy());
+            }
+        }
+    }
+
+    /**
+     * writes a hierarchy, if there is one
+     */
+    private static void writeHierarchy(Writer out, BVHNodes hierarchy) throws IOException {
+        out.buffer(1).put((byte) (hierarchy == null ? 0 : 1));
+        if (hierarchy == null)
+            return;
+        long size = hierarchy.byteSize();
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The hierarchy is too big to save");
+        hierarchy.write(out.buffer((int) size));
+    }
+
+    /**
+     * Class Writer writes values into a file channel through a buffer
+     */
+    private static final class Writer {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * gives a buffer to put a given amount of bytes into - the bytes that were
+         * put before are written first if they do not leave enough room
+         *
+         * @param bytes the amount of bytes
+         * @return the buffer
+         */
+        ByteBuffer buffer(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes)
+                    buffer = ByteBuffer.allocate(bytes);
+            }
+            return buffer;
+        }
+
+        /**
+         * writes the bytes that were put into the buffer
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        void string(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer(4 + bytes.length).putInt(bytes.length).put(bytes);
+        }
+
+        void double3(Double3 value) throws IOException {
+            buffer(24).putDouble(value.getD1()).putDouble(value.getD2()).putDouble(value.getD3());
+        }
+
+        void color(Color value) throws IOException {
+            buffer(24).putDouble(value.getR()).putDouble(value.getG()).putDouble(value.getB());
+        }
+
+        void point(Point value) throws IOException {
+            buffer(24).putDouble(value.getX()).putDouble(value.getY()).putDouble(value.getZ());
+        }
+
+        void vector(Vector value) throws IOException {
+            buffer(24).putDouble(value.getX()).putDouble(value.getY()).putDouble(value.getZ());
+        }
+
+        void doubles(double[] values) throws IOException {
+            buffer(4).putInt(values.length);
+            for (int i = 0; i < values.length; ) {
+                int count = Math.min(values.length - i, WRITE_BUFFER / Double.BYTES);
+                ByteBuffer out = buffer(count * Double.BYTES);
+                out.asDoubleBuffer().put(values, i, count);
+                out.position(out.position() + count * Double.BYTES);
+                i += count;
+            }
+        }
+
+        void ints(int[] values) throws IOException {
+            buffer(4).putInt(values.length);
+            for (int i = 0; i < values.length; ) {
+                int count = Math.min(values.length - i, WRITE_BUFFER / Integer.BYTES);
+                ByteBuffer out = buffer(count * Integer.BYTES);
+                out.asIntBuffer().put(values, i, count);
+                out.position(out.position() + count * Integer.BYTES);
+                i += count;
+            }
+        }
+    }
+
+    // ***************** Load ********************** //
+
+    /**
+     * load Scene From a binary file that was saved by
+     * {@link #save(Scene, Camera, Path)}. The scene gets new bodies and lights,
+     * and it is frozen if it was frozen when it was saved.
+     *
+     * @param path - the binary file
+     * @throws IOException if the file cannot be read or is not a valid scene file
+     */
+    public void load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("The scene file is too big");
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            read(in);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("The scene file ends too soon", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid scene file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * reads the scene from the buffer
+     */
+    private void read(ByteBuffer in) throws IOException {
+        if (in.remaining() < 8 || in.getInt() != MAGIC)
+            throw new IOException("Not a scene file");
+        int version = in.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported scene file version " + version);
+
+        byte[] name = new byte[count(in, 1)];
+        in.get(name);
+        scene.name = new String(name, StandardCharsets.UTF_8);
+        scene.setBackground(color(in));
+        scene.setAmbientLight(new AmbientLight(color(in), Double3.ONE));
+        camera = in.get() == 0 ? null : readCamera(in);
+
+        Material[] materials = new Material[count(in, 100)];
+        for (int i = 0; i < materials.length; ++i)
+            materials[i] = new Material().setKd(double3(in)).setKs(double3(in)).setShininess(in.getInt())
+                    .setKt(double3(in)).setKr(double3(in));
+
+        int lightCount = count(in, 25);
+        List<LightSource> lights = new ArrayList<>(lightCount);
+        for (int i = 0; i < lightCount; ++i)
+            lights.add(readLight(in));
+        scene.setLights(lights);
+
+        int bodyCount = count(in, 29);
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < bodyCount; ++i)
+            geometries.add(readBody(in, materials));
+        scene.setGeometries(geometries);
+
+        BVHNodes hierarchy = in.get() == 0 ? null : BVHNodes.read(in);
+        if (hierarchy != null)
+            try {
+                scene.freeze(hierarchy);
+            } catch (IllegalArgumentException e) {
+                // the hierarchy of a damaged file, or of bodies that were changed after the
+                // scene was frozen, does not fit the bodies - it is built again
+                scene.freeze();
+            }
+    }
+
+    /**
+     * reads the camera
+     */
+    private Camera readCamera(ByteBuffer in) {
+        Camera result = new Camera(point(in), vector(in), vector(in));
+        result.setViewPlaneDistance(in.getDouble());
+        result.setViewPlaneSize(in.getDouble(), in.getDouble());
+        int nx = in.getInt();
+        int ny = in.getInt();
+        if (nx > 0 && ny > 0)
+            result.setImageWriter(new ImageWriter(scene.name, nx, ny));
+        return result.setRayTracer(new RayTracerBasic(scene));
+    }
+
+    /**
+     * reads a light
+     */
+    private static LightSource readLight(ByteBuffer in) {
+        byte kind = in.get();
+        Color intensity = color(in);
+        if (kind == DIRECTIONAL_LIGHT)
+            return new DirectionalLight(intensity, vector(in));
+        if (kind != POINT_LIGHT && kind != SPOT_LIGHT)
+            throw new IllegalArgumentException("Unknown light kind " + kind);
+        Point position = point(in);
+        PointLight light = kind == SPOT_LIGHT ? new SpotLight(intensity, position, vector(in))
+                : new PointLight(intensity, position);
+        return light.setKc(in.getDouble()).setKl(in.getDouble()).setKq(in.getDouble()).setradius(in.getDouble());
+    }
+
+    /**
+     * reads a body
+     */
+    private static Geometry readBody(ByteBuffer in, Material[] materials) {
+        byte kind = in.get();
+        int material = in.getInt();
+        if (material < 0 || material >= materials.length)
+            throw new IllegalArgumentException("Unknown material " + material);
+        Color emission = color(in);
+        Geometry body = switch (kind) {
+            case SPHERE -> {
+                Point center = point(in);
+                yield new Sphere(in.getDouble(), center);
+            }
+            case PLANE -> new Plane(point(in), vector(in));
+            case TRIANGLE -> new Triangle(point(in), point(in), point(in));
+            case POLYGON -> {
+                Point[] vertices = new Point[count(in, 24)];
+                for (int i = 0; i < vertices.length; ++i)
+                    vertices[i] = point(in);
+                yield new Polygon(vertices);
+            }
+            case MESH -> {
+                double[] positions = new double[count(in, Double.BYTES)];
+                in.asDoubleBuffer().get(positions);
+                in.position(in.position() + positions.length * Double.BYTES);
+                int[] indices = new int[count(in, Integer.BYTES)];
+                in.asIntBuffer().get(indices);
+                in.position(in.position() + indices.length * Integer.BYTES);
+                BVHNodes hierarchy = in.get() == 0 ? null : BVHNodes.read(in);
+                if (hierarchy == null)
+                    yield new TriangleMesh(positions, indices);
+                try {
+                    yield new TriangleMesh(positions, indices, hierarchy);
+                } catch (IllegalArgumentException e) {
+                    // the hierarchy of a damaged file, or of a mesh whose vertices moved without
+                    // a refit, does not fit the faces - it is built again (and bad buffers still fail)
+                    yield new TriangleMesh(positions, indices);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown body kind " + kind);
+        };
+        return body.setMaterial(materials[material]).setEmission(emission);
+    }
+
+    /**
+     * reads an amount of items, and checks that the rest of the file can hold them
+     *
+     * @param in       the buffer
+     * @param itemSize the smallest size of an item in bytes
+     * @return the amount
+     */
+    private static int count(ByteBuffer in, int itemSize) {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / itemSize)
+            throw new IllegalArgumentException("Invalid amount " + count);
+        return count;
+    }
+
+    private static Double3 double3(ByteBuffer in) {
+        return new Double3(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    private static Color color(ByteBuffer in) {
+        return new Color(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    private static Point point(ByteBuffer in) {
+        return new Point(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    private static Vector vector(ByteBuffer in) {
+        return new Vector(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+}
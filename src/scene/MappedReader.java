@@ -0,0 +1,178 @@
+package scene;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class MappedReader reads a file through memory mapped windows.<br/>
+ * Only one window of the file is mapped at a time, so files of any size are read
+ * with a fixed amount of memory, and the bytes are taken straight from the
+ * mapping without copying them into buffers or strings.
+ *
+ * @author hodaya
+ */
+class MappedReader implements AutoCloseable {
+    /**
+     * the size of a mapped window in bytes
+     */
+    private static final int WINDOW = 1 << 26;
+
+    /**
+     * the channel of the file
+     */
+    private final FileChannel channel;
+    /**
+     * the size of the file
+     */
+    private final long size;
+    /**
+     * the position of the current window in the file
+     */
+    private long base = 0;
+    /**
+     * the current window
+     */
+    private MappedByteBuffer buffer;
+    /**
+     * the byte order of the binary values
+     */
+    private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+    /**
+     * constructor that opens a file and maps its first window
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MappedReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        map(0);
+    }
+
+    /**
+     * maps the window that starts at a given position of the file
+     *
+     * @param position the position in the file
+     * @throws IOException if the window cannot be mapped
+     */
+    private void map(long position) throws IOException {
+        base = position;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(WINDOW, size - base));
+        buffer.order(order);
+    }
+
+    /**
+     * makes sure that a given amount of bytes can be read from the current window,
+     * by mapping a new window from the current position if needed
+     *
+     * @param bytes the amount of bytes
+     * @throws IOException if the file ends before
+     */
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes)
+            return;
+        long position = base + buffer.position();
+        if (size - position < bytes)
+            throw new EOFException("Unexpected end of file");
+        map(position);
+    }
+
+    /**
+     * @return the amount of bytes left in the file
+     */
+    long remaining() {
+        return size - base - buffer.position();
+    }
+
+    /**
+     * setter for the byte order of the binary values
+     *
+     * @param order the byte order
+     */
+    void setOrder(ByteOrder order) {
+        this.order = order;
+        buffer.order(order);
+    }
+
+    /**
+     * reads the next byte as text
+     *
+     * @return the byte (0 to 255), -1 at the end of the file
+     * @throws IOException if the next window cannot be mapped
+     */
+    int read() throws IOException {
+        if (!buffer.hasRemaining()) {
+            long position = base + buffer.position();
+            if (position >= size)
+                return -1;
+            map(position);
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * reads a binary byte
+     *
+     * @return the byte
+     * @throws IOException if the file ends before
+     */
+    byte getByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    /**
+     * reads a binary short
+     *
+     * @return the short
+     * @throws IOException if the file ends before
+     */
+    short getShort() throws IOException {
+        require(2);
+        return buffer.getShort();
+    }
+
+    /**
+     * reads a binary int
+     *
+     * @return the int
+     * @throws IOException if the file ends before
+     */
+    int getInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    /**
+     * reads a binary float
+     *
+     * @return the float
+     * @throws IOException if the file ends before
+     */
+    float getFloat() throws IOException {
+        require(4);
+        return buffer.getFloat();
+    }
+
+    /**
+     * reads a binary double
+     *
+     * @return the double
+     * @throws IOException if the file ends before
+     */
+    double getDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,603 @@
+package scene;
+
+import geometries.BVHCache;
+import geometries.TriangleMesh;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class MeshLoader loads triangle meshes from Wavefront OBJ and PLY files.<br/>
+ * The files are read through memory mapped windows (see {@link MappedReader}) and
+ * the numbers are parsed straight from the bytes, so no line or number strings
+ * are created. The vertices and faces go straight into the flat buffers of a
+ * {@link TriangleMesh}, and polygons with more than 3 vertices are split into
+ * triangle fans.<br/>
+ * Only the positions and the faces are read - normals, texture coordinates and
+ * any other data are skipped.
+ *
+ * @author hodaya
+ */
+public final class MeshLoader {
+    /**
+     * powers of 10 that are exact in double
+     */
+    private static final double[] POWERS_OF_10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /**
+     * the largest amount of values in a buffer
+     */
+    private static final long MAX_VALUES = Integer.MAX_VALUE - 8;
+
+    /**
+     * the file
+     */
+    private final MappedReader reader;
+    /**
+     * the current character of a text file, -1 at the end of the file
+     */
+    private int c;
+    /**
+     * the vertex positions that were read
+     */
+    private double[] positions = new double[3 * 1024];
+    /**
+     * amount of values in the positions buffer
+     */
+    private int positionCount = 0;
+    /**
+     * the faces that were read
+     */
+    private int[] indices = new int[3 * 1024];
+    /**
+     * amount of values in the indices buffer
+     */
+    private int indexCount = 0;
+
+    /**
+     * constructor of a loader of a file
+     *
+     * @param reader the file
+     */
+    private MeshLoader(MappedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * loads a mesh by the extension of the file name (.obj or .ply)
+     *
+     * @param path the file
+     * @return the mesh
+     * @throws IOException              if the file cannot be read or is not valid
+     * @throws IllegalArgumentException if the extension is not known
+     */
+    public static TriangleMesh load(Path path) throws IOException {
+        return load(path, null);
+    }
+
+    /**
+     * loads a mesh by the extension of the file name (.obj or .ply), with the
+     * hierarchy of its faces taken from a cache if it was built before
+     *
+     * @param path  the file
+     * @param cache the cache of hierarchies, null to always build
+     * @return the mesh
+     * @throws IOException              if the file cannot be read or is not valid
+     * @throws IllegalArgumentException if the extension is not known
+     */
+    public static TriangleMesh load(Path path, BVHCache cache) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        boolean obj = name.endsWith(".obj");
+        if (!obj && !name.endsWith(".ply"))
+            throw new IllegalArgumentException("Unknown mesh file type: " + path);
+        try (MappedReader reader = new MappedReader(path)) {
+            MeshLoader loader = new MeshLoader(reader);
+            if (obj)
+                loader.readObj();
+            else
+                loader.readPly();
+            return loader.mesh(path, cache);
+        }
+    }
+
+    /**
+     * loads a mesh from a Wavefront OBJ file. The vertices ('v') and faces ('f')
+     * are read, including negative (relative) indices and the 'v/vt/vn' forms.
+     *
+     * @param path the file
+     * @return the mesh
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static TriangleMesh loadObj(Path path) throws IOException {
+        try (MappedReader reader = new MappedReader(path)) {
+            MeshLoader loader = new MeshLoader(reader);
+            loader.readObj();
+            return loader.mesh(path, null);
+        }
+    }
+
+    /**
+     * loads a mesh from a PLY file (binary in either byte order, or ascii). The
+     * x, y and z properties of the 'vertex' element and the 'vertex_indices' list
+     * of the 'face' element are read, other properties and elements are skipped.
+     *
+     * @param path the file
+     * @return the mesh
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static TriangleMesh loadPly(Path path) throws IOException {
+        try (MappedReader reader = new MappedReader(path)) {
+            MeshLoader loader = new MeshLoader(reader);
+            loader.readPly();
+            return loader.mesh(path, null);
+        }
+    }
+
+    /**
+     * creates the mesh from the buffers that were read
+     *
+     * @param path  the file (for the error message)
+     * @param cache the cache of hierarchies, null to always build
+     * @return the mesh
+     * @throws IOException if there are no faces or a face refers to a missing vertex
+     */
+    private TriangleMesh mesh(Path path, BVHCache cache) throws IOException {
+        try {
+            return new TriangleMesh(Arrays.copyOf(positions, positionCount), Arrays.copyOf(indices, indexCount), cache);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid mesh in " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // ***************** Buffers ********************** //
+
+    /**
+     * adds a vertex to the positions buffer
+     */
+    private void addVertex(double x, double y, double z) {
+        if (positionCount + 3 > positions.length)
+            positions = Arrays.copyOf(positions, positions.length * 2);
+        positions[positionCount++] = x;
+        positions[positionCount++] = y;
+        positions[positionCount++] = z;
+    }
+
+    /**
+     * adds a face to the indices buffer
+     */
+    private void addFace(int a, int b, int c) {
+        if (indexCount + 3 > indices.length)
+            indices = Arrays.copyOf(indices, indices.length * 2);
+        indices[indexCount++] = a;
+        indices[indexCount++] = b;
+        indices[indexCount++] = c;
+    }
+
+    // ***************** Text ********************** //
+
+    /**
+     * moves to the next character
+     */
+    private void next() throws IOException {
+        c = reader.read();
+    }
+
+    /**
+     * skips spaces and tabs (and carriage returns of Windows line ends)
+     */
+    private void skipBlanks() throws IOException {
+        while (c == ' ' || c == '\t' || c == '\r')
+            next();
+    }
+
+    /**
+     * skips the rest of the line, including its end
+     */
+    private void skipLine() throws IOException {
+        while (c != '\n' && c != -1)
+            next();
+        next();
+    }
+
+    /**
+     * @return true if the current character ends a word
+     */
+    private boolean atWordEnd() {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == -1;
+    }
+
+    /**
+     * parses an integer number from the text
+     *
+     * @return the number
+     * @throws IOException if there is no number, or if it is out of the range of an int
+     */
+    private int parseInt() throws IOException {
+        skipBlanks();
+        boolean negative = c == '-';
+        if (negative || c == '+')
+            next();
+        if (c < '0' || c > '9')
+            throw new IOException("A number is expected");
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE))
+                throw new IOException("A number is out of the range of an int");
+            next();
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * parses a decimal number from the text (with an optional fraction and exponent)
+     *
+     * @return the number
+     * @throws IOException if there is no number
+     */
+    private double parseDouble() throws IOException {
+        skipBlanks();
+        boolean negative = c == '-';
+        if (negative || c == '+')
+            next();
+        long mantissa = 0;
+        int exponent = 0;
+        boolean digits = false;
+        // digits beyond the precision of a long are dropped, only their position counts
+        while (c >= '0' && c <= '9') {
+            if (mantissa < 100_000_000_000_000_000L)
+                mantissa = mantissa * 10 + (c - '0');
+            else
+                ++exponent;
+            digits = true;
+            next();
+        }
+        if (c == '.') {
+            next();
+            while (c >= '0' && c <= '9') {
+                if (mantissa < 100_000_000_000_000_000L) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    --exponent;
+                }
+                digits = true;
+                next();
+            }
+        }
+        if (!digits)
+            throw new IOException("A number is expected");
+        if (c == 'e' || c == 'E') {
+            next();
+            exponent += parseInt();
+        }
+        double value = scale(mantissa, exponent);
+        return negative ? -value : value;
+    }
+
+    /**
+     * calculates mantissa * 10^exponent, exactly rounded when both are small enough
+     */
+    private static double scale(long mantissa, int exponent) {
+        if (exponent == 0 || mantissa == 0)
+            return mantissa;
+        if (mantissa < 1L << 53 && exponent >= -22 && exponent <= 22)
+            return exponent > 0 ? mantissa * POWERS_OF_10[exponent] : mantissa / POWERS_OF_10[-exponent];
+        return mantissa * Math.pow(10, exponent);
+    }
+
+    // ***************** OBJ ********************** //
+
+    /**
+     * reads the vertices and faces of an OBJ file
+     */
+    private void readObj() throws IOException {
+        next();
+        while (c != -1) {
+            skipBlanks();
+            if (c == 'v') {
+                next();
+                if (c == ' ' || c == '\t') {
+                    double x = parseDouble();
+                    double y = parseDouble();
+                    double z = parseDouble();
+                    addVertex(x, y, z);
+                }
+            } else if (c == 'f') {
+                next();
+                if (c == ' ' || c == '\t')
+                    readObjFace();
+            }
+            skipLine();
+        }
+    }
+
+    /**
+     * reads the vertex references of an OBJ face and adds it as a triangle fan
+     */
+    private void readObjFace() throws IOException {
+        int vertexCount = positionCount / 3;
+        int first = -1;
+        int previous = -1;
+        int count = 0;
+        while (true) {
+            skipBlanks();
+            if (c == '\n' || c == -1 || c == '#')
+                break;
+            int index = parseInt();
+            if (index == 0)
+                throw new IOException("Vertex index 0 in an OBJ face");
+            index = index > 0 ? index - 1 : vertexCount + index;
+            // skip the texture and normal references
+            while (!atWordEnd())
+                next();
+            if (count == 0)
+                first = index;
+            else if (count >= 2)
+                addFace(first, previous, index);
+            previous = index;
+            ++count;
+        }
+        if (count < 3)
+            throw new IOException("An OBJ face with less than 3 vertices");
+    }
+
+    // ***************** PLY ********************** //
+
+    /**
+     * formats of PLY files
+     */
+    private enum PlyFormat {ASCII, BINARY_LITTLE_ENDIAN, BINARY_BIG_ENDIAN}
+
+    /**
+     * a property of a PLY element
+     *
+     * @param name      the name of the property
+     * @param type      the type of the value (of the items for a list)
+     * @param countType the type of the count of a list, null for a single value
+     */
+    private record PlyProperty(String name, String type, String countType) {
+    }
+
+    /**
+     * an element of a PLY file
+     *
+     * @param name       the name of the element
+     * @param count      the amount of items
+     * @param properties the properties of each item
+     */
+    private record PlyElement(String name, int count, List<PlyProperty> properties) {
+    }
+
+    /**
+     * the format of the PLY file that is read
+     */
+    private PlyFormat format;
+
+    /**
+     * reads a line of the PLY header
+     *
+     * @return the words of the line
+     */
+    private String[] readHeaderLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = reader.read()) != '\n') {
+            if (b == -1)
+                throw new IOException("The PLY header is not complete");
+            if (b != '\r')
+                line.append((char) b);
+        }
+        return line.toString().trim().split("\\s+");
+    }
+
+    /**
+     * reads the header and the data of a PLY file
+     */
+    private void readPly() throws IOException {
+        if (!readHeaderLine()[0].equals("ply"))
+            throw new IOException("Not a PLY file");
+        List<PlyElement> elements = new ArrayList<>();
+        while (true) {
+            String[] words = readHeaderLine();
+            switch (words[0]) {
+                case "format" -> format = switch (headerWords(words, 2)[1]) {
+                    case "ascii" -> PlyFormat.ASCII;
+                    case "binary_little_endian" -> PlyFormat.BINARY_LITTLE_ENDIAN;
+                    case "binary_big_endian" -> PlyFormat.BINARY_BIG_ENDIAN;
+                    default -> throw new IOException("Unknown PLY format: " + words[1]);
+                };
+                case "element" -> elements.add(new PlyElement(headerWords(words, 3)[1], parseCount(words),
+                        new ArrayList<>()));
+                case "property" -> {
+                    if (elements.isEmpty())
+                        throw new IOException("A PLY property before any element");
+                    elements.get(elements.size() - 1).properties().add(headerWords(words, 3)[1].equals("list")
+                            ? new PlyProperty(headerWords(words, 5)[4], words[3], words[2])
+                            : new PlyProperty(words[2], words[1], null));
+                }
+                case "end_header" -> {
+                    if (format == null)
+                        throw new IOException("The PLY format is missing");
+                    readPlyData(elements);
+                    return;
+                }
+                default -> {
+                    // comments, obj_info and empty lines
+                }
+            }
+        }
+    }
+
+    /**
+     * checks that a line of the header of a PLY file has enough words
+     *
+     * @param words the words of the line
+     * @param count the least amount of words
+     * @return the words
+     * @throws IOException if the line is too short
+     */
+    private static String[] headerWords(String[] words, int count) throws IOException {
+        if (words.length < count)
+            throw new IOException("Invalid PLY header line: " + String.join(" ", words));
+        return words;
+    }
+
+    /**
+     * parses the amount of items of an element in the header of a PLY file
+     *
+     * @param words the words of the element line
+     * @return the amount
+     * @throws IOException if the amount is not a valid number
+     */
+    private static int parseCount(String[] words) throws IOException {
+        try {
+            int count = Integer.parseInt(words[2]);
+            if (count >= 0)
+                return count;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IOException("Invalid PLY element: " + String.join(" ", words));
+    }
+
+    /**
+     * calculates the size of a buffer that holds the values of an element too.
+     * Every property of an item takes a byte of the file at least, so the count
+     * of a damaged header is found before the buffer is allocated.
+     *
+     * @param used    the amount of values in the buffer
+     * @param element the element - 3 values for each item (at least)
+     * @return the size of the buffer
+     * @throws IOException if the items do not fit in the rest of the file or in a buffer
+     */
+    private int bufferSize(int used, PlyElement element) throws IOException {
+        // the current character of an ascii file was read already
+        long bytes = reader.remaining() + (format == PlyFormat.ASCII ? 1 : 0);
+        if ((long) element.count() * element.properties().size() > bytes)
+            throw new IOException("The PLY file is too short for " + element.count() + " " + element.name()
+                    + " items (" + bytes + " bytes are left)");
+        long size = used + element.count() * 3L;
+        if (size > MAX_VALUES)
+            throw new IOException("Too many " + element.name() + " items in the PLY file: " + element.count());
+        return (int) size;
+    }
+
+    /**
+     * reads the data of the elements of a PLY file
+     */
+    private void readPlyData(List<PlyElement> elements) throws IOException {
+        if (format == PlyFormat.ASCII)
+            next();
+        else
+            reader.setOrder(format == PlyFormat.BINARY_LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        for (PlyElement element : elements) {
+            switch (element.name()) {
+                case "vertex" -> {
+                    int size = bufferSize(positionCount, element);
+                    if (positions.length < size)
+                        positions = Arrays.copyOf(positions, size);
+                    readPlyVertices(element);
+                }
+                case "face" -> {
+                    int size = bufferSize(indexCount, element);
+                    if (indices.length < size)
+                        indices = Arrays.copyOf(indices, size);
+                    readPlyFaces(element);
+                }
+                default -> {
+                    for (int i = 0; i < element.count(); ++i)
+                        for (PlyProperty property : element.properties())
+                            skipPlyProperty(property);
+                }
+            }
+        }
+    }
+
+    /**
+     * reads the vertex element of a PLY file
+     */
+    private void readPlyVertices(PlyElement element) throws IOException {
+        double x = 0;
+        double y = 0;
+        double z = 0;
+        for (int i = 0; i < element.count(); ++i) {
+            for (PlyProperty property : element.properties()) {
+                if (property.countType() != null) {
+                    skipPlyProperty(property);
+                    continue;
+                }
+                double value = readPlyValue(property.type());
+                switch (property.name()) {
+                    case "x" -> x = value;
+                    case "y" -> y = value;
+                    case "z" -> z = value;
+                    default -> {
+                    }
+                }
+            }
+            addVertex(x, y, z);
+        }
+    }
+
+    /**
+     * reads the face element of a PLY file and adds the faces as triangle fans
+     */
+    private void readPlyFaces(PlyElement element) throws IOException {
+        for (int i = 0; i < element.count(); ++i)
+            for (PlyProperty property : element.properties()) {
+                if (property.countType() == null
+                        || !property.name().equals("vertex_indices") && !property.name().equals("vertex_index")) {
+                    skipPlyProperty(property);
+                    continue;
+                }
+                int count = (int) readPlyValue(property.countType());
+                if (count < 3)
+                    throw new IOException("A PLY face with less than 3 vertices");
+                int first = (int) readPlyValue(property.type());
+                int previous = (int) readPlyValue(property.type());
+                for (int j = 2; j < count; ++j) {
+                    int index = (int) readPlyValue(property.type());
+                    addFace(first, previous, index);
+                    previous = index;
+                }
+            }
+    }
+
+    /**
+     * skips the value (or the list) of a property
+     */
+    private void skipPlyProperty(PlyProperty property) throws IOException {
+        int count = property.countType() == null ? 1 : (int) readPlyValue(property.countType());
+        for (int i = 0; i < count; ++i)
+            readPlyValue(property.type());
+    }
+
+    /**
+     * reads a value of a PLY property
+     *
+     * @param type the type of the value
+     * @return the value
+     */
+    private double readPlyValue(String type) throws IOException {
+        if (format == PlyFormat.ASCII) {
+            // the values of ascii files are separated by line ends too
+            while (c == '\n')
+                next();
+            return parseDouble();
+        }
+        return switch (type) {
+            case "char", "int8" -> reader.getByte();
+            case "uchar", "uint8" -> reader.getByte() & 0xFF;
+            case "short", "int16" -> reader.getShort();
+            case "ushort", "uint16" -> reader.getShort() & 0xFFFF;
+            case "int", "int32" -> reader.getInt();
+            case "uint", "uint32" -> reader.getInt() & 0xFFFFFFFFL;
+            case "float", "float32" -> reader.getFloat();
+            case "double", "float64" -> reader.getDouble();
+            default -> throw new IOException("Unknown PLY type: " + type);
+        };
+    }
+}
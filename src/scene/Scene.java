@@ -1,5 +1,10 @@
 package scene;
 
+import geometries.BVHCache;
+import geometries.BVHKind;
+import geometries.BVHNodes;
+import geometries.BVHReport;
+import geometries.CompiledGeometries;
 import geometries.Geometries;
 import geometries.Intersectable;
 import lighting.AmbientLight;
@@ -7,6 +12,7 @@ import lighting.LightSource;
 import primitives.Color;
 import primitives.Double3;
 
+import java.nio.file.Path;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -42,6 +48,36 @@ public class Scene {
      */
     public List<LightSource> lights = new LinkedList<>();
 
+    /**
+     * The report of the last bounding volume hierarchy that was built
+     */
+    private BVHReport bvhReport = null;
+
+    /**
+     * The compiled copy of the geometries that the rays are traced against, null until the scene is frozen
+     */
+    private CompiledGeometries compiled = null;
+
+    /**
+     * The cache of the Bounding Volume Hierarchies, null if the hierarchies are always built
+     */
+    private BVHCache bvhCache = null;
+
+    /**
+     * The way the Bounding Volume Hierarchies of the scene are built
+     */
+    private BVHKind bvhKind = BVHKind.SAH;
+
+    /**
+     * The growth of the expected cost of a refitted Bounding Volume Hierarchy that makes it built again
+     */
+    private double maxCostGrowth = BVHNodes.DEFAULT_MAX_COST_GROWTH;
+
+    /**
+     * Whether the boxes of the bodies are checked before the bodies are intersected (Conservative Bounding Region)
+     */
+    private boolean cbr = false;
+
     /**
      * Constructs a new scene with a given name.
      * Sets all colors as black and creates new empty lists for geometries and lights.
@@ -96,28 +132,161 @@ public class Scene {
      */
     public Scene setGeometries(Geometries geometries) {
         this.geometries = geometries;
+        if (cbr)
+            geometries.setCBR(true);
+        compiled = null;
         return this;
 
     }
     /**
-     * Sets Conservative Bounding Region for creating the scene (for its 3D model).<br>
-     * It must be called <b><u>before</u></b> creating the 3D model (adding bodyes to the scene).
+     * Sets Conservative Bounding Region for the scene (for its 3D model) - the box of every body is
+     * checked before the body is intersected. The boxes are calculated when they are first needed, so
+     * it may be called before or after creating the 3D model, and it affects only this scene.
      * @return scene object itself
      */
     public Scene setCBR() {
-        Intersectable.setCbr();
+        cbr = true;
+        geometries.setCBR(true);
         return this;
     }
 
+    /**
+     * Sets a directory where the Bounding Volume Hierarchies of the scene are kept between runs.
+     * {@link #setBVH()} and {@link #freeze()} take the hierarchy from there when the bodies did not
+     * change since it was built, instead of building it again, and so do the meshes of the scene files.
+     * @param directory the directory of the cache, null to always build the hierarchies
+     * @return scene object itself
+     */
+    public Scene setBVHCache(Path directory) {
+        bvhCache = directory == null ? null : new BVHCache(directory);
+        return this;
+    }
+
+    /**
+     * Sets the way {@link #setBVH()} and {@link #freeze()} build the Bounding Volume Hierarchy -
+     * {@link BVHKind#SAH} (the default) for the fastest rendering, {@link BVHKind#LBVH} for the
+     * fastest build, when the scene is rebuilt for every frame
+     * @param kind the way the hierarchy is built
+     * @return scene object itself
+     */
+    public Scene setBVHKind(BVHKind kind) {
+        bvhKind = kind;
+        return this;
+    }
+
+    /**
+     * Get the cache of the Bounding Volume Hierarchies of the scene
+     * @return the cache, null if the hierarchies are always built
+     */
+    public BVHCache getBVHCache() {
+        return bvhCache;
+    }
+
     /**
      * Creates Bounding Volume Hierarchy in the scene's 3D model<br>
+     * The boxes of the hierarchy are always checked, with or without {@link #setCBR()}.
      * It must be called <b><u>after</u></b> creating the 3D model (adding bodyes to the scene).
      * @return scene object itself
      */
     public Scene setBVH() {
-        geometries.setBVH();
+        bvhReport = geometries.setBVH(BVHCache.DEFAULT_LEAF_SIZE, bvhKind, bvhCache);
         return this;
     }
+
+    /**
+     * Creates Bounding Volume Hierarchy in the scene's 3D model with a given leaf size<br>
+     * The boxes of the hierarchy are always checked, with or without {@link #setCBR()}.
+     * It must be called <b><u>after</u></b> creating the 3D model (adding bodyes to the scene).
+     * @param maxLeafSize the maximum amount of bodies in a box
+     * @return scene object itself
+     */
+    public Scene setBVH(int maxLeafSize) {
+        bvhReport = geometries.setBVH(maxLeafSize, bvhKind, bvhCache);
+        return this;
+    }
+
+    /**
+     * Get the report of the last Bounding Volume Hierarchy that was built by {@link #setBVH()}
+     * @return the report (node count, depth and expected traversal cost), null if no hierarchy was built
+     */
+    public BVHReport getBVHReport() {
+        return bvhReport;
+    }
+
+    /**
+     * Freezes the scene's 3D model - compiles the geometries into a flat Bounding Volume Hierarchy
+     * that is used for tracing the rays.<br>
+     * It must be called <b><u>after</u></b> creating the 3D model (adding bodyes to the scene),
+     * and again after changing it. Bodies without a Conservative Bounding Region are intersected
+     * one by one.
+     * @return scene object itself
+     */
+    public Scene freeze() {
+        compiled = new CompiledGeometries(geometries, BVHCache.DEFAULT_LEAF_SIZE, bvhKind, bvhCache);
+        bvhReport = compiled.getReport();
+        return this;
+    }
+
+    /**
+     * Freezes the scene's 3D model of the next frame of an animation, after its bodies moved.<br>
+     * The bodies must be the same ones, in the same order, as in the last {@link #freeze()} or
+     * refit - usually each frame fills {@link #geometries} with the moved bodies, and meshes whose
+     * vertices moved are refitted first ({@link geometries.TriangleMesh#refit()}), which moves their
+     * instances too ({@link geometries.Instance}). The tree of the last hierarchy is kept and only
+     * its boxes are calculated again, so the frame costs almost no build time. The hierarchy is
+     * built again when the amount of bodies changed, or when its expected cost grew beyond the
+     * threshold of {@link #setRefitThreshold(double)}.
+     * @return scene object itself
+     */
+    public Scene refit() {
+        if (compiled == null)
+            return freeze();
+        compiled = compiled.refit(geometries, maxCostGrowth);
+        bvhReport = compiled.getReport();
+        return this;
+    }
+
+    /**
+     * Sets how much the expected cost of a refitted Bounding Volume Hierarchy may grow over the cost of
+     * its build before {@link #refit()} builds it again (1.5 by default)
+     * @param maxCostGrowth the growth factor of the cost
+     * @return scene object itself
+     */
+    public Scene setRefitThreshold(double maxCostGrowth) {
+        this.maxCostGrowth = maxCostGrowth;
+        return this;
+    }
+
+    /**
+     * Freezes the scene's 3D model with a Bounding Volume Hierarchy that was built before for the
+     * same bodies (see {@link #getHierarchy()}), instead of building it again
+     * @param hierarchy the hierarchy over the bodies with a Conservative Bounding Region
+     * @return scene object itself
+     * @throws IllegalArgumentException if the hierarchy does not fit the bodies - it is of another
+     * amount of bodies, or a body is out of the box of its leaf
+     */
+    public Scene freeze(BVHNodes hierarchy) {
+        compiled = new CompiledGeometries(geometries, hierarchy);
+        bvhReport = compiled.getReport();
+        return this;
+    }
+
+    /**
+     * Get the Bounding Volume Hierarchy of the frozen scene
+     * @return the hierarchy, null if the scene is not frozen or has no bodies with a Conservative Bounding Region
+     */
+    public BVHNodes getHierarchy() {
+        return compiled == null ? null : compiled.getHierarchy();
+    }
+
+    /**
+     * Get the intersectable that the rays should be traced against - the compiled geometries
+     * if the scene was frozen, and the geometries themselves otherwise
+     * @return the intersectable of the scene
+     */
+    public Intersectable getIntersectable() {
+        return compiled == null ? geometries : compiled;
+    }
 //    /**
 //     * the function parse xml file into scene object
 //     *
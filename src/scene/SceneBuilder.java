@@ -3,27 +3,60 @@
  */
 package scene;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import lighting.AmbientLight;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
+import lighting.*;
 import geometries.*;
 import primitives.*;
+import renderer.Camera;
+import renderer.ImageWriter;
+import renderer.RayTracerBasic;
 
 /**
- * A class responsible for constructing a scene from an xml file using API of
- * DOM
+ * A class responsible for constructing a scene from an xml file using the
+ * streaming API of StAX.<br/>
+ * The elements are handled one by one as they are read, and every body is added
+ * to the scene as soon as its element starts, so the memory does not depend on
+ * the size of the file - only on the scene itself.<br/>
+ * The file looks like:
+ *
+ * <pre>
+ * &lt;scene name="..."&gt;
+ *   &lt;background color="r g b"/&gt;
+ *   &lt;ambient-light color="r g b" k="1"/&gt;
+ *   &lt;camera position="x y z" to="x y z" up="x y z" distance="d" size="w h" resolution="nX nY"/&gt;
+ *   &lt;materials&gt;
+ *     &lt;material name="..." kd="k" ks="k" shininess="n" kt="k" kr="k"/&gt;
+ *   &lt;/materials&gt;
+ *   &lt;lights&gt;
+ *     &lt;directional-light color="r g b" direction="x y z"/&gt;
+ *     &lt;point-light color="r g b" position="x y z" kc="k" kl="k" kq="k" radius="r"/&gt;
+ *     &lt;spot-light color="r g b" position="x y z" direction="x y z" kc="k" kl="k" kq="k"/&gt;
+ *   &lt;/lights&gt;
+ *   &lt;geometries&gt;
+ *     &lt;sphere center="x y z" radius="r" emission="r g b" material="..."/&gt;
+ *     &lt;triangle p0="x y z" p1="x y z" p2="x y z"/&gt;
+ *     &lt;polygon vertices="x y z x y z x y z ..."/&gt;
+ *     &lt;plane point="x y z" normal="x y z"/&gt;
+ *     &lt;mesh file="model.obj"/&gt;
+ *   &lt;/geometries&gt;
+ * &lt;/scene&gt;
+ * </pre>
+ *
+ * A k value is either one number or three (r g b). A body gets a material either
+ * by the name of a material that was defined before, or by an inner material
+ * element. A mesh file is found relative to the xml file.
  *
  * @author hodaya
  */
@@ -32,6 +65,23 @@ public class SceneBuilder {
     private Scene scene;
     private static final String filePath = System.getProperty("user.dir") + "/xml/";
 
+    /**
+     * the camera of the file, null if there is none
+     */
+    private Camera camera = null;
+    /**
+     * the named materials of the file
+     */
+    private final Map<String, Material> materials = new HashMap<>();
+    /**
+     * the directory of the file, for the meshes
+     */
+    private Path directory;
+    /**
+     * the xml reader of the file that is loaded
+     */
+    private XMLStreamReader reader;
+
     /**
      * Ctor responsible for initializing the scene
      *
@@ -42,120 +92,313 @@ public class SceneBuilder {
     }
 
     /**
-     * load Scene From xml File
+     * getter for the camera of the loaded file. The camera traces the rays of the
+     * scene, and has an image writer if the file gives the resolution.
+     *
+     * @return the camera, null if the file has no camera
+     */
+    public Camera getCamera() {
+        return camera;
+    }
+
+    /**
+     * load Scene From xml File in the xml directory of the project. Errors are
+     * printed and the scene keeps whatever was loaded before them.
      *
      * @param nameFile - name of xml file
      */
     public void loadSceneFromFile(String nameFile) {
-        File xmlFile = new File(filePath + nameFile);
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder;
         try {
-            dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(xmlFile);
-            var lst = doc.getElementsByTagName("background");
-            setBackgroundColor(lst.item(0));
-            lst = doc.getElementsByTagName("ambient-light");
-            setAmbientLight(lst.item(0));
-            lst = doc.getElementsByTagName("geometries");
-            setGeometries(lst.item(0).getChildNodes());
-            // now XML is loaded as Document in memory, lets convert it to Object List
-
-        } catch (SAXException | ParserConfigurationException | IOException e1) {
+            loadScene(Path.of(filePath + nameFile));
+        } catch (IOException e1) {
             e1.printStackTrace();
         }
     }
 
     /**
-     * setter background color of scene
+     * load Scene From xml File
      *
-     * @param node - node that contain background color
-     */
-    private void setBackgroundColor(Node node) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-            Element element = (Element) node;
-            var stringColor = element.getAttributeNode("color").getValue();
-            var colorRBG = stringColor.toString().split(" ");
-            scene.setBackground(new Color(Double.parseDouble(colorRBG[0]), Double.parseDouble(colorRBG[1]),
-                    Double.parseDouble(colorRBG[2])));
+     * @param path - the xml file
+     * @throws IOException if the file cannot be read or is not a valid scene
+     */
+    public void loadScene(Path path) throws IOException {
+        directory = path.toAbsolutePath().getParent();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            loadScene(in);
         }
     }
 
     /**
-     * setter ambientLight color of scene
+     * load Scene From an xml stream. Meshes are found relative to the working
+     * directory, unless the stream was opened by {@link #loadScene(Path)}.
      *
-     * @param node -node that contain ambient-light color
-     */
-    private void setAmbientLight(Node node) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-            Element element = (Element) node;
-            var stringColor = element.getAttributeNode("color").getValue();
-            var colorRBG = stringColor.toString().split(" ");
-            scene.setAmbientLight(new AmbientLight(new Color(Double.parseDouble(colorRBG[0]),
-                    Double.parseDouble(colorRBG[1]), Double.parseDouble(colorRBG[2])), new Double3(1,1,1)));
+     * @param in - the xml stream
+     * @throws IOException if the stream cannot be read or is not a valid scene
+     */
+    public void loadScene(InputStream in) throws IOException {
+        if (directory == null)
+            directory = Path.of("");
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            reader = factory.createXMLStreamReader(in);
+            try {
+                readScene();
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            reader = null;
+            directory = null;
         }
     }
 
     /**
-     * setter geometries of scene
-     *
-     * @param lst-list of nodes that contain geometries bodies
+     * reads the elements of the file one by one
      */
-    private void setGeometries(NodeList lst) {
+    private void readScene() throws XMLStreamException, IOException {
         Geometries geometries = new Geometries();
-        for (int i = 0; i < lst.getLength(); i++) {
-            if (lst.item(i).getNodeName() == "sphere") {
-                var result = getSphere(lst.item(i));
-                if (result != null) {
-                    geometries.add(result);
-                    continue;
-                }
+        scene.setGeometries(geometries);
+        // the body whose element is open, for its inner material
+        Geometry body = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                if (body != null && isBody(reader.getLocalName()))
+                    body = null;
+                continue;
             }
-            if (lst.item(i).getNodeName() == "triangle") {
-                var result = getTriangle(lst.item(i));
-                if (result != null) {
-                    geometries.add(result);
-                    continue;
+            if (event != XMLStreamConstants.START_ELEMENT)
+                continue;
+            String name = reader.getLocalName();
+            try {
+                switch (name) {
+                    case "scene" -> {
+                        String sceneName = attribute("name", null);
+                        if (sceneName != null)
+                            scene.name = sceneName;
+                    }
+                    case "background" -> scene.setBackground(color("color"));
+                    case "ambient-light" -> scene.setAmbientLight(new AmbientLight(color("color"), k("k", Double3.ONE)));
+                    case "camera" -> camera = createCamera();
+                    case "material" -> {
+                        Material material = getMaterial();
+                        String materialName = attribute("name", null);
+                        if (materialName != null)
+                            materials.put(materialName, material);
+                        else if (body != null)
+                            body.setMaterial(material);
+                        else
+                            throw error("A material needs a name or a body");
+                    }
+                    case "directional-light" ->
+                            scene.lights.add(new DirectionalLight(color("color"), vector("direction")));
+                    case "point-light" ->
+                            scene.lights.add(setAttenuation(new PointLight(color("color"), point("position"),
+                                    number("radius", 0))));
+                    case "spot-light" ->
+                            scene.lights.add(setAttenuation(new SpotLight(color("color"), point("position"),
+                                    vector("direction"))));
+                    case "sphere", "triangle", "polygon", "plane", "mesh" -> {
+                        body = getBody(name);
+                        geometries.add(body);
+                    }
+                    default -> {
+                        // the containers - geometries, lights and materials
+                    }
                 }
+            } catch (IllegalArgumentException e) {
+                throw error("Invalid " + name + ": " + e.getMessage());
             }
         }
-        scene.setGeometries(geometries);
     }
 
     /**
-     * getter sphere form xml file
+     * @return true if the element name is of a body
+     */
+    private static boolean isBody(String name) {
+        return switch (name) {
+            case "sphere", "triangle", "polygon", "plane", "mesh" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * creates the body of an element with its emission and named material
+     *
+     * @param name the element name
+     * @return the body
+     */
+    private Geometry getBody(String name) throws XMLStreamException, IOException {
+        Geometry body = switch (name) {
+            case "sphere" -> new Sphere(number("radius"), point("center"));
+            case "triangle" -> new Triangle(point("p0"), point("p1"), point("p2"));
+            case "polygon" -> {
+                double[] values = numbers("vertices", -1);
+                if (values.length % 3 != 0)
+                    throw error("The vertices must have 3 values for each vertex");
+                Point[] vertices = new Point[values.length / 3];
+                for (int i = 0; i < vertices.length; ++i)
+                    vertices[i] = new Point(values[i * 3], values[i * 3 + 1], values[i * 3 + 2]);
+                yield new Polygon(vertices);
+            }
+            case "plane" -> new Plane(point("point"), vector("normal"));
+            default -> MeshLoader.load(directory.resolve(attribute("file")), scene.getBVHCache());
+        };
+        if (attribute("emission", null) != null)
+            body.setEmission(color("emission"));
+        String materialName = attribute("material", null);
+        if (materialName != null) {
+            Material material = materials.get(materialName);
+            if (material == null)
+                throw error("Unknown material: " + materialName);
+            body.setMaterial(material);
+        }
+        return body;
+    }
+
+    /**
+     * creates the material of a material element
+     *
+     * @return the material
+     */
+    private Material getMaterial() throws XMLStreamException {
+        return new Material().setKd(k("kd", Double3.ZERO)).setKs(k("ks", Double3.ZERO))
+                .setShininess((int) number("shininess", 0)).setKt(k("kt", Double3.ZERO)).setKr(k("kr", Double3.ZERO));
+    }
+
+    /**
+     * sets the attenuation factors of a point light (or a spot light) element
+     *
+     * @param light the light
+     * @return the light
+     */
+    private PointLight setAttenuation(PointLight light) throws XMLStreamException {
+        return light.setKc(number("kc", 1)).setKl(number("kl", 0)).setKq(number("kq", 0));
+    }
+
+    /**
+     * creates the camera of a camera element
      *
-     * @param node -node that contain sphere
-     * @return sphere
-     */
-    private Sphere getSphere(Node node) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-            Element element = (Element) node;
-            var r = element.getAttributeNode("radius").getValue().toString();
-            var center = element.getAttributeNode("center").getValue().toString().split(" ");
-            return new Sphere(Double.parseDouble(r),new Point(Double.parseDouble(center[0]), Double.parseDouble(center[1]),
-                    Double.parseDouble(center[2])));
+     * @return the camera
+     */
+    private Camera createCamera() throws XMLStreamException {
+        double[] size = numbers("size", 2);
+        Camera result = new Camera(point("position"), vector("to"), vector("up"))
+                .setViewPlaneDistance(number("distance"))
+                .setViewPlaneSize(size[0], size[1])
+                .setRayTracer(new RayTracerBasic(scene));
+        if (attribute("resolution", null) != null) {
+            double[] resolution = numbers("resolution", 2);
+            result.setImageWriter(new ImageWriter(scene.name, (int) resolution[0], (int) resolution[1]));
         }
-        return null;
+        return result;
     }
 
+    // ***************** Attributes ********************** //
+
     /**
-     * getter triangle form xml file
+     * creates an error at the current place of the file
      *
-     * @param node-node that contain triangle
-     * @return triangle
-     */
-    private Triangle getTriangle(Node node) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-            Element element = (Element) node;
-            var p0 = element.getAttributeNode("p0").getValue().toString().split(" ");
-            var p1 = element.getAttributeNode("p1").getValue().toString().split(" ");
-            var p2 = element.getAttributeNode("p2").getValue().toString().split(" ");
-            return new Triangle(
-                    new Point(Double.parseDouble(p0[0]), Double.parseDouble(p0[1]), Double.parseDouble(p0[2])),
-                    new Point(Double.parseDouble(p1[0]), Double.parseDouble(p1[1]), Double.parseDouble(p1[2])),
-                    new Point(Double.parseDouble(p2[0]), Double.parseDouble(p2[1]), Double.parseDouble(p2[2])));
+     * @param message the error message
+     * @return the error
+     */
+    private XMLStreamException error(String message) {
+        return new XMLStreamException(message, reader.getLocation());
+    }
+
+    /**
+     * @return the value of an attribute of the current element, or a default
+     * value if it is missing
+     */
+    private String attribute(String name, String defaultValue) {
+        String value = reader.getAttributeValue(null, name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @return the value of a required attribute of the current element
+     */
+    private String attribute(String name) throws XMLStreamException {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null)
+            throw error("Missing attribute " + name + " of " + reader.getLocalName());
+        return value;
+    }
+
+    /**
+     * parses the numbers of an attribute
+     *
+     * @param name  the attribute name
+     * @param count the expected amount of numbers, -1 for any amount
+     * @return the numbers
+     */
+    private double[] numbers(String name, int count) throws XMLStreamException {
+        String[] words = attribute(name).trim().split("\\s+");
+        if (count >= 0 && words.length != count)
+            throw error("Attribute " + name + " must have " + count + " numbers");
+        double[] values = new double[words.length];
+        try {
+            for (int i = 0; i < words.length; ++i)
+                values[i] = Double.parseDouble(words[i]);
+        } catch (NumberFormatException e) {
+            throw error("Attribute " + name + " must have numbers");
         }
-        return null;
+        return values;
+    }
+
+    /**
+     * @return a required number attribute
+     */
+    private double number(String name) throws XMLStreamException {
+        return numbers(name, 1)[0];
+    }
+
+    /**
+     * @return a number attribute, or a default value if it is missing
+     */
+    private double number(String name, double defaultValue) throws XMLStreamException {
+        return attribute(name, null) == null ? defaultValue : number(name);
+    }
+
+    /**
+     * @return a k attribute (one number or three), or a default value if it is missing
+     */
+    private Double3 k(String name, Double3 defaultValue) throws XMLStreamException {
+        if (attribute(name, null) == null)
+            return defaultValue;
+        double[] values = numbers(name, -1);
+        if (values.length == 1)
+            return new Double3(values[0]);
+        if (values.length == 3)
+            return new Double3(values[0], values[1], values[2]);
+        throw error("Attribute " + name + " must have 1 or 3 numbers");
+    }
+
+    /**
+     * @return a color attribute
+     */
+    private Color color(String name) throws XMLStreamException {
+        double[] values = numbers(name, 3);
+        return new Color(values[0], values[1], values[2]);
+    }
+
+    /**
+     * @return a point attribute
+     */
+    private Point point(String name) throws XMLStreamException {
+        double[] values = numbers(name, 3);
+        return new Point(values[0], values[1], values[2]);
+    }
+
+    /**
+     * @return a vector attribute
+     */
+    private Vector vector(String name) throws XMLStreamException {
+        double[] values = numbers(name, 3);
+        return new Vector(values[0], values[1], values[2]);
     }
 }
@@ -0,0 +1,105 @@
+package geometries;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static geometries.RandomBounds.randomBounds;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BVHBuilder} class
+ *
+ * @author hodaya
+ */
+class BVHBuilderTests {
+    /**
+     * checks that two hierarchies are the same tree
+     */
+    private static void assertSameTree(BVHNodes expected, BVHNodes actual, String message) {
+        assertArrayEquals(expected.bounds, actual.bounds, message);
+        assertArrayEquals(expected.offsets, actual.offsets, message);
+        assertArrayEquals(expected.counts, actual.counts, message);
+        assertArrayEquals(expected.axes, actual.axes, message);
+        assertArrayEquals(expected.order, actual.order, message);
+    }
+
+    /**
+     * Test method for {@link BVHBuilder#build()}.
+     */
+    @Test
+    void testParallelBuild() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A parallel build of a big scene is the tree of the serial build
+        double[] bounds = randomBounds(150_000, 3, 10);
+        BVHNodes serial = new BVHBuilder(bounds, 4, null).build();
+        assertTrue(serial.fits(bounds), "TC01: Wrong serial hierarchy");
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                assertSameTree(serial, new BVHBuilder(bounds, 4, pool).build(),
+                        "TC01: Wrong parallel hierarchy with " + threads + " threads");
+            } finally {
+                pool.shutdown();
+            }
+        }
+        assertSameTree(serial, new BVHBuilder(bounds, 4).build(), "TC01: Wrong hierarchy in the common pool");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A scene that is too small to build in parallel
+        bounds = randomBounds(100, 4, 10);
+        assertSameTree(new BVHBuilder(bounds, 4, null).build(), new BVHBuilder(bounds, 4).build(),
+                "TC11: Wrong hierarchy of a small scene");
+
+        // TC12: All the primitives in the same place
+        bounds = new double[200_000 * 6];
+        for (int i = 0; i < bounds.length; i += 6)
+            bounds[i + 3] = bounds[i + 4] = bounds[i + 5] = 1;
+        assertSameTree(new BVHBuilder(bounds, 4, null).build(), new BVHBuilder(bounds, 4).build(),
+                "TC12: Wrong hierarchy of primitives in the same place");
+
+        // TC13: Exponentially spaced primitives, where the surface area heuristic splits off one primitive
+        // at every level, are split at the median below the depth limit
+        bounds = new double[1500 * 6];
+        for (int i = 0; i < 1500; ++i) {
+            double x = Math.pow(1.5, i);
+            bounds[i * 6] = x;
+            bounds[i * 6 + 3] = x + 1;
+            bounds[i * 6 + 4] = bounds[i * 6 + 5] = 1;
+        }
+        BVHNodes exponential = new BVHBuilder(bounds, 4, null).build();
+        assertTrue(exponential.fits(bounds), "TC13: Wrong hierarchy of exponentially spaced primitives");
+        assertTrue(exponential.report().depth() <= BVHBuilder.MAX_SAH_DEPTH + 12,
+                "TC13: Too deep hierarchy - " + exponential.report().depth());
+        assertSameTree(exponential, new BVHBuilder(bounds, 4).build(),
+                "TC13: Wrong parallel hierarchy of exponentially spaced primitives");
+    }
+
+    /**
+     * Benchmark of {@link BVHBuilder#build()} - the build time of a big scene by
+     * the amount of threads. It only prints the times, so it is run by hand.
+     */
+    @Test
+    @Disabled("a benchmark - run it by hand")
+    void benchmarkParallelBuild() {
+        double[] bounds = randomBounds(500_000, 7, 10);
+        new BVHBuilder(bounds, 4).build(); // warm up
+
+        long start = System.nanoTime();
+        new BVHBuilder(bounds, 4, null).build();
+        System.out.printf("BVH build of %d primitives: serial %d ms%n", bounds.length / 6,
+                (System.nanoTime() - start) / 1_000_000);
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                start = System.nanoTime();
+                new BVHBuilder(bounds, 4, pool).build();
+                System.out.printf("BVH build of %d primitives: %d threads %d ms%n", bounds.length / 6, threads,
+                        (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static geometries.RandomGeometries.assertSameClosestHits;
+import static geometries.RandomGeometries.randomSpheres;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BVHCache} class
+ *
+ * @author hodaya
+ */
+class BVHCacheTests {
+    /**
+     * the directory of the cache
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * lists the hierarchy files in the cache
+     *
+     * @return the files
+     */
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".bvh")).toList();
+        }
+    }
+
+    /**
+     * Test method for {@link CompiledGeometries#CompiledGeometries(Geometries, int, BVHCache)}.
+     */
+    @Test
+    void testCache() throws IOException {
+        BVHCache cache = new BVHCache(dir);
+        CompiledGeometries built = new CompiledGeometries(randomSpheres(new Random(5), 300), 4, cache);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The first build is stored in the cache
+        assertEquals(1, files().size(), "TC01: The hierarchy was not stored");
+
+        // TC02: The same bodies take the stored hierarchy, and find the same intersections
+        CompiledGeometries cached = new CompiledGeometries(randomSpheres(new Random(5), 300), 4, cache);
+        assertEquals(1, files().size(), "TC02: The hierarchy was stored again");
+        assertEquals(built.getReport(), cached.getReport(), "TC02: Wrong hierarchy from the cache");
+        assertSameClosestHits(built, cached, new Random(3), 200, "TC02: Wrong intersection with the hierarchy from the cache");
+
+        // TC03: Other bodies, another leaf size and another kind are stored apart
+        new CompiledGeometries(randomSpheres(new Random(6), 300), 4, cache);
+        new CompiledGeometries(randomSpheres(new Random(5), 300), 2, cache);
+        new CompiledGeometries(randomSpheres(new Random(5), 300), 4, BVHKind.LBVH, cache);
+        assertEquals(4, files().size(), "TC03: Wrong amount of stored hierarchies");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A damaged file is built again and replaced
+        Path file = files().get(0);
+        byte[] stored = Files.readAllBytes(file);
+        byte[] damaged = stored.clone();
+        for (int i = 16; i < damaged.length; ++i)
+            damaged[i] = (byte) ~damaged[i];
+        Files.write(file, damaged);
+        for (long seed : new long[]{5, 6})
+            assertEquals(new CompiledGeometries(randomSpheres(new Random(seed), 300), 4).getReport(),
+                    new CompiledGeometries(randomSpheres(new Random(seed), 300), 4, cache).getReport(), "TC11: Used a damaged hierarchy");
+        assertArrayEquals(stored, Files.readAllBytes(file), "TC11: The damaged file was not replaced");
+
+        // TC12: A cache that cannot be written still builds the hierarchy
+        Path blocked = dir.resolve("blocked");
+        Files.writeString(blocked, "not a directory");
+        CompiledGeometries uncached = new CompiledGeometries(randomSpheres(new Random(5), 300), 4, new BVHCache(blocked));
+        assertEquals(built.getReport(), uncached.getReport(), "TC12: Wrong hierarchy without a cache");
+    }
+}
@@ -0,0 +1,48 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BVHNodes} class
+ *
+ * @author hodaya
+ */
+class BVHNodesTests {
+    /**
+     * Test method for {@link BVHNodes#read(ByteBuffer)}.
+     */
+    @Test
+    void testRead() {
+        // a root with two leaves of one and two primitives
+        BVHNodes nodes = new BVHNodes(new double[]{0, 0, 0, 3, 1, 1, 0, 0, 0, 1, 1, 1, 1, 0, 0, 3, 1, 1},
+                new int[]{2, 0, 1}, new int[]{0, 1, 2}, new byte[3], new int[]{0, 1, 2});
+        ByteBuffer buffer = ByteBuffer.allocate((int) nodes.byteSize());
+        nodes.write(buffer);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A written hierarchy is read as it was
+        BVHNodes read = BVHNodes.read(buffer.flip());
+        assertArrayEquals(nodes.bounds, read.bounds, "TC01: Wrong bounds");
+        assertArrayEquals(nodes.offsets, read.offsets, "TC01: Wrong offsets");
+        assertArrayEquals(nodes.counts, read.counts, "TC01: Wrong counts");
+        assertArrayEquals(nodes.order, read.order, "TC01: Wrong order");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A leaf whose primitives end beyond the range of an int
+        int offsets = 8 + 3 * 6 * Double.BYTES;
+        buffer.putInt(offsets + 2 * Integer.BYTES, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> BVHNodes.read(buffer.rewind()),
+                "TC11: Read a leaf beyond the primitives");
+
+        // TC12: A leaf that ends right after the last primitive, and one that ends after it
+        buffer.putInt(offsets + 2 * Integer.BYTES, 1);
+        assertNotNull(BVHNodes.read(buffer.rewind()), "TC12: Rejected a leaf up to the last primitive");
+        buffer.putInt(offsets + 2 * Integer.BYTES, 2);
+        assertThrows(IllegalArgumentException.class, () -> BVHNodes.read(buffer.rewind()),
+                "TC12: Read a leaf beyond the last primitive");
+    }
+}
@@ -0,0 +1,189 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Double3;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static geometries.RandomGeometries.assertSameClosestHits;
+import static geometries.RandomGeometries.randomRay;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CompiledGeometries} class
+ *
+ * @author hodaya
+ */
+class CompiledGeometriesTests {
+
+    /**
+     * creates a collection of random spheres and triangles over a plane
+     *
+     * @param random the random numbers generator
+     * @return the collection
+     */
+    private static Geometries randomGeometries(Random random) {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 200; ++i) {
+            Point p = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * -100);
+            if (i % 2 == 0)
+                geometries.add(new Sphere(1 + random.nextDouble() * 3, p));
+            else
+                geometries.add(new Triangle(p, p.add(new Vector(5, 0, 1)), p.add(new Vector(0, 5, 1))));
+        }
+        geometries.add(new Plane(new Point(0, 0, -150), new Vector(0, 0, 1)));
+        return geometries;
+    }
+
+    /**
+     * Test method for {@link CompiledGeometries#findGeoIntersections(Ray, double)}.
+     */
+    @Test
+    void testFindGeoIntersections() {
+        Random random = new Random(5783);
+        Geometries geometries = randomGeometries(random);
+        CompiledGeometries compiled = new CompiledGeometries(geometries, 2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Rays through the scene hit the same points as in the collection
+        for (int i = 0; i < 500; ++i) {
+            Ray ray = randomRay(random, 100);
+            var expected = geometries.findGeoIntersections(ray);
+            var actual = compiled.findGeoIntersections(ray);
+            assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                    "TC01: Wrong amount of intersections through the compiled hierarchy");
+            if (expected != null)
+                assertTrue(actual.containsAll(expected), "TC01: Wrong intersections through the compiled hierarchy");
+        }
+
+        // TC02: The maximum distance limits the intersections
+        Ray ray = new Ray(new Point(50, 50, 10), new Vector(0, 0, -1));
+        var all = compiled.findGeoIntersections(ray);
+        var near = compiled.findGeoIntersections(ray, 120);
+        assertEquals(all.size() - 1, near == null ? 0 : near.size(), "TC02: The maximum distance was ignored");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A ray parallel to the axes
+        ray = new Ray(new Point(-10, 0, -50), new Vector(1, 0, 0));
+        var expected = geometries.findGeoIntersections(ray);
+        var actual = compiled.findGeoIntersections(ray);
+        assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                "TC11: Wrong intersections of a ray parallel to the axes");
+
+        // TC12: An empty collection
+        assertNull(new CompiledGeometries(new Geometries()).findGeoIntersections(ray),
+                "TC12: Intersections with an empty collection");
+    }
+
+    /**
+     * Test method for {@link CompiledGeometries#findClosestIntersection(Ray, double)}.
+     */
+    @Test
+    void testFindClosestIntersection() {
+        Random random = new Random(4780);
+        Geometries geometries = randomGeometries(random);
+        CompiledGeometries compiled = new CompiledGeometries(geometries, 2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The closest intersection is the closest of all the intersections
+        for (int i = 0; i < 500; ++i) {
+            Ray ray = randomRay(random, 100);
+            var expected = ray.findClosestGeoPoint(geometries.findGeoIntersections(ray));
+            var actual = compiled.findClosestIntersection(ray);
+            assertEquals(expected, actual, "TC01: Wrong closest intersection through the compiled hierarchy");
+            assertEquals(expected, geometries.findClosestIntersection(ray), "TC01: Wrong closest intersection of the collection");
+            if (actual != null)
+                assertEquals(actual.point.distance(ray.getP0()), actual.t, 1e-9, "TC01: Wrong distance of the intersection");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Nothing closer than the maximum distance
+        Ray ray = new Ray(new Point(50, 50, 10), new Vector(0, 0, -1));
+        var closest = compiled.findClosestIntersection(ray);
+        assertNull(compiled.findClosestIntersection(ray, closest.t / 2), "TC11: The maximum distance was ignored");
+    }
+
+    /**
+     * Test method for {@link CompiledGeometries#findTransparency(Ray, double, double)}.
+     */
+    @Test
+    void testFindTransparency() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 10; ++i)
+            geometries.add(new Sphere(1, new Point(i * 10, 0, 0)).setMaterial(new Material().setKt(0.5)),
+                    new Sphere(1, new Point(i * 10, 10, 0)));
+        CompiledGeometries compiled = new CompiledGeometries(geometries, 1);
+        Ray ray = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Light passes through two transparent spheres (two intersections each)
+        assertEquals(new Double3(0.5 * 0.5 * 0.5 * 0.5), compiled.findTransparency(ray, 20, 0.001),
+                "TC01: Wrong transparency through transparent spheres");
+        assertEquals(new Double3(0.5 * 0.5 * 0.5 * 0.5), geometries.findTransparency(ray, 20, 0.001),
+                "TC01: Wrong transparency of the collection");
+
+        // TC02: An opaque sphere blocks the light
+        ray = new Ray(new Point(-5, 10, 0), new Vector(1, 0, 0));
+        assertEquals(Double3.ZERO, compiled.findTransparency(ray, 200, 0.001), "TC02: An opaque sphere did not block the light");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Many transparent spheres block the light once it is weak enough
+        ray = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+        assertEquals(Double3.ZERO, compiled.findTransparency(ray, 200, 0.001), "TC11: Weak light was not blocked");
+
+        // TC12: Nothing between the point and the light
+        assertEquals(Double3.ONE, compiled.findTransparency(ray, 3, 0.001), "TC12: Light blocked with no occluders");
+    }
+
+    /**
+     * Test method for {@link CompiledGeometries#refit(Geometries, double)}.
+     */
+    @Test
+    void testRefit() {
+        Random random = new Random(318);
+        Point[] centers = new Point[300];
+        for (int i = 0; i < centers.length; ++i)
+            centers[i] = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * -100);
+        Geometries geometries = new Geometries();
+        for (Point center : centers)
+            geometries.add(new Sphere(2, center));
+        CompiledGeometries compiled = new CompiledGeometries(geometries, 2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The spheres moved a little - the tree is kept and the spheres are found where they moved
+        Geometries moved = new Geometries();
+        for (Point center : centers)
+            moved.add(new Sphere(2, center.add(new Vector(random.nextDouble(), random.nextDouble(), 1))));
+        moved.add(new Plane(new Point(0, 0, -150), new Vector(0, 0, 1)));
+        CompiledGeometries refitted = compiled.refit(moved);
+        assertSame(compiled.getHierarchy().offsets, refitted.getHierarchy().offsets, "TC01: The tree was not kept");
+        assertSameClosestHits(moved, refitted, random, 300, "TC01: Wrong intersection after the refit");
+
+        // TC02: The spheres were scattered - the hierarchy is built again
+        Geometries scattered = new Geometries();
+        for (int i = 0; i < centers.length; ++i)
+            scattered.add(new Sphere(2, centers[(i * 7919) % centers.length]));
+        CompiledGeometries rebuilt = refitted.refit(scattered);
+        assertNotSame(compiled.getHierarchy().offsets, rebuilt.getHierarchy().offsets,
+                "TC02: The tree was kept after the spheres were scattered");
+        assertTrue(rebuilt.getReport().cost() <= compiled.getReport().cost() * BVHNodes.DEFAULT_MAX_COST_GROWTH,
+                "TC02: Wrong cost of the new hierarchy");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Another amount of spheres builds the hierarchy again
+        moved.add(new Sphere(1, new Point(0, 0, 0)));
+        assertEquals(centers.length + 1, compiled.refit(moved).getHierarchy().primitiveCount(),
+                "TC11: Wrong hierarchy for another amount of spheres");
+
+        // TC12: A threshold under the cost of any refit always builds again
+        Geometries same = new Geometries();
+        for (Point center : centers)
+            same.add(new Sphere(2, center.add(new Vector(0.1, 0, 0))));
+        assertNotSame(compiled.getHierarchy().offsets, compiled.refit(same, 0.5).getHierarchy().offsets,
+                "TC12: The tree was kept over the threshold");
+    }
+}
@@ -4,8 +4,9 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class GeometriesTest {
 
@@ -44,4 +45,75 @@ class GeometriesTest {
         assertEquals(4, ge.findIntersections(new Ray(new Point(1.79961, 4.57061, -0.28315), new Vector(-1.12, -1.84, 0.28))).size(),
                 "TC14: The findIntersections did`nt work currently when the ray intersect all shapes");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link Geometries#setBVH(int)}.
+     */
+    @Test
+    void testSetBVH() {
+        Geometries flat = new Geometries();
+        Geometries bvh = new Geometries();
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j) {
+                Sphere sphere = new Sphere(1, new Point(i * 3, j * 3, -i - j));
+                flat.add(sphere);
+                bvh.add(sphere);
+            }
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The hierarchy is binary and respects the leaf size
+        BVHReport report = bvh.setBVH(2);
+        assertNotNull(report, "TC01: No report for the hierarchy");
+        assertEquals(report.nodeCount(), 2 * report.leafCount() - 1, "TC01: The hierarchy is not binary");
+        assertTrue(report.leafCount() >= 50, "TC01: The leaf size is not respected");
+        assertTrue(report.cost() < 100, "TC01: The hierarchy is not cheaper than a linear scan");
+
+        // TC02: The hierarchy finds the same intersections as the flat list
+        for (Ray ray : List.of(new Ray(new Point(0, 0, 10), new Vector(0, 0, -1)),
+                new Ray(new Point(13.5, 12, 10), new Vector(0.1, 0.1, -1)),
+                new Ray(new Point(-5, 0, -3), new Vector(1, 0.33, -0.2)))) {
+            var expected = flat.findIntersections(ray);
+            var actual = bvh.findIntersections(ray);
+            assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                    "TC02: Wrong intersections through the hierarchy");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Building again gives the same hierarchy
+        assertEquals(report, bvh.setBVH(2), "TC11: Rebuilding the hierarchy changed it");
+    }
+
+    /**
+     * Test method for {@link Geometries#setCBR(boolean)}.
+     */
+    @Test
+    void testSetCBR() {
+        Sphere sphere = new Sphere(1, new Point(0, 0, -5));
+        Plane plane = new Plane(new Point(0, 0, -10), new Vector(0, 0, 1));
+        Geometries inner = new Geometries(sphere);
+        Geometries culled = new Geometries(inner, plane);
+        Geometries plain = new Geometries(sphere, plane);
+        culled.setCBR(true);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The box of a body is calculated when it is first needed
+        Intersectable.Border box = sphere.getBox();
+        assertTrue(box.minX == -1 && box.maxX == 1 && box.minZ == -6 && box.maxZ == -4,
+                "TC01: Wrong box of the sphere");
+        assertSame(box, sphere.getBox(), "TC01: The box is calculated again");
+
+        // TC02: Checking the boxes does not change the intersections, and the setting is per collection
+        for (Ray ray : List.of(new Ray(new Point(0, 0, 0), new Vector(0, 0, -1)),
+                new Ray(new Point(5, 0, 0), new Vector(0, 0, -1)))) {
+            assertEquals(plain.findIntersections(ray).size(), culled.findIntersections(ray).size(),
+                    "TC02: Wrong intersections with the boxes checked");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A collection with an unbounded body has no box
+        assertNull(culled.getBox(), "TC11: A collection with a plane has a box");
+        assertNotNull(inner.getBox(), "TC11: A collection of bounded bodies has no box");
+        // TC12: An empty collection has no box
+        assertNull(new Geometries().getBox(), "TC12: An empty collection has a box");
+    }
+}
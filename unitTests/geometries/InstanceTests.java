@@ -0,0 +1,140 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.Random;
+
+import static geometries.RandomGeometries.randomRay;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link Instance} class
+ *
+ * @author hodaya
+ */
+class InstanceTests {
+
+    /**
+     * Test method for {@link Instance#findClosestIntersection(Ray)}.
+     */
+    @Test
+    void testFindClosestIntersection() {
+        Sphere model = new Sphere(1, Point.ZERO);
+        model.setMaterial(new Material().setKd(0.3));
+        Transform transform = Transform.scaling(2).then(Transform.translation(new Vector(10, 0, -50)));
+        Instance instance = new Instance(model, transform);
+        Sphere expected = new Sphere(2, new Point(10, 0, -50));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The instance is hit as the transformed model, with the distance and normal in the scene
+        Random random = new Random(44);
+        for (int i = 0; i < 100; ++i) {
+            Ray ray = new Ray(Point.ZERO, new Vector(10 + random.nextDouble() * 3 - 1.5, random.nextDouble() * 3 - 1.5, -50));
+            var gp = instance.findClosestIntersection(ray);
+            var other = expected.findClosestIntersection(ray);
+            if (other == null) {
+                assertNull(gp, "TC01: Intersection that is not there");
+                continue;
+            }
+            assertEquals(other.point, gp.point, "TC01: Wrong point");
+            assertEquals(other.t, gp.t, 0.00001, "TC01: Wrong distance");
+            assertEquals(expected.getNormal(other.point), gp.geometry.getNormal(gp.point), "TC01: Wrong normal");
+            assertSame(model.getMaterial(), gp.geometry.getMaterial(), "TC01: Wrong material");
+            assertSame(model, ((Instance.Surface) gp.geometry).getGeometry(), "TC01: Wrong model geometry");
+        }
+
+        // TC02: Two intersections through the instance
+        Ray ray = new Ray(new Point(10, 0, 0), new Vector(0, 0, -1));
+        var points = instance.findGeoIntersections(ray);
+        assertEquals(2, points.size(), "TC02: Wrong amount of intersections");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The maximum distance is a distance in the scene
+        assertNotNull(instance.findClosestIntersection(ray, 48.5), "TC11: Missed intersection within the distance");
+        assertNull(instance.findClosestIntersection(ray, 47.5), "TC11: Intersection beyond the maximum distance");
+
+        // TC12: The box of the instance is the box of the transformed model
+        assertTrue(instance.getBox().minX <= 8 && instance.getBox().maxX >= 12 && instance.getBox().minZ <= -52,
+                "TC12: Wrong box of the instance");
+    }
+
+    /**
+     * Test method for {@link Instance} inside a compiled hierarchy, with a shared mesh
+     */
+    @Test
+    void testManyInstances() {
+        // a square made of two faces, and a separate square for every copy
+        TriangleMesh mesh = new TriangleMesh(new double[]{-1, -1, 0, 1, -1, 0, 1, 1, 0, -1, 1, 0}, new int[]{0, 1, 2, 0, 2, 3});
+        Geometries instances = new Geometries();
+        Geometries copies = new Geometries();
+        Random random = new Random(9);
+        for (int i = 0; i < 2000; ++i) {
+            Transform transform = Transform.rotation(new Vector(random.nextDouble(), random.nextDouble(), 1), random.nextDouble())
+                    .then(Transform.scaling(0.5 + random.nextDouble()))
+                    .then(Transform.translation(new Vector(random.nextDouble() * 100, random.nextDouble() * 100,
+                            -10 - random.nextDouble() * 100)));
+            instances.add(new Instance(mesh, transform));
+            Point[] corners = new Point[4];
+            double[] p = mesh.getPositions();
+            for (int c = 0; c < 4; ++c)
+                corners[c] = transform.transformPoint(new Point(p[c * 3], p[c * 3 + 1], p[c * 3 + 2]));
+            copies.add(new Triangle(corners[0], corners[1], corners[2]), new Triangle(corners[0], corners[2], corners[3]));
+        }
+        CompiledGeometries compiled = new CompiledGeometries(instances);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The instances are hit where the copies are
+        for (int i = 0; i < 500; ++i) {
+            Ray ray = randomRay(random, 100);
+            var expected = copies.findClosestIntersection(ray);
+            var actual = compiled.findClosestIntersection(ray);
+            if (expected == null) {
+                assertNull(actual, "TC01: Intersection that is not there");
+                continue;
+            }
+            assertNotNull(actual, "TC01: Missed intersection");
+            assertEquals(expected.point, actual.point, "TC01: Wrong point");
+            Vector n1 = expected.geometry.getNormal(expected.point);
+            Vector n2 = actual.geometry.getNormal(actual.point);
+            assertEquals(1, Math.abs(n1.dotProduct(n2)), 0.00001, "TC01: Wrong normal");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Light passes through transparent instances
+        mesh.setMaterial(new Material().setKt(0.5));
+        Instance near = new Instance(mesh, Transform.translation(new Vector(0, 0, -1)));
+        Instance far = new Instance(mesh, Transform.scaling(3).then(Transform.translation(new Vector(0, 0, -5))));
+        Ray ray = new Ray(new Point(0.1, 0.2, 0), new Vector(0, 0, -1));
+        assertEquals(new Double3(0.25), new Geometries(near, far).findTransparency(ray, 10, 0.001),
+                "TC11: Wrong transparency through the instances");
+    }
+
+    /**
+     * Test method for {@link CompiledGeometries#refit(Geometries)} with instances of a refitted mesh
+     */
+    @Test
+    void testRefit() {
+        double[] positions = {-1, -1, 0, 1, -1, 0, 1, 1, 0, -1, 1, 0};
+        TriangleMesh mesh = new TriangleMesh(positions, new int[]{0, 1, 2, 0, 2, 3});
+        Geometries instances = new Geometries(new Instance(mesh, Transform.translation(new Vector(0, 0, -10))),
+                new Instance(mesh, Transform.translation(new Vector(20, 0, -10))));
+        CompiledGeometries compiled = new CompiledGeometries(instances);
+        Ray ray = new Ray(new Point(5, 0.3, 0), new Vector(0, 0, -1));
+        assertNull(compiled.findClosestIntersection(ray), "Intersection before the mesh moved");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The instances move with the shared mesh after it is refitted
+        for (int i = 0; i < positions.length; i += 3)
+            positions[i] += 5;
+        mesh.refit();
+        CompiledGeometries refitted = compiled.refit(instances);
+        var gp = refitted.findClosestIntersection(ray);
+        assertNotNull(gp, "TC01: Missed the moved mesh");
+        assertEquals(new Point(5, 0.3, -10), gp.point, "TC01: Wrong point on the moved mesh");
+        assertNotNull(refitted.findClosestIntersection(new Ray(new Point(25, 0.3, 0), new Vector(0, 0, -1))),
+                "TC01: Missed the second instance of the moved mesh");
+        assertNull(refitted.findClosestIntersection(new Ray(new Point(-0.5, 0.3, 0), new Vector(0, 0, -1))),
+                "TC01: Intersection where the mesh was before it moved");
+    }
+}
@@ -0,0 +1,102 @@
+package geometries;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static geometries.RandomBounds.randomBounds;
+import static geometries.RandomGeometries.assertSameClosestHits;
+import static geometries.RandomGeometries.randomSpheres;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LBVHBuilder} class
+ *
+ * @author hodaya
+ */
+class LBVHBuilderTests {
+    /**
+     * Test method for {@link LBVHBuilder#spread(long)}.
+     */
+    @Test
+    void testSpread() {
+        Random random = new Random(11);
+        for (int i = 0; i < 1000; ++i) {
+            long value = random.nextInt(1 << 21);
+            long expected = 0;
+            for (int bit = 0; bit < 21; ++bit)
+                expected |= (value >> bit & 1) << (3 * bit);
+            assertEquals(expected, LBVHBuilder.spread(value), "Wrong spread of " + value);
+        }
+    }
+
+    /**
+     * Test method for {@link LBVHBuilder#build()}.
+     */
+    @Test
+    void testBuild() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A valid hierarchy, the same in parallel and serially
+        double[] bounds = randomBounds(100_000, 5, 1000);
+        BVHNodes serial = new LBVHBuilder(bounds, 4, null).build();
+        assertTrue(serial.fits(bounds), "TC01: Wrong hierarchy");
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            BVHNodes parallel = new LBVHBuilder(bounds, 4, pool).build();
+            assertArrayEquals(serial.bounds, parallel.bounds, "TC01: Wrong parallel hierarchy");
+            assertArrayEquals(serial.offsets, parallel.offsets, "TC01: Wrong parallel hierarchy");
+            assertArrayEquals(serial.order, parallel.order, "TC01: Wrong parallel hierarchy");
+        } finally {
+            pool.shutdown();
+        }
+        for (int node = 0; node < serial.size(); ++node)
+            assertTrue(serial.counts[node] <= 4, "TC01: Leaf with too many primitives");
+
+        // TC02: The hierarchy finds the same intersections as the geometries without it
+        Random random = new Random(8);
+        Geometries geometries = randomSpheres(random, 500);
+        CompiledGeometries compiled = new CompiledGeometries(geometries, 4, BVHKind.LBVH, null);
+        assertSameClosestHits(geometries, compiled, random, 300, "TC02: Wrong intersection");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A single primitive
+        BVHNodes single = new LBVHBuilder(new double[]{0, 0, 0, 1, 1, 1}, 4).build();
+        assertEquals(1, single.size(), "TC11: Wrong hierarchy of a single primitive");
+
+        // TC12: All the primitives in the same place are split by the leaf size
+        bounds = new double[1000 * 6];
+        for (int i = 0; i < bounds.length; i += 6)
+            bounds[i + 3] = bounds[i + 4] = bounds[i + 5] = 1;
+        BVHNodes same = new LBVHBuilder(bounds, 4).build();
+        assertTrue(same.fits(bounds), "TC12: Wrong hierarchy of primitives in the same place");
+        for (int node = 0; node < same.size(); ++node)
+            assertTrue(same.counts[node] <= 4, "TC12: Leaf with too many primitives");
+
+        // TC13: No primitives
+        assertThrows(IllegalArgumentException.class, () -> new LBVHBuilder(new double[0], 4).build(),
+                "TC13: Built a hierarchy without primitives");
+    }
+
+    /**
+     * Benchmark of {@link LBVHBuilder#build()} against {@link BVHBuilder#build()}.
+     * It only prints the times, so it is run by hand.
+     */
+    @Test
+    @Disabled("a benchmark - run it by hand")
+    void benchmarkBuild() {
+        double[] bounds = randomBounds(500_000, 7, 1000);
+        for (int i = 0; i < 3; ++i)
+            new LBVHBuilder(bounds, 4).build(); // warm up
+
+        long start = System.nanoTime();
+        BVHNodes linear = new LBVHBuilder(bounds, 4).build();
+        long linearTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        BVHNodes sah = new BVHBuilder(bounds, 4).build();
+        long sahTime = System.nanoTime() - start;
+        System.out.printf("BVH build of %d primitives: LBVH %d ms (%s), SAH %d ms (%s)%n", bounds.length / 6,
+                linearTime / 1_000_000, linear.report(), sahTime / 1_000_000, sah.report());
+    }
+}
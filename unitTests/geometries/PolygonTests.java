@@ -2,8 +2,11 @@ package geometries;
 
 import org.junit.jupiter.api.Test;
 import primitives.Point;
+import primitives.Ray;
 import primitives.Vector;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -74,18 +77,19 @@ public class PolygonTests {
         assertEquals(new Vector(sqrt3, sqrt3, sqrt3), pl.getNormal(new Point(0, 0, 1)), "TC01: Bad normal to triangle");
     }
 
-    /*@Test
-    void TestFindIntersections() {
+    /**
+     * Test method for {@link geometries.Polygon#findIntersections(Ray)}.
+     */
+    @Test
+    void testFindIntersections() {
         Polygon polygon = new Polygon(new Point(-0.5, -0.5, 0), new Point(0, 1, 0), new Point(1, 0, 0));
 
         // ============ Equivalence Partitions Tests ==============
         // TC01: Ray intersects inside polygon (1 point).
         Ray ray = new Ray(new Point(0.25, 0.25, 1), new Vector(0.25, 0, -1));
-        List<Point> expRes = List.of(new Point(0.5, 0.25, 0));
         List<Point> res = polygon.findIntersections(ray);
-        assertEquals(res.size(), 1, "TC01: Ray intersects inside polygon. EP doesn't work.");
-        assertEquals(res, expRes, "TC01: Ray intersects inside polygon. EP doesn't work.");
-
+        assertNotNull(res, "TC01: Ray intersects inside polygon. EP doesn't work.");
+        assertEquals(List.of(new Point(0.5, 0.25, 0)), res, "TC01: Ray intersects inside polygon. EP doesn't work.");
 
         // TC02: Ray outside polygon against vertex.
         ray = new Ray(new Point(0.25, 0.25, 1), new Vector(1.5, -0.5, -1));
@@ -95,6 +99,18 @@ public class PolygonTests {
         ray = new Ray(new Point(0.25, 0.25, 1), new Vector(0.75, 0.75, -1));
         assertNull(polygon.findIntersections(ray), "TC03: Ray outside polygon against edge. EP doesn't work.");
 
+        // TC04: Ray through a quadrangle, in both orders of its vertices
+        Polygon square = new Polygon(new Point(0, 0, -2), new Point(2, 0, -2), new Point(2, 2, -2), new Point(0, 2, -2));
+        Polygon reversed = new Polygon(new Point(0, 2, -2), new Point(2, 2, -2), new Point(2, 0, -2), new Point(0, 0, -2));
+        ray = new Ray(new Point(1.5, 0.5, 0), new Vector(0, 0, -1));
+        assertEquals(List.of(new Point(1.5, 0.5, -2)), square.findIntersections(ray), "TC04: Ray through a quadrangle");
+        assertEquals(List.of(new Point(1.5, 0.5, -2)), reversed.findIntersections(ray), "TC04: Ray through a reversed quadrangle");
+
+        // TC05: Ray beside a quadrangle, and a ray that ends before it
+        assertNull(square.findIntersections(new Ray(new Point(2.5, 0.5, 0), new Vector(0, 0, -1))),
+                "TC05: Ray beside a quadrangle");
+        assertNull(square.findGeoIntersections(ray, 1), "TC05: Intersection beyond the maximum distance");
+
         // =============== Boundary Values Tests ==================
         // TC11: Ray intersects on vertex of polygon.
         ray = new Ray(new Point(0.25, 0.25, 1), new Vector(-0.25, 0.75, -1));
@@ -107,5 +123,5 @@ public class PolygonTests {
         // TC13: Ray intersects on edge's continuation of polygon.
         ray = new Ray(new Point(0.25, 0.25, 1), new Vector(-1.25, -2.25, -1));
         assertNull(polygon.findIntersections(ray), "TC13: Ray intersects on edge's continuation of polygon. BVA doesn't work.");
-    }*/
-}
\ No newline at end of file
+    }
+}
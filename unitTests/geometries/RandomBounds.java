@@ -0,0 +1,38 @@
+package geometries;
+
+import java.util.Random;
+
+/**
+ * Class RandomBounds creates the boxes of random primitives for the tests of the
+ * hierarchy builders
+ *
+ * @author hodaya
+ */
+final class RandomBounds {
+    private RandomBounds() {
+    }
+
+    /**
+     * creates the boxes of random primitives - every third primitive is anywhere
+     * in a cube of 1000, and the others are in a cube of a given size, so a small
+     * size puts many of them in a cluster
+     *
+     * @param size        the amount of primitives
+     * @param seed        the seed of the random numbers
+     * @param clusterSize the size of the cube of two thirds of the primitives
+     * @return the boxes - 6 values for each primitive
+     */
+    static double[] randomBounds(int size, long seed, double clusterSize) {
+        Random random = new Random(seed);
+        double[] bounds = new double[size * 6];
+        for (int i = 0; i < size; ++i) {
+            double scale = i % 3 == 0 ? 1000 : clusterSize;
+            for (int axis = 0; axis < 3; ++axis) {
+                double min = random.nextDouble() * scale;
+                bounds[i * 6 + axis] = min;
+                bounds[i * 6 + axis + 3] = min + random.nextDouble();
+            }
+        }
+        return bounds;
+    }
+}
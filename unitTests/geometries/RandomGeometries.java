@@ -0,0 +1,79 @@
+package geometries;
+
+import geometries.Intersectable.GeoPoint;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Class RandomGeometries creates random spheres and random rays through them for
+ * the tests of the hierarchies, and compares the intersections of the rays with a
+ * hierarchy to the intersections without it
+ *
+ * @author hodaya
+ */
+public final class RandomGeometries {
+    private RandomGeometries() {
+    }
+
+    /**
+     * creates random spheres of radius 1 to 4 in the cube of 100 in front of the
+     * rays of {@link #randomRay(Random, double)} (0 to 100 along x and y, 0 to
+     * -100 along z)
+     *
+     * @param random the random numbers generator
+     * @param count  the amount of spheres
+     * @return the spheres
+     */
+    public static Geometries randomSpheres(Random random, int count) {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < count; ++i)
+            geometries.add(new Sphere(1 + random.nextDouble() * 3,
+                    new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * -100)));
+        return geometries;
+    }
+
+    /**
+     * creates a random ray that starts at z = 10 over a square of a given size
+     * (from 0 along x and y) and goes down along z, a little aside
+     *
+     * @param random the random numbers generator
+     * @param size   the side of the square of the ray heads
+     * @return the ray
+     */
+    public static Ray randomRay(Random random, double size) {
+        return new Ray(new Point(random.nextDouble() * size, random.nextDouble() * size, 10),
+                new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+    }
+
+    /**
+     * checks that random rays over the cube of 100 hit the same closest points in
+     * two bodies
+     *
+     * @param expected the body to compare to
+     * @param actual   the body to check
+     * @param random   the random numbers generator
+     * @param count    the amount of rays
+     * @param message  the message of a failure
+     */
+    public static void assertSameClosestHits(Intersectable expected, Intersectable actual, Random random, int count,
+                                             String message) {
+        for (int i = 0; i < count; ++i) {
+            Ray ray = randomRay(random, 100);
+            GeoPoint hit = expected.findClosestIntersection(ray);
+            GeoPoint other = actual.findClosestIntersection(ray);
+            if (hit == null) {
+                assertNull(other, message + " - intersection that is not there");
+                continue;
+            }
+            assertNotNull(other, message + " - missed intersection");
+            assertEquals(hit.point, other.point, message);
+        }
+    }
+}
@@ -5,10 +5,11 @@ import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 
+import java.lang.management.ManagementFactory;
 import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Unit tests for {@link Sphere} class
@@ -140,4 +141,36 @@ class SphereTest {
         assertNull(sphere.findIntersections(ray), "TC22: Ray outside orthogonal to sphere center line.");
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link Sphere#findClosestDistance(Ray, double)}.
+     */
+    @Test
+    void testFindClosestDistance() {
+        Sphere sphere = new Sphere(1, new Point(0, 0, -5));
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(0, 0, -1));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The distance of the first intersection in front of the ray
+        assertEquals(4, sphere.findClosestDistance(ray, Double.POSITIVE_INFINITY), 0.00001, "TC01: Wrong distance");
+
+        // TC02: No intersection before the maximum distance
+        assertEquals(Double.POSITIVE_INFINITY, sphere.findClosestDistance(ray, 3), "TC02: Found a far intersection");
+
+        // TC03: The distance is found without creating objects
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "The JVM does not count the allocated bytes");
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "The JVM does not count the allocated bytes");
+        long thread = Thread.currentThread().getId();
+        final int calls = 10000;
+        double sum = 0;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < calls; ++i)
+            sum += sphere.findClosestDistance(ray, Double.POSITIVE_INFINITY);
+        long bytes = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(bytes < calls, "TC03: The distance search allocated " + bytes + " bytes");
+        assertEquals(4 * calls, sum, 0.001, "TC03: Wrong distance");
+    }
+}
@@ -0,0 +1,271 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.Material;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.Random;
+
+import static geometries.RandomGeometries.randomRay;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TriangleMesh} class
+ *
+ * @author hodaya
+ */
+class TriangleMeshTests {
+
+    /**
+     * creates a grid of squares with random heights, two faces for each square
+     *
+     * @param random the random numbers generator
+     * @param size   the amount of squares along each side
+     * @return the positions (index 0) and the faces (index 1)
+     */
+    private static Object[] randomGrid(Random random, int size) {
+        double[] positions = new double[(size + 1) * (size + 1) * 3];
+        for (int i = 0; i <= size; ++i)
+            for (int j = 0; j <= size; ++j) {
+                int v = (i * (size + 1) + j) * 3;
+                positions[v] = j;
+                positions[v + 1] = i;
+                positions[v + 2] = random.nextDouble() * 3 - 10;
+            }
+        int[] indices = new int[size * size * 6];
+        int f = 0;
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j) {
+                int v = i * (size + 1) + j;
+                indices[f++] = v;
+                indices[f++] = v + 1;
+                indices[f++] = v + size + 1;
+                indices[f++] = v + 1;
+                indices[f++] = v + size + 2;
+                indices[f++] = v + size + 1;
+            }
+        return new Object[]{positions, indices};
+    }
+
+    /**
+     * creates a triangle of a face of a mesh
+     */
+    private static Triangle triangle(double[] positions, int[] indices, int face) {
+        Point[] points = new Point[3];
+        for (int i = 0; i < 3; ++i) {
+            int v = indices[face * 3 + i] * 3;
+            points[i] = new Point(positions[v], positions[v + 1], positions[v + 2]);
+        }
+        return new Triangle(points[0], points[1], points[2]);
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#TriangleMesh(double[], int[])}.
+     */
+    @Test
+    void testConstructor() {
+        double[] positions = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Correct mesh
+        assertDoesNotThrow(() -> new TriangleMesh(positions, new int[]{0, 1, 2}), "TC01: Failed constructing a correct mesh");
+
+        // TC02: A face refers to a missing vertex
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[]{0, 1, 3}),
+                "TC02: Constructed a mesh with a missing vertex");
+
+        // TC03: A face without all its vertices
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[]{0, 1}),
+                "TC03: Constructed a mesh with a partial face");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A mesh without faces
+        assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(positions, new int[0]),
+                "TC11: Constructed a mesh without faces");
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#findClosestIntersection(Ray, double)}.
+     */
+    @Test
+    void testFindClosestIntersection() {
+        Random random = new Random(2617);
+        Object[] grid = randomGrid(random, 20);
+        double[] positions = (double[]) grid[0];
+        int[] indices = (int[]) grid[1];
+        TriangleMesh mesh = new TriangleMesh(positions, indices);
+        mesh.setMaterial(new Material().setKd(0.5));
+        Triangle[] triangles = new Triangle[mesh.getFaceCount()];
+        for (int face = 0; face < triangles.length; ++face)
+            triangles[face] = triangle(positions, indices, face);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Rays hit the same faces as the separate triangles
+        for (int i = 0; i < 500; ++i) {
+            Ray ray = randomRay(random, 20);
+            int expectedFace = -1;
+            double expectedT = Double.POSITIVE_INFINITY;
+            for (int face = 0; face < triangles.length; ++face) {
+                var gp = triangles[face].findClosestIntersection(ray, expectedT);
+                if (gp != null) {
+                    expectedFace = face;
+                    expectedT = gp.t;
+                }
+            }
+            var gp = mesh.findClosestIntersection(ray);
+            if (expectedFace < 0) {
+                assertNull(gp, "TC01: Intersection with a ray that misses all the faces");
+                continue;
+            }
+            assertNotNull(gp, "TC01: Missed intersection");
+            TriangleMesh.Face face = (TriangleMesh.Face) gp.geometry;
+            assertEquals(expectedFace, face.getIndex(), "TC01: Wrong face");
+            assertEquals(expectedT, gp.t, 0.00001, "TC01: Wrong distance");
+            assertEquals(triangles[expectedFace].getNormal(gp.point), face.getNormal(gp.point), "TC01: Wrong normal");
+            assertSame(mesh.getMaterial(), face.getMaterial(), "TC01: The face does not use the mesh material");
+        }
+
+        // TC02: The maximum distance limits the intersection
+        Ray ray = new Ray(new Point(10.3, 10.6, 10), new Vector(0, 0, -1));
+        assertNotNull(mesh.findClosestIntersection(ray, 20), "TC02: Missed intersection within the distance");
+        assertNull(mesh.findClosestIntersection(ray, 5), "TC02: Intersection beyond the maximum distance");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A ray along a shared edge hits neither face
+        assertNull(mesh.findClosestIntersection(new Ray(new Point(3.5, 3.5, 10), new Vector(0, 0, -1))),
+                "TC11: Intersection on a shared edge");
+
+        // TC12: A ray hits a tiny face, whatever the size of the face
+        TriangleMesh tiny = new TriangleMesh(new double[]{0, 0, 0, 1e-7, 0, 0, 0, 1e-7, 0}, new int[]{0, 1, 2});
+        assertNotNull(tiny.findClosestIntersection(new Ray(new Point(2.5e-8, 2.5e-8, 1), new Vector(0, 0, -1))),
+                "TC12: Missed intersection with a tiny face");
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#findGeoIntersections(Ray)}.
+     */
+    @Test
+    void testFindGeoIntersections() {
+        // two parallel squares, one above the other
+        TriangleMesh mesh = new TriangleMesh(
+                new double[]{0, 0, 0, 2, 0, 0, 0, 2, 0, 2, 2, 0, 0, 0, 1, 2, 0, 1, 0, 2, 1, 2, 2, 1},
+                new int[]{0, 1, 2, 1, 3, 2, 4, 5, 6, 5, 7, 6});
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A ray through both squares
+        var points = mesh.findGeoIntersections(new Ray(new Point(0.5, 0.5, 2), new Vector(0, 0, -1)));
+        assertEquals(2, points.size(), "TC01: Wrong amount of intersections");
+
+        // TC02: A ray beside the squares
+        assertNull(mesh.findGeoIntersections(new Ray(new Point(3, 3, 2), new Vector(0, 0, -1))),
+                "TC02: Intersection with a ray beside the mesh");
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#getNormal(Point)}.
+     */
+    @Test
+    void testGetNormal() {
+        Random random = new Random(4021);
+        Object[] grid = randomGrid(random, 10);
+        double[] positions = (double[]) grid[0];
+        int[] indices = (int[]) grid[1];
+        TriangleMesh mesh = new TriangleMesh(positions, indices);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The normal of an intersection point is the normal of its face
+        for (int i = 0; i < 100; ++i) {
+            Ray ray = new Ray(new Point(random.nextDouble() * 10, random.nextDouble() * 10, 10), new Vector(0, 0, -1));
+            var gp = mesh.findClosestIntersection(ray);
+            if (gp == null) continue;
+            assertEquals(gp.geometry.getNormal(gp.point), mesh.getNormal(gp.point), "TC01: Wrong normal");
+        }
+
+        // TC02: A point beside the mesh
+        assertThrows(IllegalArgumentException.class, () -> mesh.getNormal(new Point(20, 20, -8)),
+                "TC02: A normal of a point beside the mesh");
+
+        // TC03: A point under the mesh
+        assertThrows(IllegalArgumentException.class, () -> mesh.getNormal(new Point(3.3, 3.6, -20)),
+                "TC03: A normal of a point under the mesh");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A vertex has the normal of one of its faces
+        Vector normal = mesh.getNormal(new Point(positions[36], positions[37], positions[38]));
+        boolean found = false;
+        for (int face = 0; face < mesh.getFaceCount(); ++face)
+            found |= mesh.getNormal(face).equals(normal);
+        assertTrue(found, "TC11: The normal of a vertex is not a normal of a face");
+    }
+
+    /**
+     * Test method for {@link TriangleMesh#refit(double)}.
+     */
+    @Test
+    void testRefit() {
+        Random random = new Random(5113);
+        Object[] grid = randomGrid(random, 20);
+        double[] positions = (double[]) grid[0];
+        int[] indices = (int[]) grid[1];
+        TriangleMesh mesh = new TriangleMesh(positions, indices);
+        BVHNodes built = mesh.getHierarchy();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The mesh moved and waved a little - the tree is kept and the faces are found where they moved
+        for (int v = 0; v < positions.length; v += 3) {
+            positions[v] += 100;
+            positions[v + 2] += random.nextDouble() * 0.5 - 40;
+        }
+        assertTrue(mesh.refit(), "TC01: The tree was built again after a small move");
+        assertSame(built.offsets, mesh.getHierarchy().offsets, "TC01: The tree was not kept");
+        assertTrue(mesh.getHierarchy().fits(faceBounds(positions, indices)), "TC01: Wrong refitted boxes");
+        for (int i = 0; i < 200; ++i) {
+            Ray ray = new Ray(new Point(100 + random.nextDouble() * 20, random.nextDouble() * 20, 10), new Vector(0, 0, -1));
+            int expectedFace = -1;
+            double expectedT = Double.POSITIVE_INFINITY;
+            for (int face = 0; face < mesh.getFaceCount(); ++face) {
+                var gp = triangle(positions, indices, face).findClosestIntersection(ray, expectedT);
+                if (gp != null) {
+                    expectedFace = face;
+                    expectedT = gp.t;
+                }
+            }
+            var gp = mesh.findClosestIntersection(ray);
+            if (expectedFace < 0)
+                assertNull(gp, "TC01: Intersection with a ray that misses all the faces");
+            else
+                assertEquals(expectedFace, ((TriangleMesh.Face) gp.geometry).getIndex(), "TC01: Wrong face");
+        }
+
+        // TC02: The vertices were scattered - the tree is built again
+        for (int v = 0; v < positions.length; ++v)
+            positions[v] = random.nextDouble() * 100;
+        assertFalse(mesh.refit(), "TC02: The tree was kept after the vertices were scattered");
+        assertNotSame(built.offsets, mesh.getHierarchy().offsets, "TC02: The tree was not built again");
+        assertTrue(mesh.getHierarchy().fits(faceBounds(positions, indices)), "TC02: Wrong boxes of the new tree");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: No move at all keeps the tree with the same boxes
+        built = mesh.getHierarchy();
+        assertTrue(mesh.refit(1), "TC11: The tree was built again without a move");
+        assertArrayEquals(built.bounds, mesh.getHierarchy().bounds, "TC11: Wrong boxes without a move");
+    }
+
+    /**
+     * calculates the boxes of the faces of a mesh
+     */
+    private static double[] faceBounds(double[] positions, int[] indices) {
+        double[] bounds = new double[indices.length * 2];
+        for (int face = 0; face < indices.length / 3; ++face)
+            for (int axis = 0; axis < 3; ++axis) {
+                double a = positions[indices[face * 3] * 3 + axis];
+                double b = positions[indices[face * 3 + 1] * 3 + axis];
+                double c = positions[indices[face * 3 + 2] * 3 + axis];
+                bounds[face * 6 + axis] = Math.min(a, Math.min(b, c));
+                bounds[face * 6 + axis + 3] = Math.max(a, Math.max(b, c));
+            }
+        return bounds;
+    }
+}
@@ -6,6 +6,7 @@ import primitives.Ray;
 import primitives.Vector;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
@@ -54,5 +55,44 @@ class TriangleTest {
         //TC13: the ray begins on edge's continuation
         assertNull(triangle.findIntersections(new Ray(new Point(0, 2, 0), new Vector(0, -1, 0))), "TC13: Ray begins on edge's continuation against outside.");
 
+        //TC14: the ray crosses the plane on an edge
+        assertNull(triangle.findIntersections(new Ray(new Point(0.5, 0.5, 1), new Vector(0, 0, -1))), "TC14: Ray crosses the edge.");
+
+        //TC15: the ray crosses the plane in a vertex
+        assertNull(triangle.findIntersections(new Ray(new Point(1, 0, 1), new Vector(0, 0, -1))), "TC15: Ray crosses the vertex.");
+
+        //TC16: the ray is parallel to the triangle
+        assertNull(triangle.findIntersections(new Ray(new Point(0.2, 0.2, 1), new Vector(1, 0, 0))), "TC16: Ray parallel to the triangle.");
+
+        //TC17: a tiny triangle (edges of 1e-6) is hit by an oblique ray - the parallel test is relative to its size
+        Triangle tiny = new Triangle(new Point(0, 0, 0), new Point(1e-6, 0, 0), new Point(0, 1e-6, 0));
+        var result = tiny.findIntersections(new Ray(new Point(10 + 2.5e-7, 2.5e-7, 1), new Vector(-10, 0, -1)));
+        assertNotNull(result, "TC17: Ray missed a tiny triangle.");
+        assertEquals(new Point(2.5e-7, 2.5e-7, 0), result.get(0), "TC17: Wrong intersection with a tiny triangle.");
+
+    }
+
+    /**
+     * Test method for {@link Triangle#findClosestIntersection(Ray, double)}
+     */
+    @Test
+    void testFindClosestIntersection() {
+        Triangle triangle = new Triangle(new Point(1, 0, 0), new Point(0, 1, 0), new Point(0, 0, 0));
+        Ray ray = new Ray(new Point(0.25, 0.25, 2), new Vector(0, 0, -1));
+
+        // ============ Equivalence Partitions Tests ==============
+        //TC01: the ray crosses the triangle - the point and its distance
+        Intersectable.GeoPoint gp = triangle.findClosestIntersection(ray, 10);
+        assertEquals(new Point(0.25, 0.25, 0), gp.point, "TC01: Wrong intersection point");
+        assertEquals(2, gp.t, 0.00001, "TC01: Wrong intersection distance");
+        assertEquals(0.25, gp.u, 0.00001, "TC01: Wrong weight of the second vertex");
+        assertEquals(0.5, gp.v, 0.00001, "TC01: Wrong weight of the third vertex");
+
+        //TC02: the triangle is beyond the maximum distance
+        assertNull(triangle.findClosestIntersection(ray, 1), "TC02: Intersection beyond the maximum distance");
+
+        //TC03: the triangle is behind the ray
+        assertNull(triangle.findClosestIntersection(new Ray(new Point(0.25, 0.25, 2), new Vector(0, 0, 1)), 10),
+                "TC03: Intersection behind the ray head");
     }
 }
\ No newline at end of file
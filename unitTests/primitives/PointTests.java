@@ -2,8 +2,12 @@ package primitives;
 
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Unit tests for {@link Point} class
@@ -27,6 +31,66 @@ class PointTests {
         // there are no boundary tests
     }
 
+    /*
+     * Test method for {@link primitives.Point#add(primitives.Vector, double)}.
+     */
+    @Test
+    void testAddScaled() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Simple test
+        assertEquals(new Point(3, 5, 7), new Point(1, 1, 1).add(new Vector(1, 2, 3), 2), //
+                "Wrong point add of a scaled vector");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: zero scale gives the same point
+        assertEquals(new Point(1, 1, 1), new Point(1, 1, 1).add(new Vector(1, 2, 3), 0), //
+                "Wrong point add of a vector scaled by zero");
+    }
+
+    /*
+     * Test method for {@link primitives.Point#subtractDotProduct(primitives.Point, primitives.Vector)}.
+     */
+    @Test
+    void testSubtractDotProduct() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Simple test
+        assertEquals(14, new Point(2, 3, 4).subtractDotProduct(new Point(1, 1, 1), new Vector(1, 2, 3)), 0.00001, //
+                "Wrong dot product of a point difference");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: same point gives zero without exception
+        assertEquals(0, new Point(1, 2, 3).subtractDotProduct(new Point(1, 2, 3), new Vector(1, 2, 3)), 0.00001, //
+                "Wrong dot product of a zero difference");
+    }
+
+    /*
+     * Test of the allocations of {@link primitives.Point#subtractDotProduct(primitives.Point, primitives.Vector)},
+     * by the bytes that the thread allocates. The method creates no objects, so it allocates nothing
+     * with or without the JIT.
+     */
+    @Test
+    void testAllocation() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "The JVM does not count the allocated bytes");
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "The JVM does not count the allocated bytes");
+        long thread = Thread.currentThread().getId();
+        final int calls = 10000;
+        Point q = new Point(3, 2, 1);
+        Vector v = new Vector(1, 2, 3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The dot product of a difference allocates nothing
+        double sum = 0;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < calls; ++i)
+            sum += p.subtractDotProduct(q, v);
+        long dotBytes = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(dotBytes < calls, "TC01: The dot product of a difference allocated " + dotBytes + " bytes");
+        assertEquals(-4 * calls, sum, 0.00001, "TC01: Wrong dot product");
+    }
+
     /* Test method for {@link primitives.Point#subtract(primitives.Point)}.
      */
     @Test
@@ -0,0 +1,62 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+import primitives.RayStatistics.Counter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing RayStatistics Class
+ *
+ * @author hodaya
+ */
+class RayStatisticsTests {
+
+    /**
+     * Test method for {@link RayStatistics#count(Counter)} and
+     * {@link RayStatistics#bind(RayStatistics)}.
+     */
+    @Test
+    void testCount() throws InterruptedException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Counting from many threads at once loses nothing, and each accumulator counts only its own threads
+        RayStatistics first = new RayStatistics();
+        RayStatistics second = new RayStatistics();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            RayStatistics statistics = i % 2 == 0 ? first : second;
+            threads.add(new Thread(() -> {
+                RayStatistics.bind(statistics);
+                for (int j = 0; j < 10000; ++j) {
+                    RayStatistics.count(Counter.SHADOW_RAYS);
+                    RayStatistics.countTests(3, 2);
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        for (RayStatistics counted : List.of(first, second)) {
+            assertEquals(20000, counted.get(Counter.SHADOW_RAYS), "TC01: Wrong amount of shadow rays");
+            assertEquals(60000, counted.get(Counter.BOX_TESTS), "TC01: Wrong amount of box tests");
+            assertEquals(40000, counted.get(Counter.PRIMITIVE_TESTS), "TC01: Wrong amount of primitive tests");
+        }
+
+        // TC02: A thread counts into the accumulator that is bound to it until it is unbound
+        RayStatistics previous = RayStatistics.bind(first);
+        RayStatistics.count(Counter.PRIMARY_RAYS, 5);
+        assertSame(first, RayStatistics.bind(previous), "TC02: Wrong accumulator was bound");
+        RayStatistics.count(Counter.PRIMARY_RAYS, 5);
+        assertEquals(20005, first.rays(), "TC02: Wrong amount of rays");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A new accumulator counted nothing
+        RayStatistics empty = new RayStatistics();
+        for (Counter counter : Counter.values())
+            assertEquals(0, empty.get(counter), "TC11: Wrong value of " + counter);
+    }
+}
@@ -0,0 +1,84 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static primitives.Util.isZero;
+
+/**
+ * Unit tests for {@link Transform} class
+ *
+ * @author hodaya
+ */
+class TransformTests {
+
+    /**
+     * Test method for {@link Transform#transformPoint(Point)} and {@link Transform#transformVector(Vector)}.
+     */
+    @Test
+    void testTransform() {
+        Point p = new Point(1, 2, 3);
+        Vector v = new Vector(1, 2, 3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A translation moves points and leaves vectors
+        Transform move = Transform.translation(new Vector(10, 20, 30));
+        assertEquals(new Point(11, 22, 33), move.transformPoint(p), "TC01: Wrong translated point");
+        assertEquals(v, move.transformVector(v), "TC01: A translation changed a vector");
+
+        // TC02: A scaling along the axes
+        Transform scale = Transform.scaling(2, 3, 4);
+        assertEquals(new Point(2, 6, 12), scale.transformPoint(p), "TC02: Wrong scaled point");
+        assertEquals(new Vector(2, 6, 12), scale.transformVector(v), "TC02: Wrong scaled vector");
+
+        // TC03: A rotation turns as Vector.vectorRotate
+        Transform rotate = Transform.rotation(new Vector(1, 1, 0), 0.7);
+        assertEquals(v.vectorRotate(new Vector(1, 1, 0).normalize(), 0.7), rotate.transformVector(v),
+                "TC03: Wrong rotated vector");
+        assertEquals(new Point(1, 0, 0), Transform.rotation(Vector.Z, Math.PI / 2).transformPoint(new Point(0, -1, 0)),
+                "TC03: Wrong rotated point");
+
+        // TC04: Chained transformations are applied in their order
+        assertEquals(new Point(2, 4, 6), move.then(Transform.scaling(2)).inversePoint(new Point(24, 48, 72)),
+                "TC04: Wrong inverse of a chain");
+        assertEquals(new Point(22, 44, 66), Transform.scaling(2).then(move).transformPoint(new Point(6, 12, 18)),
+                "TC04: Wrong chain");
+
+        // TC05: The inverse undoes the transformation
+        Transform all = scale.then(rotate).then(move);
+        assertEquals(p, all.inversePoint(all.transformPoint(p)), "TC05: Wrong inverse point");
+        assertEquals(v, all.inverseVector(all.transformVector(v)), "TC05: Wrong inverse vector");
+        assertEquals(p, all.inverse().transformPoint(all.transformPoint(p)), "TC05: Wrong inverse transformation");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The identity leaves everything
+        assertEquals(p, Transform.IDENTITY.transformPoint(p), "TC11: The identity moved a point");
+
+        // TC12: A transformation that flattens space cannot be inverted
+        assertThrows(IllegalArgumentException.class, () -> Transform.scaling(1, 0, 1),
+                "TC12: A flat scaling was created");
+    }
+
+    /**
+     * Test method for {@link Transform#transformNormal(Vector)}.
+     */
+    @Test
+    void testTransformNormal() {
+        Transform transform = Transform.scaling(1, 5, 0.5).then(Transform.rotation(new Vector(1, 2, 3), 1.1));
+        Vector tangent1 = new Vector(1, -1, 0);
+        Vector tangent2 = new Vector(0, 1, -1);
+        Vector normal = tangent1.crossProduct(tangent2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The normal stays perpendicular to the transformed surface
+        Vector transformed = transform.transformNormal(normal);
+        assertTrue(isZero(transformed.dotProduct(transform.transformVector(tangent1))), "TC01: Wrong normal");
+        assertTrue(isZero(transformed.dotProduct(transform.transformVector(tangent2))), "TC01: Wrong normal");
+        assertEquals(1, transformed.length(), 0.00001, "TC01: The normal is not normalized");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A rotation turns normals as vectors
+        Transform rotate = Transform.rotation(Vector.Y, 0.3);
+        assertEquals(rotate.transformVector(Vector.X), rotate.transformNormal(Vector.X), "TC11: Wrong rotated normal");
+    }
+}
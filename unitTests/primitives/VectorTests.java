@@ -39,6 +39,21 @@ class VectorTests {
                 () -> new Vector(1, 2, 3).subtract(new Vector(1, 2, 3)), "Subtract v from v must throw exception");
     }
 
+    /* Test method for {@link primitives.Vector#subtract(primitives.Vector, double)}.
+     */
+    @Test
+    public void testSubtractScaled() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Simple test
+        assertEquals(new Vector(0, -1, -2), new Vector(2, 3, 4).subtract(new Vector(1, 2, 3), 2),
+                "Wrong vector subtract of a scaled vector");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: test subtracting the same vector scaled by one
+        assertThrows(IllegalArgumentException.class,
+                () -> new Vector(1, 2, 3).subtract(new Vector(1, 2, 3), 1), "Subtract v * 1 from v must throw exception");
+    }
+
     /* Test method for {@link primitives.Point3D#subtract(primitives.Point3D)}.
      */
     @Test
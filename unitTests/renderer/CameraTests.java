@@ -1,11 +1,28 @@
 package renderer;
 
 import org.junit.jupiter.api.Test;
+import geometries.Sphere;
+import primitives.Color;
 import primitives.Point;
 import primitives.Ray;
+import primitives.RayStatistics;
+import primitives.RayStatistics.Counter;
 import primitives.Vector;
+import scene.Scene;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Testing Camera Class
@@ -56,5 +73,363 @@ class CameraTest {
 
     }
 
+    /**
+     * Ray tracer that counts the traced rays and may cancel the rendering
+     */
+    private static class CountingTracer extends RayTracerBase {
+        final AtomicInteger rays = new AtomicInteger();
+        Camera cancelAfter = null;
+
+        CountingTracer() {
+            super(new Scene("Test scene"));
+        }
+
+        @Override
+        public Color traceRay(Ray ray) {
+            if (rays.incrementAndGet() == 100 && cancelAfter != null)
+                cancelAfter.cancel();
+            return Color.BLACK;
+        }
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#renderImage()} with the rendering
+     * backends.
+     */
+    @Test
+    void testRenderImage() throws InterruptedException {
+        CountingTracer tracer = new CountingTracer();
+        Camera camera = camera(tracer, 50, 30).setMultithreading(3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Every backend traces each pixel once, and the camera can render again
+        for (RenderBackend backend : RenderBackend.values())
+            for (int frame = 0; frame < 2; ++frame) {
+                tracer.rays.set(0);
+                camera.setRenderBackend(backend).renderImage();
+                assertEquals(50 * 30, tracer.rays.get(), "TC01: Wrong amount of rays with " + backend);
+            }
+
+        // TC02: Tiles that do not divide the image trace each pixel once
+        tracer.rays.set(0);
+        camera.setRenderBackend(RenderBackend.THREADS).setTileSize(7).renderImage();
+        assertEquals(50 * 30, tracer.rays.get(), "TC02: Wrong amount of rays with tiles of 7 pixels");
+
+        // TC03: A cancelled rendering stops early
+        tracer.cancelAfter = camera;
+        for (RenderBackend backend : RenderBackend.values()) {
+            tracer.rays.set(0);
+            assertThrows(CancellationException.class, () -> camera.setRenderBackend(backend).renderImage(),
+                    "TC03: Cancelled rendering did not stop with " + backend);
+            assertTrue(tracer.rays.get() < 50 * 30, "TC03: Cancelled rendering traced all the pixels with " + backend);
+        }
+
+        // TC04: An error of a rendering thread is passed on by every backend
+        Camera failing = camera(new FunctionTracer(ray -> {
+            throw new StackOverflowError();
+        }), 50, 30).setMultithreading(3);
+        for (RenderBackend backend : RenderBackend.values())
+            assertThrows(StackOverflowError.class, () -> failing.setRenderBackend(backend).renderImage(),
+                    "TC04: The error was lost with " + backend);
+
+        // TC05: An interrupted rendering returns only after its threads stopped tracing
+        Thread caller = Thread.currentThread();
+        for (RenderBackend backend : RenderBackend.values()) {
+            AtomicInteger traced = new AtomicInteger();
+            Camera slow = camera(new FunctionTracer(ray -> {
+                if (traced.incrementAndGet() == 100)
+                    caller.interrupt();
+                LockSupport.parkNanos(1_000_000);
+                return Color.BLACK;
+            }), 50, 30).setMultithreading(3).setRenderBackend(backend);
+            assertThrows(CancellationException.class, slow::renderImage,
+                    "TC05: Interrupted rendering did not stop with " + backend);
+            assertTrue(Thread.interrupted(), "TC05: The interrupt was lost with " + backend);
+            int rays = traced.get();
+            Thread.sleep(50);
+            assertEquals(rays, traced.get(), "TC05: Rays were traced after the rendering returned with " + backend);
+        }
+
+        // TC06: Without virtual threads (before Java 21) the virtual-thread backend uses the set amount of threads
+        if (Runtime.version().feature() < 21) {
+            Set<Thread> used = ConcurrentHashMap.newKeySet();
+            camera(new FunctionTracer(ray -> {
+                used.add(Thread.currentThread());
+                return Color.BLACK;
+            }), 50, 30).setMultithreading(2).setRenderBackend(RenderBackend.VIRTUAL_THREADS).renderImage();
+            assertEquals(2, used.size(), "TC06: Wrong amount of threads");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A cancel that comes before the rendering starts stops it, and only it
+        tracer.cancelAfter = null;
+        tracer.rays.set(0);
+        camera.cancel();
+        assertThrows(CancellationException.class, camera::renderImage, "TC11: An early cancel was lost");
+        assertEquals(0, tracer.rays.get(), "TC11: The cancelled rendering traced pixels");
+        camera.renderImage();
+        assertEquals(50 * 30, tracer.rays.get(), "TC11: The cancel stopped the next rendering");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#getStatistics()}.
+     */
+    @Test
+    void testStatistics() throws InterruptedException {
+        Scene scene = new Scene("Statistics scene").setCBR();
+        scene.geometries.add(new Sphere(2, new Point(0, 0, -20)));
+        Camera camera = camera(new RayTracerBasic(scene), 20, 20).setMultithreading(2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Every pixel is a primary ray with a box test, and the rays through the sphere hit it
+        RayStatistics statistics = camera.renderImage().getStatistics();
+        assertEquals(400, statistics.get(Counter.PRIMARY_RAYS), "TC01: Wrong amount of primary rays");
+        assertTrue(statistics.get(Counter.BOX_TESTS) >= 400, "TC01: The box tests were not counted");
+        long hits = statistics.get(Counter.HITS);
+        assertTrue(hits > 0 && hits < 400, "TC01: Wrong amount of hits");
+        long tests = statistics.get(Counter.PRIMITIVE_TESTS);
+        assertTrue(tests >= hits && tests < 400, "TC01: Only the rays in the box test the sphere");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Each rendering is counted apart
+        assertEquals(statistics.get(Counter.PRIMARY_RAYS),
+                camera.renderImage().getStatistics().get(Counter.PRIMARY_RAYS), "TC11: The renderings were summed");
+
+        // TC12: Renderings that run at the same time count only their own work
+        Camera other = camera(new RayTracerBasic(scene), 30, 30).setMultithreading(2);
+        Thread thread = new Thread(other::renderImage);
+        thread.start();
+        RayStatistics concurrent = camera.renderImage().getStatistics();
+        thread.join();
+        assertEquals(400, concurrent.get(Counter.PRIMARY_RAYS), "TC12: The other rendering was counted");
+        assertEquals(900, other.getStatistics().get(Counter.PRIMARY_RAYS), "TC12: The other rendering was not counted");
+    }
+
+    /**
+     * ray tracer that colors the rays by a function and counts them
+     */
+    private static class FunctionTracer extends RayTracerBase {
+        final AtomicInteger rays = new AtomicInteger();
+        final Function<Ray, Color> color;
+
+        FunctionTracer(Function<Ray, Color> color) {
+            super(new Scene("Test scene"));
+            this.color = color;
+        }
+
+        @Override
+        public Color traceRay(Ray ray) {
+            rays.incrementAndGet();
+            return color.apply(ray);
+        }
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setDofTolerance(double)} - the
+     * adaptive sampling of the aperture.
+     */
+    @Test
+    void testDepthOfField() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Where all the aperture rays have the same color, only the corners and the center are traced
+        FunctionTracer plain = new FunctionTracer(ray -> new Color(20, 40, 60));
+        dofCamera(plain).renderImage();
+        assertEquals(10 * 10 * 5, plain.rays.get(), "TC01: Wrong amount of rays for a plain color");
+
+        // TC02: An even gradient over the aperture is averaged by the corners and the center
+        FunctionTracer gradient = new FunctionTracer(
+                ray -> new Color(1000 + 100 * ray.getP0().getX(), 1000 + 100 * ray.getP0().getY(), 60));
+        dofCamera(gradient).renderImage();
+        assertEquals(10 * 10 * 5, gradient.rays.get(), "TC02: Wrong amount of rays for a gradient");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Where the colors curve everywhere, every point of the aperture grid is traced once
+        FunctionTracer curved = new FunctionTracer(ray -> new Color(
+                1000 * ray.getP0().getX() * ray.getP0().getX() + 1000 * ray.getP0().getY() * ray.getP0().getY(), 0, 0));
+        dofCamera(curved).renderImage();
+        assertEquals(10 * 10 * 100, curved.rays.get(), "TC11: Wrong amount of rays for curved colors");
 
+        // TC12: A negative tolerance is illegal
+        assertThrows(IllegalArgumentException.class, () -> dofCamera(plain).setDofTolerance(-1),
+                "TC12: A negative tolerance was accepted");
+
+        // TC13: An amount of points that is not a square is a smaller grid, and the sum is divided by the amount
+        Camera partial = dofCamera(plain).setNumOfPoints(10).setApertureSize(1).renderImage();
+        Color pixel = partial.getImageWriter().getPixel(4, 6);
+        assertArrayEquals(new double[]{18, 36, 54}, new double[]{pixel.getR(), pixel.getG(), pixel.getB()}, 0.00001,
+                "TC13: Wrong average of an amount of points that is not a square");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setAntiAliasing(int)}.
+     */
+    @Test
+    void testAntiAliasing() {
+        // a vertical edge on the view plane at x = 0.3, inside the pixels of column 5 (0 - 0.8)
+        FunctionTracer edge = new FunctionTracer(ray -> ray.getDir().getX() / -ray.getDir().getZ() * 10 > 0.3
+                ? new Color(255, 255, 255) : Color.BLACK);
+        FunctionTracer plain = new FunctionTracer(ray -> new Color(20, 40, 60));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A plain image traces only the corners of the pixels, once for neighboring pixels
+        camera(plain, 10, 10).setAntiAliasing(3).renderImage();
+        assertEquals(11 * 11, plain.rays.get(), "TC01: Wrong amount of rays for a plain image");
+
+        // TC02: Only the pixels on the edge are divided, and only their squares on the edge again
+        camera(edge, 10, 10).setAntiAliasing(3).renderImage();
+        assertEquals(11 * 11 + 10 * (5 + 2 * 5), edge.rays.get(), "TC02: Wrong amount of rays for an edge");
+
+        // TC03: Neighboring tiles share the corners on their sides
+        plain.rays.set(0);
+        camera(plain, 10, 10).setAntiAliasing(3).setTileSize(3).renderImage();
+        assertEquals(11 * 11, plain.rays.get(), "TC03: Wrong amount of rays for a plain image in tiles");
+        edge.rays.set(0);
+        camera(edge, 10, 10).setAntiAliasing(3).setTileSize(3).renderImage();
+        assertEquals(11 * 11 + 10 * (5 + 2 * 5), edge.rays.get(), "TC03: Wrong amount of rays for an edge in tiles");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The depth limits the division
+        edge.rays.set(0);
+        camera(edge, 10, 10).setAntiAliasing(1).renderImage();
+        assertEquals(11 * 11, edge.rays.get(), "TC11: Wrong amount of rays for a single level");
+
+        // TC12: A high threshold takes the edge as the same color
+        edge.rays.set(0);
+        camera(edge, 10, 10).setAntiAliasing(3).setAntiAliasingThreshold(255).renderImage();
+        assertEquals(11 * 11, edge.rays.get(), "TC12: Wrong amount of rays with a high threshold");
+
+        // TC13: Negative settings are illegal
+        assertThrows(IllegalArgumentException.class, () -> camera(plain, 10, 10).setAntiAliasing(-1),
+                "TC13: A negative depth was accepted");
+        assertThrows(IllegalArgumentException.class, () -> camera(plain, 10, 10).setAntiAliasingThreshold(-1),
+                "TC13: A negative threshold was accepted");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera#setCheckpoint(Path, double)} and
+     * {@link renderer.Camera#setResume(boolean)}.
+     */
+    @Test
+    void testCheckpoint() throws IOException {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        try {
+            // 50x30 pixels are 4x2 tiles of 16 pixels, the last one is 2x14 pixels
+            AtomicReference<Camera> cancelled = new AtomicReference<>();
+            AtomicInteger rays = new AtomicInteger();
+            FunctionTracer tracer = new FunctionTracer(ray -> {
+                if (rays.incrementAndGet() == 600 && cancelled.get() != null)
+                    cancelled.get().cancel();
+                return new Color(100 + 10 * ray.getDir().getX(), 100 + 10 * ray.getDir().getY(), 0.1);
+            });
+            Camera full = checkpointCamera(tracer, file, false).renderImage();
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: A finished rendering is resumed without rendering again
+            tracer.rays.set(0);
+            Camera resumed = checkpointCamera(tracer, file, true).renderImage();
+            assertEquals(0, tracer.rays.get(), "TC01: A finished tile was rendered again");
+            assertSameImage(full, resumed, "TC01");
+
+            // TC02: A cancelled rendering is resumed without the tiles that finished
+            Camera stopped = checkpointCamera(tracer, file, false);
+            cancelled.set(stopped);
+            rays.set(0);
+            assertThrows(CancellationException.class, stopped::renderImage, "TC02: The rendering was not cancelled");
+            cancelled.set(null);
+            tracer.rays.set(0);
+            resumed = checkpointCamera(tracer, file, true).renderImage();
+            // the rendering stopped in the 3rd tile
+            assertEquals(50 * 30 - 2 * 16 * 16, tracer.rays.get(), "TC02: Wrong amount of rendered pixels");
+            assertSameImage(full, resumed, "TC02");
+
+            // =============== Boundary Values Tests ==================
+            // TC11: A damaged end of the file - the last tile is rendered again
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(raf.length() - 10);
+            }
+            tracer.rays.set(0);
+            resumed = checkpointCamera(tracer, file, true).renderImage();
+            assertEquals(2 * 14, tracer.rays.get(), "TC11: Wrong amount of rendered pixels");
+            assertSameImage(full, resumed, "TC11");
+
+            // TC12: Resuming without a file starts from the beginning
+            Files.delete(file);
+            tracer.rays.set(0);
+            checkpointCamera(tracer, file, true).renderImage();
+            assertEquals(50 * 30, tracer.rays.get(), "TC12: Wrong amount of rendered pixels");
+
+            // TC13: A checkpoint of an image of another size cannot be resumed
+            Camera other = checkpointCamera(tracer, file, true).setImageWriter(new ImageWriter("test", 30, 50));
+            assertThrows(IllegalStateException.class, other::renderImage, "TC13: A checkpoint of another image was used");
+
+            // TC15: A checkpoint of other settings cannot be resumed
+            assertThrows(IllegalStateException.class, checkpointCamera(tracer, file, true).setAntiAliasing(1)::renderImage,
+                    "TC15: A checkpoint of other sampling settings was used");
+            assertThrows(IllegalStateException.class,
+                    checkpointCamera(tracer, file, true).setViewPlaneDistance(20)::renderImage,
+                    "TC15: A checkpoint of another view plane was used");
+            assertThrows(IllegalStateException.class,
+                    checkpointCamera(new FunctionTracer(ray -> Color.BLACK) {
+                    }, file, true)::renderImage, "TC15: A checkpoint of another ray tracer was used");
+
+            // TC14: A negative interval is illegal
+            assertThrows(IllegalArgumentException.class, () -> other.setCheckpoint(file, -1),
+                    "TC14: A negative interval was accepted");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * creates a camera of 50x30 pixels with a checkpoint file that is written for
+     * every tile
+     *
+     * @param tracer the ray tracer
+     * @param file   the checkpoint file
+     * @param resume whether the rendering is resumed from the file
+     * @return the camera
+     */
+    private static Camera checkpointCamera(RayTracerBase tracer, Path file, boolean resume) {
+        return camera(tracer, 50, 30).setCheckpoint(file, 0).setResume(resume);
+    }
+
+    /**
+     * checks that two cameras rendered the same colors
+     */
+    private static void assertSameImage(Camera expected, Camera actual, String tc) {
+        for (int i = 0; i < 50; i++)
+            for (int j = 0; j < 30; j++) {
+                Color e = expected.getImageWriter().getPixel(i, j);
+                Color a = actual.getImageWriter().getPixel(i, j);
+                assertArrayEquals(new double[]{e.getR(), e.getG(), e.getB()}, new double[]{a.getR(), a.getG(), a.getB()},
+                        tc + ": Wrong pixel at " + i + ", " + j);
+            }
+    }
+
+    /**
+     * creates a camera at the origin that looks along -z, with a view plane of
+     * 8x8 at a distance of 10
+     *
+     * @param tracer the ray tracer
+     * @param nx     the amount of columns of the image
+     * @param ny     the amount of rows of the image
+     * @return the camera
+     */
+    private static Camera camera(RayTracerBase tracer, int nx, int ny) {
+        return new Camera(ZERO_POINT, new Vector(0, 0, -1), new Vector(0, -1, 0))
+                .setViewPlaneDistance(10).setViewPlaneSize(8, 8)
+                .setImageWriter(new ImageWriter("test", nx, ny))
+                .setRayTracer(tracer);
+    }
+
+    /**
+     * creates a camera with depth of field of 10x10 aperture points
+     *
+     * @param tracer the ray tracer
+     * @return the camera
+     */
+    private static Camera dofCamera(RayTracerBase tracer) {
+        return camera(tracer, 10, 10)
+                .setDepthOfFiled(true).setFPDistance(20).setNumOfPoints(100).setApertureSize(1);
+    }
 }
@@ -3,6 +3,18 @@ package renderer;
 import org.junit.jupiter.api.Test;
 import primitives.Color;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Adler32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 /**
  * A class to test the image writer class.
  *
@@ -23,4 +35,169 @@ class ImageWriterTest {
 
         imageWriter.writeToImage();
     }
-}
\ No newline at end of file
+
+    /**
+     * Test method for {@link ImageWriter#toImage()} and
+     * {@link ImageWriter#setToneMapping(ToneMapping)}.
+     */
+    @Test
+    void testToneMapping() {
+        ImageWriter imageWriter = new ImageWriter("test", 3, 2);
+        imageWriter.writePixel(0, 0, new Color(10.7, 100, 200.2));
+        imageWriter.writePixel(2, 1, new Color(1020, 255, 0));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The colors are kept as they were written, brighter than white too
+        assertEquals(1020, imageWriter.getPixel(2, 1).getR(), 0, "TC01: The color was not kept");
+        // TC02: The colors are quantized and clamped
+        BufferedImage image = imageWriter.toImage();
+        assertEquals(10 << 16 | 100 << 8 | 200, image.getRGB(0, 0) & 0xFFFFFF, "TC02: Wrong quantized color");
+        assertEquals(255 << 16 | 255 << 8, image.getRGB(2, 1) & 0xFFFFFF, "TC02: Wrong clamped color");
+        // TC03: Reinhard mapping keeps the details of bright colors
+        image = imageWriter.setToneMapping(ToneMapping.REINHARD).toImage();
+        assertEquals(204 << 16 | 127 << 8, image.getRGB(2, 1) & 0xFFFFFF, "TC03: Wrong mapped color");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Pixels that were not written are black
+        assertEquals(0, image.getRGB(1, 0) & 0xFFFFFF, "TC11: An unwritten pixel is not black");
+        // TC12: A missing tone mapping is illegal
+        assertThrows(IllegalArgumentException.class, () -> imageWriter.setToneMapping(null),
+                "TC12: A missing tone mapping was accepted");
+    }
+
+    /**
+     * Test method for {@link ImageWriter#writeToImageAsync()} and
+     * {@link ImageWriter#setCompressionLevel(int)}.
+     */
+    @Test
+    void testWriteToImageAsync() throws IOException {
+        ImageWriter imageWriter = new ImageWriter("asyncTest", 70, 40);
+        for (int i = 0; i < 70; i++)
+            for (int j = 0; j < 40; j++)
+                imageWriter.writePixel(i, j, new Color(i * 3, j * 6, (i * j) % 256));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The written file has the pixels of the image
+        File file = imageWriter.writeToImageAsync().join();
+        BufferedImage expected = imageWriter.toImage();
+        assertPixels(expected, ImageIO.read(file), "TC01");
+        // TC02: The pixels that are written after the call are not in the file
+        var future = imageWriter.setCompressionLevel(9).writeToImageAsync();
+        imageWriter.writePixel(0, 0, new Color(255, 255, 255));
+        assertPixels(expected, ImageIO.read(future.join()), "TC02");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: No compression
+        assertPixels(imageWriter.toImage(), ImageIO.read(imageWriter.setCompressionLevel(0).writeToImageAsync().join()), "TC11");
+        // TC12: An illegal compression level
+        assertThrows(IllegalArgumentException.class, () -> imageWriter.setCompressionLevel(10),
+                "TC12: An illegal compression level was accepted");
+    }
+
+    /**
+     * Test method for {@link ImageWriter#ImageWriter(String, int, int, Path)}.
+     */
+    @Test
+    void testFrameFile() throws IOException {
+        Path frameFile = Files.createTempFile("frame", ".bin");
+        try {
+            // an image of 3 x 2 tiles, the last ones partly outside the image
+            ImageWriter mapped = new ImageWriter("frameFileTest", 150, 70, frameFile);
+            ImageWriter heap = new ImageWriter("frameFileTest", 150, 70);
+            for (int i = 0; i < 150; i++)
+                for (int j = 0; j < 70; j++)
+                    if ((i + j) % 3 != 0) {
+                        Color color = new Color(i * 1.5, j * 3.25, i + j);
+                        mapped.writePixel(i, j, color);
+                        heap.writePixel(i, j, color);
+                    }
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: The colors are kept in the file
+            Color color = mapped.getPixel(7, 6);
+            assertArrayEquals(new double[]{10.5, 19.5, 13}, new double[]{color.getR(), color.getG(), color.getB()},
+                    "TC01: The color was not kept");
+            // TC02: The image is the same as the image of the pixels in the heap
+            BufferedImage expected = heap.toImage();
+            assertPixels(expected, mapped.toImage(), "TC02");
+            // TC03: The file is written from the frame file
+            assertPixels(expected, ImageIO.read(mapped.writeToImageAsync().join()), "TC03");
+            // TC04: The file holds a header page and whole tiles of 3 floats for each pixel
+            assertEquals(4096 + 6 * 64 * 64 * 12, Files.size(frameFile), "TC04: Wrong size of the frame file");
+
+            // =============== Boundary Values Tests ==================
+            // TC11: Pixels that were not written are black
+            color = mapped.getPixel(147, 69);
+            assertArrayEquals(new double[3], new double[]{color.getR(), color.getG(), color.getB()},
+                    "TC11: An unwritten pixel is not black");
+            // TC12: The pixels at the edges of the tiles
+            color = mapped.getPixel(64, 63);
+            assertArrayEquals(new double[]{96, 204.75, 127}, new double[]{color.getR(), color.getG(), color.getB()},
+                    "TC12: Wrong pixel at the edge of a tile");
+        } finally {
+            Files.deleteIfExists(frameFile);
+        }
+    }
+
+    /**
+     * Test method for {@link PngEncoder#write(int[], int, int, java.io.OutputStream)}
+     * and {@link PngEncoder#combineAdler(long, long, long)}.
+     */
+    @Test
+    void testPngEncoder() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: An image in many strips, every one with its dictionary
+        BufferedImage image = new BufferedImage(50, 37, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 50; x++)
+            for (int y = 0; y < 37; y++)
+                image.setRGB(x, y, (x * 5) << 16 | (y * 7) << 8 | (x * y) % 256);
+        assertPixels(image, encode(image, 6, 4), "TC01");
+        // TC02: The checksum of two blocks is combined from their checksums
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (i * 31 + i / 7);
+        Adler32 whole = new Adler32();
+        whole.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, 70000);
+        Adler32 second = new Adler32();
+        second.update(data, 70000, 30000);
+        assertEquals(whole.getValue(), PngEncoder.combineAdler(first.getValue(), second.getValue(), 30000),
+                "TC02: Wrong combined checksum");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A strip of a single row
+        assertPixels(image, encode(image, 1, 1), "TC11");
+        // TC12: An image of a single pixel
+        BufferedImage pixel = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        pixel.setRGB(0, 0, 0x123456);
+        assertPixels(pixel, encode(pixel, 4, 0), "TC12");
+        // TC13: An illegal compression level
+        assertThrows(IllegalArgumentException.class, () -> new PngEncoder(10),
+                "TC13: An illegal compression level was accepted");
+    }
+
+    /**
+     * encodes an image by the PNG encoder and decodes it back
+     */
+    private static BufferedImage encode(BufferedImage image, int level, int stripRows) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PngEncoder(level, stripRows).write(image.getRGB(0, 0, width, height, null, 0, width), width, height, out);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * checks that two images have the same pixels
+     */
+    private static void assertPixels(BufferedImage expected, BufferedImage actual, String tc) {
+        assertNotNull(actual, tc + ": The file was not decoded");
+        assertEquals(expected.getWidth(), actual.getWidth(), tc + ": Wrong width");
+        assertEquals(expected.getHeight(), actual.getHeight(), tc + ": Wrong height");
+        for (int x = 0; x < expected.getWidth(); x++)
+            for (int y = 0; y < expected.getHeight(); y++)
+                assertEquals(expected.getRGB(x, y) & 0xFFFFFF, actual.getRGB(x, y) & 0xFFFFFF,
+                        tc + ": Wrong pixel at " + x + ", " + y);
+    }
+}
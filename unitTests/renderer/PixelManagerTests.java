@@ -0,0 +1,66 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Point;
+import primitives.Vector;
+import renderer.PixelManager.Tile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testing PixelManager Class
+ *
+ * @author hodaya
+ */
+class PixelManagerTests {
+
+    /**
+     * Test method for {@link PixelManager#nextTile()}.
+     */
+    @Test
+    void testNextTile() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Tiles that divide the image
+        assertCoverage(32, 48, 16, "TC01");
+        // TC02: Ragged tiles at the right and the bottom edges
+        assertCoverage(50, 30, 16, "TC02");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Tiles of a single pixel
+        assertCoverage(7, 5, 1, "TC11");
+        // TC12: A single tile larger than the image
+        assertCoverage(7, 5, 64, "TC12");
+        // TC13: A tile size that is not positive
+        assertThrows(IllegalArgumentException.class, () -> new PixelManager(5, 7, 0, 0),
+                "TC13: A tile size of 0 was accepted");
+        assertThrows(IllegalArgumentException.class, () -> new Camera(Point.ZERO, new Vector(0, 0, -1),
+                        new Vector(0, -1, 0)).setTileSize(-1),
+                "TC13: A negative tile size was accepted by the camera");
+    }
+
+    /**
+     * checks that the tiles cover every pixel of an image exactly once
+     *
+     * @param nx       the amount of columns
+     * @param ny       the amount of rows
+     * @param tileSize the size of a tile side
+     * @param tc       the name of the test case
+     */
+    private static void assertCoverage(int nx, int ny, int tileSize, String tc) {
+        PixelManager pixelManager = new PixelManager(ny, nx, 0, tileSize);
+        int[][] covered = new int[ny][nx];
+        int tiles = 0;
+        for (Tile tile; (tile = pixelManager.nextTile()) != null; ++tiles) {
+            assertEquals(tiles, tile.index(), tc + ": Wrong number of a tile");
+            assertTrue(tile.width() > 0 && tile.width() <= tileSize && tile.height() > 0 && tile.height() <= tileSize,
+                    tc + ": Wrong size of a tile");
+            for (int row = tile.row(); row < tile.row() + tile.height(); ++row)
+                for (int col = tile.col(); col < tile.col() + tile.width(); ++col)
+                    ++covered[row][col];
+        }
+        assertEquals(pixelManager.getTotalTiles(), tiles, tc + ": Wrong amount of tiles");
+        for (int row = 0; row < ny; ++row)
+            for (int col = 0; col < nx; ++col)
+                assertEquals(1, covered[row][col], tc + ": Pixel " + col + ", " + row + " is not covered once");
+    }
+}
@@ -0,0 +1,188 @@
+package scene;
+
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import lighting.AmbientLight;
+import lighting.DirectionalLight;
+import lighting.PointLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.*;
+import renderer.Camera;
+import renderer.ImageWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static geometries.RandomGeometries.assertSameClosestHits;
+import static geometries.RandomGeometries.randomRay;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link BinaryScene} class
+ *
+ * @author hodaya
+ */
+class BinarySceneTests {
+    /**
+     * a directory for the test files
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * creates a scene with all the kinds of bodies and lights
+     *
+     * @return the scene
+     */
+    private static Scene createScene() {
+        Scene scene = new Scene("binary").setCBR();
+        scene.setBackground(new Color(10, 20, 30)).setAmbientLight(new AmbientLight(new Color(50, 60, 70), new Double3(0.5)));
+        Material shiny = new Material().setKd(0.4).setKs(new Double3(0.1, 0.2, 0.3)).setShininess(50).setKr(0.2);
+        Material glass = new Material().setKt(0.7);
+        Random random = new Random(941);
+        for (int i = 0; i < 50; ++i) {
+            Point p = new Point(random.nextDouble() * 100, random.nextDouble() * 100, -50 - random.nextDouble() * 100);
+            scene.geometries.add(new Sphere(2, p).setEmission(new Color(i, 0, 0)).setMaterial(shiny),
+                    new Triangle(p, p.add(new Vector(5, 0, 1)), p.add(new Vector(0, 5, 1))).setMaterial(glass));
+        }
+        scene.geometries.add(new Polygon(new Point(0, 0, -200), new Point(10, 0, -200), new Point(10, 10, -200),
+                new Point(0, 10, -200)));
+        scene.geometries.add(new TriangleMesh(new double[]{0, 0, -190, 100, 0, -190, 100, 100, -190, 0, 100, -190},
+                new int[]{0, 1, 2, 0, 2, 3}).setMaterial(shiny));
+        scene.geometries.add(new Plane(new Point(0, 0, -300), new Vector(0, 0, 1)).setMaterial(glass));
+        scene.lights.add(new DirectionalLight(new Color(100, 100, 100), new Vector(1, 1, -1)));
+        scene.lights.add(new PointLight(new Color(200, 100, 0), new Point(50, 50, 0), 3).setKl(0.001));
+        scene.lights.add(new SpotLight(new Color(0, 100, 200), new Point(0, 50, 0), new Vector(0, -1, -1)).setKq(0.0001));
+        return scene;
+    }
+
+    /**
+     * checks that two colors are equal up to the rounding of their calculation
+     */
+    private static void assertColor(Color expected, Color actual, String message) {
+        assertEquals(expected.getR(), actual.getR(), 0.00001, message);
+        assertEquals(expected.getG(), actual.getG(), 0.00001, message);
+        assertEquals(expected.getB(), actual.getB(), 0.00001, message);
+    }
+
+    /**
+     * Test method for {@link BinaryScene#save(Scene, Camera, Path)} and {@link BinaryScene#load(Path)}.
+     */
+    @Test
+    void testSaveLoad() throws IOException {
+        Scene scene = createScene().freeze();
+        Camera camera = new Camera(new Point(50, 50, 100), new Vector(0, 0, -1), new Vector(0, 1, 0))
+                .setViewPlaneDistance(100).setViewPlaneSize(120, 80).setImageWriter(new ImageWriter("binary", 60, 40));
+        Path file = dir.resolve("scene.bin");
+        BinaryScene.save(scene, camera, file);
+
+        Scene loaded = new Scene("empty");
+        BinaryScene binary = new BinaryScene(loaded);
+        binary.load(file);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The scene settings and the camera
+        assertEquals("binary", loaded.name, "TC01: Wrong name");
+        assertColor(scene.background, loaded.background, "TC01: Wrong background");
+        assertColor(scene.ambientLight.getIntensity(), loaded.ambientLight.getIntensity(), "TC01: Wrong ambient light");
+        Camera loadedCamera = binary.getCamera();
+        assertEquals(camera.getPoint(), loadedCamera.getPoint(), "TC01: Wrong camera position");
+        assertEquals(camera.getVTo(), loadedCamera.getVTo(), "TC01: Wrong camera direction");
+        assertEquals(80, loadedCamera.getHeight(), 0.00001, "TC01: Wrong view plane height");
+        assertEquals(60, loadedCamera.getImageWriter().getNx(), "TC01: Wrong resolution");
+
+        // TC02: The lights
+        assertEquals(3, loaded.lights.size(), "TC02: Wrong amount of lights");
+        for (int i = 0; i < 3; ++i) {
+            assertSame(scene.lights.get(i).getClass(), loaded.lights.get(i).getClass(), "TC02: Wrong light kind");
+            Point p = new Point(20, 30, -40);
+            assertColor(scene.lights.get(i).getIntensity(p), loaded.lights.get(i).getIntensity(p),
+                    "TC02: Wrong light intensity");
+            assertEquals(scene.lights.get(i).getL(p), loaded.lights.get(i).getL(p), "TC02: Wrong light direction");
+        }
+
+        // TC03: The frozen hierarchy was loaded, and the rays hit the same bodies
+        assertNotNull(loaded.getHierarchy(), "TC03: The loaded scene is not frozen");
+        assertEquals(scene.getBVHReport(), loaded.getBVHReport(), "TC03: The hierarchy was not loaded as it was");
+        Random random = new Random(17);
+        for (int i = 0; i < 300; ++i) {
+            Ray ray = randomRay(random, 100);
+            GeoPoint expected = scene.getIntersectable().findClosestIntersection(ray);
+            GeoPoint actual = loaded.getIntersectable().findClosestIntersection(ray);
+            if (expected == null) {
+                assertNull(actual, "TC03: Intersection that was not in the saved scene");
+                continue;
+            }
+            assertEquals(expected.point, actual.point, "TC03: Wrong intersection");
+            assertSame(expected.geometry.getClass(), actual.geometry.getClass(), "TC03: Wrong body kind");
+            assertColor(expected.geometry.getEmission(), actual.geometry.getEmission(), "TC03: Wrong emission");
+            Material m1 = expected.geometry.getMaterial();
+            Material m2 = actual.geometry.getMaterial();
+            assertEquals(m1.kD, m2.kD, "TC03: Wrong material");
+            assertEquals(m1.kS, m2.kS, "TC03: Wrong material");
+            assertEquals(m1.kT, m2.kT, "TC03: Wrong material");
+            assertEquals(m1.kR, m2.kR, "TC03: Wrong material");
+            assertEquals(m1.nShininess, m2.nShininess, "TC03: Wrong material");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A scene that is not frozen, without a camera
+        BinaryScene.save(createScene(), null, file);
+        binary.load(file);
+        assertNull(binary.getCamera(), "TC11: A camera that was not saved");
+        assertNull(loaded.getHierarchy(), "TC11: A hierarchy that was not saved");
+
+        // TC12: A file that ends too soon
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> binary.load(file), "TC12: Loaded a part of a file");
+
+        // TC13: Another version of the format
+        bytes[7] = 99;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> binary.load(file), "TC13: Loaded an unknown version");
+
+        // TC14: Not a scene file
+        Files.writeString(file, "<scene/>");
+        assertThrows(IOException.class, () -> binary.load(file), "TC14: Loaded a file that is not a scene file");
+
+        // TC15: A hierarchy of the same amount of bodies that does not fit them (the bodies were
+        // reordered after the scene was frozen) is built again
+        Scene reordered = createScene().freeze();
+        List<Intersectable> finites = new ArrayList<>();
+        List<Intersectable> infinites = new ArrayList<>();
+        reordered.geometries.flatten(finites, infinites);
+        Collections.reverse(finites);
+        reordered.geometries = new Geometries(finites.toArray(new Intersectable[0]));
+        reordered.geometries.add(infinites);
+        BinaryScene.save(reordered, null, file);
+        binary.load(file);
+        assertNotNull(loaded.getHierarchy(), "TC15: The loaded scene is not frozen");
+        Scene expected = createScene();
+        assertSameClosestHits(expected.geometries, loaded.getIntersectable(), new Random(29), 100,
+                "TC15: Wrong intersection with a hierarchy that does not fit");
+
+        // TC16: A mesh whose hierarchy does not fit its faces (the vertices moved after the
+        // hierarchy was built) is loaded with a new hierarchy
+        double[] positions = {0, 0, -190, 100, 0, -190, 100, 100, -190, 0, 100, -190};
+        TriangleMesh moved = new TriangleMesh(positions, new int[]{0, 1, 2, 0, 2, 3});
+        for (int i = 0; i < positions.length; i += 3)
+            positions[i] += 200;
+        Scene meshScene = new Scene("mesh");
+        meshScene.geometries.add(moved);
+        BinaryScene.save(meshScene, null, file);
+        binary.load(file);
+        GeoPoint meshHit = loaded.geometries.findClosestIntersection(new Ray(new Point(230, 60, 0), new Vector(0, 0, -1)));
+        assertNotNull(meshHit, "TC16: Missed a mesh whose hierarchy does not fit");
+        assertEquals(new Point(230, 60, -190), meshHit.point,
+                "TC16: Wrong intersection with a mesh hierarchy that does not fit");
+    }
+}
@@ -0,0 +1,155 @@
+package scene;
+
+import geometries.TriangleMesh;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link MeshLoader} class
+ *
+ * @author hodaya
+ */
+class MeshLoaderTests {
+    /**
+     * a directory for the test files
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Test method for {@link MeshLoader#loadObj(Path)}.
+     */
+    @Test
+    void testLoadObj() throws IOException {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A square made of a quad, with comments, normals, texture references and a negative index
+        Path obj = dir.resolve("square.obj");
+        Files.writeString(obj, """
+                # a square
+                o square
+                v 0 0 0
+                v 1.5 0 0\r
+                v 1.5 -2.5e1 0
+                v  0 -25 .5 1.0
+                vn 0 0 1
+                vt 0 0
+                f 1/1/1 2/1/1 3//1 -1
+                """);
+        TriangleMesh mesh = MeshLoader.load(obj);
+        assertArrayEquals(new double[]{0, 0, 0, 1.5, 0, 0, 1.5, -25, 0, 0, -25, 0.5}, mesh.getPositions(), 0,
+                "TC01: Wrong vertices");
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, mesh.getIndices(), "TC01: Wrong faces");
+
+        // TC02: A face that refers to a missing vertex
+        Path bad = dir.resolve("bad.obj");
+        Files.writeString(bad, "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 4\n");
+        assertThrows(IOException.class, () -> MeshLoader.load(bad), "TC02: Loaded a face with a missing vertex");
+
+        // TC03: A broken number
+        Files.writeString(bad, "v 0 x 0\n");
+        assertThrows(IOException.class, () -> MeshLoader.load(bad), "TC03: Loaded a broken number");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A file without faces
+        Files.writeString(bad, "v 0 0 0\n");
+        assertThrows(IOException.class, () -> MeshLoader.load(bad), "TC11: Loaded a mesh without faces");
+
+        // TC12: The last line without a line end
+        Files.writeString(obj, "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3");
+        assertArrayEquals(new int[]{0, 1, 2}, MeshLoader.load(obj).getIndices(), "TC12: Wrong last face");
+
+        // TC13: An index beyond the range of an int
+        Files.writeString(bad, "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 4294967299\n");
+        assertThrows(IOException.class, () -> MeshLoader.load(bad), "TC13: Loaded an index beyond an int");
+    }
+
+    /**
+     * Test method for {@link MeshLoader#loadPly(Path)}.
+     */
+    @Test
+    void testLoadPly() throws IOException {
+        String header = """
+                ply
+                format %s 1.0
+                comment a square with a color for each vertex
+                element vertex 4
+                property float x
+                property float y
+                property float z
+                property uchar red
+                element face 1
+                property list uchar int vertex_indices
+                property uchar flags
+                element edge 1
+                property list uchar int vertex
+                end_header
+                """;
+        double[] positions = {0, 0, 0, 1.5, 0, 0, 1.5, -25, 0, 0, -25, 0.5};
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Binary in both byte orders, with skipped properties and elements
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            ByteBuffer data = ByteBuffer.allocate(4 * 13 + 18 + 9).order(order);
+            for (int v = 0; v < 4; ++v) {
+                for (int i = 0; i < 3; ++i)
+                    data.putFloat((float) positions[v * 3 + i]);
+                data.put((byte) 200);
+            }
+            data.put((byte) 4).putInt(0).putInt(1).putInt(2).putInt(3).put((byte) 7);
+            data.put((byte) 2).putInt(0).putInt(1);
+            String format = order == ByteOrder.LITTLE_ENDIAN ? "binary_little_endian" : "binary_big_endian";
+            Path ply = dir.resolve(format + ".ply");
+            Files.write(ply, header.formatted(format).getBytes(StandardCharsets.US_ASCII));
+            Files.write(ply, data.array(), java.nio.file.StandardOpenOption.APPEND);
+
+            TriangleMesh mesh = MeshLoader.load(ply);
+            assertArrayEquals(positions, mesh.getPositions(), 0, "TC01: Wrong vertices of " + format);
+            assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, mesh.getIndices(), "TC01: Wrong faces of " + format);
+        }
+
+        // TC02: Ascii
+        Path ply = dir.resolve("ascii.ply");
+        Files.writeString(ply, header.formatted("ascii")
+                + "0 0 0 200\n1.5 0 0 200\n1.5 -25 0 200\n0 -25 0.5 200\n4 0 1 2 3 7\n2 0 1\n");
+        TriangleMesh mesh = MeshLoader.load(ply);
+        assertArrayEquals(positions, mesh.getPositions(), 0, "TC02: Wrong vertices of ascii");
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, mesh.getIndices(), "TC02: Wrong faces of ascii");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The data ends before all the vertices
+        Files.write(ply, (header.formatted("binary_little_endian")).getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> MeshLoader.load(ply), "TC11: Loaded a file that ends too soon");
+
+        // TC12: A count of vertices whose values overflow an int, in a short file
+        Files.write(ply, header.formatted("binary_little_endian").replace("vertex 4", "vertex 1000000000")
+                .getBytes(StandardCharsets.US_ASCII));
+        IOException e = assertThrows(IOException.class, () -> MeshLoader.load(ply),
+                "TC12: Loaded a file with too many vertices");
+        assertTrue(e.getMessage().contains("too short"), "TC12: Wrong error - " + e.getMessage());
+
+        // TC13: A negative count of faces
+        Files.write(ply, header.formatted("binary_little_endian").replace("face 1", "face -1")
+                .getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> MeshLoader.load(ply), "TC13: Loaded a file with a negative count");
+
+        // TC14: Header lines without their values
+        String[][] cuts = {{"format binary_little_endian 1.0", "format"}, {"element vertex 4", "element"},
+                {"element vertex 4", "element vertex"}, {"property float x", "property float"},
+                {"property list uchar int vertex_indices", "property list uchar int"}};
+        for (String[] cut : cuts) {
+            Files.write(ply, header.formatted("binary_little_endian").replace(cut[0], cut[1])
+                    .getBytes(StandardCharsets.US_ASCII));
+            e = assertThrows(IOException.class, () -> MeshLoader.load(ply), "TC14: Loaded a header line " + cut[1]);
+            assertTrue(e.getMessage().contains(cut[1]), "TC14: Wrong error - " + e.getMessage());
+        }
+    }
+}
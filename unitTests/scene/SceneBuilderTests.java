@@ -0,0 +1,122 @@
+package scene;
+
+import geometries.Intersectable.GeoPoint;
+import geometries.Polygon;
+import geometries.TriangleMesh;
+import lighting.DirectionalLight;
+import lighting.PointLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SceneBuilder} class
+ *
+ * @author hodaya
+ */
+class SceneBuilderTests {
+    /**
+     * a directory for the test files
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * Test method for {@link SceneBuilder#loadScene(Path)}.
+     */
+    @Test
+    void testLoadScene() throws IOException {
+        Files.writeString(dir.resolve("square.obj"), "v 0 0 -300\nv 10 0 -300\nv 10 10 -300\nv 0 10 -300\nf 1 2 3 4\n");
+        Path xml = dir.resolve("scene.xml");
+        Files.writeString(xml, """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <scene name="loaded">
+                    <background color="75 127 190"/>
+                    <ambient-light color="255 191 191" k="0.1"/>
+                    <camera position="0 0 0" to="0 0 -1" up="0 1 0" distance="100" size="200 200" resolution="40 40"/>
+                    <materials>
+                        <material name="glass" kd="0.1" ks="0.2 0.3 0.4" shininess="30" kt="0.8"/>
+                    </materials>
+                    <lights>
+                        <directional-light color="100 100 100" direction="0 0 -1"/>
+                        <point-light color="100 100 100" position="0 50 0" kl="0.001"/>
+                        <spot-light color="100 100 100" position="0 -50 0" direction="0 1 -1" kq="0.0001"/>
+                    </lights>
+                    <geometries>
+                        <sphere center="0 0 -100" radius="10" material="glass"/>
+                        <triangle p0="-100 0 -200" p1="0 100 -200" p2="-100 100 -200" emission="10 20 30">
+                            <material kd="0.5" kr="1"/>
+                        </triangle>
+                        <polygon vertices="20 -10 -150  40 -10 -150  40 -30 -150  20 -30 -150"/>
+                        <plane point="0 0 -1000" normal="0 0 1"/>
+                        <mesh file="square.obj" material="glass"/>
+                    </geometries>
+                </scene>
+                """);
+        Scene scene = new Scene("empty");
+        SceneBuilder builder = new SceneBuilder(scene);
+        builder.loadScene(xml);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: The scene settings
+        assertEquals("loaded", scene.name, "TC01: Wrong scene name");
+        assertNotNull(builder.getCamera(), "TC01: Missing camera");
+        assertEquals(100, builder.getCamera().getDis(), 0.00001, "TC01: Wrong view plane distance");
+        assertEquals(200, builder.getCamera().getWidth(), 0.00001, "TC01: Wrong view plane width");
+
+        // TC02: The lights, in their order
+        assertEquals(3, scene.lights.size(), "TC02: Wrong amount of lights");
+        assertInstanceOf(DirectionalLight.class, scene.lights.get(0), "TC02: Wrong directional light");
+        assertInstanceOf(PointLight.class, scene.lights.get(1), "TC02: Wrong point light");
+        assertInstanceOf(SpotLight.class, scene.lights.get(2), "TC02: Wrong spot light");
+
+        // TC03: The bodies with their materials
+        GeoPoint sphere = scene.geometries.findClosestIntersection(new Ray(Point.ZERO, new Vector(0, 0, -1)));
+        assertEquals(new Point(0, 0, -90), sphere.point, "TC03: Wrong sphere");
+        assertEquals(new Double3(0.2, 0.3, 0.4), sphere.geometry.getMaterial().kS, "TC03: Wrong named material");
+        assertEquals(30, sphere.geometry.getMaterial().nShininess, "TC03: Wrong named material");
+
+        GeoPoint triangle = scene.geometries.findClosestIntersection(new Ray(Point.ZERO, new Vector(-50, 75, -200)));
+        assertEquals(new Double3(1), triangle.geometry.getMaterial().kR, "TC03: Wrong inner material");
+        assertEquals(new primitives.Color(10, 20, 30).toString(), triangle.geometry.getEmission().toString(),
+                "TC03: Wrong emission");
+
+        GeoPoint mesh = scene.geometries.findClosestIntersection(new Ray(new Point(9.5, 4, 0), new Vector(0, 0, -1)));
+        assertInstanceOf(TriangleMesh.Face.class, mesh.geometry, "TC03: Wrong mesh");
+        assertEquals(new Double3(0.8), mesh.geometry.getMaterial().kT, "TC03: Wrong mesh material");
+
+        GeoPoint polygon = scene.geometries.findClosestIntersection(new Ray(Point.ZERO, new Vector(30, -20, -150)));
+        assertInstanceOf(Polygon.class, polygon.geometry, "TC03: Missed polygon");
+        assertEquals(new Point(30, -20, -150), polygon.point, "TC03: Wrong polygon");
+
+        GeoPoint plane = scene.geometries.findClosestIntersection(new Ray(Point.ZERO, new Vector(0, -1, -1)));
+        assertEquals(new Point(0, -1000, -1000), plane.point, "TC03: Wrong plane");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: A material that was not defined
+        Files.writeString(xml, "<scene><geometries><sphere center=\"0 0 0\" radius=\"1\" material=\"x\"/></geometries></scene>");
+        assertThrows(IOException.class, () -> builder.loadScene(xml), "TC11: Loaded an unknown material");
+
+        // TC12: A point with 2 values
+        Files.writeString(xml, "<scene><geometries><sphere center=\"0 0\" radius=\"1\"/></geometries></scene>");
+        assertThrows(IOException.class, () -> builder.loadScene(xml), "TC12: Loaded a broken point");
+
+        // TC13: A missing attribute
+        Files.writeString(xml, "<scene><geometries><triangle p0=\"0 0 0\" p1=\"1 0 0\"/></geometries></scene>");
+        assertThrows(IOException.class, () -> builder.loadScene(xml), "TC13: Loaded a triangle without its vertex");
+
+        // TC14: An invalid body
+        Files.writeString(xml, "<scene><geometries><polygon vertices=\"0 0 0 1 0 0\"/></geometries></scene>");
+        assertThrows(IOException.class, () -> builder.loadScene(xml), "TC14: Loaded a polygon with 2 vertices");
+    }
+}